@@ -0,0 +1,91 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import page.JobSearch;
+import page.ResultParser;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Throughput of the static JobSearch parsers against the ResultParser kernel.
+ * Every invocation parses the whole corpus, so scores are corpus passes per second.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParserBenchmark {
+
+    @Param({"10", "10000", "1000000"})
+    public int rows;
+
+    private ResultCorpus corpus;
+    private ResultParser parser;
+    private long[] payLows;
+    private long[] payHighs;
+    private int[] distanceTenths;
+    private int[] epochDays;
+
+    @Setup
+    public void setUp() {
+        corpus = new ResultCorpus(rows, 42L);
+        parser = new ResultParser(Clock.fixed(Instant.parse("2025-07-20T09:00:00Z"), ZoneOffset.UTC));
+        payLows = new long[rows];
+        payHighs = new long[rows];
+        distanceTenths = new int[rows];
+        epochDays = new int[rows];
+    }
+
+    @Benchmark
+    public void parsePayRange(Blackhole blackhole) {
+        for (String payRange : corpus.payRanges) {
+            blackhole.consume(JobSearch.parsePayRange(payRange));
+        }
+    }
+
+    @Benchmark
+    public int kernelPayRanges() {
+        return parser.parsePayRanges(corpus.payRanges, payLows, payHighs);
+    }
+
+    @Benchmark
+    public void parseMilesDistance(Blackhole blackhole) {
+        for (String distance : corpus.distances) {
+            blackhole.consume(JobSearch.parseMilesDistance(distance));
+        }
+    }
+
+    @Benchmark
+    public int kernelDistances() {
+        return parser.parseDistances(corpus.distances, distanceTenths);
+    }
+
+    @Benchmark
+    public void parseJobDate(Blackhole blackhole) {
+        for (String datePosted : corpus.datesPosted) {
+            blackhole.consume(JobSearch.parseJobDate(datePosted));
+        }
+    }
+
+    @Benchmark
+    public int kernelEpochDays() {
+        return parser.parseEpochDays(corpus.datesPosted, epochDays);
+    }
+}
@@ -0,0 +1,91 @@
+package benchmarks;
+
+import page.JobSearch;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+
+/**
+ * Generates realistic search result text in the shapes the NHS Jobs site shows,
+ * so benchmarks run against the same mix of formats the parsers and validators see in a real run.
+ * The same seed always gives the same corpus.
+ */
+final class ResultCorpus {
+    private static final String[] TITLES = {"Staff Nurse", "Band 5 Staff Nurse - Acute Medicine", "Healthcare Assistant",
+            "Advanced Clinical Practitioner", "Administrative Assistant", "Consultant Radiologist", "Medical Secretary",
+            "Specialty Doctor in Psychiatry", "Physiotherapist", "Pharmacy Technician"};
+    private static final String[] EMPLOYERS = {"Manchester University NHS Foundation Trust", "Leeds Teaching Hospitals NHS Trust",
+            "NHS Greater Glasgow and Clyde", "North Cumbria Integrated Care NHS Foundation Trust", "Birmingham Community Healthcare",
+            "Oxford Health NHS Foundation Trust", "Priory Group"};
+    private static final String[] LOCATIONS = {"Manchester, M13 9WL", "Leeds, LS1 3EX", "Glasgow, G51 4TF", "Whitehaven, CA28 8JG",
+            "Birmingham, B15 2TH", "Oxford, OX3 7JX", ""};
+    private static final String[] PAY_FORMATS = {"£%,d to £%,d a year", "£%,d to £%,d per annum pro rata", "£%dk - £%dk"};
+    private static final String[] CONTRACT_TYPES = {"Permanent", "Fixed term", "Bank", "Locum"};
+    private static final String[] WORKING_PATTERNS = {"Full time", "Part time", "Full time, Part time, Flexible working"};
+    private static final String[] MONTHS = {"January", "February", "March", "April", "May", "June", "July", "August",
+            "September", "October", "November", "December"};
+
+    final List<String> payRanges;
+    final List<String> distances;
+    final List<String> datesPosted;
+    final List<JobSearch.JobSearchResult> results;
+
+    ResultCorpus(int rows, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        payRanges = new ArrayList<>(rows);
+        distances = new ArrayList<>(rows);
+        datesPosted = new ArrayList<>(rows);
+        results = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            String payRange = payRange(random);
+            String distance = random.nextInt(10) == 0 ? "" : String.format("%d.%d miles", random.nextInt(50), random.nextInt(10));
+            String datePosted = datePosted(random);
+            payRanges.add(payRange);
+            distances.add(distance);
+            datesPosted.add(datePosted);
+            results.add(new JobSearch.JobSearchResult(
+                    pick(random, TITLES),
+                    pick(random, EMPLOYERS),
+                    pick(random, LOCATIONS),
+                    distance,
+                    payRange,
+                    pick(random, CONTRACT_TYPES),
+                    pick(random, WORKING_PATTERNS),
+                    datePosted));
+        }
+    }
+
+    private static String payRange(SplittableRandom random) {
+        int kind = random.nextInt(10);
+        if (kind == 0) {
+            return "Depends on experience";
+        }
+        if (kind == 1) {
+            return String.format("£%d.%02d an hour", 11 + random.nextInt(30), random.nextInt(100));
+        }
+        int low = 20 + random.nextInt(60);
+        int high = low + random.nextInt(20);
+        String format = pick(random, PAY_FORMATS);
+        return format.contains("k") ? String.format(format, low, high) : String.format(format, low * 1000 + random.nextInt(1000), high * 1000);
+    }
+
+    private static String datePosted(SplittableRandom random) {
+        int kind = random.nextInt(10);
+        if (kind == 0) {
+            return "today";
+        }
+        if (kind == 1) {
+            return "yesterday";
+        }
+        if (kind == 2) {
+            return (2 + random.nextInt(6)) + " days ago";
+        }
+        return (1 + random.nextInt(28)) + " " + pick(random, MONTHS) + " " + (2024 + random.nextInt(2));
+    }
+
+    private static String pick(SplittableRandom random, String[] values) {
+        return values[random.nextInt(values.length)];
+    }
+}
@@ -0,0 +1,114 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import page.JobSearch;
+import page.ResultParser;
+import page.SearchCriteria;
+import page.SearchResultChecks;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Throughput of the checks made by the search result step definitions, run over the whole corpus as it is streamed.
+ * The phrases are ones that never match, so at least one result criteria scan every row as they do on a failing page,
+ * and every result criteria pass, so every row is evaluated as it is on a passing page. Each criterion is measured on
+ * its own, including the parsing of the result columns it shares with the others, and all of them compiled together.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ValidationBenchmark {
+
+    @Param({"10", "10000", "1000000"})
+    public int rows;
+
+    private ResultCorpus corpus;
+    private ResultParser parser;
+    private List<JobSearch.JobSearchResult> newestFirst;
+    private SearchCriteria keyword;
+    private SearchCriteria employer;
+    private SearchCriteria payRange;
+    private SearchCriteria distance;
+    private SearchCriteria criteria;
+
+    @Setup
+    public void setUp() {
+        corpus = new ResultCorpus(rows, 42L);
+        parser = new ResultParser(Clock.fixed(Instant.parse("2025-07-20T09:00:00Z"), ZoneOffset.UTC));
+        keyword = SearchCriteria.builder()
+                .anyResultContains("keyword", EnumSet.allOf(SearchCriteria.Field.class), "Orthoptist")
+                .build();
+        employer = SearchCriteria.builder()
+                .anyResultContains("employer", EnumSet.of(SearchCriteria.Field.EMPLOYER), "Orthoptist")
+                .build();
+        payRange = SearchCriteria.builder()
+                .everyResultPaysWithin("pay range", 0, Long.MAX_VALUE)
+                .build();
+        distance = SearchCriteria.builder()
+                .everyResultWithinDistance("distance", Integer.MAX_VALUE)
+                .build();
+        // The four criteria above, plus a query of several keywords
+        criteria = SearchCriteria.builder()
+                .anyResultContains("keyword", EnumSet.allOf(SearchCriteria.Field.class), "Orthoptist")
+                .anyResultContains("keywords", EnumSet.allOf(SearchCriteria.Field.class), "Orthoptist", "Podiatrist", "Prosthetist")
+                .anyResultContains("employer", EnumSet.of(SearchCriteria.Field.EMPLOYER), "Orthoptist")
+                .everyResultPaysWithin("pay range", 0, Long.MAX_VALUE)
+                .everyResultWithinDistance("distance", Integer.MAX_VALUE)
+                .build();
+        // Newest first, as the step expects after sorting by date posted
+        newestFirst = new ArrayList<>(corpus.results);
+        newestFirst.sort(Comparator.comparingInt((JobSearch.JobSearchResult result) -> parser.parseEpochDay(result.datePosted()))
+                .reversed());
+    }
+
+    @Benchmark
+    public SearchCriteria.Evaluation keywordMatch() {
+        return keyword.evaluate(corpus.results.iterator(), parser);
+    }
+
+    @Benchmark
+    public SearchCriteria.Evaluation employerMatch() {
+        return employer.evaluate(corpus.results.iterator(), parser);
+    }
+
+    @Benchmark
+    public SearchCriteria.Evaluation payRangeMatch() {
+        return payRange.evaluate(corpus.results.iterator(), parser);
+    }
+
+    @Benchmark
+    public SearchCriteria.Evaluation distanceMatch() {
+        return distance.evaluate(corpus.results.iterator(), parser);
+    }
+
+    @Benchmark
+    public SearchCriteria.Evaluation compiledCriteria() {
+        return criteria.evaluate(corpus.results.iterator(), parser);
+    }
+
+    @Benchmark
+    public SearchResultChecks.DateOrder sortOrderCheck() {
+        return SearchResultChecks.checkNewestFirst(newestFirst.iterator(), parser);
+    }
+}
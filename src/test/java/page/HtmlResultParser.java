@@ -0,0 +1,428 @@
+package page;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+
+/**
+ * Reads NHS Jobs pages from their HTML source, for journeys that run without a browser.
+ * It looks for the same classes, ids and labels as the JobSearch locators, and normalises text
+ * the way WebElement.getText() does, so both modes produce identical JobSearchResult records.
+ */
+public final class HtmlResultParser {
+    private static final String[] RESULT_CARD_CLASSES = {"nhsuk-list-panel", "search-result", "nhsuk-u-padding-3"};
+    private static final String[] JOB_TITLE_CLASSES = {"nhsuk-heading-m"};
+    private static final String[] EMPLOYER_CLASSES = {"nhsuk-u-font-weight-bold"};
+    private static final String[] LOCATION_CLASSES = {"location-font-size"};
+    private static final String[] NEXT_PAGE_CLASSES = {"nhsuk-pagination__link--next"};
+    private static final String[] CARD_LABELS = {"Distance", "Salary", "Contract type", "Working pattern", "Date posted"};
+    // Tags that start a new line in the rendered text
+    private static final List<String> BLOCK_TAGS = List.of("br", "div", "p", "li", "ul", "ol", "h1", "h2", "h3", "h4", "h5", "h6",
+            "tr", "table", "section", "article", "header", "footer", "nav");
+
+    private static final Pattern ATTRIBUTE_PATTERN = Pattern.compile("([\\w:-]+)(?:\\s*=\\s*(?:\"([^\"]*)\"|'([^']*)'|([^\\s\"'>]+)))?");
+    private static final Pattern ENTITY_PATTERN = Pattern.compile("&(#[xX][0-9a-fA-F]+|#\\d+|[a-zA-Z]+);");
+    private static final Map<String, String> NAMED_ENTITIES = Map.of(
+            "amp", "&", "lt", "<", "gt", ">", "quot", "\"", "apos", "'",
+            "nbsp", "\u00a0", "pound", "£", "ndash", "–", "mdash", "—", "euro", "€");
+
+    /**
+     * An HTML form: where it submits to and the values it would submit as it stands.
+     *
+     * @param action The action URL as written in the page, relative or absolute.
+     * @param fields The named inputs and selects with their current values, in page order.
+     */
+    public record Form(String action, Map<String, String> fields) {
+    }
+
+    private HtmlResultParser() {
+    }
+
+    /**
+     * Reads every result card on a results page.
+     *
+     * @param html The results page source.
+     * @return The results in page order, or an empty list when the page shows the no results message.
+     */
+    public static List<JobSearch.JobSearchResult> parseResults(String html) {
+        List<JobSearch.JobSearchResult> results = new ArrayList<>();
+        if (hasNoResultsMessage(html)) {
+            return results;
+        }
+        int cardStart = findElement(html, "li", RESULT_CARD_CLASSES, 0, html.length());
+        while (cardStart >= 0) {
+            int cardEnd = elementEnd(html, "li", cardStart);
+            results.add(parseCard(html, cardStart, cardEnd));
+            cardStart = findElement(html, "li", RESULT_CARD_CLASSES, cardEnd, html.length());
+        }
+        return results;
+    }
+
+    private static JobSearch.JobSearchResult parseCard(String html, int cardStart, int cardEnd) {
+        int contentStart = html.indexOf('>', cardStart) + 1;
+        String title = "";
+        int heading = findElement(html, "h2", JOB_TITLE_CLASSES, contentStart, cardEnd);
+        if (heading >= 0) {
+            int link = findElement(html, "a", null, heading, elementEnd(html, "h2", heading));
+            title = link >= 0 ? elementText(html, "a", link) : "";
+        }
+        String employer = "";
+        String location = "";
+        int employerHeading = findElement(html, "h3", EMPLOYER_CLASSES, contentStart, cardEnd);
+        if (employerHeading >= 0) {
+            employer = elementText(html, "h3", employerHeading);
+            int locationDiv = findElement(html, "div", LOCATION_CLASSES, employerHeading, elementEnd(html, "h3", employerHeading));
+            location = locationDiv >= 0 ? elementText(html, "div", locationDiv) : "";
+        }
+        String[] labelled = new String[CARD_LABELS.length];
+        Arrays.fill(labelled, "");
+        int row = findElement(html, "li", null, contentStart, cardEnd);
+        while (row >= 0) {
+            int rowEnd = elementEnd(html, "li", row);
+            readLabelledValue(html, row, rowEnd, labelled);
+            row = findElement(html, "li", null, rowEnd, cardEnd);
+        }
+        return JobSearch.toJobSearchResult(title, employer, location, labelled[0], labelled[1], labelled[2], labelled[3], labelled[4]);
+    }
+
+    // A row like <li>Salary: <strong>£30,000 a year</strong></li>, matched on the label text before the value
+    private static void readLabelledValue(String html, int rowStart, int rowEnd, String[] labelled) {
+        int strong = findElement(html, "strong", null, rowStart, rowEnd);
+        if (strong < 0) {
+            return;
+        }
+        String label = text(html.substring(html.indexOf('>', rowStart) + 1, strong));
+        for (int i = 0; i < CARD_LABELS.length; i++) {
+            if (labelled[i].isEmpty() && label.contains(CARD_LABELS[i])) {
+                labelled[i] = elementText(html, "strong", strong);
+                return;
+            }
+        }
+    }
+
+    private static boolean hasNoResultsMessage(String html) {
+        int heading = findElement(html, "h3", null, 0, html.length());
+        while (heading >= 0) {
+            int end = elementEnd(html, "h3", heading);
+            if (text(html.substring(html.indexOf('>', heading) + 1, end)).startsWith("No result")) {
+                return true;
+            }
+            heading = findElement(html, "h3", null, end, html.length());
+        }
+        return false;
+    }
+
+    /**
+     * Gets the page title.
+     *
+     * @param html The page source.
+     * @return The text of the title element, or an empty string when there is none.
+     */
+    public static String title(String html) {
+        int title = findElement(html, "title", null, 0, html.length());
+        return title >= 0 ? elementText(html, "title", title) : "";
+    }
+
+    /**
+     * Finds the first link whose text contains the given text, as //a[contains(text(),'...')] does.
+     *
+     * @param html The page source.
+     * @param text The text the link should contain.
+     * @return The href of the link, or null when no link matches.
+     */
+    public static String linkHref(String html, String text) {
+        int link = findElement(html, "a", null, 0, html.length());
+        while (link >= 0) {
+            if (elementText(html, "a", link).contains(text)) {
+                return attributes(startTag(html, link)).get("href");
+            }
+            link = findElement(html, "a", null, html.indexOf('>', link), html.length());
+        }
+        return null;
+    }
+
+    /**
+     * Finds the link to the next result page.
+     *
+     * @param html The results page source.
+     * @return The href of the next page link, or null on the last page.
+     */
+    public static String nextPageHref(String html) {
+        int link = findElement(html, "a", NEXT_PAGE_CLASSES, 0, html.length());
+        return link >= 0 ? attributes(startTag(html, link)).get("href") : null;
+    }
+
+    /**
+     * Reads the options of a select element.
+     *
+     * @param html     The page source.
+     * @param selectId The id of the select element.
+     * @return The option values keyed by their visible text, in page order. Empty when there is no such select.
+     */
+    public static Map<String, String> selectOptions(String html, String selectId) {
+        Map<String, String> options = new LinkedHashMap<>();
+        int select = findElementById(html, "select", selectId, 0, html.length());
+        if (select >= 0) {
+            readOptions(html, select, elementEnd(html, "select", select), options, null);
+        }
+        return options;
+    }
+
+    /**
+     * Reads the form that contains the element with the given id, e.g. the search button.
+     *
+     * @param html      The page source.
+     * @param elementId The id of an element inside the form.
+     * @return The form, or null when no form contains the element.
+     */
+    public static Form formContaining(String html, String elementId) {
+        int form = findElement(html, "form", null, 0, html.length());
+        while (form >= 0) {
+            int formEnd = elementEnd(html, "form", form);
+            if (findElementById(html, null, elementId, form, formEnd) >= 0) {
+                return readForm(html, form, formEnd);
+            }
+            form = findElement(html, "form", null, formEnd, html.length());
+        }
+        return null;
+    }
+
+    private static Form readForm(String html, int formStart, int formEnd) {
+        Map<String, String> fields = new LinkedHashMap<>();
+        int position = html.indexOf('>', formStart) + 1;
+        while (position < formEnd) {
+            int tag = html.indexOf('<', position);
+            if (tag < 0 || tag >= formEnd) {
+                break;
+            }
+            String name = tagName(html, tag);
+            if (name.equals("input")) {
+                Map<String, String> attributes = attributes(startTag(html, tag));
+                String type = attributes.getOrDefault("type", "text").toLowerCase(Locale.ROOT);
+                boolean submitted = !type.equals("submit") && !type.equals("button") && !type.equals("image") && !type.equals("reset")
+                        && (!(type.equals("checkbox") || type.equals("radio")) || attributes.containsKey("checked"));
+                if (submitted && attributes.containsKey("name")) {
+                    fields.put(attributes.get("name"), attributes.getOrDefault("value", ""));
+                }
+            } else if (name.equals("select")) {
+                Map<String, String> attributes = attributes(startTag(html, tag));
+                int selectEnd = elementEnd(html, "select", tag);
+                String[] selected = new String[1];
+                readOptions(html, tag, selectEnd, new LinkedHashMap<>(), selected);
+                if (attributes.containsKey("name")) {
+                    fields.put(attributes.get("name"), selected[0] == null ? "" : selected[0]);
+                }
+                position = selectEnd;
+                continue;
+            }
+            position = tag + 1;
+        }
+        return new Form(attributes(startTag(html, formStart)).getOrDefault("action", ""), fields);
+    }
+
+    // Reads option text and values, and the value a browser would submit (the selected option, else the first)
+    private static void readOptions(String html, int selectStart, int selectEnd, Map<String, String> options, String[] selected) {
+        int option = findElement(html, "option", null, selectStart, selectEnd);
+        while (option >= 0) {
+            Map<String, String> attributes = attributes(startTag(html, option));
+            int contentStart = html.indexOf('>', option) + 1;
+            int contentEnd = html.indexOf('<', contentStart);
+            String text = text(html.substring(contentStart, contentEnd < 0 || contentEnd > selectEnd ? selectEnd : contentEnd));
+            String value = attributes.containsKey("value") ? attributes.get("value") : text;
+            options.putIfAbsent(text, value);
+            if (selected != null && (selected[0] == null || attributes.containsKey("selected"))) {
+                selected[0] = value;
+            }
+            option = findElement(html, "option", null, contentStart, selectEnd);
+        }
+    }
+
+    // Index of the next start tag with the given name (any name when null) and classes, or -1
+    private static int findElement(String html, String name, String[] classes, int from, int to) {
+        int position = from;
+        while (position < to) {
+            int tag = html.indexOf('<', position);
+            if (tag < 0 || tag >= to) {
+                return -1;
+            }
+            if (name == null ? Character.isLetter(charAt(html, tag + 1)) : name.equals(tagName(html, tag))) {
+                if (classes == null || hasClasses(attributes(startTag(html, tag)).get("class"), classes)) {
+                    return tag;
+                }
+            }
+            position = tag + 1;
+        }
+        return -1;
+    }
+
+    private static int findElementById(String html, String name, String id, int from, int to) {
+        int position = from;
+        int tag;
+        while ((tag = findElement(html, name, null, position, to)) >= 0) {
+            if (id.equals(attributes(startTag(html, tag)).get("id"))) {
+                return tag;
+            }
+            position = tag + 1;
+        }
+        return -1;
+    }
+
+    private static boolean hasClasses(String classAttribute, String[] classes) {
+        if (classAttribute == null) {
+            return false;
+        }
+        List<String> present = List.of(classAttribute.trim().split("\\s+"));
+        for (String required : classes) {
+            if (!present.contains(required)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Index just after the end tag matching the start tag at the given index, counting nested elements of the same name
+    private static int elementEnd(String html, String name, int start) {
+        int depth = 0;
+        int position = start;
+        while (true) {
+            int tag = html.indexOf('<', position);
+            if (tag < 0) {
+                return html.length();
+            }
+            if (charAt(html, tag + 1) == '/' && name.equals(tagName(html, tag + 1))) {
+                depth--;
+                if (depth == 0) {
+                    int close = html.indexOf('>', tag);
+                    return close < 0 ? html.length() : close + 1;
+                }
+            } else if (name.equals(tagName(html, tag))) {
+                depth++;
+            }
+            position = tag + 1;
+        }
+    }
+
+    private static String elementText(String html, String name, int start) {
+        int contentStart = html.indexOf('>', start) + 1;
+        int end = elementEnd(html, name, start);
+        int contentEnd = html.lastIndexOf("</", end);
+        return text(html.substring(contentStart, contentEnd < contentStart ? end : contentEnd));
+    }
+
+    // Lower case name of the start tag at the given '<', empty for end tags, comments and text
+    private static String tagName(String html, int tag) {
+        int start = tag + 1;
+        int end = start;
+        while (end < html.length() && (Character.isLetterOrDigit(html.charAt(end)))) {
+            end++;
+        }
+        return html.substring(start, end).toLowerCase(Locale.ROOT);
+    }
+
+    private static String startTag(String html, int tag) {
+        int end = html.indexOf('>', tag);
+        return html.substring(tag, end < 0 ? html.length() : end);
+    }
+
+    private static Map<String, String> attributes(String startTag) {
+        Map<String, String> attributes = new LinkedHashMap<>();
+        int nameEnd = 1;
+        while (nameEnd < startTag.length() && !Character.isWhitespace(startTag.charAt(nameEnd))) {
+            nameEnd++;
+        }
+        Matcher matcher = ATTRIBUTE_PATTERN.matcher(startTag);
+        matcher.region(nameEnd, startTag.length());
+        while (matcher.find()) {
+            String value = matcher.group(2) != null ? matcher.group(2)
+                    : matcher.group(3) != null ? matcher.group(3)
+                    : matcher.group(4) != null ? matcher.group(4) : "";
+            attributes.putIfAbsent(matcher.group(1).toLowerCase(Locale.ROOT), decodeEntities(value));
+        }
+        return attributes;
+    }
+
+    /**
+     * Converts an HTML fragment to the text a browser would render: tags are dropped, block elements
+     * start new lines, entities are decoded, whitespace collapses and every line is trimmed.
+     *
+     * @param fragment The HTML fragment.
+     * @return The rendered text.
+     */
+    static String text(String fragment) {
+        StringBuilder text = new StringBuilder(fragment.length());
+        int position = 0;
+        while (position < fragment.length()) {
+            char c = fragment.charAt(position);
+            if (c == '<') {
+                int end = fragment.indexOf('>', position);
+                if (end < 0) {
+                    break;
+                }
+                if (BLOCK_TAGS.contains(tagName(fragment, position))) {
+                    text.append('\n');
+                }
+                position = end + 1;
+            } else {
+                text.append(Character.isWhitespace(c) ? ' ' : c);
+                position++;
+            }
+        }
+        String decoded = decodeEntities(text.toString()).replace('\u00a0', ' ');
+        StringBuilder normalised = new StringBuilder(decoded.length());
+        for (String line : decoded.split("\n")) {
+            String trimmed = line.replaceAll(" {2,}", " ").trim();
+            if (!trimmed.isEmpty()) {
+                if (!normalised.isEmpty()) {
+                    normalised.append('\n');
+                }
+                normalised.append(trimmed);
+            }
+        }
+        return normalised.toString();
+    }
+
+    private static String decodeEntities(String text) {
+        if (text.indexOf('&') < 0) {
+            return text;
+        }
+        Matcher matcher = ENTITY_PATTERN.matcher(text);
+        StringBuilder decoded = new StringBuilder(text.length());
+        while (matcher.find()) {
+            String entity = matcher.group(1);
+            String replacement;
+            if (entity.startsWith("#x") || entity.startsWith("#X")) {
+                replacement = codePoint(entity.substring(2), 16, matcher.group());
+            } else if (entity.startsWith("#")) {
+                replacement = codePoint(entity.substring(1), 10, matcher.group());
+            } else {
+                replacement = NAMED_ENTITIES.getOrDefault(entity, matcher.group());
+            }
+            matcher.appendReplacement(decoded, Matcher.quoteReplacement(replacement));
+        }
+        matcher.appendTail(decoded);
+        return decoded.toString();
+    }
+
+    // A numeric entity that is not a character is left as written rather than failing the whole page
+    private static String codePoint(String digits, int radix, String entity) {
+        try {
+            int codePoint = Integer.parseInt(digits, radix);
+            if (Character.isValidCodePoint(codePoint) && !(codePoint >= Character.MIN_SURROGATE && codePoint <= Character.MAX_SURROGATE)) {
+                return Character.toString(codePoint);
+            }
+        } catch (NumberFormatException e) {
+            // Too many digits for a code point
+        }
+        return entity;
+    }
+
+    private static char charAt(String text, int index) {
+        return index < text.length() ? text.charAt(index) : '\0';
+    }
+}
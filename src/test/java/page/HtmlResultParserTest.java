@@ -0,0 +1,112 @@
+package page;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+
+public class HtmlResultParserTest {
+    private static final String RESULTS_PAGE = """
+            <!DOCTYPE html>
+            <html><head><title>Search results | NHS Jobs</title></head>
+            <body>
+            <ul class="nhsuk-list search-results">
+            <li class="nhsuk-list-panel search-result nhsuk-u-padding-3" data-test="search-result">
+            <h2 class="nhsuk-heading-m"><a class="nhsuk-link" href="/candidate/jobadvert/1">Staff   Nurse &amp; Midwife</a></h2>
+            <h3 class="nhsuk-u-font-weight-bold">Leeds Teaching Hospitals<div class="location-font-size">Leeds, LS1 3EX</div></h3>
+            <ul class="nhsuk-list">
+            <li>Distance: <strong>3.4 miles</strong></li>
+            <li>Salary: <strong>&pound;28,407 to &#163;34,581 a year</strong></li>
+            <li>Date posted: <strong>20 June 2025</strong></li>
+            <li>Contract type: <strong>Permanent</strong></li>
+            <li>Working pattern: <strong>Full time</strong></li>
+            </ul>
+            </li>
+            <li class="nhsuk-list-panel search-result nhsuk-u-padding-3">
+            <h2 class="nhsuk-heading-m"><a href='/candidate/jobadvert/2'>Pharmacist</a></h2>
+            <h3 class="nhsuk-u-font-weight-bold">Boots</h3>
+            <ul class="nhsuk-list">
+            <li>Salary: <strong>Depends on experience</strong></li>
+            </ul>
+            </li>
+            </ul>
+            <nav><a class="nhsuk-pagination__link nhsuk-pagination__link--next" href="/candidate/search/results?keyword=nurse&amp;page=2">Next</a></nav>
+            </body></html>
+            """;
+
+    @Test
+    public void readsEveryResultCard() {
+        List<JobSearch.JobSearchResult> results = HtmlResultParser.parseResults(RESULTS_PAGE);
+        assertEquals(2, results.size());
+        JobSearch.JobSearchResult first = results.get(0);
+        assertEquals("Staff Nurse & Midwife", first.title());
+        assertEquals("Leeds Teaching Hospitals\nLeeds, LS1 3EX", first.employer());
+        assertEquals("Leeds, LS1 3EX", first.location());
+        assertEquals("£28,407 to £34,581 a year", first.payRange());
+        assertEquals("20 June 2025", first.datePosted());
+        assertEquals("Permanent", first.contractType());
+        assertEquals("Full time", first.workingPattern());
+        assertTrue(first.distance().startsWith("3.4"));
+        JobSearch.JobSearchResult second = results.get(1);
+        assertEquals("Pharmacist", second.title());
+        assertEquals("Boots", second.employer());
+        assertEquals("", second.location());
+        assertEquals("", second.distance());
+        assertEquals("Depends on experience", second.payRange());
+    }
+
+    @Test
+    public void noResultsMessageGivesNoResults() {
+        String html = """
+                <h3 class="nhsuk-heading-s">No result found</h3>
+                <li class="nhsuk-list-panel search-result nhsuk-u-padding-3"><h2 class="nhsuk-heading-m"><a>Stale</a></h2></li>
+                """;
+        assertTrue(HtmlResultParser.parseResults(html).isEmpty());
+    }
+
+    @Test
+    public void readsTitleAndLinks() {
+        assertEquals("Search results | NHS Jobs", HtmlResultParser.title(RESULTS_PAGE));
+        assertEquals("", HtmlResultParser.title("<p>No title</p>"));
+        assertEquals("/candidate/search/results?keyword=nurse&page=2", HtmlResultParser.nextPageHref(RESULTS_PAGE));
+        assertEquals("/candidate/jobadvert/2", HtmlResultParser.linkHref(RESULTS_PAGE, "Pharma"));
+        assertNull(HtmlResultParser.linkHref(RESULTS_PAGE, "Dentist"));
+        assertNull(HtmlResultParser.nextPageHref("<a class=\"nhsuk-pagination__link--prev\" href=\"/1\">Previous</a>"));
+    }
+
+    @Test
+    public void readsFormsAsTheBrowserWouldSubmitThem() {
+        String html = """
+                <form action="/candidate/search/results" method="get">
+                <input id="keyword" name="keyword" type="text" value="nurse">
+                <input name="remote" type="checkbox" value="yes">
+                <input name="fullTime" type="checkbox" value="yes" checked>
+                <select id="distance" name="distance"><option value="5">+5 Miles</option><option value="10" selected>+10 Miles</option></select>
+                <select id="payRange" name="payRange"><option value="">Any</option><option>Band 5</option></select>
+                <input class="nhsuk-button" id="search" type="submit" value="Search">
+                </form>
+                <form action="/other"><input id="other" name="x" value="1"></form>
+                """;
+        HtmlResultParser.Form form = HtmlResultParser.formContaining(html, "search");
+        assertEquals("/candidate/search/results", form.action());
+        assertEquals(Map.of("keyword", "nurse", "fullTime", "yes", "distance", "10", "payRange", ""), form.fields());
+        assertEquals(List.of("keyword", "fullTime", "distance", "payRange"), List.copyOf(form.fields().keySet()));
+        assertNull(HtmlResultParser.formContaining(html, "missing"));
+        assertEquals(Map.of("+5 Miles", "5", "+10 Miles", "10"), HtmlResultParser.selectOptions(html, "distance"));
+        assertEquals("Band 5", HtmlResultParser.selectOptions(html, "payRange").get("Band 5"));
+        assertTrue(HtmlResultParser.selectOptions(html, "sort").isEmpty());
+    }
+
+    @Test
+    public void rendersTextLikeTheBrowser() {
+        assertEquals("Line one\nLine two", HtmlResultParser.text("  Line   one <br> <p>Line&nbsp;two</p> "));
+        assertEquals("a < b & c", HtmlResultParser.text("a &lt; b &amp; c"));
+        assertEquals("é and &unknown;", HtmlResultParser.text("&#xE9; and &unknown;"));
+        assertEquals("&#99999999; &#xFFFFFFFFF; &#xD800; 😀", HtmlResultParser.text("&#99999999; &#xFFFFFFFFF; &#xD800; &#x1F600;"));
+    }
+}
@@ -0,0 +1,373 @@
+package page;
+
+import utilities.PageFunctions.AutomationFrameworkException;
+import utilities.ResponseStore;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+
+/**
+ * Drives the job search journey without a browser (-DexecutionMode=http).
+ * Each step reads the page the site returned, fills in the same form fields the browser would,
+ * and submits the search as a plain GET request, so a scenario costs a few HTTP round-trips
+ * instead of a browser session. Results are read by {@link HtmlResultParser} into the same
+ * records the browser journey produces, so the step definitions check them the same way.
+ * With -Drecording.mode=record every page is kept in the {@link ResponseStore}, and with
+ * -Drecording.mode=replay pages are read from it instead of the site.
+ */
+public class HttpJobSearch implements SearchJourney {
+    // One client for the whole run, so connections are kept alive and shared by every scenario thread
+    private static final HttpClient httpClient = HttpClient.newBuilder()
+            .followRedirects(HttpClient.Redirect.NORMAL)
+            .connectTimeout(Duration.ofSeconds(20))
+            .build();
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(20);
+
+    /**
+     * A page as the site returned it, or as it was recorded.
+     *
+     * @param uri    The URI of the page, after redirects.
+     * @param status The HTTP status.
+     * @param body   The HTML.
+     */
+    private record Fetched(URI uri, int status, String body) {
+    }
+
+    private final URI baseUri;
+    private URI currentUri;
+    private String currentPage = "";
+    // Values entered by the steps, submitted on top of the form defaults
+    private final Map<String, String> enteredFields = new LinkedHashMap<>();
+
+    /**
+     * @param baseUrl The home page of the site, e.g. https://www.jobs.nhs.uk/.
+     */
+    public HttpJobSearch(String baseUrl) {
+        this.baseUri = URI.create(baseUrl);
+        this.currentUri = baseUri;
+    }
+
+    /**
+     * Loads the home page and follows its search link, as the browser journey does.
+     */
+    @Override
+    public void navigateToSearchPage() throws AutomationFrameworkException {
+        load(baseUri);
+        String searchHref = HtmlResultParser.linkHref(currentPage, "Search");
+        if (searchHref == null) {
+            System.out.println("Search link not found in the home page");
+            return;
+        }
+        load(currentUri.resolve(searchHref));
+    }
+
+    @Override
+    public String getPageTitle() {
+        return HtmlResultParser.title(currentPage);
+    }
+
+    @Override
+    public void enterKeywords(String keywords) {
+        if (!keywords.isEmpty()) {
+            enteredFields.put("keyword", keywords);
+        }
+    }
+
+    @Override
+    public void enterLocation(String location) {
+        if (!location.isEmpty()) {
+            enteredFields.put("location", location);
+        }
+    }
+
+    @Override
+    public void selectDistance(String distance) throws AutomationFrameworkException {
+        enteredFields.put("distance", optionValue("distance", distance));
+    }
+
+    /**
+     * Nothing to do: the advanced search fields are part of the form whether or not they are shown.
+     */
+    @Override
+    public void clickMoreSearchOptions() {
+    }
+
+    @Override
+    public void enterEmployer(String employer) {
+        if (!employer.isEmpty()) {
+            enteredFields.put("employer", employer);
+        }
+    }
+
+    @Override
+    public void selectPayRange(String payRange) throws AutomationFrameworkException {
+        if (!payRange.isEmpty()) {
+            enteredFields.put("payRange", optionValue("payRange", payRange));
+        }
+    }
+
+    /**
+     * Submits the search form with the values entered so far.
+     */
+    @Override
+    public void clickSearchButton() throws AutomationFrameworkException {
+        submit("search", form("search"), enteredFields);
+    }
+
+    /**
+     * Resubmits the current search with the given sort order, as changing the sort by dropdown does.
+     *
+     * @param sortBy The visible text of the sort by option (e.g., "Date Posted (newest)").
+     */
+    @Override
+    public void selectSortBySearch(String sortBy) throws AutomationFrameworkException {
+        submit("sort", form("sort"), Map.of("sort", optionValue("sort", sortBy)));
+    }
+
+    /**
+     * Reads the results of the current page.
+     */
+    @Override
+    public List<JobSearch.JobSearchResult> getSearchResultsDetails() {
+        return HtmlResultParser.parseResults(currentPage);
+    }
+
+    /**
+     * Streams the search results of every result page, up to the -DmaxResultPages (default 1)
+     * and -DmaxResults (default unlimited) bounds.
+     *
+     * @return A lazy stream of results in page order.
+     * @see #streamSearchResults(int, int)
+     */
+    @Override
+    public Stream<JobSearch.JobSearchResult> streamSearchResults() {
+        return streamSearchResults(Integer.getInteger("maxResultPages", 1), Integer.getInteger("maxResults", Integer.MAX_VALUE));
+    }
+
+    /**
+     * Streams the search results of every result page, starting from the current page.
+     * The next page is requested in the background while the results of the current one are consumed.
+     * The journey stays on the current page, so it can carry on from it (e.g. sorting) once the stream is closed.
+     * A search streamed to the end earlier in the run is replayed from the {@link ResultSnapshotCache}.
+     *
+     * @param maxPages   The maximum number of result pages to read.
+     * @param maxResults The maximum number of results to return.
+     * @return A lazy stream of results in page order. Close it to cancel a pending prefetch.
+     */
+    @Override
+    public Stream<JobSearch.JobSearchResult> streamSearchResults(int maxPages, int maxResults) {
+        String key = ResultSnapshotCache.streamKey(currentUri.toString(), maxPages, maxResults);
+        List<JobSearch.JobSearchResult> snapshot = ResultSnapshotCache.get(key);
+        if (snapshot != null) {
+            return snapshot.stream();
+        }
+        ResultPageIterator pages = new ResultPageIterator(maxPages, maxResults);
+        Iterator<JobSearch.JobSearchResult> results = ResultSnapshotCache.recording(key, pages);
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(results, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(pages::close);
+    }
+
+    /**
+     * Iterates over the results of consecutive result pages, requesting the next page before the current one is consumed.
+     */
+    private final class ResultPageIterator implements Iterator<JobSearch.JobSearchResult> {
+        private final int maxPages;
+        private final int maxResults;
+        private Iterator<JobSearch.JobSearchResult> currentResults;
+        private URI pageUri;
+        private CompletableFuture<Fetched> prefetch; // Next page, null when there is no next page
+        private URI prefetchUri;
+        private int pagesRead;
+        private int resultsReturned;
+
+        private ResultPageIterator(int maxPages, int maxResults) {
+            this.maxPages = maxPages;
+            this.maxResults = maxResults;
+            readPage(currentUri, currentPage);
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (resultsReturned >= maxResults) {
+                return false;
+            }
+            while (!currentResults.hasNext() && prefetch != null) {
+                try {
+                    URI uri = prefetchUri;
+                    readPage(uri, checkedBody(uri, prefetch.get()));
+                } catch (ExecutionException | AutomationFrameworkException e) {
+                    throw new IllegalStateException("Failed to read result page " + (pagesRead + 1) + ": " + e.getMessage(), e);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted while reading result page " + (pagesRead + 1), e);
+                }
+            }
+            return currentResults.hasNext();
+        }
+
+        @Override
+        public JobSearch.JobSearchResult next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            resultsReturned++;
+            return currentResults.next();
+        }
+
+        private void readPage(URI uri, String html) {
+            pageUri = uri;
+            currentResults = HtmlResultParser.parseResults(html).iterator();
+            pagesRead++;
+            String nextHref = pagesRead < maxPages ? HtmlResultParser.nextPageHref(html) : null;
+            prefetch = null;
+            if (nextHref != null) {
+                prefetchUri = pageUri.resolve(nextHref);
+                prefetch = fetchAsync(prefetchUri);
+            }
+        }
+
+        private void close() {
+            if (prefetch != null) {
+                prefetch.cancel(true);
+            }
+        }
+    }
+
+    private HtmlResultParser.Form form(String elementId) throws AutomationFrameworkException {
+        HtmlResultParser.Form form = HtmlResultParser.formContaining(currentPage, elementId);
+        if (form == null) {
+            throw new AutomationFrameworkException("No form containing '" + elementId + "' found on " + currentUri);
+        }
+        return form;
+    }
+
+    // Submits the form and records how long the response took, as the browser journey records its page timings
+    private void submit(String action, HtmlResultParser.Form form, Map<String, String> values) throws AutomationFrameworkException {
+        Map<String, String> fields = new LinkedHashMap<>(form.fields());
+        fields.putAll(values);
+        StringBuilder query = new StringBuilder();
+        for (Map.Entry<String, String> field : fields.entrySet()) {
+            if (!query.isEmpty()) {
+                query.append('&');
+            }
+            query.append(URLEncoder.encode(field.getKey(), StandardCharsets.UTF_8)).append('=')
+                    .append(URLEncoder.encode(field.getValue(), StandardCharsets.UTF_8));
+        }
+        URI formAction = currentUri.resolve(form.action().isEmpty() ? currentUri.getPath() : form.action());
+        long start = System.nanoTime();
+        AtomicLong firstByte = new AtomicLong(start);
+        load(URI.create(formAction.toString().replaceFirst("\\?.*$", "") + "?" + query), responseInfo -> {
+            firstByte.set(System.nanoTime()); // Called once the status line and headers have arrived
+            return HttpResponse.BodyHandlers.ofString().apply(responseInfo);
+        });
+        long loadMillis = (System.nanoTime() - start) / 1_000_000;
+        PageTimings.record(new PageTimings(action, loadMillis, (firstByte.get() - start) / 1_000_000, PageTimings.NOT_MEASURED,
+                loadMillis, PageTimings.NOT_MEASURED, PageTimings.NOT_MEASURED, 0, 0, 0));
+    }
+
+    // Value of the option with the given visible text, as Select.selectByVisibleText picks it
+    private String optionValue(String selectId, String visibleText) throws AutomationFrameworkException {
+        String value = HtmlResultParser.selectOptions(currentPage, selectId).get(visibleText.trim());
+        if (value == null) {
+            throw new AutomationFrameworkException("Option with text '" + visibleText + "' not found in dropdown.");
+        }
+        return value;
+    }
+
+    private void load(URI uri) throws AutomationFrameworkException {
+        load(uri, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private void load(URI uri, HttpResponse.BodyHandler<String> bodyHandler) throws AutomationFrameworkException {
+        try {
+            Fetched page = fetch(uri, bodyHandler);
+            currentPage = checkedBody(uri, page);
+            currentUri = page.uri();
+        } catch (IOException e) {
+            throw new AutomationFrameworkException("Failed to load " + uri + ": " + e.getMessage(), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AutomationFrameworkException("Interrupted while loading " + uri, e);
+        }
+    }
+
+    private static String checkedBody(URI uri, Fetched page) throws AutomationFrameworkException {
+        if (page.status() >= 400) {
+            throw new AutomationFrameworkException("Unexpected HTTP status " + page.status() + " loading " + uri);
+        }
+        return page.body();
+    }
+
+    // The scenario is read on the calling thread, as the prefetch completes on one of the client's threads
+    private static Fetched fetch(URI uri, HttpResponse.BodyHandler<String> bodyHandler)
+            throws IOException, InterruptedException, AutomationFrameworkException {
+        String scenario = ResponseStore.currentScenario();
+        if (ResponseStore.replays(scenario)) {
+            return replayed(uri);
+        }
+        return recorded(scenario, uri, httpClient.send(request(uri), bodyHandler));
+    }
+
+    private static CompletableFuture<Fetched> fetchAsync(URI uri) {
+        String scenario = ResponseStore.currentScenario();
+        if (ResponseStore.replays(scenario)) {
+            try {
+                return CompletableFuture.completedFuture(replayed(uri));
+            } catch (AutomationFrameworkException e) {
+                return CompletableFuture.failedFuture(e);
+            }
+        }
+        return httpClient.sendAsync(request(uri), HttpResponse.BodyHandlers.ofString())
+                .thenApply(response -> recorded(scenario, uri, response));
+    }
+
+    private static Fetched replayed(URI uri) throws AutomationFrameworkException {
+        ResponseStore.Response response = ResponseStore.lookup("GET", uri.toString());
+        if (response == null) {
+            throw new AutomationFrameworkException("No recorded response to " + uri + ", record it with -Drecording.mode=record"
+                    + " or refresh the scenario with -Drecording.refresh");
+        }
+        return new Fetched(URI.create(response.url()), response.status(), response.bodyText());
+    }
+
+    private static Fetched recorded(String scenario, URI uri, HttpResponse<String> response) {
+        if (ResponseStore.records(scenario)) {
+            Map<String, String> headers = new LinkedHashMap<>();
+            response.headers().map().forEach((name, values) -> {
+                if (!name.startsWith(":")) { // HTTP/2 pseudo headers
+                    headers.put(name, String.join(", ", values));
+                }
+            });
+            ResponseStore.record("GET", uri.toString(), response.statusCode(), response.uri().toString(), headers,
+                    response.body().getBytes(StandardCharsets.UTF_8), scenario);
+        }
+        return new Fetched(response.uri(), response.statusCode(), response.body());
+    }
+
+    private static HttpRequest request(URI uri) {
+        return HttpRequest.newBuilder(uri)
+                .timeout(REQUEST_TIMEOUT)
+                .header("Accept", "text/html")
+                .GET()
+                .build();
+    }
+}
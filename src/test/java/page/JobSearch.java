@@ -1,26 +1,36 @@
 package page;
 
 import org.openqa.selenium.By;
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.WebDriverException;
 import org.openqa.selenium.WebElement;
+import org.openqa.selenium.WindowType;
 import org.openqa.selenium.support.FindBy;
 import org.openqa.selenium.support.FindBys;
 import org.openqa.selenium.support.PageFactory;
-import org.openqa.selenium.support.ui.ExpectedConditions;
-import org.openqa.selenium.support.ui.WebDriverWait;
-import utilities.BrowserConfig;
+import org.openqa.selenium.support.ui.Select;
+import utilities.EventWait;
+import utilities.NetworkFilter;
 import utilities.PageFunctions;
 import java.time.Duration;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 
-public class JobSearch extends PageFunctions {
+public class JobSearch extends PageFunctions implements SearchJourney {
 
 
     // Locators for elements on the search page
@@ -50,18 +60,86 @@ public class JobSearch extends PageFunctions {
     private WebElement noResultsMessage;
     @FindBy(css = "ul.nhsuk-list.search-results")//To locate search result container
     private WebElement searchResultsContainer;
-    @FindBys(@FindBy(css = "li.nhsuk-list-panel.search-result.nhsuk-u-padding-3")) //To locate search result cards
+    @FindBys(@FindBy(css = RESULT_CARD_CSS)) //To locate search result cards
     private List<WebElement> searchResultCardsList;
-    @FindBys(@FindBy(xpath = ".//li[contains(text(),'Date posted')]/strong"))//To locate search result container
-    private List<WebElement> datePostedInResult;
     // Locators for details *within* a single job result card (relative to searchResultCards)
-    private By jobTitleInResult = By.cssSelector("h2.nhsuk-heading-m a");
-    private By employerInResult = By.cssSelector("h3.nhsuk-u-font-weight-bold");
-    private By locationInResult = By.cssSelector("h3.nhsuk-u-font-weight-bold div.location-font-size");
-    private By distanceInResult = By.xpath(".//li[contains(text(),'Distance')]/strong");
-    private By payRangeInResult = By.xpath(".//li[contains(text(),'Salary')]/strong");
-    private By contractTypeInResult = By.xpath(".//li[contains(text(),'Contract type')]/strong");
-    private By workingPatternInResult = By.xpath(".//li[contains(text(),'Working pattern')]/strong");
+    private By jobTitleInResult = By.cssSelector(JOB_TITLE_CSS);
+    private By employerInResult = By.cssSelector(EMPLOYER_CSS);
+    private By locationInResult = By.cssSelector(LOCATION_CSS);
+    private By distanceInResult = By.xpath(DISTANCE_XPATH);
+    private By payRangeInResult = By.xpath(PAY_RANGE_XPATH);
+    private By contractTypeInResult = By.xpath(CONTRACT_TYPE_XPATH);
+    private By workingPatternInResult = By.xpath(WORKING_PATTERN_XPATH);
+    private By datePostedInCard = By.xpath(DATE_POSTED_XPATH);
+
+    // Selectors shared by the locators above and the bulk extraction script
+    private static final String RESULT_CARD_CSS = "li.nhsuk-list-panel.search-result.nhsuk-u-padding-3";
+    private static final String JOB_TITLE_CSS = "h2.nhsuk-heading-m a";
+    private static final String EMPLOYER_CSS = "h3.nhsuk-u-font-weight-bold";
+    private static final String LOCATION_CSS = "h3.nhsuk-u-font-weight-bold div.location-font-size";
+    private static final String DISTANCE_XPATH = ".//li[contains(text(),'Distance')]/strong";
+    private static final String PAY_RANGE_XPATH = ".//li[contains(text(),'Salary')]/strong";
+    private static final String CONTRACT_TYPE_XPATH = ".//li[contains(text(),'Contract type')]/strong";
+    private static final String WORKING_PATTERN_XPATH = ".//li[contains(text(),'Working pattern')]/strong";
+    private static final String DATE_POSTED_XPATH = ".//li[contains(text(),'Date posted')]/strong";
+    private static final Duration PAGE_LOAD_TIMEOUT = Duration.ofSeconds(20);
+    // True once a new document has replaced arguments[0] and its load event has finished
+    private static final String PAGE_LOADED_SCRIPT = """
+            var navigation = performance.getEntriesByType('navigation')[0];
+            return performance.timeOrigin !== arguments[0] && document.readyState === 'complete'
+                    && (!navigation || navigation.loadEventEnd > 0);
+            """;
+    private static final String NEXT_PAGE_CSS = "a.nhsuk-pagination__link--next";
+
+    // Page regions that can be accessibility tested on their own, by the name the feature files use
+    private static final Map<String, String> ACCESSIBILITY_REGIONS = Map.of(
+            "search form", "form[action*='/candidate/search/results']",
+            "search results", "ul.nhsuk-list.search-results",
+            "pagination", "nav.nhsuk-pagination");
+
+    // Card fields in JobSearchResult order, as {selector type, selector} pairs for the bulk extraction script
+    private static final List<List<String>> CARD_FIELD_SELECTORS = List.of(
+            List.of("css", JOB_TITLE_CSS),
+            List.of("css", EMPLOYER_CSS),
+            List.of("css", LOCATION_CSS),
+            List.of("xpath", DISTANCE_XPATH),
+            List.of("xpath", PAY_RANGE_XPATH),
+            List.of("xpath", CONTRACT_TYPE_XPATH),
+            List.of("xpath", WORKING_PATTERN_XPATH),
+            List.of("xpath", DATE_POSTED_XPATH));
+
+    /**
+     * Reads every field of every result card in a single script execution.
+     * Missing fields come back as empty strings, and text is normalised the way WebElement.getText() does it:
+     * non-breaking spaces become spaces, runs of spaces collapse and lines are trimmed.
+     */
+    private static final String BULK_EXTRACTION_SCRIPT = """
+            var cards = document.querySelectorAll(arguments[0]);
+            var fields = arguments[1];
+            var rows = [];
+            for (var i = 0; i < cards.length; i++) {
+                var row = [];
+                for (var j = 0; j < fields.length; j++) {
+                    var element = fields[j][0] === 'css'
+                        ? cards[i].querySelector(fields[j][1])
+                        : document.evaluate(fields[j][1], cards[i], null, XPathResult.FIRST_ORDERED_NODE_TYPE, null).singleNodeValue;
+                    var text = element ? (element.innerText || '') : '';
+                    row.push(text.replace(/\\u00a0/g, ' ').replace(/[ \\t]+/g, ' ').replace(/ *\\n */g, '\\n').trim());
+                }
+                rows.push(row);
+            }
+            return rows;
+            """;
+
+    // Patterns and formatter used by the static parsers, compiled once instead of on every call
+    private static final Pattern DISTANCE_UNIT_PATTERN = Pattern.compile("(?i)\\b(miles|mile|mi|m)\\b\\s*");
+    private static final Pattern CURRENCY_PATTERN = Pattern.compile("[£$€,]");
+    private static final Pattern PAY_RANGE_PATTERN = Pattern.compile("(\\d+(\\.\\d+)?)\\s*(?:to|-|–|and)?\\s*(\\d*(\\.\\d+)?)?");
+    private static final Pattern NUMBER_PATTERN = Pattern.compile("(\\d+(\\.\\d+)?)");
+    private static final Pattern DAYS_PATTERN = Pattern.compile("\\d+");
+    private static final Pattern MISSING_SPACE_PATTERN = Pattern.compile("(?i)(\\d{1,2})([a-zA-Z])");
+    private static final Pattern SPACES_PATTERN = Pattern.compile("\\s+");
+    private static final DateTimeFormatter JOB_DATE_FORMATTER = DateTimeFormatter.ofPattern("d MMMM yyyy", Locale.ENGLISH);
 
     /**
      * Record to hold details extracted from a single job search result.
@@ -74,22 +152,24 @@ public class JobSearch extends PageFunctions {
             String distance,
             String payRange,
             String contractType,
-            String workingPattern
+            String workingPattern,
+            String datePosted
     ) {
     }
 
     /**
-     * Constructor to initialize the WebDriver and WebDriverWait.
-     * /** @param driver The WebDriver instance.
+     * Constructor to initialize the page elements.
+     * The driver is the session borrowed by the current scenario thread.
+     * Waits go through the PageFunctions helpers, which wake as soon as the page changes.
      */
     public JobSearch() throws Exception {
-        PageFactory.initElements(BrowserConfig.driver, this);
-        wait = new WebDriverWait(BrowserConfig.driver, Duration.ofSeconds(20));
+        PageFactory.initElements(driver, this);
     }
 
     /**
      * Navigates to the NHS Jobs search page.
      */
+    @Override
     public void navigateToSearchPage() {
         try {
             clickElement(searchLink);
@@ -98,11 +178,37 @@ public class JobSearch extends PageFunctions {
         }
     }
 
+    /**
+     * Gets the CSS selector of a page region that can be accessibility tested on its own.
+     *
+     * @param region The region name, e.g. "search form" or "search results".
+     * @return The CSS selector of the region.
+     * @throws AutomationFrameworkException If the region is not known.
+     */
+    public static String accessibilityRegion(String region) throws AutomationFrameworkException {
+        String selector = ACCESSIBILITY_REGIONS.get(region.toLowerCase(Locale.ROOT));
+        if (selector == null) {
+            throw new AutomationFrameworkException("Unknown page region '" + region + "'. Known regions: " + ACCESSIBILITY_REGIONS.keySet());
+        }
+        return selector;
+    }
+
+    /**
+     * Gets the title of the page the browser is on.
+     *
+     * @return The page title.
+     */
+    @Override
+    public String getPageTitle() {
+        return driver.getTitle();
+    }
+
     /**
      * Enters search keywords (job title/skills) into the keywords input field.
      *
      * @param keywords The keywords to enter.
      */
+    @Override
     public void enterKeywords(String keywords) throws AutomationFrameworkException {
         if (!keywords.isEmpty()) {
             sentKeys(keywordsInput, keywords);
@@ -115,6 +221,7 @@ public class JobSearch extends PageFunctions {
      *
      * @param location The location to enter.
      */
+    @Override
     public void enterLocation(String location) throws AutomationFrameworkException {
         if (!location.isEmpty()) {
             sentKeys(locationInput, location);
@@ -127,6 +234,7 @@ public class JobSearch extends PageFunctions {
      *
      * @param distance The visible text of the distance option (e.g., "5 miles", "10 miles").
      */
+    @Override
     public void selectDistance(String distance) throws AutomationFrameworkException {
         selectDropdownOptionByVisibleText(distanceDropdown, distance);
 
@@ -137,6 +245,7 @@ public class JobSearch extends PageFunctions {
      *
      * @param employer The employer name to enter.
      */
+    @Override
     public void enterEmployer(String employer) throws AutomationFrameworkException {
         if (!employer.isEmpty()) {
             sentKeys(employerInput, employer);
@@ -148,6 +257,7 @@ public class JobSearch extends PageFunctions {
      *
      * @param payRange The visible text of the pay range option (e.g., "£20,000 - £25,000").
      */
+    @Override
     public void selectPayRange(String payRange) throws AutomationFrameworkException {
         if (!payRange.isEmpty()) {
             selectDropdownOptionByVisibleText(payRangeDropdown, payRange);
@@ -157,6 +267,7 @@ public class JobSearch extends PageFunctions {
     /**
      * Clicks the more search options link.
      */
+    @Override
     public void clickMoreSearchOptions() {
         try {
             clickElement(advancedSearch);
@@ -166,32 +277,83 @@ public class JobSearch extends PageFunctions {
     }
 
     /**
-     * Clicks the search button.
+     * Clicks the search button and records how long the results page took to load.
      */
+    @Override
     public void clickSearchButton() throws AutomationFrameworkException {
+        long start = System.nanoTime();
+        Object previousDocument = currentDocument();
         clickElement(searchButton);
         // Wait for search results to load or no results message to appear
         waitForOneOfElementsToBecomeVisible(searchResultsContainer, noResultsMessage);
-
+        recordPageTimings("search", previousDocument, start);
     }
 
     /**
      * Selects a sort by from the pay range dropdown.
+     * Changing the sort order resubmits the search, so this waits for the re-sorted results page and
+     * records how long it took to load.
      *
      * @param sortBy The visible text of the sort by option (e.g., "Date Posted (Newest)").
      */
+    @Override
     public void selectSortBySearch(String sortBy) throws AutomationFrameworkException {
+        long start = System.nanoTime();
+        Object previousDocument = currentDocument();
+        // Selecting the option that is already selected does not resubmit the search
+        boolean resubmits = !new Select(waitsForWebElement(sortByDropdown)).getFirstSelectedOption().getText().trim().equals(sortBy.trim());
         selectDropdownOptionByVisibleText(sortByDropdown, sortBy);
+        if (resubmits) {
+            recordPageTimings("sort", previousDocument, start);
+        }
+    }
+
+    // Identifies the document the browser is showing, so a wait can tell when the next one has loaded
+    private Object currentDocument() {
+        try {
+            return ((JavascriptExecutor) driver).executeScript("return performance.timeOrigin;");
+        } catch (WebDriverException e) {
+            return null;
+        }
+    }
+
+    // Waits for the page that replaced previousDocument to finish loading, then records its timings.
+    // Timings are evidence for the performance budgets, so failing to read them does not fail the search itself.
+    private void recordPageTimings(String action, Object previousDocument, long startNanos) {
+        try {
+            EventWait.until(driver, d -> (Boolean) ((JavascriptExecutor) d).executeScript(PAGE_LOADED_SCRIPT, previousDocument),
+                    PAGE_LOAD_TIMEOUT, "waitForPageLoad");
+            long elapsedMillis = (System.nanoTime() - startNanos) / 1_000_000;
+            Map<?, ?> timings = (Map<?, ?>) ((JavascriptExecutor) driver).executeAsyncScript(PageTimings.TIMINGS_SCRIPT);
+            PageTimings.record(new PageTimings(action, elapsedMillis, millis(timings, "firstByte"),
+                    millis(timings, "domContentLoaded"), millis(timings, "load"), millis(timings, "firstContentfulPaint"),
+                    millis(timings, "largestContentfulPaint"), millis(timings, "resourceCount"),
+                    millis(timings, "resourceBytes"), millis(timings, "slowestResource")));
+            NetworkFilter.recordPageLoad(driver, action, elapsedMillis);
+        } catch (WebDriverException | ClassCastException e) {
+            System.out.println("WARN: Page timings of the " + action + " not captured: " + e.getMessage());
+            PageTimings.recordNotCaptured(action, e.getMessage());
+        }
+    }
+
+    private static long millis(Map<?, ?> timings, String name) {
+        return timings.get(name) instanceof Number value ? Math.round(value.doubleValue()) : PageTimings.NOT_MEASURED;
     }
     /**
      * Gets all details for each job displayed in the search results.
      * Iterates through each job result card and extracts title, employer, location,
-     * pay range,  distance, and date posted.
+     * pay range,  distance, contract type, working pattern and date posted.
      *
      * @return A list of JobSearchResult objects, each containing full details of a job.
      * Returns an empty list if no results are found or if the no results message is displayed.
      */
+    @Override
     public List<JobSearchResult> getSearchResultsDetails() throws AutomationFrameworkException {
+        return readResultsOnPage();
+    }
+
+    // Reads the result cards of the page in the current window
+    private List<JobSearchResult> readResultsOnPage() throws AutomationFrameworkException {
         // Check if no results message is displayed first
         if (!noResultsMessageList.isEmpty()) {
             return List.of(); // Return empty list if no results
@@ -199,8 +361,46 @@ public class JobSearch extends PageFunctions {
 
         // Wait for at least one search result card to be visible
         waitsForWebElement(searchResultCardsList.getFirst());
-        wait.until(ExpectedConditions.visibilityOf(searchResultCardsList.getFirst()));
 
+        if (!"perCard".equalsIgnoreCase(System.getProperty("extractionMode"))) {
+            try {
+                return extractResultsInBulk();
+            } catch (WebDriverException | ClassCastException e) {
+                System.err.println("WARN: Bulk extraction of search results failed, reading card by card: " + e.getMessage());
+            }
+        }
+        return extractResultsPerCard();
+    }
+
+    /**
+     * Extracts all result cards with one script execution instead of seven WebDriver round-trips per card.
+     *
+     * @return A list of JobSearchResult objects in page order.
+     */
+    private List<JobSearchResult> extractResultsInBulk() {
+        List<?> rows = (List<?>) ((JavascriptExecutor) driver).executeScript(BULK_EXTRACTION_SCRIPT, RESULT_CARD_CSS, CARD_FIELD_SELECTORS);
+        List<JobSearchResult> results = new ArrayList<>(rows.size());
+        for (Object row : rows) {
+            List<?> fields = (List<?>) row;
+            results.add(toJobSearchResult(
+                    String.valueOf(fields.get(0)),
+                    String.valueOf(fields.get(1)),
+                    String.valueOf(fields.get(2)),
+                    String.valueOf(fields.get(3)),
+                    String.valueOf(fields.get(4)),
+                    String.valueOf(fields.get(5)),
+                    String.valueOf(fields.get(6)),
+                    String.valueOf(fields.get(7))));
+        }
+        return results;
+    }
+
+    /**
+     * Extracts the result cards one field at a time (-DextractionMode=perCard).
+     *
+     * @return A list of JobSearchResult objects in page order.
+     */
+    private List<JobSearchResult> extractResultsPerCard() {
         List<JobSearchResult> results = new ArrayList<>();
         List<WebElement> jobElements = searchResultCardsList;
 
@@ -209,36 +409,153 @@ public class JobSearch extends PageFunctions {
             String employer = safelyGetText(jobElement, employerInResult);
             String location = safelyGetText(jobElement, locationInResult);
             String distance = safelyGetText(jobElement, distanceInResult);
-            if (!distance.isEmpty() && !location.isEmpty()) {
-                distance = distance.replaceAll("(?i)\\b(miles|mile|mi|m)\\b\\s*", "");
-            }
             String payRange = safelyGetText(jobElement, payRangeInResult);
             String contractType = safelyGetText(jobElement, contractTypeInResult);
             String workingPattern = safelyGetText(jobElement, workingPatternInResult);
-            results.add(new JobSearchResult(title, employer, location, distance, payRange,contractType,workingPattern));
+            String datePosted = safelyGetText(jobElement, datePostedInCard);
+            results.add(toJobSearchResult(title, employer, location, distance, payRange, contractType, workingPattern, datePosted));
         }
         return results;
     }
 
+    /**
+     * Builds a JobSearchResult from raw card text, stripping the unit from the distance when a location is shown.
+     * Shared with HtmlResultParser, so both execution modes build identical records.
+     */
+    static JobSearchResult toJobSearchResult(String title, String employer, String location, String distance,
+                                                     String payRange, String contractType, String workingPattern,
+                                                     String datePosted) {
+        if (!distance.isEmpty() && !location.isEmpty()) {
+            distance = DISTANCE_UNIT_PATTERN.matcher(distance).replaceAll("");
+        }
+        return new JobSearchResult(title, employer, location, distance, payRange, contractType, workingPattern, datePosted);
+    }
+
 
     /**
-     * Gets the "Date Posted" text for all job results.
+     * Streams the search results of every result page, up to the -DmaxResultPages (default 1)
+     * and -DmaxResults (default unlimited) bounds.
      *
-     * @return A list of date posted strings.
+     * @return A lazy stream of results in page order. Close it to release the prefetch tabs.
+     * @see #streamSearchResults(int, int)
      */
-    public List<String> getJobResultDates() throws AutomationFrameworkException {
-        // Check if no results message is displayed first
-        if (!noResultsMessageList.isEmpty()) {
-            return List.of(); // Return empty list if no results
+    @Override
+    public Stream<JobSearchResult> streamSearchResults() throws AutomationFrameworkException {
+        return streamSearchResults(Integer.getInteger("maxResultPages", 1), Integer.getInteger("maxResults", Integer.MAX_VALUE));
+    }
+
+    /**
+     * Streams the search results of every result page, starting from the page currently displayed.
+     * Only one page of results is held in memory. While the results of page N are being consumed,
+     * page N+1 is already loading in a separate browser tab, so validation and page loads overlap.
+     * The tab showing the first page is never navigated away, so the journey can carry on from it
+     * (e.g. sorting) once the stream is closed.
+     *
+     * A search streamed to the end earlier in the run is replayed from the {@link ResultSnapshotCache}
+     * without reading the pages again.
+     *
+     * @param maxPages   The maximum number of result pages to read.
+     * @param maxResults The maximum number of results to return.
+     * @return A lazy stream of results in page order. Close it to release the prefetch tabs.
+     */
+    @Override
+    public Stream<JobSearchResult> streamSearchResults(int maxPages, int maxResults) throws AutomationFrameworkException {
+        String key = ResultSnapshotCache.streamKey(driver.getCurrentUrl(), maxPages, maxResults);
+        List<JobSearchResult> snapshot = ResultSnapshotCache.get(key);
+        if (snapshot != null) {
+            return snapshot.stream();
+        }
+        ResultPageIterator pages = new ResultPageIterator(maxPages, maxResults);
+        Iterator<JobSearchResult> results = ResultSnapshotCache.recording(key, pages);
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(results, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(pages::close);
+    }
+
+    /**
+     * Iterates over the results of consecutive result pages, prefetching the next page in a second tab.
+     */
+    private final class ResultPageIterator implements Iterator<JobSearchResult> {
+        private final String firstPageWindow;
+        private final int maxPages;
+        private final int maxResults;
+        private Iterator<JobSearchResult> currentPage;
+        private String currentWindow;
+        private String prefetchWindow; // Tab loading the next page, null when there is no next page
+        private int pagesRead;
+        private int resultsReturned;
+
+        private ResultPageIterator(int maxPages, int maxResults) throws AutomationFrameworkException {
+            this.maxPages = maxPages;
+            this.maxResults = maxResults;
+            this.firstPageWindow = driver.getWindowHandle();
+            this.currentWindow = firstPageWindow;
+            readCurrentPage();
         }
-        waitsForListElement(datePostedInResult);
-        List<WebElement> dateElements = datePostedInResult;
 
-        List<String> dateTexts = new ArrayList<>();
-        for (WebElement element : dateElements) {
-            dateTexts.add(element.getText());
+        @Override
+        public boolean hasNext() {
+            if (resultsReturned >= maxResults) {
+                return false;
+            }
+            while (!currentPage.hasNext() && prefetchWindow != null) {
+                try {
+                    switchToPrefetchedPage();
+                } catch (AutomationFrameworkException e) {
+                    throw new IllegalStateException("Failed to read result page " + (pagesRead + 1) + ": " + e.getMessage(), e);
+                }
+            }
+            return currentPage.hasNext();
+        }
+
+        @Override
+        public JobSearchResult next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            resultsReturned++;
+            return currentPage.next();
+        }
+
+        // Reads the page in the current window and starts loading the page after it
+        private void readCurrentPage() throws AutomationFrameworkException {
+            currentPage = readResultsOnPage().iterator();
+            pagesRead++;
+            String nextPageUrl = pagesRead < maxPages
+                    ? (String) ((JavascriptExecutor) driver).executeScript(
+                    "var next = document.querySelector(arguments[0]); return next ? next.href : null;", NEXT_PAGE_CSS)
+                    : null;
+            prefetchWindow = null;
+            if (nextPageUrl != null) {
+                prefetchWindow = driver.switchTo().newWindow(WindowType.TAB).getWindowHandle();
+                // Assigning the location returns straight away, the page keeps loading while results are validated
+                ((JavascriptExecutor) driver).executeScript("window.location.assign(arguments[0]);", nextPageUrl);
+                driver.switchTo().window(currentWindow);
+            }
+        }
+
+        private void switchToPrefetchedPage() throws AutomationFrameworkException {
+            if (!currentWindow.equals(firstPageWindow)) {
+                driver.close(); // Previous page is fully read
+            }
+            currentWindow = prefetchWindow;
+            driver.switchTo().window(currentWindow);
+            waitForOneOfElementsToBecomeVisible(searchResultsContainer, noResultsMessage);
+            readCurrentPage();
+        }
+
+        private void close() {
+            try {
+                for (String window : driver.getWindowHandles()) {
+                    if (window.equals(currentWindow) || window.equals(prefetchWindow)) {
+                        if (!window.equals(firstPageWindow)) {
+                            driver.switchTo().window(window).close();
+                        }
+                    }
+                }
+            } finally {
+                driver.switchTo().window(firstPageWindow);
+            }
         }
-        return dateTexts;
     }
 
     /**
@@ -256,14 +573,13 @@ public class JobSearch extends PageFunctions {
         }
 
         // Normalize string: remove currency symbols, commas, and convert 'k' to '000'
-        String normalized = payRangeString.toLowerCase(Locale.ROOT)
-                .replaceAll("[£$€,]", "") // Remove currency and commas
-                .replaceAll("k", "000") // Convert 'k' to '000'
+        String normalized = CURRENCY_PATTERN.matcher(payRangeString.toLowerCase(Locale.ROOT)) // Remove currency and commas
+                .replaceAll("")
+                .replace("k", "000") // Convert 'k' to '000'
                 .trim();
 
         // Regex to find numbers. It tries to capture one or two numbers separated by common range indicators.
-        Pattern pattern = Pattern.compile("(\\d+(\\.\\d+)?)\\s*(?:to|-|–|and)?\\s*(\\d*(\\.\\d+)?)?");
-        Matcher matcher = pattern.matcher(normalized);
+        Matcher matcher = PAY_RANGE_PATTERN.matcher(normalized);
 
         double low = 0.0;
         double high = 0.0;
@@ -297,8 +613,7 @@ public class JobSearch extends PageFunctions {
         }
 
         // Regex to find the first sequence of digits potentially with a decimal point
-        Pattern pattern = Pattern.compile("(\\d+(\\.\\d+)?)");
-        Matcher matcher = pattern.matcher(distanceString.trim());
+        Matcher matcher = NUMBER_PATTERN.matcher(distanceString.trim());
 
         if (matcher.find()) {
             try {
@@ -331,7 +646,7 @@ public class JobSearch extends PageFunctions {
         } else if (dateString.contains("days ago")) {
             // Extracts the number from "X days ago" and subtracts it from today
             String[] parts = dateString.split(" ");
-            if (parts.length > 0 && parts[0].matches("\\d+")) {
+            if (parts.length > 0 && DAYS_PATTERN.matcher(parts[0]).matches()) {
                 try {
                     int days = Integer.parseInt(parts[0]);
                     return LocalDate.now().minusDays(days);
@@ -347,14 +662,12 @@ public class JobSearch extends PageFunctions {
             // Attempt to parse as an absolute date like "20 June 2025"
             try {
                 // handling 9 july, 09 july ,22 july
-                String cleaned = dateString
-                        .replaceAll("(?i)(\\d{1,2})([a-zA-Z])", "$1 $2")  // insert space if missing
-                        .replaceAll("\\s+", " ")                         // collapse multiple spaces
-                        .trim();
+                String cleaned = MISSING_SPACE_PATTERN.matcher(dateString).replaceAll("$1 $2"); // insert space if missing
+                cleaned = SPACES_PATTERN.matcher(cleaned).replaceAll(" ").trim();              // collapse multiple spaces
 
                 // Capitalize the first letter of the month (optional, Locale can also help)
                 cleaned = cleaned.substring(0, 1).toUpperCase() + cleaned.substring(1);
-                return LocalDate.parse(cleaned, DateTimeFormatter.ofPattern("d MMMM yyyy", Locale.ENGLISH));
+                return LocalDate.parse(cleaned, JOB_DATE_FORMATTER);
             } catch (DateTimeParseException e) {
                 System.err.println("WARN: Unrecognized date format for absolute date: '" + dateString + "'. Error: " + e.getMessage());
                 return null; // Parsing failed for absolute date
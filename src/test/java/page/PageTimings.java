@@ -0,0 +1,193 @@
+package page;
+
+import utilities.PageFunctions.AutomationFrameworkException;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+
+/**
+ * How long a search or sort took to load, as measured by the browser (Navigation Timing, Resource Timing,
+ * paint and largest contentful paint entries) or, over HTTP, by the client.
+ * <p>
+ * Timings are recorded per scenario thread as the journey runs, so the budget steps can check the latest one
+ * and the step metrics can aggregate them per Examples row. Budgets are only enforced with
+ * -DperformanceBudgets=true, as a functional run against the live site would otherwise fail on network jitter. All values are in milliseconds from the start of the
+ * navigation; {@link #NOT_MEASURED} marks a value the browser or execution mode does not provide.
+ *
+ * @param action                The page action that loaded the page, "search" or "sort".
+ * @param elapsedMillis         From the click (or request) until the page finished loading, as seen by the test.
+ * @param firstByteMillis       Time to first byte of the results page.
+ * @param domContentLoadedMillis DOMContentLoaded of the results page.
+ * @param loadMillis            Load event of the results page (the whole response over HTTP).
+ * @param firstContentfulPaintMillis First contentful paint.
+ * @param largestContentfulPaintMillis Largest contentful paint.
+ * @param resourceCount         The number of sub-resources (scripts, styles, images, ...) the page loaded.
+ * @param resourceBytes         Bytes transferred for those resources, 0 when they came from the cache.
+ * @param slowestResourceMillis Duration of the slowest of those resources.
+ */
+public record PageTimings(String action, long elapsedMillis, long firstByteMillis, long domContentLoadedMillis,
+                          long loadMillis, long firstContentfulPaintMillis, long largestContentfulPaintMillis,
+                          long resourceCount, long resourceBytes, long slowestResourceMillis) {
+
+    public static final long NOT_MEASURED = -1;
+
+    /**
+     * Collects the timings of the current document. Largest contentful paint is only reported to a
+     * PerformanceObserver, which receives the buffered entries asynchronously, so this is an async script.
+     */
+    static final String TIMINGS_SCRIPT = """
+            var done = arguments[arguments.length - 1];
+            var navigation = performance.getEntriesByType('navigation')[0];
+            var timings = {
+                firstByte: navigation ? navigation.responseStart : -1,
+                domContentLoaded: navigation ? navigation.domContentLoadedEventEnd : -1,
+                load: navigation ? navigation.loadEventEnd : -1,
+                firstContentfulPaint: -1,
+                largestContentfulPaint: -1,
+                resourceCount: 0,
+                resourceBytes: 0,
+                slowestResource: 0
+            };
+            performance.getEntriesByType('paint').forEach(function (entry) {
+                if (entry.name === 'first-contentful-paint') {
+                    timings.firstContentfulPaint = entry.startTime;
+                }
+            });
+            performance.getEntriesByType('resource').forEach(function (entry) {
+                timings.resourceCount++;
+                timings.resourceBytes += entry.transferSize || 0;
+                timings.slowestResource = Math.max(timings.slowestResource, entry.duration);
+            });
+            var supported = window.PerformanceObserver && PerformanceObserver.supportedEntryTypes
+                    && PerformanceObserver.supportedEntryTypes.indexOf('largest-contentful-paint') >= 0;
+            if (!supported) {
+                done(timings);
+                return;
+            }
+            var observer = new PerformanceObserver(function (list) {
+                list.getEntries().forEach(function (entry) {
+                    timings.largestContentfulPaint = Math.max(timings.largestContentfulPaint, entry.startTime);
+                });
+            });
+            observer.observe({type: 'largest-contentful-paint', buffered: true});
+            setTimeout(function () {
+                observer.disconnect();
+                done(timings);
+            }, 50);
+            """;
+
+    private static final ThreadLocal<List<PageTimings>> recorded = ThreadLocal.withInitial(ArrayList::new);
+    private static final ThreadLocal<String> notCaptured = new ThreadLocal<>(); // Why the last page load was not timed
+
+    /**
+     * Records the timings of a page the current scenario thread loaded.
+     */
+    static void record(PageTimings timings) {
+        recorded.get().add(timings);
+        notCaptured.remove();
+    }
+
+    /**
+     * Records that the timings of the page the current scenario thread loaded last could not be read, so the
+     * budget steps do not check the page before it instead.
+     *
+     * @param action The page action, "search" or "sort".
+     * @param reason Why the timings were not captured.
+     */
+    static void recordNotCaptured(String action, String reason) {
+        notCaptured.set("The page timings of the " + action + " were not captured: " + reason);
+    }
+
+    /**
+     * Gets why the page the current scenario thread loaded last was not timed.
+     *
+     * @return The reason, or null when its timings were recorded.
+     */
+    public static String notCapturedReason() {
+        return notCaptured.get();
+    }
+
+    /**
+     * Whether the budget steps fail a scenario whose page loads are over budget (-DperformanceBudgets=true).
+     * By default they only log the timings against their budgets.
+     */
+    public static boolean areBudgetsEnforced() {
+        return Boolean.getBoolean("performanceBudgets");
+    }
+
+    /**
+     * Gets the timings of the page the current scenario thread loaded last.
+     *
+     * @throws AutomationFrameworkException If no search or sort has been timed on this thread.
+     */
+    public static PageTimings last() throws AutomationFrameworkException {
+        List<PageTimings> timings = recorded.get();
+        if (timings.isEmpty()) {
+            throw new AutomationFrameworkException("No search results page load has been timed in this scenario.");
+        }
+        return timings.getLast();
+    }
+
+    /**
+     * Gets the timings recorded on the current thread since the last {@link #drainCurrentThread()}.
+     */
+    public static List<PageTimings> currentThread() {
+        return List.copyOf(recorded.get());
+    }
+
+    /**
+     * Gets and forgets the timings recorded on the current thread, at the end of a scenario.
+     */
+    public static List<PageTimings> drainCurrentThread() {
+        List<PageTimings> timings = currentThread();
+        recorded.remove();
+        notCaptured.remove();
+        return timings;
+    }
+
+    /**
+     * Gets the measured timings by the names the budget steps use, leaving out the ones not measured.
+     *
+     * @return Milliseconds keyed by metric name, e.g. "largest contentful paint".
+     */
+    public Map<String, Long> metrics() {
+        Map<String, Long> metrics = new LinkedHashMap<>();
+        put(metrics, "elapsed", elapsedMillis);
+        put(metrics, "time to first byte", firstByteMillis);
+        put(metrics, "dom content loaded", domContentLoadedMillis);
+        put(metrics, "load", loadMillis);
+        put(metrics, "first contentful paint", firstContentfulPaintMillis);
+        put(metrics, "largest contentful paint", largestContentfulPaintMillis);
+        put(metrics, "slowest resource", resourceCount > 0 ? slowestResourceMillis : NOT_MEASURED);
+        return metrics;
+    }
+
+    private static void put(Map<String, Long> metrics, String name, long value) {
+        if (value != NOT_MEASURED) {
+            metrics.put(name, value);
+        }
+    }
+
+    /**
+     * Checks a metric name used in a feature file.
+     *
+     * @throws AutomationFrameworkException If the name is not one of the metrics timed.
+     */
+    public static void checkMetricName(String metric) throws AutomationFrameworkException {
+        List<String> names = List.of("elapsed", "time to first byte", "dom content loaded", "load",
+                "first contentful paint", "largest contentful paint", "slowest resource");
+        if (!names.contains(metric)) {
+            throw new AutomationFrameworkException("Unknown page timing '" + metric + "', expected one of " + names);
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder(action).append(':');
+        metrics().forEach((name, millis) -> text.append(' ').append(name).append(' ').append(millis).append(" ms,"));
+        return text.append(' ').append(resourceCount).append(" resources, ").append(resourceBytes).append(" bytes").toString();
+    }
+}
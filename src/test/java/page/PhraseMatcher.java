@@ -0,0 +1,153 @@
+package page;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.List;
+import java.util.TreeSet;
+
+
+/**
+ * Finds any of a set of phrases in text, ignoring case, with one scan of the text and no allocation.
+ * <p>
+ * The phrases are compiled into an Aho-Corasick automaton with every transition precomputed, so scanning costs one
+ * table lookup per character whatever the number of phrases. Characters are case folded as they are read, with
+ * {@link Character#toLowerCase(char)}, instead of lower casing a copy of the text.
+ * Instances are immutable and can be shared between threads.
+ */
+public final class PhraseMatcher {
+    private final boolean matchesEverything; // An empty phrase is contained in every text, as String.contains has it
+    private final char[] alphabet;           // Sorted folded characters used by the phrases, other characters map to 0
+    private final int[] asciiSymbols = new int[128]; // Indexed by the character as read, so ASCII is folded by lookup
+    private final int symbols;
+    // Offset of a state (state * symbols) + symbol -> offset of the next state, or ACCEPT when it ends a phrase
+    private final int[] transitions;
+
+    private static final int ACCEPT = -1;
+
+    private PhraseMatcher(Collection<String> phrases) {
+        matchesEverything = phrases.stream().anyMatch(String::isEmpty);
+        TreeSet<Character> characters = new TreeSet<>();
+        for (String phrase : phrases) {
+            for (int i = 0; i < phrase.length(); i++) {
+                characters.add(Character.toLowerCase(phrase.charAt(i)));
+            }
+        }
+        alphabet = new char[characters.size()];
+        int index = 0;
+        for (char c : characters) {
+            alphabet[index++] = c;
+        }
+        for (char c = 0; c < 128; c++) {
+            int found = Arrays.binarySearch(alphabet, Character.toLowerCase(c));
+            asciiSymbols[c] = found < 0 ? 0 : found + 1;
+        }
+        symbols = alphabet.length + 1;
+
+        // Trie of the phrases
+        List<int[]> trie = new ArrayList<>();
+        List<Boolean> ends = new ArrayList<>();
+        trie.add(new int[symbols]);
+        ends.add(false);
+        for (String phrase : phrases) {
+            int state = 0;
+            for (int i = 0; i < phrase.length(); i++) {
+                int symbol = symbol(phrase.charAt(i));
+                if (trie.get(state)[symbol] == 0) {
+                    trie.add(new int[symbols]);
+                    ends.add(false);
+                    trie.get(state)[symbol] = trie.size() - 1;
+                }
+                state = trie.get(state)[symbol];
+            }
+            ends.set(state, true);
+        }
+
+        // Breadth first, completing missing transitions through the failure links
+        int states = trie.size();
+        int[] next = new int[states * symbols];
+        boolean[] accepting = new boolean[states];
+        int[] failure = new int[states];
+        Deque<Integer> queue = new ArrayDeque<>();
+        for (int symbol = 0; symbol < symbols; symbol++) {
+            int child = trie.get(0)[symbol];
+            next[symbol] = child;
+            if (child != 0) {
+                queue.add(child);
+            }
+        }
+        for (int state = 0; state < states; state++) {
+            accepting[state] = ends.get(state);
+        }
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            accepting[state] |= accepting[failure[state]];
+            for (int symbol = 0; symbol < symbols; symbol++) {
+                int child = trie.get(state)[symbol];
+                if (child != 0) {
+                    failure[child] = next[failure[state] * symbols + symbol];
+                    next[state * symbols + symbol] = child;
+                    queue.add(child);
+                } else {
+                    next[state * symbols + symbol] = next[failure[state] * symbols + symbol];
+                }
+            }
+        }
+
+        // Offsets instead of state numbers save a multiplication per character scanned
+        transitions = new int[next.length];
+        for (int i = 0; i < next.length; i++) {
+            transitions[i] = accepting[next[i]] ? ACCEPT : next[i] * symbols;
+        }
+    }
+
+    /**
+     * Compiles the phrases to look for.
+     *
+     * @param phrases The phrases, matched ignoring case.
+     * @return The matcher.
+     */
+    public static PhraseMatcher of(Collection<String> phrases) {
+        if (phrases.isEmpty()) {
+            throw new IllegalArgumentException("At least one phrase is needed");
+        }
+        return new PhraseMatcher(phrases);
+    }
+
+    public static PhraseMatcher of(String... phrases) {
+        return of(Arrays.asList(phrases));
+    }
+
+    private int symbol(char c) {
+        if (c < 128) {
+            return asciiSymbols[c];
+        }
+        int index = Arrays.binarySearch(alphabet, Character.toLowerCase(c));
+        return index < 0 ? 0 : index + 1;
+    }
+
+    /**
+     * Checks whether the text contains any of the phrases, ignoring case.
+     *
+     * @param text The text to scan, null is treated as empty.
+     * @return true if a phrase was found.
+     */
+    public boolean foundIn(CharSequence text) {
+        if (matchesEverything) {
+            return true;
+        }
+        if (text == null) {
+            return false;
+        }
+        int offset = 0;
+        for (int i = 0, length = text.length(); i < length; i++) {
+            offset = transitions[offset + symbol(text.charAt(i))];
+            if (offset == ACCEPT) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,49 @@
+package page;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+
+public class PhraseMatcherTest {
+
+    @Test
+    public void findsAnyPhraseIgnoringCase() {
+        PhraseMatcher matcher = PhraseMatcher.of("nurse", "Midwife");
+        assertTrue(matcher.foundIn("Staff NURSE - Acute"));
+        assertTrue(matcher.foundIn("community midwife"));
+        assertFalse(matcher.foundIn("Healthcare Assistant"));
+        assertFalse(matcher.foundIn("nurs"));
+        assertFalse(matcher.foundIn(null));
+    }
+
+    @Test
+    public void findsPhrasesThatOverlap() {
+        // "he" is only found through the failure link of "she", "hers" after a false start on "his"
+        PhraseMatcher matcher = PhraseMatcher.of("he", "she", "his", "hers");
+        assertTrue(matcher.foundIn("ushers"));
+        assertTrue(matcher.foundIn("xxshx he"));
+        assertTrue(matcher.foundIn("hi his"));
+        assertFalse(matcher.foundIn("shi"));
+        assertTrue(PhraseMatcher.of("aab").foundIn("aaab"));
+    }
+
+    @Test
+    public void foldsCharactersOutsideAscii() {
+        PhraseMatcher matcher = PhraseMatcher.of("Café", "£30");
+        assertTrue(matcher.foundIn("CAFÉ assistant"));
+        assertTrue(matcher.foundIn("£30,000 a year"));
+        assertFalse(matcher.foundIn("cafe"));
+    }
+
+    @Test
+    public void emptyPhraseIsInEveryText() {
+        assertTrue(PhraseMatcher.of("").foundIn(""));
+        assertTrue(PhraseMatcher.of(List.of("x", "")).foundIn(null));
+        assertThrows(IllegalArgumentException.class, () -> PhraseMatcher.of(List.of()));
+    }
+}
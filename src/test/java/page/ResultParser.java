@@ -0,0 +1,399 @@
+package page;
+
+import java.time.Clock;
+import java.time.LocalDate;
+import java.util.List;
+
+
+/**
+ * Allocation-free parsing kernel for the pay, distance and date posted text of job search results.
+ * Values are scanned character by character into primitives instead of going through regular expressions:
+ * pay is returned in pence, distance in tenths of a mile and dates as epoch days.
+ * <p>
+ * Relative dates ("today", "yesterday", "3 days ago") are resolved against the day the parser was created,
+ * so they stay stable for the whole run even if it crosses midnight. Inject a fixed {@link Clock} to pin that day.
+ * Instances are immutable and can be shared between threads.
+ */
+public class ResultParser {
+    /**
+     * Returned by {@link #parseDistanceTenths(CharSequence)} when no distance can be found.
+     */
+    public static final int NO_DISTANCE = -1;
+    /**
+     * Returned by {@link #parseEpochDay(CharSequence)} when the text is not a recognised date.
+     */
+    public static final int NO_DATE = Integer.MIN_VALUE;
+
+    private static final ResultParser RUN_PARSER = new ResultParser(Clock.systemDefaultZone());
+    private static final String[] MONTHS = {"january", "february", "march", "april", "may", "june", "july",
+            "august", "september", "october", "november", "december"};
+    private static final int[] DAYS_IN_MONTH = {31, 29, 31, 30, 31, 30, 31, 31, 30, 31, 30, 31};
+    private static final long DAYS_0000_TO_1970 = 719528L;
+
+    private final int todayEpochDay;
+
+    /**
+     * Creates a parser that resolves relative dates against today's date in the given clock.
+     *
+     * @param clock The clock that decides what "today" is.
+     */
+    public ResultParser(Clock clock) {
+        this.todayEpochDay = (int) LocalDate.now(clock).toEpochDay();
+    }
+
+    /**
+     * Gets the parser shared by the whole run, whose "today" is fixed when the run starts.
+     *
+     * @return The run-wide parser.
+     */
+    public static ResultParser forRun() {
+        return RUN_PARSER;
+    }
+
+    public int getTodayEpochDay() {
+        return todayEpochDay;
+    }
+
+    /**
+     * Parses a pay range such as "£25,000 to £30,000 a year", "£40k - £50k" or "£12.50 an hour".
+     * Currency symbols and thousands separators are skipped, a trailing 'k' multiplies by a thousand and
+     * the two amounts may be separated by "to", "-", "–" or "and". A single amount gives low == high.
+     *
+     * @param text The pay range text.
+     * @param out  Receives {low, high} in pence, low always &lt;= high. {0, 0} when no amount is found.
+     * @return true if at least one amount was found.
+     */
+    public boolean parsePayRange(CharSequence text, long[] out) {
+        out[0] = 0;
+        out[1] = 0;
+        if (text == null) {
+            return false;
+        }
+        int length = text.length();
+        int start = 0;
+        while (start < length && !isDigit(text.charAt(start))) {
+            start++;
+        }
+        if (start == length) {
+            return false;
+        }
+        int end = amountEnd(text, start);
+        long low = amountPence(text, start, end);
+        long high = low;
+
+        int i = skipSpacesAndCurrency(text, end);
+        int separatorEnd = separatorEnd(text, i);
+        if (separatorEnd > i) {
+            i = skipSpacesAndCurrency(text, separatorEnd);
+        }
+        if (i < length && isDigit(text.charAt(i))) {
+            high = amountPence(text, i, amountEnd(text, i));
+        }
+        out[0] = Math.min(low, high);
+        out[1] = Math.max(low, high);
+        return true;
+    }
+
+    /**
+     * Parses the pay range of every text in a batch.
+     *
+     * @param texts The pay range texts.
+     * @param lows  Receives the low value in pence for each text, at the same index.
+     * @param highs Receives the high value in pence for each text, at the same index.
+     * @return The number of texts in which an amount was found.
+     */
+    public int parsePayRanges(List<? extends CharSequence> texts, long[] lows, long[] highs) {
+        long[] range = new long[2];
+        int parsed = 0;
+        for (int i = 0; i < texts.size(); i++) {
+            if (parsePayRange(texts.get(i), range)) {
+                parsed++;
+            }
+            lows[i] = range[0];
+            highs[i] = range[1];
+        }
+        return parsed;
+    }
+
+    /**
+     * Parses the first number in a distance text such as "5 miles", "+10 Miles", "1.5mi" or "More than 50 miles".
+     * Fractions are rounded up to the next tenth, so comparing against a limit in tenths gives the same answer
+     * as comparing the exact distance: 4.96 miles is 50 tenths and within 5 miles, 5.01 miles is 51 and is not.
+     *
+     * @param text The distance text.
+     * @return The distance in tenths of a mile, or {@link #NO_DISTANCE} if there is no number.
+     */
+    public int parseDistanceTenths(CharSequence text) {
+        if (text == null) {
+            return NO_DISTANCE;
+        }
+        int length = text.length();
+        int i = 0;
+        while (i < length && !isDigit(text.charAt(i))) {
+            i++;
+        }
+        if (i == length) {
+            return NO_DISTANCE;
+        }
+        int tenths = 0;
+        while (i < length && isDigit(text.charAt(i))) {
+            tenths = tenths * 10 + (text.charAt(i++) - '0');
+        }
+        tenths *= 10;
+        if (i + 1 < length && text.charAt(i) == '.' && isDigit(text.charAt(i + 1))) {
+            tenths += text.charAt(i + 1) - '0';
+            i += 2;
+            while (i < length && isDigit(text.charAt(i))) {
+                if (text.charAt(i++) != '0') {
+                    tenths++; // Round any remaining fraction up to the next tenth
+                    break;
+                }
+            }
+        }
+        return tenths;
+    }
+
+    /**
+     * Parses the distance of every text in a batch.
+     *
+     * @param texts  The distance texts.
+     * @param tenths Receives the distance in tenths of a mile for each text, or {@link #NO_DISTANCE}.
+     * @return The number of texts in which a distance was found.
+     */
+    public int parseDistances(List<? extends CharSequence> texts, int[] tenths) {
+        int parsed = 0;
+        for (int i = 0; i < texts.size(); i++) {
+            tenths[i] = parseDistanceTenths(texts.get(i));
+            if (tenths[i] != NO_DISTANCE) {
+                parsed++;
+            }
+        }
+        return parsed;
+    }
+
+    /**
+     * Parses a date posted text: "today", "yesterday", "X days ago" or an absolute date such as
+     * "20 June 2025", "9July 2025" or "09  july 2025". Month names are matched case-insensitively.
+     *
+     * @param text The date posted text.
+     * @return The date as days since 1970-01-01, or {@link #NO_DATE} if the format is not recognised.
+     */
+    public int parseEpochDay(CharSequence text) {
+        if (text == null) {
+            return NO_DATE;
+        }
+        int start = 0;
+        int end = text.length();
+        while (start < end && Character.isWhitespace(text.charAt(start))) {
+            start++;
+        }
+        while (end > start && Character.isWhitespace(text.charAt(end - 1))) {
+            end--;
+        }
+        if (start == end) {
+            return NO_DATE;
+        }
+        if (regionMatchesIgnoreCase(text, start, end, "today") && end - start == 5) {
+            return todayEpochDay;
+        }
+        if (regionMatchesIgnoreCase(text, start, end, "yesterday") && end - start == 9) {
+            return todayEpochDay - 1;
+        }
+
+        // Leading number: days in "X days ago" or day of month in "20 June 2025"
+        int i = start;
+        int number = 0;
+        while (i < end && isDigit(text.charAt(i)) && i - start < 9) {
+            number = number * 10 + (text.charAt(i++) - '0');
+        }
+        if (i == start) {
+            return NO_DATE;
+        }
+        i = skipSpaces(text, i, end);
+        int daysAgoEnd = wordEnd(text, i, end, "day");
+        if (daysAgoEnd > i) {
+            if (daysAgoEnd < end && (text.charAt(daysAgoEnd) == 's' || text.charAt(daysAgoEnd) == 'S')) {
+                daysAgoEnd++;
+            }
+            int agoStart = skipSpaces(text, daysAgoEnd, end);
+            if (agoStart > daysAgoEnd && wordEnd(text, agoStart, end, "ago") == end) {
+                return todayEpochDay - number;
+            }
+            return NO_DATE;
+        }
+
+        int month = 0;
+        for (int m = 0; m < MONTHS.length; m++) {
+            int monthEnd = wordEnd(text, i, end, MONTHS[m]);
+            if (monthEnd > i && (monthEnd == end || Character.isWhitespace(text.charAt(monthEnd)))) {
+                month = m + 1;
+                i = monthEnd;
+                break;
+            }
+        }
+        if (month == 0) {
+            return NO_DATE;
+        }
+        int yearStart = skipSpaces(text, i, end);
+        if (yearStart == i || end - yearStart != 4) {
+            return NO_DATE;
+        }
+        int year = 0;
+        for (int y = yearStart; y < end; y++) {
+            if (!isDigit(text.charAt(y))) {
+                return NO_DATE;
+            }
+            year = year * 10 + (text.charAt(y) - '0');
+        }
+        int day = number;
+        if (day < 1 || day > DAYS_IN_MONTH[month - 1] || (month == 2 && day == 29 && !isLeapYear(year))) {
+            return NO_DATE;
+        }
+        return (int) toEpochDay(year, month, day);
+    }
+
+    /**
+     * Parses the date posted of every text in a batch.
+     *
+     * @param texts The date posted texts.
+     * @param days  Receives the epoch day of each text, or {@link #NO_DATE}.
+     * @return The number of texts that were recognised as dates.
+     */
+    public int parseEpochDays(List<? extends CharSequence> texts, int[] days) {
+        int parsed = 0;
+        for (int i = 0; i < texts.size(); i++) {
+            days[i] = parseEpochDay(texts.get(i));
+            if (days[i] != NO_DATE) {
+                parsed++;
+            }
+        }
+        return parsed;
+    }
+
+    // End of an amount starting at a digit: digits with thousands separators, an optional fraction and 'k'
+    private static int amountEnd(CharSequence text, int i) {
+        int length = text.length();
+        while (i < length) {
+            char c = text.charAt(i);
+            if (isDigit(c) || (c == ',' && i + 1 < length && isDigit(text.charAt(i + 1)))) {
+                i++;
+            } else {
+                break;
+            }
+        }
+        if (i + 1 < length && text.charAt(i) == '.' && isDigit(text.charAt(i + 1))) {
+            i++;
+            while (i < length && isDigit(text.charAt(i))) {
+                i++;
+            }
+        }
+        if (i < length && (text.charAt(i) == 'k' || text.charAt(i) == 'K')) {
+            i++;
+        }
+        return i;
+    }
+
+    // Value in pence of an amount token found by amountEnd. Fractions beyond pence are truncated.
+    private static long amountPence(CharSequence text, int start, int end) {
+        long pounds = 0;
+        long pence = 0;
+        int fractionDigits = -1;
+        boolean thousands = false;
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            if (c == '.') {
+                fractionDigits = 0;
+            } else if (c == 'k' || c == 'K') {
+                thousands = true;
+            } else if (isDigit(c)) {
+                if (fractionDigits < 0) {
+                    pounds = pounds * 10 + (c - '0');
+                } else if (fractionDigits < 2) {
+                    pence = pence * 10 + (c - '0');
+                    fractionDigits++;
+                }
+            }
+        }
+        if (fractionDigits == 1) {
+            pence *= 10;
+        }
+        long value = pounds * 100 + pence;
+        return thousands ? value * 1000 : value;
+    }
+
+    private static int skipSpacesAndCurrency(CharSequence text, int i) {
+        int length = text.length();
+        while (i < length) {
+            char c = text.charAt(i);
+            if (Character.isWhitespace(c) || c == '£' || c == '$' || c == '€') {
+                i++;
+            } else {
+                break;
+            }
+        }
+        return i;
+    }
+
+    // End of a range separator ("to", "-", "–", "and") at i, or i if there is none
+    private static int separatorEnd(CharSequence text, int i) {
+        int length = text.length();
+        if (i >= length) {
+            return i;
+        }
+        char c = text.charAt(i);
+        if (c == '-' || c == '–') {
+            return i + 1;
+        }
+        int end = wordEnd(text, i, length, "to");
+        if (end > i) {
+            return end;
+        }
+        return Math.max(i, wordEnd(text, i, length, "and"));
+    }
+
+    private static int skipSpaces(CharSequence text, int i, int end) {
+        while (i < end && Character.isWhitespace(text.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    // End of the lower case word at i compared case-insensitively, or -1 if the text does not start with it
+    private static int wordEnd(CharSequence text, int i, int end, String word) {
+        if (end - i < word.length()) {
+            return -1;
+        }
+        for (int w = 0; w < word.length(); w++) {
+            if (Character.toLowerCase(text.charAt(i + w)) != word.charAt(w)) {
+                return -1;
+            }
+        }
+        return i + word.length();
+    }
+
+    private static boolean regionMatchesIgnoreCase(CharSequence text, int start, int end, String word) {
+        return wordEnd(text, start, end, word) > 0;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isLeapYear(long year) {
+        return (year & 3) == 0 && (year % 100 != 0 || year % 400 == 0);
+    }
+
+    // Same arithmetic as LocalDate.toEpochDay(), without creating a LocalDate
+    private static long toEpochDay(long year, int month, int day) {
+        long total = 365 * year + (year + 3) / 4 - (year + 99) / 100 + (year + 399) / 400;
+        total += (367L * month - 362) / 12;
+        total += day - 1;
+        if (month > 2) {
+            total--;
+            if (!isLeapYear(year)) {
+                total--;
+            }
+        }
+        return total - DAYS_0000_TO_1970;
+    }
+}
@@ -0,0 +1,103 @@
+package page;
+
+import org.junit.Test;
+
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+
+public class ResultParserTest {
+    private static final LocalDate TODAY = LocalDate.of(2025, 7, 9);
+    private final ResultParser parser = new ResultParser(Clock.fixed(TODAY.atStartOfDay().toInstant(ZoneOffset.UTC), ZoneOffset.UTC));
+
+    private long[] payRange(String text) {
+        long[] range = new long[2];
+        parser.parsePayRange(text, range);
+        return range;
+    }
+
+    @Test
+    public void parsesPayRangesInPence() {
+        assertArrayEquals(new long[]{2_500_000, 3_000_000}, payRange("£25,000 to £30,000 a year"));
+        assertArrayEquals(new long[]{4_000_000, 5_000_000}, payRange("£40k - £50k"));
+        assertArrayEquals(new long[]{1_250, 1_250}, payRange("£12.50 an hour"));
+        assertArrayEquals(new long[]{1_250, 1_500}, payRange("£15 and £12.5"));
+        assertArrayEquals(new long[]{2_550_000, 2_550_000}, payRange("£25.5k"));
+    }
+
+    @Test
+    public void payRangeWithoutAmountIsZero() {
+        long[] range = {1, 1};
+        assertFalse(parser.parsePayRange("Negotiable", range));
+        assertArrayEquals(new long[]{0, 0}, range);
+        assertFalse(parser.parsePayRange(null, range));
+    }
+
+    @Test
+    public void parsesPayRangeBatches() {
+        long[] lows = new long[3];
+        long[] highs = new long[3];
+        assertEquals(2, parser.parsePayRanges(List.of("£1 to £2", "Negotiable", "£3"), lows, highs));
+        assertArrayEquals(new long[]{100, 0, 300}, lows);
+        assertArrayEquals(new long[]{200, 0, 300}, highs);
+    }
+
+    @Test
+    public void parsesDistancesInTenthsRoundingUp() {
+        assertEquals(50, parser.parseDistanceTenths("5 miles"));
+        assertEquals(100, parser.parseDistanceTenths("+10 Miles"));
+        assertEquals(15, parser.parseDistanceTenths("1.5mi"));
+        assertEquals(500, parser.parseDistanceTenths("More than 50 miles"));
+        assertEquals(50, parser.parseDistanceTenths("4.96 miles"));
+        assertEquals(51, parser.parseDistanceTenths("5.01 miles"));
+        assertEquals(50, parser.parseDistanceTenths("5.00 miles"));
+        assertEquals(ResultParser.NO_DISTANCE, parser.parseDistanceTenths("Remote"));
+        assertEquals(ResultParser.NO_DISTANCE, parser.parseDistanceTenths(null));
+    }
+
+    @Test
+    public void parsesRelativeDatesAgainstToday() {
+        long today = TODAY.toEpochDay();
+        assertEquals(today, parser.parseEpochDay("today"));
+        assertEquals(today, parser.parseEpochDay("  Today "));
+        assertEquals(today - 1, parser.parseEpochDay("yesterday"));
+        assertEquals(today - 3, parser.parseEpochDay("3 days ago"));
+        assertEquals(today - 1, parser.parseEpochDay("1 day ago"));
+    }
+
+    @Test
+    public void parsesAbsoluteDates() {
+        assertEquals(LocalDate.of(2025, 6, 20).toEpochDay(), parser.parseEpochDay("20 June 2025"));
+        assertEquals(LocalDate.of(2025, 7, 9).toEpochDay(), parser.parseEpochDay("9July 2025"));
+        assertEquals(LocalDate.of(2025, 7, 9).toEpochDay(), parser.parseEpochDay("09  july 2025"));
+        assertEquals(LocalDate.of(2024, 2, 29).toEpochDay(), parser.parseEpochDay("29 February 2024"));
+        assertEquals(LocalDate.of(1999, 12, 31).toEpochDay(), parser.parseEpochDay("31 December 1999"));
+    }
+
+    @Test
+    public void rejectsUnrecognisedDates() {
+        assertEquals(ResultParser.NO_DATE, parser.parseEpochDay("29 February 2025"));
+        assertEquals(ResultParser.NO_DATE, parser.parseEpochDay("31 April 2025"));
+        assertEquals(ResultParser.NO_DATE, parser.parseEpochDay("20 Juno 2025"));
+        assertEquals(ResultParser.NO_DATE, parser.parseEpochDay("20 June 25"));
+        assertEquals(ResultParser.NO_DATE, parser.parseEpochDay("3 days"));
+        assertEquals(ResultParser.NO_DATE, parser.parseEpochDay("Closing soon"));
+        assertEquals(ResultParser.NO_DATE, parser.parseEpochDay(""));
+        assertEquals(ResultParser.NO_DATE, parser.parseEpochDay(null));
+    }
+
+    @Test
+    public void parsesDateBatches() {
+        int[] days = new int[2];
+        assertEquals(1, parser.parseEpochDays(List.of("today", "soon"), days));
+        assertEquals(TODAY.toEpochDay(), days[0]);
+        assertEquals(ResultParser.NO_DATE, days[1]);
+        assertEquals(TODAY.toEpochDay(), parser.getTodayEpochDay());
+    }
+}
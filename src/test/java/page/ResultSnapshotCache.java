@@ -0,0 +1,199 @@
+package page;
+
+import utilities.ResponseStore;
+
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+
+/**
+ * Snapshots of search results extracted earlier in the run, shared by every scenario and thread.
+ * <p>
+ * Snapshots are keyed by the search the results page shows, taken from its URL: the query parameters are decoded,
+ * trimmed and lower cased, empty ones and the first page number are dropped and the rest sorted. Searches that
+ * differ only in fields the site does not send, or in case and spacing, therefore share a snapshot, while a
+ * different keyword, location, distance, employer, pay range, sort order or page does not.
+ * <p>
+ * The validation steps read results through the journeys' streamSearchResults: a search streamed to the end earlier
+ * in the run is served from its snapshot, without extracting its results or loading its further result pages. The
+ * search itself is still submitted, as later steps such as sorting carry on from its results page.
+ * <p>
+ * Snapshots expire after -DresultCache.ttlSeconds (default 600) and the least recently used ones are evicted
+ * beyond -DresultCache.maxEntries (default 256). Searches with more than -DresultCache.maxResults results (default
+ * 1000) are not kept, so a long sweep of result pages is still checked a window at a time. -DresultCache=false
+ * turns the cache off, and so does -Drecording.mode=record, so every scenario fetches, and records, each result page
+ * it reads.
+ */
+public final class ResultSnapshotCache {
+    private static final Map<String, Snapshot> snapshots = new LinkedHashMap<>(16, 0.75f, true); // Access order, for LRU
+    private static final LongAdder hits = new LongAdder();
+    private static final LongAdder misses = new LongAdder();
+    private static final LongAdder expired = new LongAdder();
+    private static final LongAdder evicted = new LongAdder();
+
+    private record Snapshot(List<JobSearch.JobSearchResult> results, long createdNanos) {
+    }
+
+    private ResultSnapshotCache() {
+    }
+
+    /**
+     * Whether snapshots are kept and reused (on unless -DresultCache=false or responses are being recorded).
+     */
+    public static boolean isEnabled() {
+        return !"false".equalsIgnoreCase(System.getProperty("resultCache")) && ResponseStore.mode() != ResponseStore.Mode.RECORD;
+    }
+
+    /**
+     * Gets the key of the results streamed from a results page, within the given bounds.
+     *
+     * @param resultsUrl The URL of the first results page streamed.
+     */
+    static String streamKey(String resultsUrl, int maxPages, int maxResults) {
+        return "stream " + normalizedSearch(resultsUrl) + " pages=" + maxPages + " results=" + maxResults;
+    }
+
+    /**
+     * Normalizes a results page URL to the search it shows.
+     *
+     * @param resultsUrl The URL of the results page.
+     * @return The host, path and normalized query parameters.
+     */
+    static String normalizedSearch(String resultsUrl) {
+        URI uri = URI.create(resultsUrl);
+        List<String> parameters = new ArrayList<>();
+        if (uri.getRawQuery() != null) {
+            for (String parameter : uri.getRawQuery().split("&")) {
+                int equals = parameter.indexOf('=');
+                String name = decode(equals < 0 ? parameter : parameter.substring(0, equals));
+                String value = equals < 0 ? "" : decode(parameter.substring(equals + 1));
+                value = value.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+                if (!name.isEmpty() && !value.isEmpty() && !(name.equals("page") && value.equals("1"))) {
+                    parameters.add(name + "=" + value);
+                }
+            }
+        }
+        parameters.sort(null);
+        return uri.getHost() + (uri.getPort() < 0 ? "" : ":" + uri.getPort()) + uri.getPath() + "?" + String.join("&", parameters);
+    }
+
+    private static String decode(String text) {
+        return URLDecoder.decode(text, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Gets a snapshot that has not expired.
+     *
+     * @return The results, or null when the cache has no fresh snapshot for the key.
+     */
+    static List<JobSearch.JobSearchResult> get(String key) {
+        if (!isEnabled()) {
+            return null;
+        }
+        synchronized (snapshots) {
+            Snapshot snapshot = snapshots.get(key);
+            if (snapshot != null && System.nanoTime() - snapshot.createdNanos() > ttlNanos()) {
+                snapshots.remove(key);
+                expired.increment();
+                snapshot = null;
+            }
+            (snapshot == null ? misses : hits).increment();
+            return snapshot == null ? null : snapshot.results();
+        }
+    }
+
+    /**
+     * Stores a snapshot, evicting the least recently used ones beyond the size bound.
+     */
+    static void put(String key, List<JobSearch.JobSearchResult> results) {
+        if (!isEnabled()) {
+            return;
+        }
+        int maxEntries = Math.max(1, Integer.getInteger("resultCache.maxEntries", 256));
+        synchronized (snapshots) {
+            snapshots.put(key, new Snapshot(List.copyOf(results), System.nanoTime()));
+            Iterator<String> eldest = snapshots.keySet().iterator();
+            while (snapshots.size() > maxEntries) {
+                eldest.next();
+                eldest.remove();
+                evicted.increment();
+            }
+        }
+    }
+
+    /**
+     * Wraps the results being streamed so they are stored as a snapshot once the stream has been read to the end.
+     * A stream closed early is not stored, as its results are incomplete, and neither is one with more results than
+     * -DresultCache.maxResults, which stops being buffered once it passes the bound.
+     */
+    static Iterator<JobSearch.JobSearchResult> recording(String key, Iterator<JobSearch.JobSearchResult> results) {
+        if (!isEnabled()) {
+            return results;
+        }
+        int maxResults = Math.max(0, Integer.getInteger("resultCache.maxResults", 1000));
+        return new Iterator<>() {
+            private List<JobSearch.JobSearchResult> seen = new ArrayList<>();
+            private boolean stored;
+
+            @Override
+            public boolean hasNext() {
+                boolean hasNext = results.hasNext();
+                if (!hasNext && !stored) {
+                    stored = true;
+                    if (seen != null) {
+                        put(key, seen);
+                    }
+                }
+                return hasNext;
+            }
+
+            @Override
+            public JobSearch.JobSearchResult next() {
+                JobSearch.JobSearchResult result = results.next();
+                if (seen != null) {
+                    seen.add(result);
+                    if (seen.size() > maxResults) {
+                        seen = null; // Too large to keep, the results are only streamed
+                    }
+                }
+                return result;
+            }
+        };
+    }
+
+    private static long ttlNanos() {
+        return TimeUnit.SECONDS.toNanos(Long.getLong("resultCache.ttlSeconds", 600L));
+    }
+
+    /**
+     * Whether the cache has been looked up in this run.
+     */
+    public static boolean hasLookups() {
+        return hits.sum() + misses.sum() > 0;
+    }
+
+    /**
+     * Summarises how often snapshots were reused.
+     *
+     * @return A one line summary for the run output.
+     */
+    public static String getSummary() {
+        long hitCount = hits.sum();
+        long lookups = hitCount + misses.sum();
+        int held;
+        synchronized (snapshots) {
+            held = snapshots.size();
+        }
+        return String.format("Result cache: %d hits, %d misses (%.0f%% hit rate), %d expired, %d evicted, %d snapshots held",
+                hitCount, misses.sum(), lookups == 0 ? 0.0 : 100.0 * hitCount / lookups, expired.sum(), evicted.sum(), held);
+    }
+}
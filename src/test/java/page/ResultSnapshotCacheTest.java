@@ -0,0 +1,58 @@
+package page;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+
+public class ResultSnapshotCacheTest {
+
+    @After
+    public void clearLimit() {
+        System.clearProperty("resultCache.maxResults");
+    }
+
+    private static List<JobSearch.JobSearchResult> results(int count) {
+        return Collections.nCopies(count, new JobSearch.JobSearchResult("Nurse", "Leeds", "Leeds", "", "", "", "", ""));
+    }
+
+    private static int drain(Iterator<JobSearch.JobSearchResult> results) {
+        int count = 0;
+        while (results.hasNext()) {
+            results.next();
+            count++;
+        }
+        return count;
+    }
+
+    @Test
+    public void keepsStreamsReadToTheEnd() {
+        String key = ResultSnapshotCache.streamKey("https://jobs.example/results?keyword=nurse", 1, 10);
+        assertEquals(3, drain(ResultSnapshotCache.recording(key, results(3).iterator())));
+        assertEquals(3, ResultSnapshotCache.get(key).size());
+    }
+
+    @Test
+    public void skipsStreamsClosedEarly() {
+        String key = ResultSnapshotCache.streamKey("https://jobs.example/results?keyword=doctor", 1, 10);
+        ResultSnapshotCache.recording(key, results(3).iterator()).next();
+        assertNull(ResultSnapshotCache.get(key));
+    }
+
+    @Test
+    public void skipsStreamsBeyondTheResultBound() {
+        System.setProperty("resultCache.maxResults", "2");
+        String key = ResultSnapshotCache.streamKey("https://jobs.example/results?keyword=porter", 5, 0);
+        assertEquals(3, drain(ResultSnapshotCache.recording(key, results(3).iterator())));
+        assertNull(ResultSnapshotCache.get(key));
+        String fits = ResultSnapshotCache.streamKey("https://jobs.example/results?keyword=cleaner", 5, 0);
+        drain(ResultSnapshotCache.recording(fits, results(2).iterator()));
+        assertEquals(2, ResultSnapshotCache.get(fits).size());
+    }
+}
@@ -0,0 +1,358 @@
+package page;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.function.IntPredicate;
+
+
+/**
+ * The checks a search makes on its results, compiled once from the search inputs and evaluated in a single pass
+ * over the results as they are streamed, a {@link SearchResultSet} window at a time.
+ * <p>
+ * Text criteria are "at least one result" checks: a result matches when one of the criterion's fields contains one
+ * of its phrases, ignoring case, found with a {@link PhraseMatcher}. Location, employer, contract type and working
+ * pattern are dictionary columns of the result set, so each distinct value is scanned once. Distance and pay range
+ * are "every result" checks on the parsed columns. The outcome of every criterion names the first row that failed it.
+ * <p>
+ * Compiled criteria hold no evaluation state and can be shared between threads.
+ */
+public final class SearchCriteria {
+    private static final int WINDOW_ROWS = 512;
+    private static final Set<Field> DICTIONARY_FIELDS = EnumSet.of(Field.LOCATION, Field.EMPLOYER, Field.CONTRACT_TYPE,
+            Field.WORKING_PATTERN);
+
+    private final List<Criterion> criteria;
+
+    /**
+     * The text fields of a result a phrase can be looked for in.
+     */
+    public enum Field {
+        TITLE, EMPLOYER, LOCATION, DISTANCE, PAY_RANGE, CONTRACT_TYPE, WORKING_PATTERN;
+
+        String of(JobSearch.JobSearchResult result) {
+            return switch (this) {
+                case TITLE -> result.title();
+                case EMPLOYER -> result.employer();
+                case LOCATION -> result.location();
+                case DISTANCE -> result.distance();
+                case PAY_RANGE -> result.payRange();
+                case CONTRACT_TYPE -> result.contractType();
+                case WORKING_PATTERN -> result.workingPattern();
+            };
+        }
+    }
+
+    /**
+     * Whether a criterion must hold for at least one result or for every result.
+     */
+    public enum Kind {
+        ANY_RESULT, EVERY_RESULT
+    }
+
+    /**
+     * The outcome of one criterion over the results.
+     *
+     * @param message         The assertion message of the criterion.
+     * @param kind            Whether one result or every result had to match.
+     * @param passed          Whether the criterion holds.
+     * @param matchingRows    The number of results that match it.
+     * @param firstFailedRow  For an every result criterion, the first row that does not match, otherwise -1.
+     * @param firstFailure    A description of the first row that does not match, or null.
+     */
+    public record Outcome(String message, Kind kind, boolean passed, int matchingRows, int firstFailedRow, String firstFailure) {
+    }
+
+    /**
+     * The outcomes of every criterion over the results read.
+     *
+     * @param rows     The number of results read.
+     * @param outcomes The outcome of every criterion, in the order they were added.
+     */
+    public record Evaluation(int rows, List<Outcome> outcomes) {
+
+        /**
+         * Describes the criteria that failed, one per line, with the first failing row of every result criteria.
+         *
+         * @return The failures, empty when every criterion passed.
+         */
+        public String describeFailures() {
+            StringBuilder failures = new StringBuilder();
+            for (Outcome outcome : outcomes) {
+                if (outcome.passed()) {
+                    continue;
+                }
+                failures.append(failures.isEmpty() ? "" : System.lineSeparator()).append(outcome.message());
+                if (outcome.firstFailedRow() >= 0) {
+                    failures.append(String.format(" (%d of %d results do not match, first at row %d: %s)",
+                            rows - outcome.matchingRows(), rows, outcome.firstFailedRow(), outcome.firstFailure()));
+                } else {
+                    failures.append(String.format(" (none of %d results match)", rows));
+                }
+            }
+            return failures.toString();
+        }
+    }
+
+    private abstract static class Criterion {
+        final String message;
+        final Kind kind;
+
+        Criterion(String message, Kind kind) {
+            this.message = message;
+            this.kind = kind;
+        }
+
+        /**
+         * Binds the criterion to a window of results. Any state the test keeps, e.g. the dictionary memo, belongs to
+         * the returned test, so one compiled criterion can be evaluated by several threads at once.
+         *
+         * @return A test of the rows of the window.
+         */
+        abstract IntPredicate start(SearchResultSet results);
+
+        /**
+         * Describes why a row failed the criterion.
+         */
+        String describe(SearchResultSet results, int row) {
+            return results.get(row).title();
+        }
+    }
+
+    private static final class TextCriterion extends Criterion {
+        private final PhraseMatcher matcher;
+        private final Field[] fields;
+
+        TextCriterion(String message, PhraseMatcher matcher, Set<Field> fields) {
+            super(message, Kind.ANY_RESULT);
+            this.matcher = matcher;
+            this.fields = fields.toArray(new Field[0]);
+        }
+
+        @Override
+        IntPredicate start(SearchResultSet results) {
+            // Per field, set for dictionary fields: the code of each row and whether each code matches
+            int[][] codes = new int[fields.length][];
+            byte[][] memo = new byte[fields.length][]; // 0 not scanned yet, 1 no match, 2 match
+            for (int i = 0; i < fields.length; i++) {
+                if (DICTIONARY_FIELDS.contains(fields[i])) {
+                    codes[i] = codes(results, fields[i]);
+                    memo[i] = new byte[dictionary(results, fields[i]).size()];
+                }
+            }
+            return row -> {
+                JobSearch.JobSearchResult result = results.get(row);
+                for (int i = 0; i < fields.length; i++) {
+                    if (memo[i] == null) {
+                        if (matcher.foundIn(fields[i].of(result))) {
+                            return true;
+                        }
+                        continue;
+                    }
+                    int code = codes[i][row];
+                    if (memo[i][code] == 0) {
+                        memo[i][code] = (byte) (matcher.foundIn(fields[i].of(result)) ? 2 : 1);
+                    }
+                    if (memo[i][code] == 2) {
+                        return true;
+                    }
+                }
+                return false;
+            };
+        }
+
+        private static SearchResultSet.Dictionary dictionary(SearchResultSet results, Field field) {
+            return switch (field) {
+                case LOCATION -> results.locations();
+                case EMPLOYER -> results.employers();
+                case CONTRACT_TYPE -> results.contractTypes();
+                default -> results.workingPatterns();
+            };
+        }
+
+        private static int[] codes(SearchResultSet results, Field field) {
+            return switch (field) {
+                case LOCATION -> results.locationCodes();
+                case EMPLOYER -> results.employerCodes();
+                case CONTRACT_TYPE -> results.contractTypeCodes();
+                default -> results.workingPatternCodes();
+            };
+        }
+    }
+
+    private SearchCriteria(List<Criterion> criteria) {
+        this.criteria = List.copyOf(criteria);
+    }
+
+    /**
+     * Compiles the inputs of a search into the checks the search step makes, with its assertion messages:
+     * the keyword in any text field of a result, the location and employer in at least one result, and every result
+     * within the distance (when a location is given) and overlapping the pay range. Empty inputs are not checked.
+     *
+     * @param parser The parser that reads the searched distance and pay range.
+     * @return The compiled criteria.
+     */
+    public static SearchCriteria forSearch(String keyword, String location, String distance, String employer, String payRange,
+                                           ResultParser parser) {
+        Builder builder = builder();
+        if (!keyword.isEmpty()) {
+            builder.anyResultContains("At least one search details should contain the word: " + keyword,
+                    EnumSet.allOf(Field.class), keyword);
+        }
+        if (!location.isEmpty()) {
+            builder.anyResultContains("At least one location should contain the word: " + location, EnumSet.of(Field.LOCATION), location);
+        }
+        if (!distance.isEmpty() && !location.isEmpty()) {
+            builder.everyResultWithinDistance("All the job location distance should be with in the range of: " + distance,
+                    parser.parseDistanceTenths(distance));
+        }
+        if (!employer.isEmpty()) {
+            builder.anyResultContains("At least one employer should contain the word: " + employer, EnumSet.of(Field.EMPLOYER), employer);
+        }
+        if (!payRange.isEmpty()) {
+            long[] range = new long[2];
+            parser.parsePayRange(payRange, range);
+            builder.everyResultPaysWithin("All the pay range will be within the range of: " + payRange, range[0], range[1]);
+        }
+        return builder.build();
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Collects criteria in the order their outcomes are reported.
+     */
+    public static final class Builder {
+        private final List<Criterion> criteria = new ArrayList<>();
+
+        private Builder() {
+        }
+
+        /**
+         * At least one result has one of the phrases in one of the fields, ignoring case.
+         *
+         * @param message The assertion message.
+         * @param fields  The fields to look in.
+         * @param phrases The phrases, any of which matches.
+         */
+        public Builder anyResultContains(String message, Set<Field> fields, String... phrases) {
+            criteria.add(new TextCriterion(message, PhraseMatcher.of(phrases), EnumSet.copyOf(fields)));
+            return this;
+        }
+
+        /**
+         * Every result has a distance no greater than the limit.
+         *
+         * @param maxDistanceTenths The limit in tenths of a mile.
+         */
+        public Builder everyResultWithinDistance(String message, int maxDistanceTenths) {
+            criteria.add(new Criterion(message, Kind.EVERY_RESULT) {
+                @Override
+                IntPredicate start(SearchResultSet results) {
+                    int[] distances = results.distanceColumn();
+                    return row -> distances[row] != ResultParser.NO_DISTANCE && distances[row] <= maxDistanceTenths;
+                }
+
+                @Override
+                String describe(SearchResultSet results, int row) {
+                    return results.get(row).title() + " at '" + results.get(row).distance() + "'";
+                }
+            });
+            return this;
+        }
+
+        /**
+         * Every result has a pay range overlapping the searched one.
+         *
+         * @param searchLow  The low end of the searched pay range in pence.
+         * @param searchHigh The high end of the searched pay range in pence.
+         */
+        public Builder everyResultPaysWithin(String message, long searchLow, long searchHigh) {
+            criteria.add(new Criterion(message, Kind.EVERY_RESULT) {
+                @Override
+                IntPredicate start(SearchResultSet results) {
+                    long[] lows = results.payLowColumn();
+                    long[] highs = results.payHighColumn();
+                    return row -> Math.max(lows[row], searchLow) <= Math.min(highs[row], searchHigh);
+                }
+
+                @Override
+                String describe(SearchResultSet results, int row) {
+                    return results.get(row).title() + " paying '" + results.get(row).payRange() + "'";
+                }
+            });
+            return this;
+        }
+
+        public SearchCriteria build() {
+            return new SearchCriteria(criteria);
+        }
+    }
+
+    /**
+     * Evaluates every criterion in one pass over results as they are streamed, parsing them into a
+     * {@link SearchResultSet} window of {@value #WINDOW_ROWS} rows at a time, so only one window is held in memory
+     * however many result pages are read. An at least one result criterion stops being evaluated once a result
+     * matches it, and once every criterion is of that kind and has matched, no further windows are read.
+     *
+     * @param results The results, e.g. from {@link SearchJourney#streamSearchResults()}.
+     * @param parser  The parser that reads pay, distance and date posted.
+     * @return The number of results read and the outcome of every criterion, in the order they were added.
+     */
+    public Evaluation evaluate(Iterator<JobSearch.JobSearchResult> results, ResultParser parser) {
+        int count = criteria.size();
+        int[] matching = new int[count];
+        int[] firstFailed = new int[count];
+        String[] firstFailure = new String[count];
+        Arrays.fill(firstFailed, -1);
+        SearchResultSet window = new SearchResultSet(parser);
+        int rows = 0;
+        while (results.hasNext() && (rows == 0 || !allMatched(matching))) {
+            window.clear();
+            while (window.size() < WINDOW_ROWS && results.hasNext()) {
+                window.add(results.next());
+            }
+            IntPredicate[] tests = new IntPredicate[count];
+            for (int i = 0; i < count; i++) {
+                tests[i] = criteria.get(i).start(window);
+            }
+            for (int row = 0; row < window.size(); row++) {
+                for (int i = 0; i < count; i++) {
+                    Criterion criterion = criteria.get(i);
+                    if (criterion.kind == Kind.ANY_RESULT && matching[i] > 0) {
+                        continue;
+                    }
+                    if (tests[i].test(row)) {
+                        matching[i]++;
+                    } else if (firstFailed[i] < 0 && criterion.kind == Kind.EVERY_RESULT) {
+                        firstFailed[i] = rows + row;
+                        firstFailure[i] = criterion.describe(window, row);
+                    }
+                }
+            }
+            rows += window.size();
+        }
+        List<Outcome> outcomes = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Criterion criterion = criteria.get(i);
+            boolean passed = criterion.kind == Kind.ANY_RESULT ? matching[i] > 0 : firstFailed[i] < 0;
+            outcomes.add(new Outcome(criterion.message, criterion.kind, passed, matching[i], firstFailed[i], firstFailure[i]));
+        }
+        return new Evaluation(rows, outcomes);
+    }
+
+    // Whether every criterion is an at least one result criterion that a result has matched
+    private boolean allMatched(int[] matching) {
+        for (int i = 0; i < matching.length; i++) {
+            if (criteria.get(i).kind == Kind.EVERY_RESULT || matching[i] == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,114 @@
+package page;
+
+import org.junit.Test;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+
+public class SearchCriteriaTest {
+    private final ResultParser parser = new ResultParser(Clock.fixed(Instant.parse("2025-07-09T00:00:00Z"), ZoneOffset.UTC));
+
+    private static JobSearch.JobSearchResult result(String title, String employer, String location, String distance, String payRange) {
+        return new JobSearch.JobSearchResult(title, employer, location, distance, payRange, "Permanent", "Full time", "today");
+    }
+
+    @Test
+    public void passesWhenEveryCriterionHolds() {
+        SearchCriteria criteria = SearchCriteria.forSearch("nurse", "Leeds", "+10 Miles", "", "£20,000 to £30,000", parser);
+        SearchCriteria.Evaluation evaluation = criteria.evaluate(List.of(
+                result("Staff Nurse", "Leeds Hospitals", "Leeds, LS1", "3.4", "£25,000 to £28,000 a year"),
+                result("Porter", "Leeds Hospitals", "Leeds, LS2", "9.9", "£22,000 a year")).iterator(), parser);
+        assertEquals(2, evaluation.rows());
+        assertEquals(4, evaluation.outcomes().size());
+        assertEquals("", evaluation.describeFailures());
+    }
+
+    @Test
+    public void namesTheFirstRowThatFailsEveryResultCriteria() {
+        SearchCriteria criteria = SearchCriteria.builder()
+                .anyResultContains("Employer", EnumSet.of(SearchCriteria.Field.EMPLOYER), "Boots")
+                .everyResultWithinDistance("Distance", 50)
+                .build();
+        SearchCriteria.Evaluation evaluation = criteria.evaluate(List.of(
+                result("A", "Leeds", "Leeds", "3", "£1"),
+                result("B", "Leeds", "Leeds", "12", "£1"),
+                result("C", "Leeds", "Leeds", "", "£1")).iterator(), parser);
+        SearchCriteria.Outcome employer = evaluation.outcomes().get(0);
+        SearchCriteria.Outcome distance = evaluation.outcomes().get(1);
+        assertFalse(employer.passed());
+        assertEquals(-1, employer.firstFailedRow());
+        assertFalse(distance.passed());
+        assertEquals(1, distance.matchingRows());
+        assertEquals(1, distance.firstFailedRow());
+        assertEquals("B at '12'", distance.firstFailure());
+        assertEquals("Employer (none of 3 results match)" + System.lineSeparator()
+                + "Distance (2 of 3 results do not match, first at row 1: B at '12')", evaluation.describeFailures());
+    }
+
+    @Test
+    public void stopsReadingOnceEveryAnyResultCriterionMatches() {
+        SearchCriteria criteria = SearchCriteria.builder()
+                .anyResultContains("Keyword", EnumSet.allOf(SearchCriteria.Field.class), "nurse")
+                .build();
+        List<JobSearch.JobSearchResult> results = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            results.add(result(i == 0 ? "Nurse" : "Porter", "", "", "", ""));
+        }
+        SearchCriteria.Evaluation evaluation = criteria.evaluate(results.iterator(), parser);
+        assertTrue(evaluation.outcomes().get(0).passed());
+        assertTrue(evaluation.rows() < results.size());
+    }
+
+    @Test
+    public void matchesDictionaryFieldsAcrossWindows() {
+        SearchCriteria criteria = SearchCriteria.builder()
+                .anyResultContains("Location", EnumSet.of(SearchCriteria.Field.LOCATION), "york")
+                .everyResultPaysWithin("Pay", 0, Long.MAX_VALUE)
+                .build();
+        List<JobSearch.JobSearchResult> results = new ArrayList<>();
+        for (int i = 0; i < 1500; i++) {
+            results.add(result("Job " + i, "", i == 1400 ? "New York" : "Leeds " + (i % 7), "", ""));
+        }
+        SearchCriteria.Evaluation evaluation = criteria.evaluate(results.iterator(), parser);
+        assertEquals(1500, evaluation.rows());
+        assertEquals("", evaluation.describeFailures());
+    }
+
+    @Test
+    public void compiledCriteriaCanBeSharedBetweenThreads() throws Exception {
+        SearchCriteria criteria = SearchCriteria.builder()
+                .anyResultContains("Employer", EnumSet.of(SearchCriteria.Field.EMPLOYER), "trust")
+                .build();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Boolean>> outcomes = new ArrayList<>();
+            for (int task = 0; task < 40; task++) {
+                boolean matching = task % 2 == 0;
+                outcomes.add(executor.submit(() -> {
+                    List<JobSearch.JobSearchResult> results = new ArrayList<>();
+                    for (int i = 0; i < 1000; i++) {
+                        results.add(result("Job", matching && i == 999 ? "NHS Trust" : "Employer " + (i % 50), "", "", ""));
+                    }
+                    return criteria.evaluate(results.iterator(), parser).outcomes().get(0).passed();
+                }));
+            }
+            for (int task = 0; task < outcomes.size(); task++) {
+                assertEquals("Task " + task, task % 2 == 0, outcomes.get(task).get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
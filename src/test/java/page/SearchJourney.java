@@ -0,0 +1,65 @@
+package page;
+
+import utilities.BrowserConfig;
+import utilities.DriverPool;
+import utilities.PageFunctions.AutomationFrameworkException;
+
+import java.util.List;
+import java.util.stream.Stream;
+
+
+/**
+ * The job search journey the step definitions drive. {@link JobSearch} drives it through the browser
+ * and {@link HttpJobSearch} drives it over plain HTTP, so the same steps can run in either mode.
+ */
+public interface SearchJourney {
+
+    /**
+     * Creates the journey for the scenario running on the current thread: through the browser when the
+     * scenario has borrowed a browser session, over HTTP otherwise (-DexecutionMode=http).
+     *
+     * @return The journey to drive.
+     */
+    static SearchJourney forCurrentScenario() throws Exception {
+        if (DriverPool.hasSession()) {
+            return new JobSearch();
+        }
+        return new HttpJobSearch(BrowserConfig.getBaseUrl());
+    }
+
+    /**
+     * Whether scenarios that do not need a browser run over HTTP (-DexecutionMode=http).
+     */
+    static boolean isHttpMode() {
+        return "http".equalsIgnoreCase(System.getProperty("executionMode"));
+    }
+
+    void navigateToSearchPage() throws AutomationFrameworkException;
+
+    /**
+     * Gets the title of the page the journey is on.
+     */
+    String getPageTitle();
+
+    void enterKeywords(String keywords) throws AutomationFrameworkException;
+
+    void enterLocation(String location) throws AutomationFrameworkException;
+
+    void selectDistance(String distance) throws AutomationFrameworkException;
+
+    void clickMoreSearchOptions();
+
+    void enterEmployer(String employer) throws AutomationFrameworkException;
+
+    void selectPayRange(String payRange) throws AutomationFrameworkException;
+
+    void clickSearchButton() throws AutomationFrameworkException;
+
+    void selectSortBySearch(String sortBy) throws AutomationFrameworkException;
+
+    List<JobSearch.JobSearchResult> getSearchResultsDetails() throws AutomationFrameworkException;
+
+    Stream<JobSearch.JobSearchResult> streamSearchResults() throws AutomationFrameworkException;
+
+    Stream<JobSearch.JobSearchResult> streamSearchResults(int maxPages, int maxResults) throws AutomationFrameworkException;
+}
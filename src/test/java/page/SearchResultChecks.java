@@ -0,0 +1,54 @@
+package page;
+
+import java.util.Iterator;
+
+
+/**
+ * Checks of job search results that are not search criteria, such as their sort order.
+ * Kept apart from the step definitions so they can be reused and benchmarked without a browser.
+ * The checks made against the search inputs are compiled into {@link SearchCriteria}.
+ */
+public final class SearchResultChecks {
+
+    private SearchResultChecks() {
+    }
+
+    /**
+     * Where dates posted first fall out of newest first order.
+     *
+     * @param results          The number of results read.
+     * @param datedResults     The number of those results whose date posted could be parsed.
+     * @param unsortedIndex    The index, among the dated results, of the first date older than the date after it, or -1.
+     * @param unsortedEpochDay That date as an epoch day, or {@link ResultParser#NO_DATE} when the dates are sorted.
+     * @param nextEpochDay     The date after it as an epoch day, or {@link ResultParser#NO_DATE} when the dates are sorted.
+     */
+    public record DateOrder(int results, int datedResults, int unsortedIndex, int unsortedEpochDay, int nextEpochDay) {
+    }
+
+    /**
+     * Checks that dates posted are in newest first order as the results stream past, comparing across page boundaries
+     * and skipping dates that cannot be parsed. Stops reading at the first date out of order.
+     *
+     * @param results The results, in page order.
+     * @param parser  The parser that reads the dates posted.
+     * @return Where the dates first fall out of order, if they do.
+     */
+    public static DateOrder checkNewestFirst(Iterator<JobSearch.JobSearchResult> results, ResultParser parser) {
+        int read = 0;
+        int dated = 0;
+        int previous = ResultParser.NO_DATE;
+        while (results.hasNext()) {
+            int epochDay = parser.parseEpochDay(results.next().datePosted());
+            read++;
+            if (epochDay == ResultParser.NO_DATE) {
+                continue;
+            }
+            if (dated > 0 && previous < epochDay) {
+                return new DateOrder(read, dated + 1, dated - 1, previous, epochDay);
+            }
+            previous = epochDay;
+            dated++;
+        }
+        return new DateOrder(read, dated, -1, ResultParser.NO_DATE, ResultParser.NO_DATE);
+    }
+}
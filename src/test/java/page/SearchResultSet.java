@@ -0,0 +1,172 @@
+package page;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+
+/**
+ * Search results held column by column, with the text each check needs parsed once as the results are read.
+ * <p>
+ * Next to the raw {@link JobSearch.JobSearchResult} records, every row keeps its pay range in pence and its distance
+ * in tenths of a mile in primitive arrays. Locations, employers, contract types
+ * and working patterns repeat across results, so they are stored as codes into per-column dictionaries, and a
+ * "contains" check runs once per distinct value.
+ * <p>
+ * A set can be {@link #clear() cleared} and refilled, so that results streamed across many pages are checked a
+ * window at a time rather than all held in memory at once.
+ * <p>
+ * Instances are built and read by a single scenario thread.
+ */
+public final class SearchResultSet {
+    private static final int INITIAL_CAPACITY = 32;
+
+    private final ResultParser parser;
+    private final long[] payRangeBuffer = new long[2];
+    private int size;
+    private JobSearch.JobSearchResult[] results = new JobSearch.JobSearchResult[INITIAL_CAPACITY];
+    private long[] payLow = new long[INITIAL_CAPACITY];
+    private long[] payHigh = new long[INITIAL_CAPACITY];
+    private int[] distanceTenths = new int[INITIAL_CAPACITY];
+    private int[] locationCode = new int[INITIAL_CAPACITY];
+    private int[] employerCode = new int[INITIAL_CAPACITY];
+    private int[] contractTypeCode = new int[INITIAL_CAPACITY];
+    private int[] workingPatternCode = new int[INITIAL_CAPACITY];
+    private final Dictionary locations = new Dictionary();
+    private final Dictionary employers = new Dictionary();
+    private final Dictionary contractTypes = new Dictionary();
+    private final Dictionary workingPatterns = new Dictionary();
+
+    /**
+     * The distinct values of a text column, each with a code numbered from 0 in the order first seen.
+     */
+    static final class Dictionary {
+        private final Map<String, Integer> codes = new HashMap<>();
+
+        int code(String value) {
+            return codes.computeIfAbsent(value == null ? "" : value, key -> codes.size());
+        }
+
+        int size() {
+            return codes.size();
+        }
+
+        void clear() {
+            codes.clear();
+        }
+    }
+
+    /**
+     * @param parser The parser that reads pay and distance, usually {@link ResultParser#forRun()}.
+     */
+    public SearchResultSet(ResultParser parser) {
+        this.parser = parser;
+    }
+
+    /**
+     * Appends a result, parsing its columns.
+     */
+    public void add(JobSearch.JobSearchResult result) {
+        if (size == results.length) {
+            grow();
+        }
+        results[size] = result;
+        parser.parsePayRange(result.payRange(), payRangeBuffer);
+        payLow[size] = payRangeBuffer[0];
+        payHigh[size] = payRangeBuffer[1];
+        distanceTenths[size] = parser.parseDistanceTenths(result.distance());
+        locationCode[size] = locations.code(result.location());
+        employerCode[size] = employers.code(result.employer());
+        contractTypeCode[size] = contractTypes.code(result.contractType());
+        workingPatternCode[size] = workingPatterns.code(result.workingPattern());
+        size++;
+    }
+
+    /**
+     * Removes every result and the dictionary values, keeping the capacity of the columns.
+     */
+    public void clear() {
+        Arrays.fill(results, 0, size, null);
+        size = 0;
+        locations.clear();
+        employers.clear();
+        contractTypes.clear();
+        workingPatterns.clear();
+    }
+
+    private void grow() {
+        int capacity = results.length * 2;
+        results = Arrays.copyOf(results, capacity);
+        payLow = Arrays.copyOf(payLow, capacity);
+        payHigh = Arrays.copyOf(payHigh, capacity);
+        distanceTenths = Arrays.copyOf(distanceTenths, capacity);
+        locationCode = Arrays.copyOf(locationCode, capacity);
+        employerCode = Arrays.copyOf(employerCode, capacity);
+        contractTypeCode = Arrays.copyOf(contractTypeCode, capacity);
+        workingPatternCode = Arrays.copyOf(workingPatternCode, capacity);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Gets the raw result of a row.
+     */
+    public JobSearch.JobSearchResult get(int row) {
+        return results[checkRow(row)];
+    }
+
+    private int checkRow(int row) {
+        if (row < 0 || row >= size) {
+            throw new IndexOutOfBoundsException("Row " + row + " of " + size + " results");
+        }
+        return row;
+    }
+
+    // Column access for SearchCriteria
+
+    long[] payLowColumn() {
+        return payLow;
+    }
+
+    long[] payHighColumn() {
+        return payHigh;
+    }
+
+    int[] distanceColumn() {
+        return distanceTenths;
+    }
+
+    int[] locationCodes() {
+        return locationCode;
+    }
+
+    int[] employerCodes() {
+        return employerCode;
+    }
+
+    int[] contractTypeCodes() {
+        return contractTypeCode;
+    }
+
+    int[] workingPatternCodes() {
+        return workingPatternCode;
+    }
+
+    Dictionary locations() {
+        return locations;
+    }
+
+    Dictionary employers() {
+        return employers;
+    }
+
+    Dictionary contractTypes() {
+        return contractTypes;
+    }
+
+    Dictionary workingPatterns() {
+        return workingPatterns;
+    }
+}
@@ -0,0 +1,211 @@
+package runner;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+
+/**
+ * The failed scenarios of a Cucumber run, as written by its rerun: plugin, and their classification once they have
+ * been run again in the same JVM.
+ * <p>
+ * A scenario that passes when it is run again is flaky, one that fails every attempt is deterministic. Every
+ * classification is added to cucumber-reports/metrics/flakes.tsv with the run id, so the summary can say how often
+ * each scenario has been flaky or failed in the last -Drerun.historyRuns runs (default 20). A scenario that fails
+ * every attempt today but was flaky before is most likely still flaky; one that fails every time is broken.
+ */
+final class FailureReruns {
+    static final Path RERUN_DIRECTORY = Path.of("cucumber-reports", "rerun");
+    private static final Path HISTORY = Path.of("cucumber-reports", "metrics", "flakes.tsv");
+    private static final String HEADER = "run\tscenario\toutcome";
+    private static final String WORKER_HISTORY_SUFFIX = "-flakes.tsv";
+    private static final String RUN_MARKER = "*"; // The scenario of the row every rerun stage adds, to count the runs
+    private static final String FLAKY = "flaky";
+    private static final String FAILED = "failed";
+    // Windows paths have a colon after the drive letter, so the feature ends at the first colon before a line number
+    private static final Pattern LOCATIONS = Pattern.compile("^(.*?\\.feature)((?::\\d+)+)$");
+
+    private FailureReruns() {
+    }
+
+    /**
+     * Gets the file the rerun: plugin writes the failed scenarios of a Cucumber run to.
+     *
+     * @param label   The run, e.g. suite, batch-0001 or worker-2-suite.
+     * @param attempt 0 for the first run, then 1 and onwards for the reruns.
+     */
+    static Path failedFile(String label, int attempt) throws IOException {
+        Files.createDirectories(RERUN_DIRECTORY);
+        return RERUN_DIRECTORY.resolve(label + (attempt == 0 ? "" : "-attempt-" + attempt) + ".txt");
+    }
+
+    /**
+     * Reads the scenarios of a rerun file, where every line is a feature file followed by the lines of its failed
+     * scenarios, e.g. resources/features/nhs_job_search.feature:22:24.
+     *
+     * @return The failed scenarios keyed like the step metrics, by feature file name and line, e.g.
+     * nhs_job_search.feature:22, or by dataset row. Empty when the file is missing or empty.
+     */
+    static Set<String> read(Path rerunFile) throws IOException {
+        Set<String> scenarios = new LinkedHashSet<>();
+        if (!Files.exists(rerunFile)) {
+            return scenarios;
+        }
+        for (String line : Files.readAllLines(rerunFile, StandardCharsets.UTF_8)) {
+            Matcher location = LOCATIONS.matcher(line.trim());
+            if (location.matches()) {
+                String feature = location.group(1).substring(Math.max(location.group(1).lastIndexOf('/'), location.group(1).lastIndexOf('\\')) + 1);
+                for (String number : location.group(2).substring(1).split(":")) {
+                    scenarios.add(ScenarioDataset.scenarioKey(feature + ":" + number));
+                }
+            }
+        }
+        return scenarios;
+    }
+
+    /**
+     * Adds the outcome of a rerun stage to the history: the scenarios that passed on a rerun are flaky, the ones
+     * still failing after the last attempt failed. A worker process writes to a history of its own, which the
+     * runner that launched it adds to flakes.tsv with {@link #collectWorkerHistories(Path)}, so that only one
+     * process writes the shared file.
+     *
+     * @param runId        The step metrics run id, shared by the batches and workers of the run.
+     * @param worker       The --worker number, or null when not a worker.
+     * @param failedFirst  The scenarios that failed the first run.
+     * @param stillFailing The scenarios that failed the last attempt.
+     */
+    static void record(String runId, String worker, Set<String> failedFirst, Set<String> stillFailing) throws IOException {
+        Path history = worker == null ? HISTORY : WorkerShards.WORKER_DIRECTORY.resolve("worker-" + worker + WORKER_HISTORY_SUFFIX);
+        Files.createDirectories(history.getParent());
+        List<String> lines = new ArrayList<>();
+        if (!Files.exists(history)) {
+            lines.add(HEADER);
+        }
+        lines.add(String.join("\t", runId, RUN_MARKER, "run"));
+        for (String scenario : failedFirst) {
+            lines.add(String.join("\t", runId, scenario, stillFailing.contains(scenario) ? FAILED : FLAKY));
+        }
+        Files.write(history, lines, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    /**
+     * Adds the histories the worker processes of a run wrote to flakes.tsv, once they have all finished.
+     *
+     * @param workerDirectory The directory the workers wrote to, e.g. cucumber-reports/workers.
+     */
+    static void collectWorkerHistories(Path workerDirectory) throws IOException {
+        List<Path> histories;
+        try (Stream<Path> files = Files.list(workerDirectory)) {
+            histories = files.filter(path -> path.getFileName().toString().endsWith(WORKER_HISTORY_SUFFIX)).sorted().toList();
+        }
+        if (histories.isEmpty()) {
+            return;
+        }
+        Files.createDirectories(HISTORY.getParent());
+        List<String> lines = new ArrayList<>();
+        if (!Files.exists(HISTORY)) {
+            lines.add(HEADER);
+        }
+        for (Path history : histories) {
+            Files.readAllLines(history, StandardCharsets.UTF_8).stream().filter(row -> !row.equals(HEADER)).forEach(lines::add);
+        }
+        Files.write(HISTORY, lines, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    /**
+     * Keeps the last -Drerun.historyRuns runs of the history. Worker processes leave this to the runner that
+     * launched them, so only one process rewrites the file.
+     */
+    static void trimHistory() throws IOException {
+        if (!Files.exists(HISTORY)) {
+            return;
+        }
+        List<String> rows = Files.readAllLines(HISTORY, StandardCharsets.UTF_8);
+        List<String> keptRuns = lastRuns(rows);
+        List<String> kept = new ArrayList<>(List.of(HEADER));
+        for (String row : rows) {
+            String[] fields = row.split("\t", -1);
+            if (fields.length == 3 && !row.equals(HEADER) && keptRuns.contains(fields[0])) {
+                kept.add(row);
+            }
+        }
+        if (kept.size() < rows.size()) {
+            Files.write(HISTORY, kept, StandardCharsets.UTF_8);
+        }
+    }
+
+    private static List<String> lastRuns(List<String> rows) {
+        Set<String> runs = new LinkedHashSet<>();
+        for (String row : rows) {
+            String[] fields = row.split("\t", -1);
+            if (fields.length == 3 && fields[1].equals(RUN_MARKER)) {
+                runs.add(fields[0]);
+            }
+        }
+        List<String> ordered = new ArrayList<>(runs);
+        int historyRuns = Math.max(1, Integer.getInteger("rerun.historyRuns", 20));
+        return ordered.subList(Math.max(0, ordered.size() - historyRuns), ordered.size());
+    }
+
+    /**
+     * Whether any scenario of the run failed its first attempt.
+     */
+    static boolean hasFailures(String runId) throws IOException {
+        return Files.exists(HISTORY) && Files.readAllLines(HISTORY, StandardCharsets.UTF_8).stream()
+                .map(row -> row.split("\t", -1))
+                .anyMatch(fields -> fields.length == 3 && fields[0].equals(runId) && !fields[1].equals(RUN_MARKER));
+    }
+
+    /**
+     * Describes the scenarios of a run that failed their first attempt, flaky ones first, with how often each has
+     * been flaky or failed in the history.
+     *
+     * @param runId The step metrics run id.
+     * @return The summary for the run output.
+     */
+    static String getSummary(String runId) throws IOException {
+        List<String> rows = Files.exists(HISTORY) ? Files.readAllLines(HISTORY, StandardCharsets.UTF_8) : List.of();
+        List<String> runs = lastRuns(rows);
+        List<String[]> outcomes = new ArrayList<>(); // Scenario and outcome, for every failure of this run
+        Map<String, Set<String>> flakyRuns = new HashMap<>();
+        Map<String, Set<String>> failedRuns = new HashMap<>();
+        for (String row : rows) {
+            String[] fields = row.split("\t", -1);
+            if (fields.length != 3 || row.equals(HEADER) || fields[1].equals(RUN_MARKER) || !runs.contains(fields[0])) {
+                continue;
+            }
+            (fields[2].equals(FLAKY) ? flakyRuns : failedRuns).computeIfAbsent(fields[1], scenario -> new HashSet<>()).add(fields[0]);
+            if (fields[0].equals(runId)) {
+                outcomes.add(new String[]{fields[1], fields[2]});
+            }
+        }
+        long flaky = outcomes.stream().filter(outcome -> outcome[1].equals(FLAKY)).count();
+        StringBuilder summary = new StringBuilder(String.format("Reruns: %d scenarios failed, %d passed on rerun (flaky), %d failed every attempt (deterministic)%n",
+                outcomes.size(), flaky, outcomes.size() - flaky));
+        for (String kind : List.of(FLAKY, FAILED)) {
+            for (String[] outcome : outcomes) {
+                if (!outcome[1].equals(kind)) {
+                    continue;
+                }
+                int flakyCount = flakyRuns.getOrDefault(outcome[0], Set.of()).size();
+                String note = kind.equals(FAILED) && flakyCount > 0 ? ", has been flaky before" : "";
+                summary.append(String.format("  %-14s %s (flaky in %d, failed in %d of the last %d runs%s)%n",
+                        kind.equals(FLAKY) ? "FLAKY" : "DETERMINISTIC", outcome[0], flakyCount,
+                        failedRuns.getOrDefault(outcome[0], Set.of()).size(), runs.size(), note));
+            }
+        }
+        return summary.toString();
+    }
+}
@@ -0,0 +1,393 @@
+package runner;
+
+import page.HttpJobSearch;
+import page.JobSearch;
+import page.PageTimings;
+import page.SearchJourney;
+import utilities.BrowserConfig;
+import utilities.DriverPool;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+
+/**
+ * Runs the job search journey as a load test: many concurrent virtual users, each a virtual thread, repeat the
+ * search of the feature file's Examples rows (search page, keywords, location, distance, employer, pay range,
+ * search, sort) against the environment under test, usually the local stand-in site.
+ * <p>
+ * Users drive the site over HTTP by default (-Dload.mode=http), or through a bounded pool of warm browser
+ * sessions (-Dload.mode=browser, -Dload.sessions, default 4), which users queue for. Browser sessions are always
+ * headless: -DbrowserName=Firefox runs HeadlessFirefox, and the default is HeadlessChrome. Users start evenly over
+ * -Dload.rampUpSeconds (default 10) and stop after -Dload.durationSeconds (default 60), counted from the first
+ * start. With -Dload.targetRps the journeys started per second are paced to that rate across all users,
+ * otherwise every user starts its next journey as soon as the last one finishes.
+ * <p>
+ * Progress is printed every -Dload.reportSeconds (default 5), followed by the throughput, error rate and
+ * p50/p90/p99 latency of every step of the journey and a latency histogram of the whole journey.
+ * <p>
+ * Usage: java -DenvironmentLink=LOCAL_STUB -Dload.users=200 -cp NHSJobsAutomation-1.0.jar runner.LoadRunner
+ */
+public class LoadRunner {
+    private static final String DEFAULT_FEATURE = "resources/features/nhs_job_search.feature";
+    private static final List<String> OPERATIONS = List.of("search page", "search", "sort", "journey");
+    private static final long[] HISTOGRAM_BANDS_MILLIS = {10, 25, 50, 100, 250, 500, 1_000, 2_500, 5_000, 10_000};
+
+    private final boolean browserMode;
+    private final String baseUrl;
+    private final List<SearchData> searches;
+    private final Map<String, OperationStatistics> statistics = new LinkedHashMap<>();
+    private final Map<String, LongAdder> errorMessages = new ConcurrentHashMap<>();
+    private final AtomicLong iterations = new AtomicLong();
+    private final AtomicLong nextStartNanos = new AtomicLong();
+    private final long paceNanos;
+
+    /**
+     * One row of the Examples table of the search scenario.
+     */
+    record SearchData(String keyword, String location, String distance, String employer, String payRange, String sortBy) {
+    }
+
+    /**
+     * Latency histogram with about 3% precision: 64 linear buckets of microseconds, then 32 buckets for every
+     * power of two. Recording is lock free, so every virtual user records into the same histogram.
+     */
+    static final class LatencyHistogram {
+        private static final int LINEAR_BUCKETS = 64;
+        private static final int SUB_BUCKETS = 32;
+        private final AtomicLongArray counts = new AtomicLongArray(LINEAR_BUCKETS + (63 - 6) * SUB_BUCKETS);
+        private final LongAdder total = new LongAdder();
+        private final AtomicLong maxMicros = new AtomicLong();
+
+        void record(long nanos) {
+            long micros = Math.max(0, nanos / 1_000);
+            counts.incrementAndGet(index(micros));
+            total.increment();
+            maxMicros.accumulateAndGet(micros, Math::max);
+        }
+
+        private static int index(long micros) {
+            if (micros < LINEAR_BUCKETS) {
+                return (int) micros;
+            }
+            int exponent = 63 - Long.numberOfLeadingZeros(micros); // 6 or more
+            int subBucket = (int) (micros >> (exponent - 5)); // 32 to 63
+            return LINEAR_BUCKETS + (exponent - 6) * SUB_BUCKETS + subBucket - SUB_BUCKETS;
+        }
+
+        private static long lowerBoundMicros(int index) {
+            if (index < LINEAR_BUCKETS) {
+                return index;
+            }
+            int exponent = (index - LINEAR_BUCKETS) / SUB_BUCKETS + 6;
+            long subBucket = (index - LINEAR_BUCKETS) % SUB_BUCKETS + SUB_BUCKETS;
+            return subBucket << (exponent - 5);
+        }
+
+        long count() {
+            return total.sum();
+        }
+
+        /**
+         * Nearest-rank percentile, to the lower bound of its bucket.
+         */
+        double percentileMillis(double percentile) {
+            long count = count();
+            if (count == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+            long seen = 0;
+            for (int i = 0; i < counts.length(); i++) {
+                seen += counts.get(i);
+                if (seen >= rank) {
+                    return lowerBoundMicros(i) / 1_000.0;
+                }
+            }
+            return maxMillis();
+        }
+
+        double maxMillis() {
+            return maxMicros.get() / 1_000.0;
+        }
+
+        /**
+         * Counts the recordings below the given latency, to the precision of the buckets.
+         */
+        long countBelowMillis(long millis) {
+            long limitMicros = millis * 1_000;
+            long below = 0;
+            for (int i = 0; i < counts.length() && lowerBoundMicros(i) < limitMicros; i++) {
+                below += counts.get(i);
+            }
+            return below;
+        }
+    }
+
+    /**
+     * Latencies and errors of one step of the journey.
+     */
+    static final class OperationStatistics {
+        private final LatencyHistogram latencies = new LatencyHistogram();
+        private final LongAdder errors = new LongAdder();
+    }
+
+    LoadRunner(boolean browserMode, String baseUrl, List<SearchData> searches, double targetRps) {
+        this.browserMode = browserMode;
+        this.baseUrl = baseUrl;
+        this.searches = searches;
+        this.paceNanos = targetRps > 0 ? (long) (1_000_000_000L / targetRps) : 0;
+        for (String operation : OPERATIONS) {
+            statistics.put(operation, new OperationStatistics());
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        boolean browserMode = "browser".equalsIgnoreCase(System.getProperty("load.mode", "http"));
+        int users = Integer.getInteger("load.users", 50);
+        int sessions = Integer.getInteger("load.sessions", 4);
+        long rampUpSeconds = Long.getLong("load.rampUpSeconds", 10L);
+        long durationSeconds = Long.getLong("load.durationSeconds", 60L);
+        double targetRps = Double.parseDouble(System.getProperty("load.targetRps", "0"));
+        Path feature = Path.of(System.getProperty("load.feature", DEFAULT_FEATURE));
+
+        List<SearchData> searches = readExamples(feature);
+        if (searches.isEmpty()) {
+            throw new IllegalArgumentException("No Examples rows found in " + feature);
+        }
+        String baseUrl = BrowserConfig.getBaseUrl(); // Also starts the stand-in site for LOCAL_STUB
+        if (browserMode) {
+            // Users take turns on a few warm sessions instead of launching a browser per journey
+            DriverPool.setMaxSessions(sessions);
+            System.setProperty("reuseBrowser", "true");
+            String browserName = System.getProperty("browserName", "Chrome");
+            if (!browserName.startsWith("Headless")) {
+                System.setProperty("browserName", "Headless" + browserName);
+            }
+            if (System.getProperty("maxSessionUses") == null) {
+                System.setProperty("maxSessionUses", String.valueOf(Integer.MAX_VALUE));
+            }
+        }
+        System.out.printf("Load test of %s in %s mode: %d users%s, %d s (%d s ramp-up), %s, %d searches from %s%n", baseUrl,
+                browserMode ? "browser" : "http", users, browserMode ? " on " + sessions + " browser sessions" : "",
+                durationSeconds, rampUpSeconds, targetRps > 0 ? "target " + targetRps + " journeys/s" : "no rate limit",
+                searches.size(), feature);
+        LoadRunner loadRunner = new LoadRunner(browserMode, baseUrl, searches, targetRps);
+        try {
+            loadRunner.run(users, rampUpSeconds, durationSeconds);
+        } finally {
+            if (browserMode) {
+                DriverPool.shutdown();
+            }
+        }
+        System.exit(0);
+    }
+
+    /**
+     * Reads the Examples rows of a feature file, keyed by their header cells.
+     *
+     * @param feature The feature file with the search scenario outline.
+     * @return One entry per Examples row.
+     */
+    static List<SearchData> readExamples(Path feature) throws IOException {
+        List<SearchData> searches = new ArrayList<>();
+        List<String> header = null;
+        for (String line : Files.readAllLines(feature, StandardCharsets.UTF_8)) {
+            String trimmed = line.trim();
+            if (trimmed.startsWith("Examples:")) {
+                header = null;
+            } else if (trimmed.startsWith("|")) {
+                List<String> cells = Arrays.stream(trimmed.substring(1, trimmed.lastIndexOf('|')).split("\\|", -1))
+                        .map(String::trim).toList();
+                if (header == null) {
+                    header = cells;
+                } else {
+                    searches.add(new SearchData(cell(header, cells, "keyword"), cell(header, cells, "location"),
+                            cell(header, cells, "distance"), cell(header, cells, "employer"),
+                            cell(header, cells, "pay_range"), cell(header, cells, "sort_by")));
+                }
+            }
+        }
+        return searches;
+    }
+
+    private static String cell(List<String> header, List<String> cells, String column) {
+        int index = header.indexOf(column);
+        return index < 0 || index >= cells.size() ? "" : cells.get(index);
+    }
+
+    private void run(int users, long rampUpSeconds, long durationSeconds) throws InterruptedException {
+        long start = System.nanoTime();
+        long end = start + TimeUnit.SECONDS.toNanos(durationSeconds);
+        long rampUpNanos = TimeUnit.SECONDS.toNanos(rampUpSeconds);
+        nextStartNanos.set(start);
+        ScheduledExecutorService progress = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "load-progress");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long reportSeconds = Long.getLong("load.reportSeconds", 5L);
+        progress.scheduleAtFixedRate(() -> System.out.println(progressLine(start)), reportSeconds, reportSeconds, TimeUnit.SECONDS);
+        try (ExecutorService virtualUsers = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int user = 0; user < users; user++) {
+                long userStart = start + rampUpNanos * user / users;
+                virtualUsers.submit(() -> runUser(userStart, end));
+            }
+        } finally {
+            progress.shutdownNow();
+        }
+        System.out.print(report((System.nanoTime() - start) / 1e9));
+    }
+
+    private Void runUser(long userStart, long end) throws InterruptedException {
+        sleepUntil(userStart);
+        while (System.nanoTime() < end) {
+            if (paceNanos > 0 && !waitForTurn(end)) {
+                break;
+            }
+            SearchData search = searches.get((int) (iterations.getAndIncrement() % searches.size()));
+            runJourney(search);
+        }
+        return null;
+    }
+
+    // Paces journey starts across all users to the target rate, without letting a backlog build up
+    private boolean waitForTurn(long end) throws InterruptedException {
+        long now = System.nanoTime();
+        long slot = nextStartNanos.getAndUpdate(next -> Math.max(next, now) + paceNanos);
+        slot = Math.max(slot, now);
+        if (slot >= end) {
+            return false;
+        }
+        sleepUntil(slot);
+        return true;
+    }
+
+    private static void sleepUntil(long nanoTime) throws InterruptedException {
+        long remaining = nanoTime - System.nanoTime();
+        if (remaining > 0) {
+            TimeUnit.NANOSECONDS.sleep(remaining);
+        }
+    }
+
+    // One search as the scenario outline runs it; the first failing step ends the journey
+    private void runJourney(SearchData search) {
+        long journeyStart = System.nanoTime();
+        boolean failed = false;
+        String operation = "search page";
+        try {
+            if (browserMode) {
+                DriverPool.borrow();
+            }
+            SearchJourney journey = browserMode ? new JobSearch() : new HttpJobSearch(baseUrl);
+            long start = System.nanoTime();
+            journey.navigateToSearchPage();
+            record(operation, start);
+
+            operation = "search";
+            start = System.nanoTime();
+            journey.enterKeywords(search.keyword());
+            journey.enterLocation(search.location());
+            if (!search.distance().isEmpty() && !search.location().isEmpty()) {
+                journey.selectDistance(search.distance());
+            }
+            journey.clickMoreSearchOptions();
+            journey.enterEmployer(search.employer());
+            journey.selectPayRange(search.payRange());
+            journey.clickSearchButton();
+            record(operation, start);
+
+            if (!search.sortBy().isEmpty()) {
+                operation = "sort";
+                start = System.nanoTime();
+                journey.selectSortBySearch(search.sortBy());
+                record(operation, start);
+            }
+            record("journey", journeyStart);
+        } catch (Exception e) {
+            failed = true;
+            statistics.get(operation).errors.increment();
+            statistics.get("journey").errors.increment();
+            errorMessages.computeIfAbsent(operation + ": " + e.getClass().getSimpleName() + ": " + e.getMessage(),
+                    k -> new LongAdder()).increment();
+        } finally {
+            PageTimings.drainCurrentThread(); // The load test keeps its own latencies
+            if (browserMode) {
+                try {
+                    DriverPool.release(failed);
+                } catch (Exception e) {
+                    System.err.println("Failed to return browser session: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    private void record(String operation, long startNanos) {
+        statistics.get(operation).latencies.record(System.nanoTime() - startNanos);
+    }
+
+    private String progressLine(long start) {
+        OperationStatistics journeys = statistics.get("journey");
+        double seconds = (System.nanoTime() - start) / 1e9;
+        return String.format("%6.0f s: %d journeys (%.1f/s), %d errors, journey p50 %.0f ms, p99 %.0f ms", seconds,
+                journeys.latencies.count(), journeys.latencies.count() / seconds, journeys.errors.sum(),
+                journeys.latencies.percentileMillis(50), journeys.latencies.percentileMillis(99));
+    }
+
+    /**
+     * Builds the end of run report: throughput, error rate and latency percentiles of every step of the journey,
+     * the most frequent errors and a latency histogram of the whole journey.
+     */
+    String report(double elapsedSeconds) {
+        StringBuilder report = new StringBuilder();
+        report.append(String.format("%-12s %9s %7s %8s %8s %8s %8s %8s %8s%n", "step", "count", "errors", "error %",
+                "per s", "p50 ms", "p90 ms", "p99 ms", "max ms"));
+        for (Map.Entry<String, OperationStatistics> operation : statistics.entrySet()) {
+            LatencyHistogram latencies = operation.getValue().latencies;
+            long errors = operation.getValue().errors.sum();
+            long attempts = latencies.count() + errors;
+            report.append(String.format("%-12s %9d %7d %8.2f %8.1f %8.1f %8.1f %8.1f %8.1f%n", operation.getKey(),
+                    latencies.count(), errors, attempts == 0 ? 0 : 100.0 * errors / attempts, latencies.count() / elapsedSeconds,
+                    latencies.percentileMillis(50), latencies.percentileMillis(90), latencies.percentileMillis(99),
+                    latencies.maxMillis()));
+        }
+        errorMessages.entrySet().stream()
+                .sorted((a, b) -> Long.compare(b.getValue().sum(), a.getValue().sum()))
+                .limit(5)
+                .forEach(error -> report.append(String.format("%7d x %s%n", error.getValue().sum(), error.getKey())));
+
+        LatencyHistogram journeys = statistics.get("journey").latencies;
+        if (journeys.count() > 0) {
+            report.append("Journey latency:").append(System.lineSeparator());
+            long below = 0;
+            for (long band : HISTOGRAM_BANDS_MILLIS) {
+                long inBand = journeys.countBelowMillis(band) - below;
+                below += inBand;
+                report.append(histogramLine("< " + band + " ms", inBand, journeys.count()));
+            }
+            report.append(histogramLine(">= " + HISTOGRAM_BANDS_MILLIS[HISTOGRAM_BANDS_MILLIS.length - 1] + " ms",
+                    journeys.count() - below, journeys.count()));
+        }
+        return report.toString();
+    }
+
+    private static String histogramLine(String band, long count, long total) {
+        int width = (int) Math.round(50.0 * count / total);
+        return String.format("%12s %9d %6.1f%% %s%n", band, count, 100.0 * count / total, "#".repeat(width));
+    }
+}
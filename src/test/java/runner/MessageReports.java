@@ -0,0 +1,243 @@
+package runner;
+
+import io.cucumber.htmlformatter.MessagesToHtmlWriter;
+import io.cucumber.messages.types.Envelope;
+import io.cucumber.messages.types.Source;
+import io.cucumber.messages.types.SourceMediaType;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+
+/**
+ * Cucumber message streams (NDJSON, one envelope per line, as written by the message: plugin) merged and rendered
+ * as the Cucumber HTML report.
+ * <p>
+ * Every Cucumber run parses all features and gives their documents and pickles random ids, so the streams of worker
+ * processes that ran different scenarios of the same features disagree on ids. When merging, the first stream's
+ * documents and pickles are kept and the ids the other streams use for the same documents and pickles are mapped to
+ * them, so every feature appears once in the report with the results of all workers. Step definitions, hooks and
+ * parameter types that every stream declares are kept once in the same way.
+ */
+public final class MessageReports {
+    // Envelopes are written as the JSON text they were read as, so the envelope the writer is given is only a placeholder
+    private static final Envelope PLACEHOLDER = Envelope.of(new Source("", "", SourceMediaType.TEXT_X_CUCUMBER_GHERKIN_PLAIN));
+
+    private MessageReports() {
+    }
+
+    /**
+     * Merges the message streams of several Cucumber runs of the same features into one stream.
+     * The merged run starts when the first run started, finishes when the last one finished, and succeeds when
+     * they all succeeded.
+     *
+     * @param inputs The message streams, e.g. one per worker process.
+     * @param output The merged stream to write.
+     */
+    public static void merge(List<Path> inputs, Path output) throws IOException {
+        JSONObject testRunStarted = null;
+        for (Path input : inputs) {
+            JSONObject started = firstMessage(input, "testRunStarted");
+            if (started != null && (testRunStarted == null || compareTimestamps(started, testRunStarted) < 0)) {
+                testRunStarted = started;
+            }
+        }
+
+        Map<String, JSONObject> documents = new HashMap<>(); // By uri
+        Map<String, JSONObject> pickles = new HashMap<>();   // By uri and AST node ids
+        Map<String, String> glue = new HashMap<>();           // Step definition, hook and parameter type ids, by content
+        Set<String> sources = new HashSet<>();
+        JSONObject testRunFinished = null;
+        boolean success = true;
+        boolean metaWritten = false;
+        boolean startWritten = false;
+        try (BufferedWriter writer = Files.newBufferedWriter(output, StandardCharsets.UTF_8)) {
+            for (Path input : inputs) {
+                Map<String, String> ids = new HashMap<>(); // Ids of this stream -> ids of the merged stream
+                try (BufferedReader reader = Files.newBufferedReader(input, StandardCharsets.UTF_8)) {
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        if (line.isBlank()) {
+                            continue;
+                        }
+                        JSONObject envelope = new JSONObject(line);
+                        String type = envelope.keys().next();
+                        JSONObject message = envelope.getJSONObject(type);
+                        switch (type) {
+                            case "meta" -> {
+                                if (metaWritten) {
+                                    continue;
+                                }
+                                metaWritten = true;
+                            }
+                            case "source" -> {
+                                if (!sources.add(message.getString("uri"))) {
+                                    continue;
+                                }
+                            }
+                            case "gherkinDocument" -> {
+                                JSONObject known = documents.putIfAbsent(message.getString("uri"), message);
+                                if (known != null) {
+                                    mapIds(message, known, ids);
+                                    continue;
+                                }
+                            }
+                            case "pickle" -> {
+                                envelope = (JSONObject) remap(envelope, ids);
+                                message = envelope.getJSONObject(type);
+                                String key = message.getString("uri") + " " + message.getJSONArray("astNodeIds");
+                                JSONObject known = pickles.putIfAbsent(key, message);
+                                if (known != null) {
+                                    mapPickleIds(message, known, ids);
+                                    continue;
+                                }
+                            }
+                            case "stepDefinition", "hook", "parameterType" -> {
+                                String id = message.getString("id");
+                                message.remove("id");
+                                String known = glue.putIfAbsent(type + " " + message, id);
+                                message.put("id", id);
+                                if (known != null) {
+                                    ids.put(id, known);
+                                    continue;
+                                }
+                            }
+                            case "testRunStarted" -> {
+                                if (startWritten) {
+                                    continue;
+                                }
+                                startWritten = true;
+                                envelope = new JSONObject().put(type, testRunStarted);
+                            }
+                            case "testRunFinished" -> {
+                                success &= message.optBoolean("success", false);
+                                if (testRunFinished == null || compareTimestamps(message, testRunFinished) > 0) {
+                                    testRunFinished = message;
+                                }
+                                continue;
+                            }
+                            default -> envelope = (JSONObject) remap(envelope, ids);
+                        }
+                        writer.write(envelope.toString());
+                        writer.newLine();
+                    }
+                }
+            }
+            if (testRunFinished != null) {
+                writer.write(new JSONObject().put("testRunFinished", testRunFinished.put("success", success)).toString());
+                writer.newLine();
+            }
+        }
+    }
+
+    /**
+     * Renders a message stream as the Cucumber HTML report, reading it one envelope at a time.
+     *
+     * @param messages The message stream.
+     * @param html     The HTML file to write.
+     */
+    public static void writeHtml(Path messages, Path html) throws IOException {
+        writeHtml(List.of(messages), html);
+    }
+
+    /**
+     * Renders a message stream split over several files as the Cucumber HTML report, reading it one envelope at a time.
+     *
+     * @param messages The files of the message stream, in order.
+     * @param html     The HTML file to write.
+     */
+    public static void writeHtml(List<Path> messages, Path html) throws IOException {
+        String[] current = new String[1];
+        MessagesToHtmlWriter.Serializer rawJson = (writer, envelope) -> writer.write(current[0]);
+        try (OutputStream out = Files.newOutputStream(html);
+             MessagesToHtmlWriter writer = new MessagesToHtmlWriter(out, rawJson)) {
+            for (Path file : messages) {
+                try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        if (!line.isBlank()) {
+                            current[0] = line.replace("</", "<\\/"); // The JSON is inlined in a script element
+                            writer.write(PLACEHOLDER);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private static JSONObject firstMessage(Path input, String type) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(input, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith("{\"" + type + "\"")) {
+                    return new JSONObject(line).getJSONObject(type);
+                }
+            }
+        }
+        return null;
+    }
+
+    private static int compareTimestamps(JSONObject first, JSONObject second) {
+        JSONObject a = first.getJSONObject("timestamp");
+        JSONObject b = second.getJSONObject("timestamp");
+        int bySeconds = Long.compare(a.getLong("seconds"), b.getLong("seconds"));
+        return bySeconds != 0 ? bySeconds : Long.compare(a.getLong("nanos"), b.getLong("nanos"));
+    }
+
+    // Gherkin documents of the same source have the same shape, so their ids correspond by position
+    private static void mapIds(Object value, Object known, Map<String, String> ids) {
+        if (value instanceof JSONObject object && known instanceof JSONObject knownObject) {
+            for (String key : object.keySet()) {
+                if (key.equals("id") && knownObject.has("id")) {
+                    ids.put(object.getString("id"), knownObject.getString("id"));
+                } else if (knownObject.has(key)) {
+                    mapIds(object.get(key), knownObject.get(key), ids);
+                }
+            }
+        } else if (value instanceof JSONArray array && known instanceof JSONArray knownArray) {
+            for (int i = 0; i < Math.min(array.length(), knownArray.length()); i++) {
+                mapIds(array.get(i), knownArray.get(i), ids);
+            }
+        }
+    }
+
+    private static void mapPickleIds(JSONObject pickle, JSONObject known, Map<String, String> ids) {
+        ids.put(pickle.getString("id"), known.getString("id"));
+        JSONArray steps = pickle.getJSONArray("steps");
+        JSONArray knownSteps = known.getJSONArray("steps");
+        for (int i = 0; i < Math.min(steps.length(), knownSteps.length()); i++) {
+            ids.put(steps.getJSONObject(i).getString("id"), knownSteps.getJSONObject(i).getString("id"));
+        }
+    }
+
+    // Replaces every string that is an id of the current stream with the merged stream's id
+    private static Object remap(Object value, Map<String, String> ids) {
+        if (ids.isEmpty()) {
+            return value;
+        }
+        if (value instanceof JSONObject object) {
+            for (String key : object.keySet()) {
+                object.put(key, remap(object.get(key), ids));
+            }
+        } else if (value instanceof JSONArray array) {
+            for (int i = 0; i < array.length(); i++) {
+                array.put(i, remap(array.get(i), ids));
+            }
+        } else if (value instanceof String text) {
+            return ids.getOrDefault(text, text);
+        }
+        return value;
+    }
+}
@@ -0,0 +1,100 @@
+package runner;
+
+import org.json.JSONObject;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+
+public class MessageReportsTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    // The messages of a run of one feature with two pickles, where the ids are prefixed to tell the runs apart
+    private Path stream(String name, String id, long startSeconds, long finishSeconds, boolean success, int... ranPickles)
+            throws IOException {
+        StringBuilder lines = new StringBuilder();
+        lines.append("{\"meta\":{\"protocolVersion\":\"24\"}}\n");
+        lines.append("{\"source\":{\"uri\":\"search.feature\",\"data\":\"Feature: Search\"}}\n");
+        lines.append(String.format("{\"gherkinDocument\":{\"uri\":\"search.feature\",\"feature\":{\"name\":\"Search\",\"children\":["
+                + "{\"scenario\":{\"id\":\"%1$s-s1\",\"steps\":[{\"id\":\"%1$s-st1\"}]}},"
+                + "{\"scenario\":{\"id\":\"%1$s-s2\",\"steps\":[{\"id\":\"%1$s-st2\"}]}}]}}}%n", id));
+        for (int pickle = 1; pickle <= 2; pickle++) {
+            lines.append(String.format("{\"pickle\":{\"id\":\"%1$s-p%2$d\",\"uri\":\"search.feature\",\"astNodeIds\":[\"%1$s-s%2$d\"],"
+                    + "\"steps\":[{\"id\":\"%1$s-ps%2$d\",\"astNodeIds\":[\"%1$s-st%2$d\"]}]}}%n", id, pickle));
+        }
+        lines.append(String.format("{\"stepDefinition\":{\"id\":\"%s-sd\",\"pattern\":{\"source\":\"I search\"}}}%n", id));
+        lines.append(String.format("{\"testRunStarted\":{\"timestamp\":{\"seconds\":%d,\"nanos\":0}}}%n", startSeconds));
+        for (int pickle : ranPickles) {
+            lines.append(String.format("{\"testCase\":{\"id\":\"%1$s-tc%2$d\",\"pickleId\":\"%1$s-p%2$d\",\"testSteps\":"
+                    + "[{\"id\":\"%1$s-ts%2$d\",\"pickleStepId\":\"%1$s-ps%2$d\",\"stepDefinitionIds\":[\"%1$s-sd\"]}]}}%n", id, pickle));
+        }
+        lines.append(String.format("{\"testRunFinished\":{\"success\":%b,\"timestamp\":{\"seconds\":%d,\"nanos\":0}}}%n",
+                success, finishSeconds));
+        Path file = folder.getRoot().toPath().resolve(name);
+        Files.writeString(file, lines, StandardCharsets.UTF_8);
+        return file;
+    }
+
+    private static List<JSONObject> messages(Path file, String type) throws IOException {
+        return Files.readAllLines(file, StandardCharsets.UTF_8).stream()
+                .map(JSONObject::new).filter(envelope -> envelope.has(type)).map(envelope -> envelope.getJSONObject(type)).toList();
+    }
+
+    @Test
+    public void mergesWorkersIntoOneRunWithTheFirstStreamsIds() throws IOException {
+        Path merged = folder.getRoot().toPath().resolve("merged.ndjson");
+        MessageReports.merge(List.of(stream("worker-1.ndjson", "a", 20, 30, true, 1),
+                stream("worker-2.ndjson", "b", 10, 40, false, 2)), merged);
+
+        assertEquals(1, messages(merged, "meta").size());
+        assertEquals(1, messages(merged, "source").size());
+        assertEquals(1, messages(merged, "gherkinDocument").size());
+        assertEquals(1, messages(merged, "stepDefinition").size());
+        assertEquals(List.of("a-p1", "a-p2"), messages(merged, "pickle").stream().map(pickle -> pickle.getString("id")).toList());
+
+        List<JSONObject> testCases = messages(merged, "testCase");
+        assertEquals(2, testCases.size());
+        JSONObject second = testCases.get(1);
+        assertEquals("b-tc2", second.getString("id"));
+        assertEquals("a-p2", second.getString("pickleId"));
+        JSONObject step = second.getJSONArray("testSteps").getJSONObject(0);
+        assertEquals("a-ps2", step.getString("pickleStepId"));
+        assertEquals("a-sd", step.getJSONArray("stepDefinitionIds").getString(0));
+        assertFalse(Files.readString(merged).contains("\"b-p"));
+
+        assertEquals(10, messages(merged, "testRunStarted").get(0).getJSONObject("timestamp").getLong("seconds"));
+        List<JSONObject> finished = messages(merged, "testRunFinished");
+        assertEquals(1, finished.size());
+        assertEquals(40, finished.get(0).getJSONObject("timestamp").getLong("seconds"));
+        assertFalse(finished.get(0).getBoolean("success"));
+    }
+
+    @Test
+    public void succeedsWhenEveryWorkerSucceeded() throws IOException {
+        Path merged = folder.getRoot().toPath().resolve("merged.ndjson");
+        MessageReports.merge(List.of(stream("worker-1.ndjson", "a", 1, 2, true, 1, 2),
+                stream("worker-2.ndjson", "b", 1, 3, true)), merged);
+        assertTrue(messages(merged, "testRunFinished").get(0).getBoolean("success"));
+        assertEquals(2, messages(merged, "testCase").size());
+    }
+
+    @Test
+    public void rendersTheHtmlReport() throws IOException {
+        Path html = folder.getRoot().toPath().resolve("report.html");
+        MessageReports.writeHtml(stream("worker-1.ndjson", "a", 1, 2, true, 1), html);
+        String report = Files.readString(html);
+        assertTrue(report.contains("\"pickleId\":\"a-p1\""));
+    }
+}
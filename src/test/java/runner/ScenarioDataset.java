@@ -0,0 +1,453 @@
+package runner;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+
+/**
+ * Rows of an external dataset (CSV with a header line, or JSON Lines) that drive the Scenario Outline of a feature
+ * file in place of its Examples table.
+ * <p>
+ * The dataset is read lazily, one row at a time, and written out in batches of -Ddataset.batchSize rows (default
+ * 500) as feature files holding the outline with those rows as its Examples. Each batch is run on its own, so the
+ * scenarios Cucumber holds in memory are bounded by the batch size, not by the size of the dataset.
+ * <p>
+ * Rows are keyed by their normalized query: the cells of the outline's columns, trimmed, with runs of spaces
+ * collapsed and lower cased. A row goes to shard {@code floorMod(key.hashCode(), n)}, so the same query always
+ * lands in the same shard whatever the order of the dataset, and duplicates are dropped within the shard. The queries
+ * seen are remembered up to -Ddataset.maxDistinctRows (default 1,000,000), past which new queries are run without
+ * being remembered, so repeats of them are no longer dropped and memory use stays bounded.
+ * <p>
+ * The step metrics and the rerun history key the scenarios of a batch by their dataset file and query, e.g.
+ * searches.csv:nurse|leeds|+10 miles||, instead of the line of the temporary batch file that runs them, so the same
+ * row is tracked across runs whatever batch it falls in.
+ */
+public final class ScenarioDataset implements Closeable {
+    private final Path dataset;
+    private final BufferedReader reader;
+    private final boolean jsonLines;
+    private final List<String> columns;
+    private final int[] csvColumnIndexes; // Position of each outline column in the CSV header, -1 when absent
+    private final Shard shard;
+    // Batch feature file name -> the scenario keys of its rows, while the batch runs
+    private static final Map<String, BatchRows> BATCH_ROWS = new ConcurrentHashMap<>();
+
+    private final Set<String> seenQueries = new HashSet<>();
+    private final int maxDistinctRows = Math.max(0, Integer.getInteger("dataset.maxDistinctRows", 1_000_000));
+    private long lineNumber;
+    private long rowsRead;
+    private long duplicates;
+    private long otherShards;
+    private long rowsKept;
+    private long notRemembered;
+
+    /**
+     * The scenario keys of the rows of a batch feature file.
+     *
+     * @param firstLine The line of the first row in the file.
+     * @param keys      The key of every row, in file order.
+     */
+    private record BatchRows(int firstLine, List<String> keys) {
+    }
+
+    /**
+     * One of n deterministic slices of a dataset, written i/n with i from 1 to n.
+     */
+    public record Shard(int index, int count) {
+        public static final Shard ALL = new Shard(1, 1);
+
+        public Shard {
+            if (count < 1 || index < 1 || index > count) {
+                throw new IllegalArgumentException("A shard is i/n with 1 <= i <= n, not " + index + "/" + count);
+            }
+        }
+
+        /**
+         * Parses a shard from the --shard option, e.g. "2/4".
+         */
+        public static Shard parse(String text) {
+            String[] parts = text.trim().split("/");
+            try {
+                if (parts.length == 2) {
+                    return new Shard(Integer.parseInt(parts[0].trim()), Integer.parseInt(parts[1].trim()));
+                }
+            } catch (NumberFormatException e) {
+                // Reported below
+            }
+            throw new IllegalArgumentException("A shard is written i/n, e.g. --shard 2/4, not " + text);
+        }
+
+        boolean contains(String normalizedQuery) {
+            return Math.floorMod(normalizedQuery.hashCode(), count) == index - 1;
+        }
+
+        @Override
+        public String toString() {
+            return index + "/" + count;
+        }
+    }
+
+    /**
+     * Opens a dataset for the given outline columns.
+     *
+     * @param dataset A .csv file with a header line, or a .jsonl/.ndjson file with one JSON object per line.
+     * @param columns The column names of the outline's Examples header, in order.
+     * @param shard   The shard of the rows to keep.
+     */
+    public ScenarioDataset(Path dataset, List<String> columns, Shard shard) throws IOException {
+        this.dataset = dataset;
+        this.columns = List.copyOf(columns);
+        this.shard = shard;
+        String name = dataset.getFileName().toString().toLowerCase(Locale.ROOT);
+        this.jsonLines = name.endsWith(".jsonl") || name.endsWith(".ndjson");
+        this.reader = Files.newBufferedReader(dataset, StandardCharsets.UTF_8);
+        if (jsonLines) {
+            csvColumnIndexes = null;
+        } else {
+            List<String> header = readCsvRecord();
+            if (header == null) {
+                throw new IllegalArgumentException("The dataset " + dataset + " has no header line");
+            }
+            header = header.stream().map(String::trim).toList();
+            csvColumnIndexes = columns.stream().mapToInt(header::indexOf).toArray();
+            if (Arrays.stream(csvColumnIndexes).allMatch(index -> index < 0)) {
+                throw new IllegalArgumentException("The dataset " + dataset + " has none of the outline columns " + columns
+                        + " in its header " + header);
+            }
+        }
+    }
+
+    /**
+     * Reads the next row of this shard that has not been seen before.
+     *
+     * @return The cells of the row in outline column order, or null at the end of the dataset.
+     */
+    public List<String> nextRow() throws IOException {
+        List<String> row;
+        while ((row = readRow()) != null) {
+            rowsRead++;
+            String query = normalizedQuery(row);
+            if (!shard.contains(query)) {
+                otherShards++;
+            } else if (seenQueries.contains(query)) {
+                duplicates++;
+            } else {
+                if (seenQueries.size() < maxDistinctRows) {
+                    seenQueries.add(query);
+                } else {
+                    notRemembered++;
+                }
+                rowsKept++;
+                return row;
+            }
+        }
+        return null;
+    }
+
+    private List<String> readRow() throws IOException {
+        if (!jsonLines) {
+            List<String> record;
+            do {
+                record = readCsvRecord();
+            } while (record != null && record.size() == 1 && record.get(0).isBlank());
+            if (record == null) {
+                return null;
+            }
+            List<String> row = new ArrayList<>(columns.size());
+            for (int index : csvColumnIndexes) {
+                row.add(index < 0 || index >= record.size() ? "" : record.get(index));
+            }
+            return row;
+        }
+        String line;
+        do {
+            line = reader.readLine();
+            lineNumber++;
+        } while (line != null && line.isBlank());
+        if (line == null) {
+            return null;
+        }
+        try {
+            JSONObject object = new JSONObject(line);
+            List<String> row = new ArrayList<>(columns.size());
+            for (String column : columns) {
+                Object value = object.opt(column);
+                row.add(value == null || value == JSONObject.NULL ? "" : value.toString());
+            }
+            return row;
+        } catch (JSONException e) {
+            throw new IllegalArgumentException("Line " + lineNumber + " of " + dataset + " is not a JSON object: " + e.getMessage());
+        }
+    }
+
+    // RFC 4180 fields: separated by commas, optionally quoted, with "" for a quote and line breaks inside quotes
+    private List<String> readCsvRecord() throws IOException {
+        String line = reader.readLine();
+        lineNumber++;
+        if (line == null) {
+            return null;
+        }
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        int i = 0;
+        while (true) {
+            if (i == line.length()) {
+                if (!quoted) {
+                    break;
+                }
+                line = reader.readLine();
+                lineNumber++;
+                if (line == null) {
+                    throw new IllegalArgumentException("Unterminated quoted field at the end of " + dataset);
+                }
+                field.append('\n');
+                i = 0;
+                continue;
+            }
+            char c = line.charAt(i++);
+            if (quoted) {
+                if (c != '"') {
+                    field.append(c);
+                } else if (i < line.length() && line.charAt(i) == '"') {
+                    field.append('"');
+                    i++;
+                } else {
+                    quoted = false;
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    /**
+     * Gets the key rows are deduplicated and sharded by.
+     *
+     * @param row The cells of a row.
+     * @return The cells trimmed, with runs of whitespace collapsed and lower cased, joined by a unit separator.
+     */
+    static String normalizedQuery(List<String> row) {
+        StringBuilder query = new StringBuilder();
+        for (String cell : row) {
+            if (!query.isEmpty()) {
+                query.append('\u001f');
+            }
+            query.append(cell.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT));
+        }
+        return query.toString();
+    }
+
+    /**
+     * Gets the key the step metrics and rerun history track a row by: the dataset file name and the row's normalized
+     * query, with its cells separated by a vertical bar.
+     */
+    String scenarioKey(List<String> row) {
+        return dataset.getFileName() + ":" + normalizedQuery(row).replace('\u001f', '|');
+    }
+
+    /**
+     * Gets the key of a scenario: its dataset row while it runs from a batch feature file, otherwise its location.
+     *
+     * @param location The feature file name and line, e.g. batch-0001.feature:23 or nhs_job_search.feature:22.
+     * @return The key, e.g. searches.csv:nurse|leeds|+10 miles||, or the location itself.
+     */
+    static String scenarioKey(String location) {
+        int colon = location.lastIndexOf(':');
+        BatchRows rows = colon < 0 ? null : BATCH_ROWS.get(location.substring(0, colon));
+        if (rows == null) {
+            return location;
+        }
+        try {
+            int index = Integer.parseInt(location.substring(colon + 1)) - rows.firstLine();
+            return index >= 0 && index < rows.keys().size() ? rows.keys().get(index) : location;
+        } catch (NumberFormatException e) {
+            return location;
+        }
+    }
+
+    /**
+     * Forgets the scenario keys of a batch once it has run, including its reruns.
+     *
+     * @param batch The batch feature file.
+     */
+    static void forgetBatch(Path batch) {
+        BATCH_ROWS.remove(batch.getFileName().toString());
+    }
+
+    /**
+     * Describes the rows read so far.
+     *
+     * @return A one line summary for the run output.
+     */
+    public String getSummary() {
+        String summary = String.format("Dataset %s, shard %s: %d rows read, %d kept, %d duplicates dropped, %d in other shards",
+                dataset, shard, rowsRead, rowsKept, duplicates, otherShards);
+        if (notRemembered > 0) {
+            summary += String.format(", %d rows past -Ddataset.maxDistinctRows=%d not checked for repeats", notRemembered, maxDistinctRows);
+        }
+        return summary;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    /**
+     * A feature file split around the Examples table of its Scenario Outline, used to write the dataset batches.
+     *
+     * @param header  The lines from the start of the feature to the outline's Examples header row, without any
+     *                other scenario of the feature.
+     * @param columns The column names of the Examples header.
+     */
+    public record OutlineTemplate(List<String> header, List<String> columns) {
+
+        /**
+         * Reads the first Scenario Outline of a feature file and its Examples header. The feature's Background is
+         * kept, its other scenarios are not.
+         *
+         * @param feature The feature file, e.g. resources/features/nhs_job_search.feature.
+         */
+        public static OutlineTemplate read(Path feature) throws IOException {
+            List<String> header = new ArrayList<>();
+            List<String> tags = new ArrayList<>(); // Tag lines, which belong to the keyword that follows them
+            boolean inFeature = false;
+            boolean inOutline = false;
+            boolean keep = true; // Whether the lines of the current block go into the header
+            for (String line : Files.readAllLines(feature, StandardCharsets.UTF_8)) {
+                String trimmed = line.trim();
+                if (!inFeature) {
+                    header.add(line);
+                    inFeature = trimmed.startsWith("Feature:");
+                    continue;
+                }
+                if (!inOutline && trimmed.startsWith("@")) {
+                    tags.add(line);
+                    continue;
+                }
+                if (!inOutline && (trimmed.startsWith("Scenario") || trimmed.startsWith("Example:")
+                        || trimmed.startsWith("Background:") || trimmed.startsWith("Rule:"))) {
+                    inOutline = trimmed.startsWith("Scenario Outline:") || trimmed.startsWith("Scenario Template:");
+                    keep = inOutline || trimmed.startsWith("Background:");
+                    if (keep) {
+                        header.addAll(tags);
+                    }
+                    tags.clear();
+                }
+                if (keep) {
+                    header.add(line);
+                }
+                if (inOutline && trimmed.startsWith("|")) {
+                    return new OutlineTemplate(List.copyOf(header), cells(trimmed));
+                }
+            }
+            throw new IllegalArgumentException("No Scenario Outline with an Examples table found in " + feature);
+        }
+
+        private static List<String> cells(String tableRow) {
+            return Arrays.stream(tableRow.substring(1, tableRow.lastIndexOf('|')).split("\\|", -1))
+                    .map(String::trim).toList();
+        }
+
+        /**
+         * Writes a feature file holding the outline with the given rows as its Examples.
+         *
+         * @param file The feature file to write.
+         * @param rows The rows, cells in column order.
+         */
+        public void write(Path file, List<List<String>> rows) throws IOException {
+            String indent = header.get(header.size() - 1).substring(0, header.get(header.size() - 1).indexOf('|'));
+            List<String> lines = new ArrayList<>(header.size() + rows.size());
+            lines.addAll(header);
+            for (List<String> row : rows) {
+                StringBuilder line = new StringBuilder(indent).append('|');
+                for (String cell : row) {
+                    line.append(' ').append(escapeCell(cell)).append(" |");
+                }
+                lines.add(line.toString());
+            }
+            Files.write(file, lines, StandardCharsets.UTF_8);
+        }
+
+        private static String escapeCell(String cell) {
+            return cell.replace("\\", "\\\\").replace("|", "\\|").replace("\r", "").replace("\n", "\\n");
+        }
+    }
+
+    /**
+     * Streams the dataset into batch feature files, written one at a time as they are asked for. The scenario keys
+     * of a batch's rows are kept until {@link #forgetBatch(Path)}.
+     *
+     * @param template  The outline the rows fill in.
+     * @param directory The directory to write the batches to, batch-0001.feature and onwards.
+     * @param batchSize The number of rows per batch.
+     * @return The batches, each written when next() is called.
+     */
+    public Iterator<Path> batches(OutlineTemplate template, Path directory, int batchSize) {
+        return new Iterator<>() {
+            private List<String> pending;
+            private int batch;
+
+            @Override
+            public boolean hasNext() {
+                if (pending == null) {
+                    try {
+                        pending = nextRow();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+                return pending != null;
+            }
+
+            @Override
+            public Path next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                try {
+                    List<List<String>> rows = new ArrayList<>(batchSize);
+                    rows.add(pending);
+                    pending = null;
+                    List<String> row;
+                    while (rows.size() < batchSize && (row = nextRow()) != null) {
+                        rows.add(row);
+                    }
+                    Path file = directory.resolve(String.format("batch-%04d.feature", ++batch));
+                    template.write(file, rows);
+                    BATCH_ROWS.put(file.getFileName().toString(),
+                            new BatchRows(template.header().size() + 1, rows.stream().map(ScenarioDataset.this::scenarioKey).toList()));
+                    return file;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        };
+    }
+}
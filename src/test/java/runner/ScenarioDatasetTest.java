@@ -0,0 +1,167 @@
+package runner;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+
+public class ScenarioDatasetTest {
+    private static final List<String> COLUMNS = List.of("keyword", "location");
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path file(String name, String... lines) throws IOException {
+        Path file = folder.getRoot().toPath().resolve(name);
+        Files.write(file, List.of(lines), StandardCharsets.UTF_8);
+        return file;
+    }
+
+    private static List<List<String>> readAll(ScenarioDataset dataset) throws IOException {
+        List<List<String>> rows = new ArrayList<>();
+        List<String> row;
+        while ((row = dataset.nextRow()) != null) {
+            rows.add(row);
+        }
+        return rows;
+    }
+
+    @Test
+    public void readsCsvColumnsByHeaderName() throws IOException {
+        Path csv = file("searches.csv",
+                "location, keyword ,unused",
+                "Leeds,nurse,x",
+                "\"York, North\",\"Say \"\"hi\"\"\"",
+                "",
+                "\"Two",
+                "lines\",porter");
+        try (ScenarioDataset dataset = new ScenarioDataset(csv, COLUMNS, ScenarioDataset.Shard.ALL)) {
+            assertEquals(List.of(List.of("nurse", "Leeds"), List.of("Say \"hi\"", "York, North"), List.of("porter", "Two\nlines")),
+                    readAll(dataset));
+        }
+    }
+
+    @Test
+    public void rejectsCsvWithoutTheOutlineColumns() throws IOException {
+        Path csv = file("other.csv", "a,b", "1,2");
+        assertThrows(IllegalArgumentException.class, () -> new ScenarioDataset(csv, COLUMNS, ScenarioDataset.Shard.ALL));
+        Path unterminated = file("open.csv", "keyword", "\"nurse");
+        try (ScenarioDataset dataset = new ScenarioDataset(unterminated, COLUMNS, ScenarioDataset.Shard.ALL)) {
+            assertThrows(IllegalArgumentException.class, dataset::nextRow);
+        }
+    }
+
+    @Test
+    public void readsJsonLines() throws IOException {
+        Path jsonl = file("searches.jsonl",
+                "{\"keyword\": \"nurse\", \"location\": \"Leeds\"}",
+                "",
+                "{\"keyword\": 42, \"location\": null}",
+                "not json");
+        try (ScenarioDataset dataset = new ScenarioDataset(jsonl, COLUMNS, ScenarioDataset.Shard.ALL)) {
+            assertEquals(List.of("nurse", "Leeds"), dataset.nextRow());
+            assertEquals(List.of("42", ""), dataset.nextRow());
+            IllegalArgumentException error = assertThrows(IllegalArgumentException.class, dataset::nextRow);
+            assertTrue(error.getMessage().startsWith("Line 4 of"));
+        }
+    }
+
+    @Test
+    public void dropsRepeatedSearchesIgnoringCaseAndSpacing() throws IOException {
+        Path csv = file("searches.csv", "keyword,location", "Staff  Nurse,Leeds", " staff nurse ,LEEDS", "nurse,Leeds");
+        try (ScenarioDataset dataset = new ScenarioDataset(csv, COLUMNS, ScenarioDataset.Shard.ALL)) {
+            assertEquals(2, readAll(dataset).size());
+            assertTrue(dataset.getSummary().contains("3 rows read, 2 kept, 1 duplicates dropped"));
+        }
+    }
+
+    @Test
+    public void shardsSplitTheRowsWithoutOverlap() throws IOException {
+        List<String> lines = new ArrayList<>(List.of("keyword,location"));
+        for (int i = 0; i < 200; i++) {
+            lines.add("job " + i + ",town " + (i % 13));
+        }
+        Path csv = file("sweep.csv", lines.toArray(String[]::new));
+        Set<List<String>> seen = new HashSet<>();
+        for (int index = 1; index <= 3; index++) {
+            try (ScenarioDataset dataset = new ScenarioDataset(csv, COLUMNS, new ScenarioDataset.Shard(index, 3))) {
+                List<List<String>> rows = readAll(dataset);
+                assertFalse(rows.isEmpty());
+                for (List<String> row : rows) {
+                    assertTrue("Row in two shards: " + row, seen.add(row));
+                }
+            }
+        }
+        assertEquals(200, seen.size());
+        assertEquals(new ScenarioDataset.Shard(2, 4), ScenarioDataset.Shard.parse(" 2 / 4 "));
+        assertThrows(IllegalArgumentException.class, () -> ScenarioDataset.Shard.parse("5/4"));
+        assertThrows(IllegalArgumentException.class, () -> ScenarioDataset.Shard.parse("two"));
+    }
+
+    @Test
+    public void keysBatchScenariosByTheirRow() throws IOException {
+        Path feature = file("search.feature",
+                "@search",
+                "Feature: Search",
+                "  Background:",
+                "    Given I open the search",
+                "  Scenario: Other",
+                "    Then nothing",
+                "  Scenario Outline: Search for <keyword>",
+                "    When I search for <keyword> in <location>",
+                "    Examples:",
+                "      | keyword | location |",
+                "      | old     | row      |");
+        ScenarioDataset.OutlineTemplate template = ScenarioDataset.OutlineTemplate.read(feature);
+        assertEquals(COLUMNS, template.columns());
+        Path csv = file("searches.csv", "keyword,location", "Nurse,Leeds", "a|b,York", "porter,Hull");
+        Path batches = folder.newFolder("batches").toPath();
+        try (ScenarioDataset dataset = new ScenarioDataset(csv, COLUMNS, ScenarioDataset.Shard.ALL)) {
+            Iterator<Path> files = dataset.batches(template, batches, 2);
+            Path first = files.next();
+            List<String> lines = Files.readAllLines(first, StandardCharsets.UTF_8);
+            assertFalse(lines.contains("  Scenario: Other"));
+            assertTrue(lines.contains("    Given I open the search"));
+            assertEquals("      | Nurse | Leeds |", lines.get(8));
+            assertEquals("      | a\\|b | York |", lines.get(9));
+            assertEquals("searches.csv:nurse|leeds", ScenarioDataset.scenarioKey("batch-0001.feature:9"));
+            assertEquals("searches.csv:a|b|york", ScenarioDataset.scenarioKey("batch-0001.feature:10"));
+            assertEquals("batch-0001.feature:11", ScenarioDataset.scenarioKey("batch-0001.feature:11"));
+            Path second = files.next();
+            assertFalse(files.hasNext());
+            assertEquals("searches.csv:porter|hull", ScenarioDataset.scenarioKey("batch-0002.feature:9"));
+            ScenarioDataset.forgetBatch(first);
+            ScenarioDataset.forgetBatch(second);
+            assertEquals("batch-0001.feature:9", ScenarioDataset.scenarioKey("batch-0001.feature:9"));
+            assertEquals("nhs_job_search.feature:22", ScenarioDataset.scenarioKey("nhs_job_search.feature:22"));
+        }
+    }
+
+    @Test
+    public void remembersAtMostTheDistinctRowLimit() throws IOException {
+        Path csv = file("searches.csv", "keyword", "a", "b", "c", "a", "c");
+        System.setProperty("dataset.maxDistinctRows", "2");
+        try (ScenarioDataset dataset = new ScenarioDataset(csv, COLUMNS, ScenarioDataset.Shard.ALL)) {
+            // c is run twice, as it was read after the limit
+            assertEquals(List.of(List.of("a", ""), List.of("b", ""), List.of("c", ""), List.of("c", "")), readAll(dataset));
+            assertTrue(dataset.getSummary(), dataset.getSummary().endsWith("2 rows past -Ddataset.maxDistinctRows=2 not checked for repeats"));
+        } finally {
+            System.clearProperty("dataset.maxDistinctRows");
+        }
+    }
+}
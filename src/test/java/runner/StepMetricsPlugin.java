@@ -0,0 +1,403 @@
+package runner;
+
+import io.cucumber.plugin.ConcurrentEventListener;
+import io.cucumber.plugin.event.EventPublisher;
+import io.cucumber.plugin.event.HookTestStep;
+import io.cucumber.plugin.event.PickleStepTestStep;
+import io.cucumber.plugin.event.TestCase;
+import io.cucumber.plugin.event.TestCaseFinished;
+import io.cucumber.plugin.event.TestCaseStarted;
+import io.cucumber.plugin.event.TestRunFinished;
+import io.cucumber.plugin.event.TestStep;
+import io.cucumber.plugin.event.TestStepFinished;
+import io.cucumber.plugin.event.TestStepStarted;
+import page.PageTimings;
+import utilities.EventWait;
+import utilities.WebDriverCommandCounter;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+
+/**
+ * Cucumber plugin that records the cost of every step and scenario: wall time, time spent in the PageFunctions
+ * waits and the number of WebDriver commands issued.
+ * <p>
+ * Each run writes a compact tab separated file (run-yyyyMMdd-HHmmssSSS.tsv) to the plugin directory and appends the
+ * same rows to trend.tsv there. At the end of the run the p50/p95 wall time of every step across the runs in the
+ * trend store are printed, and steps whose median in this run is slower than in the previous run by more than
+ * -Dmetrics.regressionPercent (default 20) and -Dmetrics.regressionMinMs (default 50) are flagged.
+ * Only the last -Dmetrics.trendRuns runs (default 50) are kept in the trend store.
+ * <p>
+ * Steps are keyed by their step definition pattern, so every example of a Scenario Outline adds to the same step,
+ * and hooks by their kind and code location. Scenarios are keyed by feature file and line,
+ * and the rows of a --dataset by their dataset file and query.
+ * <p>
+ * The page timings of every search and sort (see {@link PageTimings}) are stored alongside, one row per metric,
+ * and summarised as p50/p95 per Examples row, so repeated runs show how the search journey's load times move.
+ */
+public class StepMetricsPlugin implements ConcurrentEventListener {
+    private static final String HEADER = "run\tkind\tkey\tscenario\tstatus\twall_ms\twait_ms\tcommands";
+    private static final List<String> PAGE_TIMING_COLUMNS = List.of("elapsed", "time to first byte", "dom content loaded",
+            "load", "first contentful paint", "largest contentful paint");
+    private static final DateTimeFormatter RUN_ID_FORMATTER = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmssSSS");
+
+    private final Path directory;
+    private final String runId = System.getProperty("metrics.runId", newRunId());
+    private final Queue<Sample> samples = new ConcurrentLinkedQueue<>();
+    // A scenario runs on a single thread, so the readings taken when it and its current step started are thread-local
+    private final ThreadLocal<Reading> scenarioStart = new ThreadLocal<>();
+    private final ThreadLocal<Reading> stepStart = new ThreadLocal<>();
+
+    /**
+     * One row of the metrics files.
+     */
+    record Sample(String run, String kind, String key, String scenario, String status, long wallMillis, long waitMillis,
+                  long commands) {
+
+        String toLine() {
+            return String.join("\t", run, kind, clean(key), clean(scenario), status, String.valueOf(wallMillis),
+                    String.valueOf(waitMillis), String.valueOf(commands));
+        }
+
+        static Sample parse(String line) {
+            String[] fields = line.split("\t", -1);
+            if (fields.length != 8 || fields[0].equals("run")) {
+                return null;
+            }
+            try {
+                return new Sample(fields[0], fields[1], fields[2], fields[3], fields[4],
+                        Long.parseLong(fields[5]), Long.parseLong(fields[6]), Long.parseLong(fields[7]));
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+
+        private static String clean(String text) {
+            return text.replace('\t', ' ').replace('\n', ' ').replace('\r', ' ');
+        }
+    }
+
+    private record Reading(long nanos, long waitNanos, long commands) {
+        static Reading now() {
+            return new Reading(System.nanoTime(), EventWait.currentThreadWaitNanos(), WebDriverCommandCounter.currentThreadCommands());
+        }
+    }
+
+    /**
+     * @param directory The directory for the per-run files and the trend store, e.g. cucumber-reports/metrics.
+     */
+    public StepMetricsPlugin(File directory) {
+        this.directory = directory.toPath();
+    }
+
+    /**
+     * Gets a run id for the current time. Cucumber runs that set -Dmetrics.runId to the same id, e.g. the batches of
+     * a dataset run, add to one run of the trend store.
+     */
+    static String newRunId() {
+        return LocalDateTime.now().format(RUN_ID_FORMATTER);
+    }
+
+    @Override
+    public void setEventPublisher(EventPublisher publisher) {
+        publisher.registerHandlerFor(TestCaseStarted.class, event -> {
+            PageTimings.drainCurrentThread(); // Leftovers of work outside a scenario on this thread
+            scenarioStart.set(Reading.now());
+        });
+        publisher.registerHandlerFor(TestStepStarted.class, event -> stepStart.set(Reading.now()));
+        publisher.registerHandlerFor(TestStepFinished.class, this::stepFinished);
+        publisher.registerHandlerFor(TestCaseFinished.class, this::scenarioFinished);
+        publisher.registerHandlerFor(TestRunFinished.class, event -> runFinished());
+    }
+
+    private void stepFinished(TestStepFinished event) {
+        Reading start = stepStart.get();
+        if (start != null) {
+            samples.add(sample("step", stepKey(event.getTestStep()), event.getTestCase(), event.getResult().getStatus().name(), start));
+        }
+    }
+
+    private void scenarioFinished(TestCaseFinished event) {
+        Reading start = scenarioStart.get();
+        if (start != null) {
+            TestCase testCase = event.getTestCase();
+            samples.add(sample("scenario", testCase.getName(), testCase, event.getResult().getStatus().name(), start));
+        }
+        // Page timings are keyed by page action and metric, e.g. "search largest contentful paint"
+        for (PageTimings timings : PageTimings.drainCurrentThread()) {
+            for (Map.Entry<String, Long> metric : timings.metrics().entrySet()) {
+                samples.add(new Sample(runId, "page", timings.action() + " " + metric.getKey(), scenarioKey(event.getTestCase()),
+                        event.getResult().getStatus().name(), metric.getValue(), 0, 0));
+            }
+        }
+    }
+
+    private Sample sample(String kind, String key, TestCase testCase, String status, Reading start) {
+        Reading end = Reading.now();
+        return new Sample(runId, kind, key, scenarioKey(testCase), status, (end.nanos() - start.nanos()) / 1_000_000,
+                (end.waitNanos() - start.waitNanos()) / 1_000_000, end.commands() - start.commands());
+    }
+
+    private static String stepKey(TestStep step) {
+        if (step instanceof PickleStepTestStep pickleStep) {
+            return pickleStep.getPattern();
+        }
+        if (step instanceof HookTestStep hookStep) {
+            return hookStep.getHookType() + " " + step.getCodeLocation();
+        }
+        return step.getCodeLocation();
+    }
+
+    private static String scenarioKey(TestCase testCase) {
+        String uri = testCase.getUri().toString();
+        return ScenarioDataset.scenarioKey(uri.substring(uri.lastIndexOf('/') + 1) + ":" + testCase.getLocation().getLine());
+    }
+
+    private void runFinished() {
+        List<Sample> runSamples = new ArrayList<>(samples);
+        if (runSamples.isEmpty()) {
+            return;
+        }
+        try {
+            String worker = System.getProperty("metrics.worker");
+            if (worker != null) {
+                // The TestRunner that launched this worker adds its samples to the run, see collectWorkerRuns
+                appendSamples(directory.resolve("run-" + runId + "-worker-" + worker + ".tsv"), runSamples);
+                return;
+            }
+            // A later Cucumber run of the same metrics run, e.g. the next batch of a dataset, prints the reports
+            record(directory, runId, runSamples, !Boolean.getBoolean("metrics.deferReport"));
+        } catch (IOException e) {
+            System.err.println("WARN: Failed to write step metrics to " + directory + ": " + e.getMessage());
+        }
+    }
+
+    private static void record(Path directory, String runId, List<Sample> runSamples, boolean report) throws IOException {
+        appendSamples(directory.resolve("run-" + runId + ".tsv"), runSamples);
+        List<Sample> trend = updateTrendStore(directory, runSamples);
+        if (report) {
+            System.out.print(trendReport(trend, runId));
+            System.out.print(pageTimingReport(trend));
+        }
+    }
+
+    private static void appendSamples(Path file, List<Sample> runSamples) throws IOException {
+        Files.createDirectories(file.getParent());
+        List<String> lines = new ArrayList<>(runSamples.size() + 1);
+        if (!Files.exists(file)) {
+            lines.add(HEADER);
+        }
+        for (Sample sample : runSamples) {
+            lines.add(sample.toLine());
+        }
+        Files.write(file, lines, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    private static List<Sample> readSamples(Path file) throws IOException {
+        List<Sample> fileSamples = new ArrayList<>();
+        if (Files.exists(file)) {
+            for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+                Sample sample = Sample.parse(line);
+                if (sample != null) {
+                    fileSamples.add(sample);
+                }
+            }
+        }
+        return fileSamples;
+    }
+
+    /**
+     * Adds the samples the worker processes of a run wrote (run with -Dmetrics.worker) to the run file and the
+     * trend store, and prints the reports for the whole run.
+     *
+     * @param directory The metrics directory the workers wrote to.
+     * @param runId     The run id the workers were given with -Dmetrics.runId.
+     */
+    static void collectWorkerRuns(Path directory, String runId) throws IOException {
+        List<Sample> runSamples = new ArrayList<>();
+        if (Files.isDirectory(directory)) {
+            try (DirectoryStream<Path> workerFiles = Files.newDirectoryStream(directory, "run-" + runId + "-worker-*.tsv")) {
+                for (Path workerFile : workerFiles) {
+                    runSamples.addAll(readSamples(workerFile));
+                    Files.delete(workerFile);
+                }
+            }
+        }
+        if (!runSamples.isEmpty()) {
+            record(directory, runId, runSamples, true);
+        }
+    }
+
+    /**
+     * Gets the median wall time of every scenario across the runs in the trend store.
+     *
+     * @param directory The metrics directory, e.g. cucumber-reports/metrics.
+     * @return The median in ms, keyed by feature file name and line, e.g. nhs_job_search.feature:22.
+     */
+    static Map<String, Long> medianScenarioMillis(Path directory) throws IOException {
+        Map<String, List<Long>> wallMillis = new LinkedHashMap<>();
+        for (Sample sample : readSamples(directory.resolve("trend.tsv"))) {
+            if (sample.kind().equals("scenario")) {
+                wallMillis.computeIfAbsent(sample.scenario(), k -> new ArrayList<>()).add(sample.wallMillis());
+            }
+        }
+        Map<String, Long> medians = new LinkedHashMap<>();
+        wallMillis.forEach((scenario, values) -> medians.put(scenario, percentile(values, 50)));
+        return medians;
+    }
+
+    // Appends this run to the trend store, dropping the oldest runs beyond the retention limit
+    private static List<Sample> updateTrendStore(Path directory, List<Sample> runSamples) throws IOException {
+        Path trendFile = directory.resolve("trend.tsv");
+        List<Sample> trend = readSamples(trendFile);
+        trend.addAll(runSamples);
+        Set<String> runs = new LinkedHashSet<>();
+        for (Sample sample : trend) {
+            runs.add(sample.run());
+        }
+        int retainedRuns = Math.max(2, Integer.getInteger("metrics.trendRuns", 50));
+        if (runs.size() > retainedRuns) {
+            Set<String> dropped = new LinkedHashSet<>(new ArrayList<>(runs).subList(0, runs.size() - retainedRuns));
+            trend.removeIf(sample -> dropped.contains(sample.run()));
+            List<String> lines = new ArrayList<>(trend.size() + 1);
+            lines.add(HEADER);
+            for (Sample sample : trend) {
+                lines.add(sample.toLine());
+            }
+            Files.write(trendFile, lines, StandardCharsets.UTF_8);
+        } else {
+            List<String> lines = new ArrayList<>(runSamples.size() + 1);
+            if (!Files.exists(trendFile)) {
+                lines.add(HEADER);
+            }
+            for (Sample sample : runSamples) {
+                lines.add(sample.toLine());
+            }
+            Files.write(trendFile, lines, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        }
+        return trend;
+    }
+
+    /**
+     * Builds the end of run report: p50/p95 of every step across the trend store, this run's median,
+     * the previous run's median and a regression flag.
+     *
+     * @param trend The samples of every retained run, oldest first, including the current run.
+     * @param runId The current run.
+     * @return The report text.
+     */
+    static String trendReport(List<Sample> trend, String runId) {
+        String previousRun = null;
+        for (Sample sample : trend) {
+            if (!sample.run().equals(runId)) {
+                previousRun = sample.run(); // Runs are appended in order, so the last other run is the previous one
+            }
+        }
+        Map<String, List<Long>> allRuns = new TreeMap<>();
+        Map<String, List<Long>> currentRun = new LinkedHashMap<>();
+        Map<String, List<Long>> baselineRun = new LinkedHashMap<>();
+        Set<String> runs = new LinkedHashSet<>();
+        for (Sample sample : trend) {
+            if (!sample.kind().equals("step")) {
+                continue;
+            }
+            runs.add(sample.run());
+            allRuns.computeIfAbsent(sample.key(), k -> new ArrayList<>()).add(sample.wallMillis());
+            if (sample.run().equals(runId)) {
+                currentRun.computeIfAbsent(sample.key(), k -> new ArrayList<>()).add(sample.wallMillis());
+            } else if (sample.run().equals(previousRun)) {
+                baselineRun.computeIfAbsent(sample.key(), k -> new ArrayList<>()).add(sample.wallMillis());
+            }
+        }
+        double regressionRatio = 1 + Integer.getInteger("metrics.regressionPercent", 20) / 100.0;
+        long regressionMinMillis = Integer.getInteger("metrics.regressionMinMs", 50);
+
+        StringBuilder report = new StringBuilder();
+        report.append(String.format("Step timings over %d runs (baseline %s):%n", runs.size(), previousRun == null ? "none" : previousRun));
+        report.append(String.format("%8s %8s %8s %9s  %s%n", "p50 ms", "p95 ms", "run p50", "base p50", "step"));
+        int regressions = 0;
+        for (Map.Entry<String, List<Long>> step : allRuns.entrySet()) {
+            List<Long> current = currentRun.get(step.getKey());
+            if (current == null) {
+                continue;
+            }
+            long currentMedian = percentile(current, 50);
+            List<Long> baseline = baselineRun.get(step.getKey());
+            String baselineMedian = baseline == null ? "-" : String.valueOf(percentile(baseline, 50));
+            boolean regressed = baseline != null && currentMedian > percentile(baseline, 50) * regressionRatio
+                    && currentMedian - percentile(baseline, 50) >= regressionMinMillis;
+            if (regressed) {
+                regressions++;
+            }
+            report.append(String.format("%8d %8d %8d %9s  %s%s%n", percentile(step.getValue(), 50), percentile(step.getValue(), 95),
+                    currentMedian, baselineMedian, step.getKey(), regressed ? "  <-- REGRESSION" : ""));
+        }
+        if (regressions > 0) {
+            report.append(String.format("%d step(s) slower than the baseline run%n", regressions));
+        }
+        return report.toString();
+    }
+
+    /**
+     * Builds the page timing report: p50/p95 of the timings of every search and sort, per Examples row,
+     * across the trend store.
+     *
+     * @param trend The samples of every retained run, including the current run.
+     * @return The report text, empty when no page was timed.
+     */
+    static String pageTimingReport(List<Sample> trend) {
+        Map<String, Map<String, List<Long>>> rows = new TreeMap<>(); // "scenario action" -> metric -> values
+        Set<String> runs = new LinkedHashSet<>();
+        for (Sample sample : trend) {
+            if (!sample.kind().equals("page")) {
+                continue;
+            }
+            runs.add(sample.run());
+            String[] actionAndMetric = sample.key().split(" ", 2);
+            rows.computeIfAbsent(sample.scenario() + " " + actionAndMetric[0], k -> new LinkedHashMap<>())
+                    .computeIfAbsent(actionAndMetric[1], k -> new ArrayList<>()).add(sample.wallMillis());
+        }
+        if (rows.isEmpty()) {
+            return "";
+        }
+        StringBuilder report = new StringBuilder();
+        report.append(String.format("Page timings per Examples row over %d runs, p50/p95 ms:%n", runs.size()));
+        report.append(String.format("%-36s %12s %12s %12s %12s %12s %12s%n", "row", "elapsed", "first byte", "DOM loaded",
+                "load", "FCP", "LCP"));
+        for (Map.Entry<String, Map<String, List<Long>>> row : rows.entrySet()) {
+            report.append(String.format("%-36s", row.getKey()));
+            for (String metric : PAGE_TIMING_COLUMNS) {
+                List<Long> values = row.getValue().get(metric);
+                report.append(String.format(" %12s", values == null ? "-" : percentile(values, 50) + "/" + percentile(values, 95)));
+            }
+            report.append(System.lineSeparator());
+        }
+        return report.toString();
+    }
+
+    // Nearest-rank percentile
+    private static long percentile(List<Long> values, int percentile) {
+        List<Long> sorted = new ArrayList<>(values);
+        Collections.sort(sorted);
+        int rank = (int) Math.ceil(percentile / 100.0 * sorted.size());
+        return sorted.get(Math.max(0, rank - 1));
+    }
+}
@@ -0,0 +1,136 @@
+package runner;
+
+import io.cucumber.core.plugin.MessageFormatter;
+import io.cucumber.messages.types.Envelope;
+import io.cucumber.plugin.ConcurrentEventListener;
+import io.cucumber.plugin.event.EventPublisher;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+
+/**
+ * Cucumber plugin that streams the run's messages to disk as NDJSON event files and renders the HTML report from
+ * them once the run has finished, in place of Cucumber's html: plugin.
+ * <p>
+ * Envelopes are serialized by Cucumber's own message writer as they are published and appended to
+ * events-0001.ndjson, events-0002.ndjson and so on in a directory next to the report (cucumber-html-report.html
+ * gets cucumber-html-report-events/). The events are buffered and flushed to disk at the end of every scenario,
+ * and a new file is started after a scenario once the current one reaches -Dreport.segmentMb (default 64), so a
+ * crashed run still leaves every finished scenario on disk and no file grows without bound. Nothing of the run is
+ * held in memory, and the report is written by reading the event files back one envelope at a time.
+ */
+public class StreamingReportPlugin implements ConcurrentEventListener {
+    private static final String SEGMENT_PREFIX = "events-";
+    private static final int BUFFER_SIZE = 256 * 1024;
+
+    private final Path html;
+    private final Path eventDirectory;
+    private final long segmentBytes = Math.max(1L, Long.getLong("report.segmentMb", 64L)) * 1024 * 1024;
+    private final SegmentedOutput output = new SegmentedOutput();
+    private final MessageFormatter formatter = new MessageFormatter(output);
+
+    /**
+     * @param html The HTML report to write, e.g. cucumber-reports/cucumber-html-report.html.
+     */
+    public StreamingReportPlugin(File html) {
+        this.html = html.toPath();
+        String name = html.getName();
+        this.eventDirectory = this.html.resolveSibling((name.endsWith(".html") ? name.substring(0, name.length() - 5) : name) + "-events");
+    }
+
+    @Override
+    public void setEventPublisher(EventPublisher publisher) {
+        // Cucumber's formatter writes each envelope first, so by the time this handler runs the envelope is in the segment
+        formatter.setEventPublisher(publisher);
+        publisher.registerHandlerFor(Envelope.class, this::written);
+    }
+
+    private void written(Envelope envelope) {
+        try {
+            if (envelope.getTestCaseFinished().isPresent()) {
+                output.endScenario();
+            } else if (envelope.getTestRunFinished().isPresent()) {
+                // The formatter has closed the last segment
+                MessageReports.writeHtml(output.segments, html);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * The event files of the run, written through a buffer that only reaches the disk at the end of a scenario.
+     * Cucumber's writer flushes after every envelope, so flush() is ignored.
+     */
+    private final class SegmentedOutput extends OutputStream {
+        private final List<Path> segments = new ArrayList<>();
+        private OutputStream current;
+        private long currentBytes;
+
+        private OutputStream current() throws IOException {
+            if (current == null) {
+                if (segments.isEmpty()) {
+                    Files.createDirectories(eventDirectory);
+                    deleteSegments(); // Of an earlier run
+                }
+                Path segment = eventDirectory.resolve(String.format("%s%04d.ndjson", SEGMENT_PREFIX, segments.size() + 1));
+                segments.add(segment);
+                current = new BufferedOutputStream(Files.newOutputStream(segment), BUFFER_SIZE);
+                currentBytes = 0;
+            }
+            return current;
+        }
+
+        private void deleteSegments() throws IOException {
+            try (DirectoryStream<Path> stale = Files.newDirectoryStream(eventDirectory, SEGMENT_PREFIX + "*.ndjson")) {
+                for (Path segment : stale) {
+                    Files.delete(segment);
+                }
+            }
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            current().write(b);
+            currentBytes++;
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            current().write(bytes, offset, length);
+            currentBytes += length;
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        void endScenario() throws IOException {
+            if (current == null) {
+                return;
+            }
+            current.flush();
+            if (currentBytes >= segmentBytes) {
+                current.close();
+                current = null;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (current != null) {
+                current.close();
+                current = null;
+            }
+        }
+    }
+}
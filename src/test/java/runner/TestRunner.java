@@ -1,24 +1,269 @@
 package runner;
 import io.cucumber.core.cli.Main;
+import page.ResultSnapshotCache;
+import utilities.AccessibilityScanner;
+import utilities.DriverPool;
+import utilities.EventWait;
+import utilities.EvidenceQueue;
+import utilities.NetworkFilter;
+import utilities.ResponseStore;
+import utilities.WebDriverProfiler;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
 import java.util.stream.Stream;
 
 
 public class TestRunner extends Main {
-    private static String[] defaultOptions = {
-            "--glue", "stepDefinitions",
-            "--plugin", "pretty",
-            "--plugin","html:cucumber-reports/cucumber-html-report.html",
-            "resources/features"
-    };
+    private static final String DEFAULT_DATASET_FEATURE = "resources/features/nhs_job_search.feature";
+
+    private static String[] defaultOptions(String reportPlugin, String features) {
+        return new String[]{
+                "--glue", "stepDefinitions",
+                "--plugin", "pretty",
+                "--plugin", reportPlugin,
+                "--plugin", "runner.StepMetricsPlugin:cucumber-reports/metrics",
+                features
+        };
+    }
 
     public static void main(String args[]) {
-        args = Stream.concat(Arrays.stream(defaultOptions), Arrays.stream(args))
-                .toArray(String[]::new);
-        run(args, Thread.currentThread().getContextClassLoader());
-        System.exit(0);
+        // --threads N runs N scenarios in parallel, each worker thread borrowing its own browser from the pool
+        String threads = optionValue(args, "--threads");
+        DriverPool.setMaxSessions(threads == null ? 1 : Integer.parseInt(threads));
+        String dataset = optionValue(args, "--dataset");
+        String shard = optionValue(args, "--shard");
+        String workers = optionValue(args, "--workers");
+        if (shard != null && dataset == null) {
+            throw new IllegalArgumentException("--shard splits the rows of a --dataset");
+        }
+        if (shard != null && workers != null) {
+            throw new IllegalArgumentException("--workers gives each worker its own --shard of the dataset");
+        }
+        // --scenarios and --worker are given to the worker processes of a --workers run
+        String scenarios = optionValue(args, "--scenarios");
+        String worker = optionValue(args, "--worker");
+        String[] cucumberArgs = withoutOptions(args, "--dataset", "--shard", "--workers", "--scenarios", "--worker");
+        // The batches, reruns and workers of this run add to one step metrics run and one rerun history run
+        if (System.getProperty("metrics.runId") == null) {
+            System.setProperty("metrics.runId", StepMetricsPlugin.newRunId());
+        }
+        int status;
+        try {
+            if (workers != null && Integer.parseInt(workers) > 1) {
+                status = WorkerShards.run(Integer.parseInt(workers), dataset, cucumberArgs);
+            } else if (dataset == null) {
+                status = runWithReruns(scenarios == null ? "resources/features" : "@" + scenarios, worker, null, cucumberArgs);
+            } else {
+                status = runDataset(Path.of(dataset), shard == null ? ScenarioDataset.Shard.ALL : ScenarioDataset.Shard.parse(shard),
+                        worker, cucumberArgs);
+            }
+            if (worker == null) {
+                FailureReruns.trimHistory();
+                if (FailureReruns.hasFailures(System.getProperty("metrics.runId"))) {
+                    System.out.print(FailureReruns.getSummary(System.getProperty("metrics.runId")));
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            DriverPool.shutdown();
+            if (NetworkFilter.hasPageLoads()) {
+                System.out.print(NetworkFilter.getSummary());
+                if (worker == null) {
+                    NetworkFilter.saveBaseline();
+                } else {
+                    NetworkFilter.saveBaseline(WorkerShards.WORKER_DIRECTORY.resolve("worker-" + worker + WorkerShards.NETWORK_BASELINE_SUFFIX));
+                }
+            }
+            if (ResponseStore.hasActivity()) {
+                System.out.println(ResponseStore.getSummary());
+                ResponseStore.close();
+            }
+            if (EvidenceQueue.hasCaptured()) {
+                EvidenceQueue.shutdown(60);
+                System.out.println(EvidenceQueue.getSummary());
+            }
+            if (AccessibilityScanner.hasScanned()) {
+                System.out.println(AccessibilityScanner.getSummary());
+            }
+            if (!EventWait.getStatistics().isEmpty()) {
+                System.out.println(EventWait.getSummary());
+            }
+            if (ResultSnapshotCache.hasLookups()) {
+                System.out.println(ResultSnapshotCache.getSummary());
+            }
+            if (WebDriverProfiler.isEnabled()) {
+                System.out.print(WebDriverProfiler.getReport());
+            }
+        }
+        System.exit(status);
+    }
+
+    /**
+     * Runs the scenarios, then runs the ones that failed again in this JVM, up to -Drerun.attempts times (default 1,
+     * 0 to not rerun). Failures are not rerun when more than -Drerun.maxScenarios scenarios failed (default 20), as
+     * that many failures are rarely flaky. A failed scenario recycles its browser session, so a rerun starts on a new
+     * browser, even with -DreuseBrowser=true. Each rerun has its own report under cucumber-reports/rerun, and the
+     * outcome is added to the rerun history.
+     *
+     * @param features     The features, e.g. resources/features, a batch feature file, or @file of scenario locations.
+     * @param worker       The --worker number, or null when not a worker.
+     * @param batch        The dataset batch, e.g. batch-0001, or null.
+     * @param cucumberArgs The other command line arguments, e.g. --threads or --tags.
+     * @return The exit status of the last attempt: 0 when every scenario passed in the end, unless a flaky scenario
+     * passed only on a rerun and -Drerun.failOnFlaky=true.
+     */
+    private static int runWithReruns(String features, String worker, String batch, String[] cucumberArgs) throws IOException {
+        String label = (worker == null ? "" : "worker-" + worker + "-") + (batch == null ? "suite" : batch);
+        Path failed = FailureReruns.failedFile(label, 0);
+        Files.deleteIfExists(failed);
+        EvidenceQueue.setReportDirectory(reportDirectory(worker, batch, 0));
+        int status = run(concat(defaultOptions(reportPlugin(worker, batch, 0), features), concat(new String[]{"--plugin", "rerun:" + failed},
+                cucumberArgs)), Thread.currentThread().getContextClassLoader());
+        Set<String> failedFirst = FailureReruns.read(failed);
+        int attempts = Integer.getInteger("rerun.attempts", 1);
+        if (attempts <= 0 || failedFirst.isEmpty()) {
+            return status;
+        }
+        int maxScenarios = Integer.getInteger("rerun.maxScenarios", 20);
+        if (failedFirst.size() > maxScenarios) {
+            System.out.printf("Not rerunning %d failed scenarios, more than -Drerun.maxScenarios=%d%n", failedFirst.size(), maxScenarios);
+            return status;
+        }
+        String deferReport = System.getProperty("metrics.deferReport");
+        Set<String> stillFailing = failedFirst;
+        try {
+            // The step metrics report of the first run has been printed, reruns only add their samples
+            System.setProperty("metrics.deferReport", "true");
+            for (int attempt = 1; attempt <= attempts && !stillFailing.isEmpty(); attempt++) {
+                System.out.printf("Rerunning %d failed scenarios, attempt %d of %d%n", stillFailing.size(), attempt, attempts);
+                Path rerun = FailureReruns.failedFile(label, attempt);
+                Files.deleteIfExists(rerun);
+                EvidenceQueue.setReportDirectory(reportDirectory(worker, batch, attempt));
+                status = run(concat(defaultOptions(reportPlugin(worker, batch, attempt), "@" + failed),
+                        concat(new String[]{"--plugin", "rerun:" + rerun}, cucumberArgs)), Thread.currentThread().getContextClassLoader());
+                stillFailing = FailureReruns.read(rerun);
+                failed = rerun;
+            }
+        } finally {
+            if (deferReport == null) {
+                System.clearProperty("metrics.deferReport");
+            } else {
+                System.setProperty("metrics.deferReport", deferReport);
+            }
+        }
+        FailureReruns.record(System.getProperty("metrics.runId"), worker, failedFirst, stillFailing);
+        return status == 0 && Boolean.getBoolean("rerun.failOnFlaky") ? 1 : status;
+    }
+
+    /**
+     * Gets the report plugin of a Cucumber run: the HTML report, rendered at the end of the run from the events
+     * streamed to disk as it goes, or for a worker process the Cucumber messages its parent merges into the HTML report.
+     *
+     * @param worker  The --worker number, or null when not a worker.
+     * @param batch   The dataset batch the run is for, e.g. batch-0001, or null.
+     * @param attempt 0 for the first run, then 1 and onwards for the reruns of its failed scenarios.
+     */
+    private static String reportPlugin(String worker, String batch, int attempt) {
+        String rerun = attempt == 0 ? "" : "-attempt-" + attempt;
+        if (worker == null) {
+            if (attempt > 0) {
+                return "runner.StreamingReportPlugin:" + FailureReruns.RERUN_DIRECTORY.resolve((batch == null ? "suite" : batch) + rerun + ".html");
+            }
+            return "runner.StreamingReportPlugin:cucumber-reports/" + (batch == null ? "cucumber-html-report.html" : "dataset/" + batch + ".html");
+        }
+        return "message:" + WorkerShards.WORKER_DIRECTORY.resolve("worker-" + worker + (batch == null ? "" : "-" + batch) + rerun + ".ndjson");
+    }
+
+    /**
+     * Gets the directory of the HTML report a Cucumber run ends up in, which links from the report are relative to.
+     * The messages of a worker are merged into the report of its parent, its reruns into a report per attempt.
+     *
+     * @param worker  The --worker number, or null when not a worker.
+     * @param batch   The dataset batch the run is for, e.g. batch-0001, or null.
+     * @param attempt 0 for the first run, then 1 and onwards for the reruns of its failed scenarios.
+     */
+    private static Path reportDirectory(String worker, String batch, int attempt) {
+        if (attempt > 0) {
+            return FailureReruns.RERUN_DIRECTORY;
+        }
+        return worker == null && batch != null ? Path.of("cucumber-reports", "dataset") : Path.of("cucumber-reports");
+    }
+
+    /**
+     * Runs the Scenario Outline of -Ddataset.feature (default resources/features/nhs_job_search.feature) over the
+     * rows of a dataset, one batch of -Ddataset.batchSize rows (default 500) at a time. Each batch is a Cucumber run
+     * of its own with an HTML report under cucumber-reports/dataset, and all batches share one step metrics run.
+     *
+     * @param dataset      The CSV or JSON Lines dataset.
+     * @param shard        The shard of its rows to run.
+     * @param worker       The --worker number, or null when not a worker.
+     * @param cucumberArgs The other command line arguments, e.g. --threads or --tags.
+     * @return The highest exit status of the batches.
+     */
+    private static int runDataset(Path dataset, ScenarioDataset.Shard shard, String worker, String[] cucumberArgs) throws IOException {
+        ScenarioDataset.OutlineTemplate template = ScenarioDataset.OutlineTemplate.read(
+                Path.of(System.getProperty("dataset.feature", DEFAULT_DATASET_FEATURE)));
+        int batchSize = Math.max(1, Integer.getInteger("dataset.batchSize", 500));
+        Path batchDirectory = Files.createTempDirectory("dataset-batches");
+        int status = 0;
+        try (ScenarioDataset rows = new ScenarioDataset(dataset, template.columns(), shard)) {
+            Iterator<Path> batches = rows.batches(template, batchDirectory, batchSize);
+            while (batches.hasNext()) {
+                Path batch = batches.next();
+                // The step metrics reports cover the whole dataset, so they are printed after the last batch only
+                System.setProperty("metrics.deferReport", String.valueOf(batches.hasNext()));
+                try {
+                    status = Math.max(status, runWithReruns(batch.toString(), worker, batch.getFileName().toString().replace(".feature", ""),
+                            cucumberArgs));
+                } finally {
+                    ScenarioDataset.forgetBatch(batch);
+                    Files.deleteIfExists(batch);
+                }
+            }
+            System.out.println(rows.getSummary());
+        } finally {
+            System.clearProperty("metrics.deferReport");
+            Files.deleteIfExists(batchDirectory);
+        }
+        return status;
+    }
+
+    private static String[] concat(String[] options, String[] args) {
+        return Stream.concat(Arrays.stream(options), Arrays.stream(args)).toArray(String[]::new);
     }
-}
 
+    /**
+     * Reads the value of an option, e.g. --threads, which Cucumber also reads, or --dataset, which only this runner knows.
+     *
+     * @return The value, or null when the option is absent.
+     */
+    private static String optionValue(String[] args, String option) {
+        for (int i = 0; i < args.length - 1; i++) {
+            if (args[i].equals(option)) {
+                return args[i + 1];
+            }
+        }
+        return null;
+    }
 
+    private static String[] withoutOptions(String[] args, String... options) {
+        List<String> remaining = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            if (Arrays.asList(options).contains(args[i])) {
+                i++; // Skip its value too
+            } else {
+                remaining.add(args[i]);
+            }
+        }
+        return remaining.toArray(String[]::new);
+    }
+}
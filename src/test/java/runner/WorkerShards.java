@@ -0,0 +1,331 @@
+package runner;
+
+import io.cucumber.tagexpressions.Expression;
+import io.cucumber.tagexpressions.TagExpressionParser;
+import utilities.BrowserConfig;
+import utilities.NetworkFilter;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+
+/**
+ * Runs the suite in several worker JVMs at once, each running a shard of the scenarios, and merges their reports.
+ * <p>
+ * Every scenario and Examples row of the feature files is a unit of work. Shards are balanced by bin-packing:
+ * scenarios are taken longest first and each goes to the worker with the least estimated work so far, estimated
+ * from the median wall time of the scenario in the step metrics trend store (cucumber-reports/metrics/trend.tsv).
+ * Scenarios with no history are estimated at the median of those with history, so a slow row with a location and
+ * distance filter does not end up on the same worker as the other slow rows. Scenarios excluded by --tags are
+ * not counted.
+ * <p>
+ * Each worker writes its Cucumber messages to cucumber-reports/workers/worker-N.ndjson and its console output to
+ * worker-N.log there. When every worker has finished, the messages are merged into cucumber-messages.ndjson and
+ * the HTML report, the messages of their reruns into reports under cucumber-reports/rerun, and the workers' step
+ * metrics, rerun histories and network baselines are added to the trend store, flakes.tsv and
+ * network-baseline.tsv as one run.
+ */
+final class WorkerShards {
+    static final Path WORKER_DIRECTORY = Path.of("cucumber-reports", "workers");
+    static final String NETWORK_BASELINE_SUFFIX = "-network-baseline.tsv";
+    private static final Path METRICS_DIRECTORY = Path.of("cucumber-reports", "metrics");
+    private static final long DEFAULT_SCENARIO_MILLIS = 1_000;
+    private static final Pattern ATTEMPT = Pattern.compile("-attempt-(\\d+)\\.ndjson$");
+
+    /**
+     * A scenario, or one Examples row of a Scenario Outline.
+     *
+     * @param feature The feature file.
+     * @param line    The line of the scenario, or of the Examples row.
+     * @param tags    The tags of the feature, scenario and Examples.
+     */
+    record Scenario(Path feature, int line, List<String> tags) {
+
+        /**
+         * Gets the key the step metrics use for this scenario, e.g. nhs_job_search.feature:22.
+         */
+        String metricsKey() {
+            return feature.getFileName() + ":" + line;
+        }
+
+        /**
+         * Gets the location Cucumber runs this scenario from, e.g. resources/features/nhs_job_search.feature:22.
+         */
+        String location() {
+            return feature.toString().replace(File.separatorChar, '/') + ":" + line;
+        }
+    }
+
+    /**
+     * A worker's share of the scenarios.
+     */
+    record Shard(List<Scenario> scenarios, long estimatedMillis) {
+    }
+
+    private record Exit(int code, long nanos) {
+    }
+
+    private WorkerShards() {
+    }
+
+    /**
+     * Finds the scenarios and Examples rows of every feature file under a directory.
+     *
+     * @param features The features directory, e.g. resources/features.
+     * @return The scenarios in file and line order.
+     */
+    static List<Scenario> discover(Path features) throws IOException {
+        List<Path> files;
+        try (Stream<Path> paths = Files.walk(features)) {
+            files = paths.filter(path -> path.toString().endsWith(".feature")).sorted().toList();
+        }
+        List<Scenario> scenarios = new ArrayList<>();
+        for (Path file : files) {
+            List<String> pendingTags = new ArrayList<>();
+            List<String> featureTags = List.of();
+            List<String> outlineTags = List.of();
+            List<String> examplesTags = List.of();
+            boolean inOutline = false;
+            boolean inExamples = false;
+            boolean examplesHeader = false;
+            List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+            for (int i = 0; i < lines.size(); i++) {
+                String trimmed = lines.get(i).trim();
+                if (trimmed.startsWith("@")) {
+                    String tags = trimmed.contains(" #") ? trimmed.substring(0, trimmed.indexOf(" #")) : trimmed;
+                    pendingTags.addAll(Arrays.asList(tags.split("\\s+")));
+                    continue;
+                }
+                if (trimmed.startsWith("Feature:")) {
+                    featureTags = List.copyOf(pendingTags);
+                } else if (trimmed.startsWith("Scenario Outline:") || trimmed.startsWith("Scenario Template:")) {
+                    outlineTags = concat(featureTags, pendingTags);
+                    inOutline = true;
+                    inExamples = false;
+                } else if (trimmed.startsWith("Scenario:") || trimmed.startsWith("Example:")) {
+                    scenarios.add(new Scenario(file, i + 1, concat(featureTags, pendingTags)));
+                    inOutline = false;
+                    inExamples = false;
+                } else if (inOutline && (trimmed.startsWith("Examples:") || trimmed.startsWith("Scenarios:"))) {
+                    examplesTags = concat(outlineTags, pendingTags);
+                    inExamples = true;
+                    examplesHeader = true;
+                } else if (inExamples && trimmed.startsWith("|")) {
+                    if (!examplesHeader) {
+                        scenarios.add(new Scenario(file, i + 1, examplesTags));
+                    }
+                    examplesHeader = false;
+                } else if (trimmed.startsWith("Background:") || trimmed.startsWith("Rule:")) {
+                    inOutline = false;
+                    inExamples = false;
+                }
+                if (!trimmed.isEmpty() && !trimmed.startsWith("#")) {
+                    pendingTags.clear();
+                }
+            }
+        }
+        return scenarios;
+    }
+
+    private static List<String> concat(List<String> first, List<String> second) {
+        return Stream.concat(first.stream(), second.stream()).toList();
+    }
+
+    /**
+     * Splits scenarios into shards of about equal estimated time, longest scenario first onto the least loaded
+     * worker.
+     *
+     * @param scenarios The scenarios to run.
+     * @param history   The median wall time of scenarios from previous runs, keyed by {@link Scenario#metricsKey()}.
+     * @param workers   The number of workers.
+     * @return The non-empty shards, most estimated work first.
+     */
+    static List<Shard> plan(List<Scenario> scenarios, Map<String, Long> history, int workers) {
+        List<Long> known = scenarios.stream().map(scenario -> history.get(scenario.metricsKey()))
+                .filter(Objects::nonNull).sorted().toList();
+        long unknownMillis = known.isEmpty() ? DEFAULT_SCENARIO_MILLIS : known.get((known.size() - 1) / 2);
+        List<Scenario> longestFirst = new ArrayList<>(scenarios);
+        longestFirst.sort(Comparator.comparingLong((Scenario scenario) -> history.getOrDefault(scenario.metricsKey(), unknownMillis))
+                .reversed());
+
+        List<List<Scenario>> assigned = new ArrayList<>();
+        long[] loads = new long[workers];
+        for (int i = 0; i < workers; i++) {
+            assigned.add(new ArrayList<>());
+        }
+        for (Scenario scenario : longestFirst) {
+            int leastLoaded = 0;
+            for (int i = 1; i < workers; i++) {
+                if (loads[i] < loads[leastLoaded]) {
+                    leastLoaded = i;
+                }
+            }
+            assigned.get(leastLoaded).add(scenario);
+            loads[leastLoaded] += history.getOrDefault(scenario.metricsKey(), unknownMillis);
+        }
+        List<Shard> shards = new ArrayList<>();
+        for (int i = 0; i < workers; i++) {
+            if (!assigned.get(i).isEmpty()) {
+                List<Scenario> inFileOrder = assigned.get(i).stream()
+                        .sorted(Comparator.comparing((Scenario scenario) -> scenario.feature().toString()).thenComparingInt(Scenario::line))
+                        .toList();
+                shards.add(new Shard(inFileOrder, loads[i]));
+            }
+        }
+        shards.sort(Comparator.comparingLong(Shard::estimatedMillis).reversed());
+        return shards;
+    }
+
+    /**
+     * Runs the scenarios under resources/features, or the rows of a dataset, in worker JVMs and waits for them.
+     *
+     * @param workers      The number of worker JVMs.
+     * @param dataset      The --dataset to split by --shard i/n between the workers, or null to shard the scenarios.
+     * @param cucumberArgs The other command line arguments, passed to every worker.
+     * @return The highest exit status of the workers.
+     */
+    static int run(int workers, String dataset, String[] cucumberArgs) throws IOException {
+        Files.createDirectories(WORKER_DIRECTORY);
+        try (Stream<Path> previous = Files.list(WORKER_DIRECTORY)) {
+            for (Path file : previous.toList()) {
+                Files.delete(file);
+            }
+        }
+        String runId = System.getProperty("metrics.runId", StepMetricsPlugin.newRunId());
+        List<List<String>> workerArgs = new ArrayList<>();
+        if (dataset != null) {
+            for (int i = 1; i <= workers; i++) {
+                workerArgs.add(List.of("--dataset", dataset, "--shard", i + "/" + workers));
+            }
+            System.out.printf("Running %s in %d workers, split by --shard%n", dataset, workers);
+        } else {
+            List<Scenario> scenarios = selected(discover(Path.of("resources", "features")), cucumberArgs);
+            List<Shard> shards = plan(scenarios, StepMetricsPlugin.medianScenarioMillis(METRICS_DIRECTORY), workers);
+            System.out.printf("Running %d scenarios in %d workers%n", scenarios.size(), shards.size());
+            for (int i = 0; i < shards.size(); i++) {
+                Path scenarioFile = WORKER_DIRECTORY.resolve("worker-" + (i + 1) + ".scenarios");
+                Files.write(scenarioFile, shards.get(i).scenarios().stream().map(Scenario::location).toList(), StandardCharsets.UTF_8);
+                workerArgs.add(List.of("--scenarios", scenarioFile.toString()));
+                System.out.printf("  worker %d: %d scenarios, estimated %.1f s%n", i + 1, shards.get(i).scenarios().size(),
+                        shards.get(i).estimatedMillis() / 1000.0);
+            }
+        }
+
+        // Workers browse the stand-in site this process serves, instead of each starting one on the same port
+        boolean localStub = "LOCAL_STUB".equals(System.getProperty("environmentLink"));
+        if (localStub) {
+            BrowserConfig.getBaseUrl();
+        }
+        long start = System.nanoTime();
+        List<CompletableFuture<Exit>> exits = new ArrayList<>();
+        for (int i = 0; i < workerArgs.size(); i++) {
+            int worker = i + 1;
+            List<String> command = new ArrayList<>();
+            command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+            command.addAll(ManagementFactory.getRuntimeMXBean().getInputArguments().stream()
+                    .filter(argument -> !argument.startsWith("-agentlib:jdwp")).toList());
+            command.add("-Dmetrics.runId=" + runId);
+            command.add("-Dmetrics.worker=" + worker);
+            if (localStub) {
+                command.add("-Dstub.external=true");
+            }
+            command.addAll(List.of("-cp", System.getProperty("java.class.path"), TestRunner.class.getName()));
+            command.addAll(Arrays.asList(cucumberArgs));
+            command.addAll(workerArgs.get(i));
+            command.addAll(List.of("--worker", String.valueOf(worker)));
+            Process process = new ProcessBuilder(command)
+                    .redirectErrorStream(true)
+                    .redirectOutput(WORKER_DIRECTORY.resolve("worker-" + worker + ".log").toFile())
+                    .start();
+            exits.add(process.onExit().thenApply(exited -> new Exit(exited.exitValue(), System.nanoTime())));
+        }
+        long longestMillis = 0;
+        long totalMillis = 0;
+        int status = 0;
+        for (int i = 0; i < exits.size(); i++) {
+            Exit exit = exits.get(i).join();
+            int exitCode = exit.code();
+            status = Math.max(status, exitCode);
+            long millis = (exit.nanos() - start) / 1_000_000;
+            longestMillis = Math.max(longestMillis, millis);
+            totalMillis += millis;
+            System.out.printf("  worker %d finished after %.1f s with exit code %d, output in %s%n", i + 1, millis / 1000.0,
+                    exitCode, WORKER_DIRECTORY.resolve("worker-" + (i + 1) + ".log"));
+        }
+        System.out.printf("Workers took %.1f s, %.1f s of work in all%n", longestMillis / 1000.0, totalMillis / 1000.0);
+
+        mergeReports();
+        StepMetricsPlugin.collectWorkerRuns(METRICS_DIRECTORY, runId);
+        FailureReruns.collectWorkerHistories(WORKER_DIRECTORY);
+        try (Stream<Path> files = Files.list(WORKER_DIRECTORY)) {
+            NetworkFilter.mergeBaselines(files.filter(path -> path.getFileName().toString().endsWith(NETWORK_BASELINE_SUFFIX)).sorted().toList());
+        }
+        return status;
+    }
+
+    // The tag expressions of every --tags option, all of which a scenario has to match
+    private static List<Scenario> selected(List<Scenario> scenarios, String[] cucumberArgs) {
+        List<Expression> expressions = new ArrayList<>();
+        for (int i = 0; i < cucumberArgs.length - 1; i++) {
+            if (cucumberArgs[i].equals("--tags") || cucumberArgs[i].equals("-t")) {
+                expressions.add(TagExpressionParser.parse(cucumberArgs[i + 1]));
+            }
+        }
+        return scenarios.stream().filter(scenario -> expressions.stream().allMatch(expression -> expression.evaluate(scenario.tags())))
+                .toList();
+    }
+
+    /**
+     * Merges the message streams of the workers into the HTML report. The first runs of every worker make up the
+     * report, as in a run without workers; the reruns of failed scenarios are merged by attempt into reports of their
+     * own under cucumber-reports/rerun, so a scenario is never reported twice.
+     */
+    private static void mergeReports() throws IOException {
+        Map<Integer, List<Path>> attempts = new TreeMap<>();
+        try (Stream<Path> files = Files.list(WORKER_DIRECTORY)) {
+            for (Path file : files.filter(path -> path.getFileName().toString().endsWith(".ndjson")).sorted().toList()) {
+                attempts.computeIfAbsent(attempt(file), attempt -> new ArrayList<>()).add(file);
+            }
+        }
+        for (Map.Entry<Integer, List<Path>> attempt : attempts.entrySet()) {
+            Path merged;
+            Path html;
+            if (attempt.getKey() == 0) {
+                merged = Path.of("cucumber-reports", "cucumber-messages.ndjson");
+                html = Path.of("cucumber-reports", "cucumber-html-report.html");
+            } else {
+                merged = FailureReruns.RERUN_DIRECTORY.resolve("workers-attempt-" + attempt.getKey() + ".ndjson");
+                html = FailureReruns.RERUN_DIRECTORY.resolve("workers-attempt-" + attempt.getKey() + ".html");
+                Files.createDirectories(html.getParent());
+            }
+            MessageReports.merge(attempt.getValue(), merged);
+            MessageReports.writeHtml(merged, html);
+            System.out.println("Merged the reports of the workers into " + html);
+        }
+    }
+
+    /**
+     * Gets the attempt a worker's message stream is for, from its name, e.g. worker-2-attempt-1.ndjson.
+     *
+     * @return 0 for the first run, then 1 and onwards for the reruns.
+     */
+    static int attempt(Path messages) {
+        Matcher attempt = ATTEMPT.matcher(messages.getFileName().toString());
+        return attempt.find() ? Integer.parseInt(attempt.group(1)) : 0;
+    }
+}
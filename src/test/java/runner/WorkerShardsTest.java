@@ -0,0 +1,96 @@
+package runner;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+
+public class WorkerShardsTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static WorkerShards.Scenario scenario(int line) {
+        return new WorkerShards.Scenario(Path.of("features", "search.feature"), line, List.of());
+    }
+
+    private static List<Integer> lines(WorkerShards.Shard shard) {
+        return shard.scenarios().stream().map(WorkerShards.Scenario::line).toList();
+    }
+
+    @Test
+    public void packsLongestScenariosFirstOntoTheLeastLoadedWorker() {
+        List<WorkerShards.Scenario> scenarios = List.of(scenario(1), scenario(2), scenario(3), scenario(4), scenario(5));
+        Map<String, Long> history = Map.of("search.feature:1", 8_000L, "search.feature:2", 7_000L, "search.feature:3", 6_000L,
+                "search.feature:4", 5_000L, "search.feature:5", 4_000L);
+        List<WorkerShards.Shard> shards = WorkerShards.plan(scenarios, history, 2);
+        // 8, 7, 6 -> 7 + 6, 5 -> 8 + 5, 4 -> 8 + 5 + 4 is 17 against 13
+        assertEquals(2, shards.size());
+        assertEquals(17_000, shards.get(0).estimatedMillis());
+        assertEquals(List.of(1, 4, 5), lines(shards.get(0)));
+        assertEquals(13_000, shards.get(1).estimatedMillis());
+        assertEquals(List.of(2, 3), lines(shards.get(1)));
+    }
+
+    @Test
+    public void estimatesScenariosWithoutHistoryAtTheMedian() {
+        List<WorkerShards.Scenario> scenarios = List.of(scenario(1), scenario(2), scenario(3), scenario(4));
+        Map<String, Long> history = Map.of("search.feature:1", 9_000L, "search.feature:2", 3_000L, "search.feature:3", 1_000L);
+        List<WorkerShards.Shard> shards = WorkerShards.plan(scenarios, history, 2);
+        // Line 4 counts as the median of 3 s, so 9 goes to one worker and 3 + 3 + 1 to the other
+        assertEquals(9_000, shards.get(0).estimatedMillis());
+        assertEquals(List.of(1), lines(shards.get(0)));
+        assertEquals(List.of(2, 3, 4), lines(shards.get(1)));
+        // With no history at all, every scenario counts as 1 s
+        assertEquals(3_000, WorkerShards.plan(List.of(scenario(1), scenario(2), scenario(3)), Map.of(), 1).get(0).estimatedMillis());
+    }
+
+    @Test
+    public void leavesOutWorkersWithNothingToRun() {
+        List<WorkerShards.Shard> shards = WorkerShards.plan(List.of(scenario(1), scenario(2)), Map.of(), 4);
+        assertEquals(2, shards.size());
+    }
+
+    @Test
+    public void discoversScenariosAndExamplesRowsWithTheirTags() throws IOException {
+        Path features = folder.newFolder("features").toPath();
+        Files.write(features.resolve("search.feature"), List.of(
+                "@search",
+                "Feature: Search",
+                "  Background:",
+                "    Given the site",
+                "  @ui",
+                "  Scenario: Home page",
+                "    Then it loads",
+                "  Scenario Outline: Search for <keyword>",
+                "    When I search for <keyword>",
+                "    @slow",
+                "    Examples:",
+                "      | keyword |",
+                "      | nurse   |",
+                "      | doctor  |"), StandardCharsets.UTF_8);
+        List<WorkerShards.Scenario> scenarios = WorkerShards.discover(features);
+        assertEquals(3, scenarios.size());
+        assertEquals("search.feature:6", scenarios.get(0).metricsKey());
+        assertEquals(List.of("@search", "@ui"), scenarios.get(0).tags());
+        assertEquals(List.of(13, 14), List.of(scenarios.get(1).line(), scenarios.get(2).line()));
+        assertEquals(List.of("@search", "@slow"), scenarios.get(2).tags());
+    }
+
+    @Test
+    public void readsTheAttemptOfAMessageStream() {
+        assertEquals(0, WorkerShards.attempt(Path.of("worker-2.ndjson")));
+        assertEquals(0, WorkerShards.attempt(Path.of("worker-2-batch-0001.ndjson")));
+        assertEquals(1, WorkerShards.attempt(Path.of("worker-2-attempt-1.ndjson")));
+        assertEquals(3, WorkerShards.attempt(Path.of("worker-1-batch-0002-attempt-3.ndjson")));
+    }
+}
@@ -3,38 +3,64 @@ package stepDefinitions;
 import io.cucumber.java.After;
 import io.cucumber.java.Before;
 import io.cucumber.java.Scenario;
-import org.openqa.selenium.OutputType;
-import org.openqa.selenium.TakesScreenshot;
-import utilities.BrowserConfig;
+import page.PageTimings;
+import page.SearchJourney;
+import utilities.DriverPool;
+import utilities.EvidenceQueue;
+import utilities.NetworkFilter;
+import utilities.ResponseStore;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Collectors;
 
 
 public class Hooks {
     @Before
-    public void beforeScenario() throws Exception {
+    public void beforeScenario(Scenario scenario) throws Exception {
         System.out.println("Scenario Started");
-        BrowserConfig.setUp();
+        //Responses are recorded and replayed by feature file and line, e.g. nhs_job_search.feature:24
+        String uri = scenario.getUri().toString();
+        ResponseStore.startScenario(uri.substring(uri.lastIndexOf('/') + 1) + ":" + scenario.getLine());
+        if (!needsBrowser(scenario.getSourceTagNames())) {
+            System.out.println("Running over HTTP");//-DexecutionMode=http, no browser for this scenario
+            return;
+        }
+        DriverPool.borrow(scenario.getSourceTagNames());//Borrow a browser session for this scenario thread, blocking what its tags do not need
         System.out.println("Browser Launched");
     }
 
+    // UI and accessibility scenarios check the rendered page, so they keep the browser in every execution mode
+    private static boolean needsBrowser(Collection<String> tags) {
+        return !SearchJourney.isHttpMode() || tags.contains("@ui") || tags.contains("@accessibility");
+    }
+
     @After
     public void afterScenario(Scenario scenario) throws Exception {
-        //Screenshot on failed scenarios and attach to the cucumber report
-        if (scenario.isFailed()) {
-            try {
-                // Check if the driver supports taking screenshots
-                if (BrowserConfig.driver instanceof TakesScreenshot) {
-                    final byte[] screenshot = ((TakesScreenshot) BrowserConfig.driver).getScreenshotAs(OutputType.BYTES);
-                    // Attach the screenshot to the report
-                    scenario.attach(screenshot, "image/png", "Screenshot on Failure: " + scenario.getName());
-                } else {
-                    System.err.println("WebDriver does not support taking screenshots.");
+        //Page load timings of the searches and sorts in this scenario, for the cucumber report
+        List<PageTimings> timings = PageTimings.currentThread();
+        if (!timings.isEmpty()) {
+            scenario.log("Page timings:" + System.lineSeparator() + timings.stream().map(PageTimings::toString)
+                    .collect(Collectors.joining(System.lineSeparator())));
+        }
+        if (!DriverPool.hasSession()) {
+            return;
+        }
+        try {
+            String blocked = NetworkFilter.getScenarioSummary(DriverPool.current());
+            if (blocked != null) {
+                scenario.log(blocked);
+            }
+            //Evidence of failed scenarios is written to cucumber-reports/evidence in the background, the report links to it
+            if (scenario.isFailed()) {
+                List<String> links = EvidenceQueue.capture(DriverPool.current(), scenario.getName());
+                if (!links.isEmpty()) {
+                    scenario.attach(String.join("\r\n", links), "text/uri-list", "Evidence of failure: " + scenario.getName());
                 }
-            } catch (Exception e) {
-                System.err.println("Failed to take screenshot: " + e.getMessage());
-                e.printStackTrace();
             }
+        } finally {
+            DriverPool.release(scenario.isFailed());//Return the browser session to the pool, failed sessions are recycled
         }
-        BrowserConfig.tearDown();//Close the window
-        System.out.println("Browser Closed");
+        System.out.println(DriverPool.isReuseEnabled() ? "Browser Returned" : "Browser Closed");
     }
 }
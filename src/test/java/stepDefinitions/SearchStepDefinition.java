@@ -10,17 +10,28 @@ import io.cucumber.java.en.When;
 import org.json.JSONArray;
 import org.json.JSONObject;
 import page.JobSearch;
+import page.PageTimings;
+import page.ResultParser;
+import page.SearchJourney;
+import page.SearchCriteria;
+import page.SearchResultChecks;
+import utilities.AccessibilityScanner;
 import utilities.BrowserConfig;
 
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.stream.Stream;
 
 import static org.junit.Assert.*;
 import static page.JobSearch.*;
 
 public class SearchStepDefinition {
-    JobSearch nhsJobSearchPage = new JobSearch();
+    private static final DateTimeFormatter DATE_FULL_MONTH_FORMATTER = DateTimeFormatter.ofPattern("dd MMMM yyyy", Locale.ENGLISH);
+    // Browser or HTTP journey, depending on whether the Before hook borrowed a browser for this scenario
+    SearchJourney nhsJobSearchPage = SearchJourney.forCurrentScenario();
+    // Shared parser, so relative dates like "3 days ago" resolve against the same day for the whole run
+    ResultParser resultParser = ResultParser.forRun();
 
     public SearchStepDefinition() throws Exception {
         super();
@@ -28,9 +39,9 @@ public class SearchStepDefinition {
 
 
     @Given("I am a jobseeker on the NHS Jobs website")
-    public void iAmAJobseekerOnTheNhsJobsWebsite() {
+    public void iAmAJobseekerOnTheNhsJobsWebsite() throws AutomationFrameworkException {
         nhsJobSearchPage.navigateToSearchPage();
-        assertTrue("NHS Jobs search page should be displayed", BrowserConfig.driver.getTitle().contains("Search for jobs"));
+        assertTrue("NHS Jobs search page should be displayed", nhsJobSearchPage.getPageTitle().contains("Search for jobs"));
     }
 
     @When("I search for jobs with job title or skills {string}")
@@ -78,70 +89,16 @@ public class SearchStepDefinition {
 
     @Then("I should see a list of jobs matching keyword: {string},location: {string},distance: {string},employer: {string} and pay range: {string}")
     public void iShouldSeeAListOfJobsMatchingAnd(String keyword, String location, String distance, String employer, String payRange) throws AutomationFrameworkException {
-        List<JobSearch.JobSearchResult> jobResults = nhsJobSearchPage.getSearchResultsDetails();
-        assertFalse("Job results list is empty", jobResults.isEmpty());
-        //checking that the keyword entered from the input field is matching with all the 10 results in the first page of search result .checking that any of the values are matching.
-        if(!keyword.isEmpty()) {
-            boolean keywordMatch = jobResults.stream().anyMatch(result -> {
-                // Get all relevant fields from the current JobSearchResult, convert to lowercase
-                String resultTitleLower = result.title() != null ? result.title().toLowerCase(Locale.ROOT) : "";
-                String resultEmployerLower = result.employer() != null ? result.employer().toLowerCase(Locale.ROOT) : "";
-                String resultLocationLower = result.location() != null ? result.location().toLowerCase(Locale.ROOT) : "";
-                String resultDistanceLower = result.distance() != null ? result.distance().toLowerCase(Locale.ROOT) : "";
-                String resultPayRangeLower = result.payRange() != null ? result.payRange().toLowerCase(Locale.ROOT) : "";
-                String resultContractTypeLower = result.contractType() != null ? result.contractType().toLowerCase(Locale.ROOT) : "";
-                String resultWorkingPatternLower = result.workingPattern() != null ? result.workingPattern().toLowerCase(Locale.ROOT) : "";
-
-
-                // Check if the searchKeyword is contained in any of these fields
-                return resultTitleLower.contains(keyword.toLowerCase(Locale.ROOT)) ||
-                        resultEmployerLower.contains(keyword.toLowerCase(Locale.ROOT)) ||
-                        resultLocationLower.contains(keyword.toLowerCase(Locale.ROOT)) ||
-                        resultDistanceLower.contains(keyword.toLowerCase(Locale.ROOT)) ||
-                        resultPayRangeLower.contains(keyword.toLowerCase(Locale.ROOT)) ||
-                        resultContractTypeLower.contains(keyword.toLowerCase(Locale.ROOT)) ||
-                        resultWorkingPatternLower.contains(keyword.toLowerCase(Locale.ROOT));
-            });
-            assertTrue("At least one search details should contain the word: " + keyword, keywordMatch);
-        }
-        //if location is not empty then checking that any of the job search result contains the location inserted
-        if (!location.isEmpty()) {
-            boolean locationMatch = jobResults.stream().anyMatch(result -> result.location().toLowerCase(Locale.ROOT).contains(location.toLowerCase(Locale.ROOT)));
-            assertTrue("At least one location should contain the word: " + location, locationMatch);
-        }
-        //On entering location the distance drop down is enabled, and checking that in all the 10 matches all the distance are under the input value
-        if (!distance.isEmpty() && !location.isEmpty()) {
-            distance = distance.replaceAll("(?i)\\b(miles|mile|mi|m)\\b\\s*", "");
-            String finalDistance = distance;
-            boolean distanceMatch = jobResults.stream()
-                    .allMatch(result -> {
-                        double jobDistance = parseMilesDistance(result.distance());
-                        if (jobDistance == -1.0) {
-                            return false;
-                        }
-                        return jobDistance <= Double.parseDouble(finalDistance);
-                    });
-            assertTrue("All the job location distance should be with in the range of: " + distance, distanceMatch);
-        }
-        //if employer is an empty string the check will not happen
-        if (!employer.isEmpty()) {
-            boolean employerMatch = jobResults.stream().anyMatch(result -> result.employer().toLowerCase(Locale.ROOT).contains(employer.toLowerCase(Locale.ROOT)));
-            assertTrue("At least one employer should contain the word: " + employer, employerMatch);
-        }
-        //checking the salary is in the range we have input from the field
-        if (!payRange.isEmpty()) {
-            double[] searchRange = parsePayRange(payRange);
-            double searchLow = searchRange[0];
-            double searchHigh = searchRange[1];
-            boolean payRangeMatch = jobResults.stream()
-                    .allMatch(result -> {
-                        double[] jobResultParsedRange = parsePayRange(result.payRange());
-                        double jobLow = jobResultParsedRange[0];
-                        double jobHigh = jobResultParsedRange[1];
-                        return Math.max(jobLow, searchLow) <= Math.min(jobHigh, searchHigh);
-                    });
-            assertTrue("All the pay range will be within the range of: " + payRange, payRangeMatch);
+        // The search inputs are compiled once, then the results of all the result pages read (-DmaxResultPages)
+        // are parsed and checked against every criterion in a single pass as they stream past
+        SearchCriteria criteria = SearchCriteria.forSearch(keyword, location, distance, employer, payRange, resultParser);
+        SearchCriteria.Evaluation evaluation;
+        try (Stream<JobSearch.JobSearchResult> jobResults = nhsJobSearchPage.streamSearchResults()) {
+            evaluation = criteria.evaluate(jobResults.iterator(), resultParser);
         }
+        assertFalse("Job results list is empty", evaluation.rows() == 0);
+        String failures = evaluation.describeFailures();
+        assertTrue(failures, failures.isEmpty());
     }
 
     @Then("I sort the search results by {string}")
@@ -151,42 +108,71 @@ public class SearchStepDefinition {
 
     @And("the search results should be sorted by newest date posted")
     public void theSearchResultsShouldBeSortedByNewestDatePosted() throws AutomationFrameworkException {
-        DateTimeFormatter DATE_FULL_MONTH_FORMATTER = DateTimeFormatter.ofPattern("dd MMMM yyyy", Locale.ENGLISH);
-        List<String> dateStrings = nhsJobSearchPage.getJobResultDates();
-        assertFalse("Job dates list should not be empty for sorting verification", dateStrings.isEmpty());
-        // 2. Parse raw date strings into a list of LocalDate objects
-        List<LocalDate> actualParsedDates = new ArrayList<>();
-        for (String dateString : dateStrings) {
-            LocalDate parsedDate = parseJobDate(dateString);
-            if (parsedDate != null) {
-                actualParsedDates.add(parsedDate);
-            }
+        // Dates that could not be parsed are skipped, the rest are compared across page boundaries as they stream past
+        SearchResultChecks.DateOrder order;
+        try (Stream<JobSearch.JobSearchResult> jobResults = nhsJobSearchPage.streamSearchResults()) {
+            order = SearchResultChecks.checkNewestFirst(jobResults.iterator(), resultParser);
         }
+        assertFalse("Job dates list should not be empty for sorting verification", order.results() == 0);
 
         // Assert that we have valid dates to compare after parsing
-        assertFalse("No valid dates found for sorting comparison after parsing all job results.", actualParsedDates.isEmpty());
-
-        // 3. Verify dates are in descending order (newest first)
-        for (int i = 0; i < actualParsedDates.size() - 1; i++) {
-            LocalDate currentDate = actualParsedDates.get(i);
-            LocalDate nextDate = actualParsedDates.get(i + 1);
-            assertTrue(
-                    String.format(
-                            "Dates are not sorted by newest date posted. Issue at index %d: '%s' (current) vs '%s' (next)",
-                            i,
-                            currentDate.format(DATE_FULL_MONTH_FORMATTER),
-                            nextDate.format(DATE_FULL_MONTH_FORMATTER)
-                    ),
-                    !currentDate.isBefore(nextDate)
-            );
+        assertFalse("No valid dates found for sorting comparison after parsing all job results.", order.datedResults() == 0);
+
+        // Verify dates are in descending order (newest first)
+        if (order.unsortedIndex() >= 0) {
+            fail(String.format(
+                    "Dates are not sorted by newest date posted. Issue at index %d: '%s' (current) vs '%s' (next)",
+                    order.unsortedIndex(),
+                    LocalDate.ofEpochDay(order.unsortedEpochDay()).format(DATE_FULL_MONTH_FORMATTER),
+                    LocalDate.ofEpochDay(order.nextEpochDay()).format(DATE_FULL_MONTH_FORMATTER)
+            ));
         }
+    }
 
+    @Then("the search results should load within {int} ms")
+    public void theSearchResultsShouldLoadWithin(int budgetMillis) throws AutomationFrameworkException {
+        assertWithinBudget("load", budgetMillis);
+    }
 
+    @Then("the search results {string} should be within {int} ms")
+    public void theSearchResultsTimingShouldBeWithin(String metric, int budgetMillis) throws AutomationFrameworkException {
+        assertWithinBudget(metric, budgetMillis);
+    }
+
+    // Checks a timing of the last search or sort against its budget, only failing the scenario with -DperformanceBudgets=true
+    private static void assertWithinBudget(String metric, int budgetMillis) throws AutomationFrameworkException {
+        PageTimings.checkMetricName(metric);
+        String notCaptured = PageTimings.notCapturedReason();
+        if (notCaptured != null) {
+            System.out.println("Budget of " + budgetMillis + " ms not checked. " + notCaptured);
+            return;
+        }
+        PageTimings timings = PageTimings.last();
+        Long millis = timings.metrics().get(metric);
+        if (millis == null) {
+            System.out.println("The " + metric + " of the " + timings.action() + " is not measured in this execution mode");
+            return;
+        }
+        String message = String.format("The %s of the %s took %d ms, %s the budget of %d ms", metric, timings.action(), millis,
+                millis <= budgetMillis ? "within" : "over", budgetMillis);
+        if (!PageTimings.areBudgetsEnforced()) {
+            System.out.println(message + " (not enforced without -DperformanceBudgets=true)");
+            return;
+        }
+        assertTrue(message, millis <= budgetMillis);
     }
 
     @Then("The page should be accessibility tested")
-    public void thePageShouldBeAccessibilityTested() {
-        JSONObject responseJson = new AXE.Builder(BrowserConfig.driver, scriptURL).analyze();
+    public void thePageShouldBeAccessibilityTested() throws AutomationFrameworkException {
+        assertNoAccessibilityViolations(new AccessibilityScanner(BrowserConfig.getDriver()).scan());
+    }
+
+    @Then("the {string} region should be accessibility tested")
+    public void theRegionShouldBeAccessibilityTested(String region) throws AutomationFrameworkException {
+        assertNoAccessibilityViolations(new AccessibilityScanner(BrowserConfig.getDriver()).scan(JobSearch.accessibilityRegion(region)));
+    }
+
+    private static void assertNoAccessibilityViolations(JSONObject responseJson) {
         JSONArray violations = responseJson.getJSONArray("violations");
         if (violations.length() == 0) {
             System.out.println("No violations found");
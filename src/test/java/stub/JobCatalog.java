@@ -0,0 +1,356 @@
+package stub;
+
+import java.time.Clock;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.SplittableRandom;
+
+
+/**
+ * Generated in-memory catalogue of NHS jobs served by the {@link StubServer}.
+ * Jobs are stored column by column in primitive arrays so catalogues of millions of jobs stay compact,
+ * and every search is a single scan over a pre-sorted index with real keyword, location, distance,
+ * employer and pay range filtering and pagination. The same size and seed always give the same catalogue.
+ */
+public class JobCatalog {
+    public static final int PAGE_SIZE = 10;
+
+    static final String[] TITLES = {"Staff Nurse", "Band 5 Staff Nurse - Acute Medicine", "Senior Staff Nurse - Emergency Department",
+            "Healthcare Assistant", "Advanced Clinical Practitioner", "Advanced Clinical Practitioner - Urgent Care",
+            "Administrative Assistant", "Admin Officer - Outpatients", "Medical Secretary", "Consultant Radiologist",
+            "Specialty Doctor in Psychiatry", "Junior Doctor - Foundation Year 1", "GP Doctor", "Physiotherapist",
+            "Occupational Therapist", "Pharmacy Technician", "Clinical Psychologist", "Paramedic", "Midwife",
+            "Estates Maintenance Officer", "Domestic Assistant", "Receptionist", "Healthcare Support Worker",
+            "Speech and Language Therapist"};
+    static final String[] EMPLOYERS = {"Manchester University NHS Foundation Trust", "Leeds Teaching Hospitals NHS Trust",
+            "NHS Greater Glasgow and Clyde", "North Cumbria Integrated Care NHS Foundation Trust",
+            "University Hospitals Birmingham NHS Foundation Trust", "Birmingham Community Healthcare NHS Foundation Trust",
+            "Oxford Health NHS Foundation Trust", "Guy's and St Thomas' NHS Foundation Trust", "Priory Group",
+            "Bupa Dental Care", "Newcastle upon Tyne Hospitals NHS Foundation Trust", "Bristol Community Health",
+            "Cumbria, Northumberland, Tyne and Wear NHS Foundation Trust", "Salford Royal NHS Foundation Trust"};
+    static final String[] CONTRACT_TYPES = {"Permanent", "Fixed term", "Bank", "Locum", "Secondment"};
+    static final String[] WORKING_PATTERNS = {"Full time", "Part time", "Full time, Part time", "Flexible working",
+            "Full time, Part time, Flexible working, Job share"};
+
+    // Towns with their coordinates. Neighbouring towns make distance searches return several towns.
+    static final String[] TOWNS = {"Manchester", "Salford", "Stockport", "Oldham", "Birmingham", "Solihull", "Wolverhampton",
+            "Glasgow", "Paisley", "Whitehaven", "Workington", "Egremont", "Cockermouth", "Leeds", "Bradford", "London",
+            "Croydon", "Oxford", "Bristol", "Newcastle upon Tyne", "Gateshead", "Carlisle"};
+    private static final double[] TOWN_LATITUDES = {53.4808, 53.4875, 53.4106, 53.5409, 52.4862, 52.4118, 52.5862,
+            55.8642, 55.8456, 54.5489, 54.6425, 54.4833, 54.6636, 53.8008, 53.7960, 51.5072, 51.3762, 51.7520, 51.4545,
+            54.9783, 54.9527, 54.8925};
+    private static final double[] TOWN_LONGITUDES = {-2.2426, -2.2901, -2.1575, -2.1114, -1.8904, -1.7778, -2.1288,
+            -4.2518, -4.4239, -3.5870, -3.5480, -3.5330, -3.3620, -1.5491, -1.7594, -0.1276, -0.0982, -1.2577, -2.5879,
+            -1.6178, -1.6034, -2.9329};
+    private static final String[] POSTCODE_AREAS = {"M", "M", "SK", "OL", "B", "B", "WV", "G", "PA", "CA", "CA", "CA", "CA",
+            "LS", "BD", "SE", "CR", "OX", "BS", "NE", "NE", "CA"};
+    private static final double MILES_PER_DEGREE_LATITUDE = 69.0;
+
+    public enum Sort {
+        BEST_MATCH("relevance", "Best Match"),
+        DATE_POSTED_NEWEST("publicationDateDesc", "Date Posted (newest)"),
+        SALARY_HIGH_TO_LOW("salaryDesc", "Salary (high to low)");
+
+        final String value;
+        final String label;
+
+        Sort(String value, String label) {
+            this.value = value;
+            this.label = label;
+        }
+
+        static Sort fromValue(String value) {
+            for (Sort sort : values()) {
+                if (sort.value.equals(value)) {
+                    return sort;
+                }
+            }
+            return BEST_MATCH;
+        }
+    }
+
+    /**
+     * A search against the catalogue. Empty strings and zero values mean the filter is not applied.
+     *
+     * @param distanceMiles Search radius around the location, 0 to match the location's town only.
+     * @param payMinPounds  Low end of the searched pay range, inclusive.
+     * @param payMaxPounds  High end of the searched pay range, 0 for no pay filter.
+     * @param page          One-based result page.
+     */
+    public record Query(String keyword, String location, int distanceMiles, String employer,
+                        int payMinPounds, int payMaxPounds, Sort sort, int page) {
+    }
+
+    /**
+     * One page of search results.
+     *
+     * @param jobs          Catalogue indexes of the jobs on the page, in display order.
+     * @param distancesMiles Distance of each job from the searched location, or -1 when no location was searched.
+     * @param totalResults  Number of jobs matching the query across all pages.
+     */
+    public record ResultPage(int[] jobs, double[] distancesMiles, int totalResults, int page) {
+        public int totalPages() {
+            return (totalResults + PAGE_SIZE - 1) / PAGE_SIZE;
+        }
+    }
+
+    private final int size;
+    private final LocalDate today;
+    // One column per job attribute
+    private final short[] title;
+    private final short[] employer;
+    private final short[] town;
+    private final float[] latitude;
+    private final float[] longitude;
+    private final short[] postcodeDistrict;
+    private final int[] payLowPounds;
+    private final int[] payHighPounds;
+    private final boolean[] hourlyPay;
+    private final byte[] contractType;
+    private final byte[] workingPattern;
+    private final short[] postedDaysAgo;
+    // Job indexes in the order of each sort option
+    private final int[] bestMatchOrder;
+    private final int[] newestOrder;
+    private final int[] salaryOrder;
+
+    /**
+     * Generates a catalogue.
+     *
+     * @param size  Number of jobs.
+     * @param seed  Random seed, the same seed always gives the same jobs.
+     * @param clock Clock deciding the date jobs are posted relative to.
+     */
+    public JobCatalog(int size, long seed, Clock clock) {
+        this.size = size;
+        this.today = LocalDate.now(clock);
+        title = new short[size];
+        employer = new short[size];
+        town = new short[size];
+        latitude = new float[size];
+        longitude = new float[size];
+        postcodeDistrict = new short[size];
+        payLowPounds = new int[size];
+        payHighPounds = new int[size];
+        hourlyPay = new boolean[size];
+        contractType = new byte[size];
+        workingPattern = new byte[size];
+        postedDaysAgo = new short[size];
+
+        SplittableRandom random = new SplittableRandom(seed);
+        for (int i = 0; i < size; i++) {
+            title[i] = (short) random.nextInt(TITLES.length);
+            employer[i] = (short) random.nextInt(EMPLOYERS.length);
+            int t = random.nextInt(TOWNS.length);
+            town[i] = (short) t;
+            // Spread jobs up to about 3 miles around the town centre
+            latitude[i] = (float) (TOWN_LATITUDES[t] + (random.nextDouble() - 0.5) * 6 / MILES_PER_DEGREE_LATITUDE);
+            longitude[i] = (float) (TOWN_LONGITUDES[t] + (random.nextDouble() - 0.5) * 6 / milesPerDegreeLongitude(TOWN_LATITUDES[t]));
+            postcodeDistrict[i] = (short) (1 + random.nextInt(30));
+            if (random.nextInt(8) == 0) {
+                hourlyPay[i] = true;
+                payLowPounds[i] = 11 + random.nextInt(25);
+                payHighPounds[i] = payLowPounds[i] + random.nextInt(5);
+            } else {
+                payLowPounds[i] = 18_000 + random.nextInt(80) * 1_000;
+                payHighPounds[i] = payLowPounds[i] + random.nextInt(12) * 1_000;
+            }
+            contractType[i] = (byte) random.nextInt(CONTRACT_TYPES.length);
+            workingPattern[i] = (byte) random.nextInt(WORKING_PATTERNS.length);
+            postedDaysAgo[i] = (short) random.nextInt(60);
+        }
+
+        bestMatchOrder = new int[size];
+        for (int i = 0; i < size; i++) {
+            bestMatchOrder[i] = i;
+        }
+        newestOrder = sortedBy(postedDaysAgo, false);
+        salaryOrder = sortedBy(annualPay(), true);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public LocalDate today() {
+        return today;
+    }
+
+    /**
+     * Runs a search and returns the requested page.
+     *
+     * @param query The search.
+     * @return The jobs on the requested page and the total number of matches.
+     */
+    public ResultPage search(Query query) {
+        boolean[] titleMatches = dictionaryMatches(TITLES, query.keyword());
+        boolean[] employerKeywordMatches = dictionaryMatches(EMPLOYERS, query.keyword());
+        boolean[] employerMatches = dictionaryMatches(EMPLOYERS, query.employer());
+        boolean keywordFilter = !query.keyword().isEmpty();
+        boolean employerFilter = !query.employer().isEmpty();
+        boolean payFilter = query.payMaxPounds() > 0;
+
+        int searchTown = -1;
+        boolean[] townsInRange = null;
+        if (!query.location().isEmpty()) {
+            searchTown = findTown(query.location());
+            if (searchTown < 0) {
+                return new ResultPage(new int[0], new double[0], 0, 1); // Unknown location
+            }
+            townsInRange = new boolean[TOWNS.length];
+            for (int t = 0; t < TOWNS.length; t++) {
+                // Jobs sit up to about 3 miles from their town centre
+                townsInRange[t] = t == searchTown
+                        || (query.distanceMiles() > 0 && milesBetween(TOWN_LATITUDES[searchTown], TOWN_LONGITUDES[searchTown],
+                        TOWN_LATITUDES[t], TOWN_LONGITUDES[t]) <= query.distanceMiles() + 5);
+            }
+        }
+
+        int page = Math.max(1, query.page());
+        int firstMatch = (page - 1) * PAGE_SIZE;
+        int[] pageJobs = new int[PAGE_SIZE];
+        double[] pageDistances = new double[PAGE_SIZE];
+        int onPage = 0;
+        int matches = 0;
+        for (int job : order(query.sort())) {
+            if (keywordFilter && !titleMatches[title[job]] && !employerKeywordMatches[employer[job]]) {
+                continue;
+            }
+            if (employerFilter && !employerMatches[employer[job]]) {
+                continue;
+            }
+            // Pay ranges are compared as displayed, so hourly rates never fall in an annual salary band
+            if (payFilter && (payLowPounds[job] > query.payMaxPounds() || payHighPounds[job] < query.payMinPounds())) {
+                continue;
+            }
+            double distance = -1;
+            if (townsInRange != null) {
+                if (!townsInRange[town[job]]) {
+                    continue;
+                }
+                distance = milesBetween(TOWN_LATITUDES[searchTown], TOWN_LONGITUDES[searchTown], latitude[job], longitude[job]);
+                if (query.distanceMiles() > 0 ? distance > query.distanceMiles() : town[job] != searchTown) {
+                    continue;
+                }
+            }
+            if (matches >= firstMatch && onPage < PAGE_SIZE) {
+                pageJobs[onPage] = job;
+                pageDistances[onPage] = distance;
+                onPage++;
+            }
+            matches++;
+        }
+        return new ResultPage(Arrays.copyOf(pageJobs, onPage), Arrays.copyOf(pageDistances, onPage), matches, page);
+    }
+
+    public String title(int job) {
+        return TITLES[title[job]];
+    }
+
+    public String employer(int job) {
+        return EMPLOYERS[employer[job]];
+    }
+
+    public String location(int job) {
+        return TOWNS[town[job]] + ", " + POSTCODE_AREAS[town[job]] + postcodeDistrict[job] + " " + (1 + job % 9) + (char) ('A' + job % 26) + (char) ('A' + job / 26 % 26);
+    }
+
+    public String payRange(int job) {
+        if (hourlyPay[job]) {
+            return payLowPounds[job] == payHighPounds[job]
+                    ? String.format(Locale.UK, "£%d.%02d an hour", payLowPounds[job], job % 100)
+                    : String.format(Locale.UK, "£%d.%02d to £%d.%02d an hour", payLowPounds[job], job % 100, payHighPounds[job], job % 100);
+        }
+        return payLowPounds[job] == payHighPounds[job]
+                ? String.format(Locale.UK, "£%,d a year", payLowPounds[job])
+                : String.format(Locale.UK, "£%,d to £%,d a year", payLowPounds[job], payHighPounds[job]);
+    }
+
+    public LocalDate datePosted(int job) {
+        return today.minusDays(postedDaysAgo[job]);
+    }
+
+    public String contractType(int job) {
+        return CONTRACT_TYPES[contractType[job]];
+    }
+
+    public String workingPattern(int job) {
+        return WORKING_PATTERNS[workingPattern[job]];
+    }
+
+    public String reference(int job) {
+        return String.format("C%07d-%02d", job, job % 97);
+    }
+
+    private int[] order(Sort sort) {
+        return switch (sort) {
+            case DATE_POSTED_NEWEST -> newestOrder;
+            case SALARY_HIGH_TO_LOW -> salaryOrder;
+            default -> bestMatchOrder;
+        };
+    }
+
+    // Top of each job's pay range as an annual salary, hourly rates counted as 37.5 hours for 52 weeks
+    private int[] annualPay() {
+        int[] pay = new int[size];
+        for (int i = 0; i < size; i++) {
+            pay[i] = hourlyPay[i] ? payHighPounds[i] * 1950 : payHighPounds[i];
+        }
+        return pay;
+    }
+
+    private static int[] sortedBy(short[] keys, boolean descending) {
+        int[] values = new int[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            values[i] = keys[i];
+        }
+        return sortedBy(values, descending);
+    }
+
+    // Stable sort of job indexes by key, packing key and index into one long to avoid boxing
+    private static int[] sortedBy(int[] keys, boolean descending) {
+        long[] packed = new long[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            long key = descending ? -(long) keys[i] : keys[i];
+            packed[i] = (key << 32) | i;
+        }
+        Arrays.sort(packed);
+        int[] order = new int[keys.length];
+        for (int i = 0; i < packed.length; i++) {
+            order[i] = (int) packed[i];
+        }
+        return order;
+    }
+
+    // Which dictionary entries contain the text, ignoring case. Matched once per query instead of once per job.
+    private static boolean[] dictionaryMatches(String[] dictionary, String text) {
+        boolean[] matches = new boolean[dictionary.length];
+        String textLower = text.toLowerCase(Locale.ROOT);
+        for (int i = 0; i < dictionary.length; i++) {
+            matches[i] = dictionary[i].toLowerCase(Locale.ROOT).contains(textLower);
+        }
+        return matches;
+    }
+
+    private static int findTown(String location) {
+        String locationLower = location.trim().toLowerCase(Locale.ROOT);
+        for (int t = 0; t < TOWNS.length; t++) {
+            if (TOWNS[t].toLowerCase(Locale.ROOT).equals(locationLower)) {
+                return t;
+            }
+        }
+        return -1;
+    }
+
+    private static double milesPerDegreeLongitude(double latitude) {
+        return MILES_PER_DEGREE_LATITUDE * Math.cos(Math.toRadians(latitude));
+    }
+
+    // Equirectangular approximation, accurate to well under a percent over the distances searched
+    private static double milesBetween(double latitude1, double longitude1, double latitude2, double longitude2) {
+        double north = (latitude2 - latitude1) * MILES_PER_DEGREE_LATITUDE;
+        double east = (longitude2 - longitude1) * milesPerDegreeLongitude((latitude1 + latitude2) / 2);
+        return Math.sqrt(north * north + east * east);
+    }
+}
@@ -0,0 +1,208 @@
+package stub;
+
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.time.format.DateTimeFormatter;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+
+/**
+ * Renders the pages of the stand-in NHS Jobs site with the same ids, classes and text the JobSearch locators use.
+ */
+final class SearchPages {
+    static final Map<String, String> DISTANCE_OPTIONS = new LinkedHashMap<>();
+    static final Map<String, String> PAY_RANGE_OPTIONS = new LinkedHashMap<>();
+    private static final DateTimeFormatter DATE_POSTED_FORMATTER = DateTimeFormatter.ofPattern("d MMMM yyyy", Locale.ENGLISH);
+
+    static {
+        DISTANCE_OPTIONS.put("", "Select distance");
+        for (int miles : new int[]{5, 10, 20, 50, 100}) {
+            DISTANCE_OPTIONS.put(String.valueOf(miles), "+" + miles + " Miles");
+        }
+        PAY_RANGE_OPTIONS.put("", "Select pay range");
+        for (int band = 0; band < 100; band += 10) {
+            PAY_RANGE_OPTIONS.put(band + "-" + (band + 10), String.format(Locale.UK, "£%,d to £%,d", band * 1000, (band + 10) * 1000));
+        }
+        PAY_RANGE_OPTIONS.put("100", "£100,000 plus");
+    }
+
+    private SearchPages() {
+    }
+
+    static String homePage() {
+        return page("NHS Jobs", """
+                <h1>Find a job in the NHS</h1>
+                <p><a class="nhsuk-link" href="/candidate/search">Search for a job</a></p>
+                """);
+    }
+
+    static String searchPage(Map<String, String> parameters) {
+        return page("Search for jobs in the NHS - NHS Jobs", "<h1>Search for jobs in the NHS</h1>\n" + searchForm(parameters));
+    }
+
+    static String resultsPage(JobCatalog catalog, JobCatalog.Query query, JobCatalog.ResultPage results, Map<String, String> parameters) {
+        StringBuilder body = new StringBuilder(8_192);
+        body.append("<h1>Search for jobs in the NHS</h1>\n").append(searchForm(parameters));
+        body.append("<h2 id=\"search-results-heading\">").append(results.totalResults()).append(" jobs found</h2>\n");
+        body.append(sortForm(query, parameters));
+        if (results.jobs().length == 0) {
+            body.append("<h3 class=\"nhsuk-heading-s\">No result found</h3>\n");
+        } else {
+            body.append("<ul class=\"nhsuk-list search-results\">\n");
+            for (int i = 0; i < results.jobs().length; i++) {
+                appendResultCard(body, catalog, results.jobs()[i], results.distancesMiles()[i]);
+            }
+            body.append("</ul>\n");
+            appendPagination(body, results, parameters);
+        }
+        return page("Search results - Search for jobs in the NHS - NHS Jobs", body.toString());
+    }
+
+    static String jobAdvertPage(JobCatalog catalog, int job) {
+        return page(escape(catalog.title(job)) + " - NHS Jobs", "<h1>" + escape(catalog.title(job)) + "</h1>\n"
+                + "<p>" + escape(catalog.employer(job)) + ", " + escape(catalog.location(job)) + "</p>\n"
+                + "<p>Salary: " + escape(catalog.payRange(job)) + "</p>\n"
+                + "<p>Job reference: " + catalog.reference(job) + "</p>\n");
+    }
+
+    static String notFoundPage() {
+        return page("Page not found - NHS Jobs", "<h1>Page not found</h1>\n");
+    }
+
+    private static String searchForm(Map<String, String> parameters) {
+        boolean advanced = !parameters.getOrDefault("employer", "").isEmpty()
+                || !parameters.getOrDefault("payRange", "").isEmpty()
+                || !parameters.getOrDefault("jobReference", "").isEmpty();
+        return """
+                <form action="/candidate/search/results" method="get" id="search-form">
+                <div class="nhsuk-form-group"><label class="nhsuk-label" for="keyword">What (job title or skills)</label>
+                <input class="nhsuk-input" id="keyword" name="keyword" type="text" value="%s"></div>
+                <div class="nhsuk-form-group"><label class="nhsuk-label" for="location">Where (town, city or postcode)</label>
+                <input class="nhsuk-input" id="location" name="location" type="text" value="%s"></div>
+                <div class="nhsuk-form-group"><label class="nhsuk-label" for="distance">Distance</label>
+                <select class="nhsuk-select" id="distance" name="distance">%s</select></div>
+                <p><a class="nhsuk-link" href="#advanced-search" %s onclick="document.getElementById('advanced-search').hidden = false; this.hidden = true; return false;">More search options</a></p>
+                <div id="advanced-search" %s>
+                <div class="nhsuk-form-group"><label class="nhsuk-label" for="jobReference">Job reference</label>
+                <input class="nhsuk-input" id="jobReference" name="jobReference" type="text" value="%s"></div>
+                <div class="nhsuk-form-group"><label class="nhsuk-label" for="employer">Employer</label>
+                <input class="nhsuk-input" id="employer" name="employer" type="text" value="%s"></div>
+                <div class="nhsuk-form-group"><label class="nhsuk-label" for="payRange">Pay range</label>
+                <select class="nhsuk-select" id="payRange" name="payRange">%s</select></div>
+                </div>
+                <input class="nhsuk-button" id="search" type="submit" value="Search">
+                </form>
+                """.formatted(
+                escape(parameters.getOrDefault("keyword", "")),
+                escape(parameters.getOrDefault("location", "")),
+                options(DISTANCE_OPTIONS, parameters.getOrDefault("distance", "")),
+                advanced ? "hidden" : "",
+                advanced ? "" : "hidden",
+                escape(parameters.getOrDefault("jobReference", "")),
+                escape(parameters.getOrDefault("employer", "")),
+                options(PAY_RANGE_OPTIONS, parameters.getOrDefault("payRange", "")));
+    }
+
+    // Changing the sort order resubmits the current search, as on the live site
+    private static String sortForm(JobCatalog.Query query, Map<String, String> parameters) {
+        StringBuilder form = new StringBuilder("<form action=\"/candidate/search/results\" method=\"get\" id=\"sort-form\">\n");
+        for (Map.Entry<String, String> parameter : parameters.entrySet()) {
+            if (!parameter.getKey().equals("sort") && !parameter.getKey().equals("page")) {
+                form.append("<input type=\"hidden\" name=\"").append(escape(parameter.getKey()))
+                        .append("\" value=\"").append(escape(parameter.getValue())).append("\">\n");
+            }
+        }
+        Map<String, String> sortOptions = new LinkedHashMap<>();
+        for (JobCatalog.Sort sort : JobCatalog.Sort.values()) {
+            sortOptions.put(sort.value, sort.label);
+        }
+        form.append("<label class=\"nhsuk-label\" for=\"sort\">Sort by</label>\n")
+                .append("<select class=\"nhsuk-select\" id=\"sort\" name=\"sort\" onchange=\"this.form.submit()\">")
+                .append(options(sortOptions, query.sort().value))
+                .append("</select>\n</form>\n");
+        return form.toString();
+    }
+
+    private static void appendResultCard(StringBuilder body, JobCatalog catalog, int job, double distanceMiles) {
+        body.append("<li class=\"nhsuk-list-panel search-result nhsuk-u-padding-3\" data-test=\"search-result\">\n")
+                .append("<h2 class=\"nhsuk-heading-m\"><a class=\"nhsuk-link\" href=\"/candidate/jobadvert/").append(job).append("\">")
+                .append(escape(catalog.title(job))).append("</a></h2>\n")
+                .append("<h3 class=\"nhsuk-u-font-weight-bold\">").append(escape(catalog.employer(job)))
+                .append("<div class=\"location-font-size\">").append(escape(catalog.location(job))).append("</div></h3>\n")
+                .append("<ul class=\"nhsuk-list\">\n");
+        if (distanceMiles >= 0) {
+            body.append("<li>Distance: <strong>").append(String.format(Locale.UK, "%.1f miles", distanceMiles)).append("</strong></li>\n");
+        }
+        body.append("<li>Salary: <strong>").append(escape(catalog.payRange(job))).append("</strong></li>\n")
+                .append("<li>Date posted: <strong>").append(catalog.datePosted(job).format(DATE_POSTED_FORMATTER)).append("</strong></li>\n")
+                .append("<li>Contract type: <strong>").append(escape(catalog.contractType(job))).append("</strong></li>\n")
+                .append("<li>Working pattern: <strong>").append(escape(catalog.workingPattern(job))).append("</strong></li>\n")
+                .append("</ul>\n</li>\n");
+    }
+
+    private static void appendPagination(StringBuilder body, JobCatalog.ResultPage results, Map<String, String> parameters) {
+        body.append("<nav class=\"nhsuk-pagination\" role=\"navigation\" aria-label=\"Pagination\">\n<ul class=\"nhsuk-list nhsuk-pagination__list\">\n");
+        if (results.page() > 1) {
+            body.append("<li class=\"nhsuk-pagination-item--previous\"><a class=\"nhsuk-pagination__link nhsuk-pagination__link--prev\" href=\"")
+                    .append(escape(pageUrl(parameters, results.page() - 1))).append("\">Previous</a></li>\n");
+        }
+        if (results.page() < results.totalPages()) {
+            body.append("<li class=\"nhsuk-pagination-item--next\"><a class=\"nhsuk-pagination__link nhsuk-pagination__link--next\" href=\"")
+                    .append(escape(pageUrl(parameters, results.page() + 1))).append("\">Next</a></li>\n");
+        }
+        body.append("</ul>\n<p>Page ").append(results.page()).append(" of ").append(results.totalPages()).append("</p>\n</nav>\n");
+    }
+
+    private static String pageUrl(Map<String, String> parameters, int page) {
+        StringBuilder url = new StringBuilder("/candidate/search/results?");
+        for (Map.Entry<String, String> parameter : parameters.entrySet()) {
+            if (!parameter.getKey().equals("page")) {
+                url.append(URLEncoder.encode(parameter.getKey(), StandardCharsets.UTF_8)).append('=')
+                        .append(URLEncoder.encode(parameter.getValue(), StandardCharsets.UTF_8)).append('&');
+            }
+        }
+        return url.append("page=").append(page).toString();
+    }
+
+    private static String options(Map<String, String> options, String selected) {
+        StringBuilder html = new StringBuilder();
+        for (Map.Entry<String, String> option : options.entrySet()) {
+            html.append("<option value=\"").append(escape(option.getKey())).append('"')
+                    .append(option.getKey().equals(selected) ? " selected" : "")
+                    .append('>').append(escape(option.getValue())).append("</option>");
+        }
+        return html.toString();
+    }
+
+    private static String page(String title, String body) {
+        return """
+                <!DOCTYPE html>
+                <html lang="en">
+                <head><meta charset="utf-8"><meta name="viewport" content="width=device-width, initial-scale=1"><title>%s</title></head>
+                <body>
+                <header class="nhsuk-header" role="banner"><a class="nhsuk-header__link" href="/" aria-label="NHS Jobs homepage">NHS Jobs</a></header>
+                <main class="nhsuk-main-wrapper" id="maincontent" role="main">
+                %s</main>
+                </body>
+                </html>
+                """.formatted(title, body);
+    }
+
+    static String escape(String text) {
+        StringBuilder escaped = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '&' -> escaped.append("&amp;");
+                case '<' -> escaped.append("&lt;");
+                case '>' -> escaped.append("&gt;");
+                case '"' -> escaped.append("&quot;");
+                case '\'' -> escaped.append("&#39;");
+                default -> escaped.append(c);
+            }
+        }
+        return escaped.toString();
+    }
+}
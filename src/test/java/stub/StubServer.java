@@ -0,0 +1,207 @@
+package stub;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.Executors;
+
+
+/**
+ * Embedded stand-in for the NHS Jobs search site, backed by a generated {@link JobCatalog}.
+ * Selected with -DenvironmentLink=LOCAL_STUB, it lets the suite run offline against stable data.
+ * Every response can be delayed by a fixed latency plus seeded random jitter, so suite performance
+ * can be measured deterministically.
+ * <p>
+ * Configuration (system properties): stub.catalogSize (default 100000), stub.seed (default 42),
+ * stub.latencyMs (default 0) and stub.jitterMs (default 0).
+ */
+public class StubServer {
+    private static StubServer sharedServer;
+
+    private final JobCatalog catalog;
+    private final HttpServer server;
+    private final long latencyMillis;
+    private final long jitterMillis;
+    private final SplittableRandom jitter;
+
+    /**
+     * Creates a server on the given port. Call {@link #start()} to begin serving.
+     *
+     * @param catalog       The jobs to serve.
+     * @param port          The port to listen on, 0 for any free port.
+     * @param latencyMillis Fixed delay added to every response.
+     * @param jitterMillis  Maximum random delay added on top of the fixed latency.
+     * @param seed          Seed for the jitter, so the same run sees the same delays.
+     */
+    public StubServer(JobCatalog catalog, int port, long latencyMillis, long jitterMillis, long seed) throws IOException {
+        this.catalog = catalog;
+        this.latencyMillis = latencyMillis;
+        this.jitterMillis = jitterMillis;
+        this.jitter = new SplittableRandom(seed);
+        this.server = HttpServer.create(new InetSocketAddress("localhost", port), 0);
+        this.server.createContext("/", this::handle);
+        // A virtual thread per request, so latency injection never limits concurrency
+        this.server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+    }
+
+    /**
+     * Starts the server shared by the whole run on the port of the given URL, if it is not running yet.
+     * The catalogue and latency come from the stub.* system properties.
+     * Nothing is started with -Dstub.external=true, set for the worker processes of a TestRunner --workers run,
+     * which browse the server their parent started.
+     *
+     * @param baseUrl The URL the suite will browse, e.g. http://localhost:8089/.
+     * @return The running server, or null when it is served by another process.
+     */
+    public static synchronized StubServer startShared(URI baseUrl) throws IOException {
+        if (Boolean.getBoolean("stub.external")) {
+            return null;
+        }
+        if (sharedServer == null) {
+            StubServer server = fromSystemProperties(baseUrl.getPort());
+            server.start();
+            Runtime.getRuntime().addShutdownHook(new Thread(server::stop));
+            sharedServer = server;
+        }
+        return sharedServer;
+    }
+
+    private static StubServer fromSystemProperties(int port) throws IOException {
+        int catalogSize = Integer.getInteger("stub.catalogSize", 100_000);
+        long seed = Long.getLong("stub.seed", 42L);
+        long started = System.nanoTime();
+        JobCatalog catalog = new JobCatalog(catalogSize, seed, Clock.systemDefaultZone());
+        System.out.printf("Generated stub catalogue of %d jobs in %d ms%n", catalogSize, (System.nanoTime() - started) / 1_000_000);
+        return new StubServer(catalog, port, Long.getLong("stub.latencyMs", 0L), Long.getLong("stub.jitterMs", 0L), seed);
+    }
+
+    public void start() {
+        server.start();
+        System.out.println("Stub NHS Jobs site running at " + baseUri());
+    }
+
+    public void stop() {
+        server.stop(0);
+    }
+
+    public URI baseUri() {
+        return URI.create("http://localhost:" + server.getAddress().getPort() + "/");
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            simulateLatency();
+            String path = exchange.getRequestURI().getPath();
+            Map<String, String> parameters = queryParameters(exchange.getRequestURI().getRawQuery());
+            if (!exchange.getRequestMethod().equals("GET")) {
+                respond(exchange, 405, SearchPages.notFoundPage());
+            } else if (path.equals("/")) {
+                respond(exchange, 200, SearchPages.homePage());
+            } else if (path.equals("/candidate/search")) {
+                respond(exchange, 200, SearchPages.searchPage(parameters));
+            } else if (path.equals("/candidate/search/results")) {
+                JobCatalog.Query query = toQuery(parameters);
+                respond(exchange, 200, SearchPages.resultsPage(catalog, query, catalog.search(query), parameters));
+            } else if (path.startsWith("/candidate/jobadvert/")) {
+                int job = parseInt(path.substring("/candidate/jobadvert/".length()), -1);
+                if (job >= 0 && job < catalog.size()) {
+                    respond(exchange, 200, SearchPages.jobAdvertPage(catalog, job));
+                } else {
+                    respond(exchange, 404, SearchPages.notFoundPage());
+                }
+            } else {
+                respond(exchange, 404, SearchPages.notFoundPage());
+            }
+        } catch (RuntimeException e) {
+            System.err.println("Stub server failed to handle " + exchange.getRequestURI() + ": " + e.getMessage());
+            throw e;
+        }
+    }
+
+    private void simulateLatency() {
+        if (latencyMillis <= 0 && jitterMillis <= 0) {
+            return;
+        }
+        long delay;
+        synchronized (jitter) {
+            delay = latencyMillis + (jitterMillis > 0 ? jitter.nextLong(jitterMillis + 1) : 0);
+        }
+        try {
+            Thread.sleep(delay);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void respond(HttpExchange exchange, int status, String html) throws IOException {
+        byte[] body = html.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/html; charset=utf-8");
+        exchange.getResponseHeaders().set("Cache-Control", "no-store");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    static JobCatalog.Query toQuery(Map<String, String> parameters) {
+        String payRange = parameters.getOrDefault("payRange", "");
+        int payMin = 0;
+        int payMax = 0;
+        if (!payRange.isEmpty()) {
+            int dash = payRange.indexOf('-');
+            payMin = parseInt(dash < 0 ? payRange : payRange.substring(0, dash), 0) * 1000;
+            payMax = dash < 0 ? Integer.MAX_VALUE : parseInt(payRange.substring(dash + 1), 0) * 1000;
+        }
+        return new JobCatalog.Query(
+                parameters.getOrDefault("keyword", "").trim(),
+                parameters.getOrDefault("location", "").trim(),
+                parseInt(parameters.getOrDefault("distance", ""), 0),
+                parameters.getOrDefault("employer", "").trim(),
+                payMin,
+                payMax,
+                JobCatalog.Sort.fromValue(parameters.getOrDefault("sort", "")),
+                parseInt(parameters.getOrDefault("page", ""), 1));
+    }
+
+    private static Map<String, String> queryParameters(String rawQuery) {
+        Map<String, String> parameters = new LinkedHashMap<>();
+        if (rawQuery == null || rawQuery.isEmpty()) {
+            return parameters;
+        }
+        for (String pair : rawQuery.split("&")) {
+            int equals = pair.indexOf('=');
+            String name = URLDecoder.decode(equals < 0 ? pair : pair.substring(0, equals), StandardCharsets.UTF_8);
+            String value = equals < 0 ? "" : URLDecoder.decode(pair.substring(equals + 1), StandardCharsets.UTF_8);
+            parameters.put(name, value);
+        }
+        return parameters;
+    }
+
+    private static int parseInt(String text, int defaultValue) {
+        try {
+            return Integer.parseInt(text.trim());
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    /**
+     * Runs the stand-in site on its own, e.g. for load tests or manual exploration.
+     *
+     * @param args Optional port, 8089 by default.
+     */
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 8089;
+        fromSystemProperties(port).start();
+    }
+}
@@ -0,0 +1,184 @@
+package utilities;
+
+import org.json.JSONObject;
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.WebDriver;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import utilities.PageFunctions.AutomationFrameworkException;
+
+
+/**
+ * Runs axe accessibility scans on the page of a browser session.
+ * <p>
+ * The axe script is read from {@link PageFunctions#scriptURL} once per JVM and only injected into pages that do
+ * not have axe loaded yet. Scans can be scoped to page regions with CSS selectors. Results are cached against a
+ * fingerprint of the scanned DOM (page URL plus a hash of the markup of the scanned regions), so scanning the same
+ * page state again on a later step or scenario returns the earlier results without running axe.
+ */
+public class AccessibilityScanner {
+    private static final int MAX_CACHED_SCANS = 64;
+    private static final Duration SCAN_TIMEOUT = Duration.ofSeconds(30);
+
+    /**
+     * Reports whether axe is loaded and fingerprints the markup of the scan context:
+     * the selected regions (arguments[0]) or the whole document when no selectors are given.
+     */
+    private static final String FINGERPRINT_SCRIPT = """
+            var selectors = arguments[0];
+            var markup = '';
+            if (selectors.length === 0) {
+                markup = document.documentElement.outerHTML;
+            } else {
+                for (var i = 0; i < selectors.length; i++) {
+                    var regions = document.querySelectorAll(selectors[i]);
+                    for (var j = 0; j < regions.length; j++) {
+                        markup += selectors[i] + '\\u0000' + regions[j].outerHTML;
+                    }
+                }
+            }
+            var hash = 0x811c9dc5;
+            for (var k = 0; k < markup.length; k++) {
+                hash ^= markup.charCodeAt(k);
+                hash = Math.imul(hash, 0x01000193);
+            }
+            return [typeof window.axe !== 'undefined', location.href + '#' + markup.length + ':' + (hash >>> 0).toString(16)];
+            """;
+
+    private static final String SCAN_SCRIPT = """
+            var callback = arguments[arguments.length - 1];
+            var selectors = arguments[0];
+            var context = selectors.length === 0 ? document : {include: selectors.map(function (selector) { return [selector]; })};
+            axe.run(context, {}, function (error, results) {
+                callback(error ? 'ERROR: ' + error : JSON.stringify(results));
+            });
+            """;
+
+    private static volatile String axeSource;
+
+    // Most recently used scan results as axe returned them, keyed by DOM fingerprint and scan context
+    private static final Map<String, String> scanCache = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+            return size() > MAX_CACHED_SCANS;
+        }
+    };
+
+    private static final AtomicInteger scans = new AtomicInteger();
+    private static final AtomicInteger cacheHits = new AtomicInteger();
+    private static final AtomicInteger injections = new AtomicInteger();
+    private static final LongAdder scanNanos = new LongAdder();
+
+    private final WebDriver driver;
+
+    /**
+     * @param driver The browser session whose pages are scanned.
+     */
+    public AccessibilityScanner(WebDriver driver) {
+        this.driver = driver;
+    }
+
+    /**
+     * Scans the page regions matching the given CSS selectors, or the whole page when none are given.
+     *
+     * @param regionSelectors CSS selectors of the regions to scan, e.g. the search form or the results list.
+     * @return The axe results, whose "violations" array lists the accessibility violations found. Every call
+     * returns its own copy, so callers may change it without affecting later scans served from the cache.
+     * @throws AutomationFrameworkException If the page has none of the regions or axe fails to run.
+     */
+    public JSONObject scan(String... regionSelectors) throws AutomationFrameworkException {
+        List<String> selectors = Arrays.asList(regionSelectors);
+        JavascriptExecutor executor = (JavascriptExecutor) driver;
+        long start = System.nanoTime();
+        scans.incrementAndGet();
+
+        List<?> state = (List<?>) executor.executeScript(FINGERPRINT_SCRIPT, selectors);
+        boolean axeLoaded = Boolean.TRUE.equals(state.get(0));
+        String cacheKey = state.get(1) + "|" + String.join(",", selectors);
+        String cached;
+        synchronized (scanCache) {
+            cached = scanCache.get(cacheKey);
+        }
+        if (cached != null) {
+            cacheHits.incrementAndGet();
+            scanNanos.add(System.nanoTime() - start);
+            return new JSONObject(cached);
+        }
+
+        if (!axeLoaded) {
+            executor.executeScript(axeSource());
+            injections.incrementAndGet();
+        }
+        // The session is pooled, so the waits of later scenarios get their own script timeout back
+        Duration scriptTimeout = driver.manage().timeouts().getScriptTimeout();
+        Object response;
+        try {
+            driver.manage().timeouts().scriptTimeout(SCAN_TIMEOUT);
+            response = executor.executeAsyncScript(SCAN_SCRIPT, selectors);
+        } finally {
+            driver.manage().timeouts().scriptTimeout(scriptTimeout);
+        }
+        if (!(response instanceof String json) || json.startsWith("ERROR: ")) {
+            throw new AutomationFrameworkException("Accessibility scan of " + describe(selectors) + " failed: " + response);
+        }
+        synchronized (scanCache) {
+            scanCache.put(cacheKey, json);
+        }
+        scanNanos.add(System.nanoTime() - start);
+        return new JSONObject(json);
+    }
+
+    private static String describe(List<String> selectors) {
+        return selectors.isEmpty() ? "the page" : String.join(", ", selectors);
+    }
+
+    // Read on first use only, instead of on every scan
+    private static String axeSource() throws AutomationFrameworkException {
+        String source = axeSource;
+        if (source == null) {
+            synchronized (AccessibilityScanner.class) {
+                source = axeSource;
+                if (source == null) {
+                    if (PageFunctions.scriptURL == null) {
+                        throw new AutomationFrameworkException("axe.min.js is not on the classpath");
+                    }
+                    try (InputStream in = PageFunctions.scriptURL.openStream()) {
+                        source = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+                    } catch (IOException e) {
+                        throw new AutomationFrameworkException("Failed to read the axe script from " + PageFunctions.scriptURL, e);
+                    }
+                    axeSource = source;
+                }
+            }
+        }
+        return source;
+    }
+
+    /**
+     * Summarises the scans of the run: how many were served from the cache and how often axe had to be injected.
+     *
+     * @return A one line summary for the run output.
+     */
+    public static String getSummary() {
+        int scanned = scans.get();
+        return String.format("Accessibility scans: %d run, %d served from cache, %d axe injections, avg %d ms per scan",
+                scanned, cacheHits.get(), injections.get(), scanned == 0 ? 0 : scanNanos.sum() / scanned / 1_000_000);
+    }
+
+    /**
+     * Whether any scan ran in this JVM.
+     */
+    public static boolean hasScanned() {
+        return scans.get() > 0;
+    }
+}
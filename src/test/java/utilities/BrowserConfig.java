@@ -1,66 +1,219 @@
 package utilities;
 
-import io.github.bonigarcia.wdm.WebDriverManager;
+import org.openqa.selenium.JavascriptExecutor;
 import org.openqa.selenium.WebDriver;
 import org.openqa.selenium.chrome.ChromeDriver;
 import org.openqa.selenium.chrome.ChromeOptions;
 import org.openqa.selenium.firefox.FirefoxDriver;
 import org.openqa.selenium.firefox.FirefoxOptions;
+import org.openqa.selenium.logging.LogType;
+import org.openqa.selenium.logging.LoggingPreferences;
+import org.openqa.selenium.support.events.EventFiringDecorator;
+
+import stub.StubServer;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
 
 
 public class BrowserConfig {
-    public static WebDriver driver;
-    public static PropertyReaderUtil readFile;
+    public static PropertyReaderUtil readFile = new PropertyReaderUtil();
 
-    public static void setUp() throws Exception {
-        readFile = new PropertyReaderUtil();
+    // Startup phases of every browser launched in this JVM
+    private static final AtomicInteger startups = new AtomicInteger();
+    private static final LongAdder resolveNanos = new LongAdder();
+    private static final LongAdder launchNanos = new LongAdder();
+    private static final LongAdder navigationNanos = new LongAdder();
+
+    /**
+     * Gets the browser session bound to the current scenario thread.
+     *
+     * @return The WebDriver borrowed from the {@link DriverPool} by the current thread.
+     */
+    public static WebDriver getDriver() {
+        return DriverPool.current();
+    }
+
+    /**
+     * Launches a new browser as configured by the browserName and environmentLink system properties
+     * and navigates it to the environment under test. The time spent resolving the driver, launching
+     * the browser and loading the first page is recorded for the startup summary. A browser that opens but
+     * cannot be set up or load the first page is quit before the failure is thrown, as no session holds it yet.
+     *
+     * @param tags The tags of the scenario the browser is launched for, whose network rules apply to the first page.
+     * @return The new WebDriver session.
+     */
+    static WebDriver launchBrowser(Collection<String> tags) throws Exception {
+        WebDriver driver = null;
         String browserName = System.getProperty("browserName");
-        String environmentLink = System.getProperty("environmentLink");
-        if(environmentLink==null)
-            environmentLink ="HOST_ENV_OPERATOR";
         if (browserName == null)
             browserName = "Chrome";
         System.out.println("Running on " + browserName);
-        switch (browserName) {
-            case "Firefox":
-                //Implementing Firefox with gecko driver
-                WebDriverManager.firefoxdriver().setup();
-                FirefoxOptions firefoxOptions = new FirefoxOptions();
-                driver = new FirefoxDriver(firefoxOptions);
-                // Maximize and launch the browser
-                driver.manage().window().maximize();
-                driver.manage().deleteAllCookies();
-                break;
-            case "Chrome":
-                //Implementing chrome with chrome driver
-                WebDriverManager.chromedriver().setup();
-                driver = new ChromeDriver();
-                // Maximize and launch the browser
-                driver.manage().window().maximize();
-                driver.manage().deleteAllCookies();
-                break;
-            case "HeadlessFirefox":
-                WebDriverManager.firefoxdriver().setup();
-                FirefoxOptions headlessFirefoxOptions = new FirefoxOptions();
-                headlessFirefoxOptions.addArguments("-headless"); // Run Firefox in headless mode
-                driver = new FirefoxDriver(headlessFirefoxOptions);
-            case "HeadlessChrome":
-                WebDriverManager.chromedriver().setup();
-                ChromeOptions headlessChromeoptions = new ChromeOptions();
-                headlessChromeoptions.addArguments("--headless"); // Run Chrome in headless mode
-                headlessChromeoptions.addArguments("--disable-gpu"); // Required for headless on some systems
-                headlessChromeoptions.addArguments("--window-size=1920,1080"); // Set window size for consistent screenshots
-                headlessChromeoptions.addArguments("--no-sandbox"); // Bypass OS security model, needed for some CI/CD environments
-                headlessChromeoptions.addArguments("--disable-dev-shm-usage"); // Overcomes limited resource problems
-                driver = new ChromeDriver(headlessChromeoptions);
+        long resolveStart = System.nanoTime();
+        if (browserName.contains("Firefox")) {
+            DriverResolver.resolveFirefoxDriver();
+        } else {
+            DriverResolver.resolveChromeDriver();
+        }
+        long launchStart = System.nanoTime();
+        WebDriver decorated = null;
+        try {
+            switch (browserName) {
+                case "Firefox":
+                    //Implementing Firefox with gecko driver
+                    FirefoxOptions firefoxOptions = new FirefoxOptions();
+                    firefoxOptions.setCapability("webSocketUrl", NetworkFilter.isEnabled()); // BiDi, for the NetworkFilter
+                    driver = new FirefoxDriver(firefoxOptions);
+                    // Maximize and launch the browser
+                    driver.manage().window().maximize();
+                    driver.manage().deleteAllCookies();
+                    break;
+                case "Chrome":
+                    //Implementing chrome with chrome driver
+                    ChromeOptions chromeOptions = new ChromeOptions();
+                    chromeOptions.setCapability(ChromeOptions.LOGGING_PREFS, browserLogging());
+                    driver = new ChromeDriver(chromeOptions);
+                    // Maximize and launch the browser
+                    driver.manage().window().maximize();
+                    driver.manage().deleteAllCookies();
+                    break;
+                case "HeadlessFirefox":
+                    FirefoxOptions headlessFirefoxOptions = new FirefoxOptions();
+                    headlessFirefoxOptions.addArguments("-headless"); // Run Firefox in headless mode
+                    headlessFirefoxOptions.setCapability("webSocketUrl", NetworkFilter.isEnabled());
+                    driver = new FirefoxDriver(headlessFirefoxOptions);
+                    break;
+                case "HeadlessChrome":
+                    ChromeOptions headlessChromeoptions = new ChromeOptions();
+                    headlessChromeoptions.addArguments("--headless"); // Run Chrome in headless mode
+                    headlessChromeoptions.addArguments("--disable-gpu"); // Required for headless on some systems
+                    headlessChromeoptions.addArguments("--window-size=1920,1080"); // Set window size for consistent screenshots
+                    headlessChromeoptions.addArguments("--no-sandbox"); // Bypass OS security model, needed for some CI/CD environments
+                    headlessChromeoptions.addArguments("--disable-dev-shm-usage"); // Overcomes limited resource problems
+                    headlessChromeoptions.setCapability(ChromeOptions.LOGGING_PREFS, browserLogging());
+                    driver = new ChromeDriver(headlessChromeoptions);
+                    break;
+                default:
+                    throw new Exception("Unsupported browserName: " + browserName
+                            + ". Use Chrome, Firefox, HeadlessChrome or HeadlessFirefox");
+            }
+
+            decorated = decorate(driver);
+            NetworkFilter.attach(driver, decorated);
+            NetworkFilter.applyRules(decorated, tags);
+
+            long navigationStart = System.nanoTime();
+            String HOST_ENV_OPERATOR = getBaseUrl();
+            decorated.navigate().to(HOST_ENV_OPERATOR);
+            long navigationEnd = System.nanoTime();
+            System.out.println(decorated.getCurrentUrl());
+            recordStartup(launchStart - resolveStart, navigationStart - launchStart, navigationEnd - navigationStart);
+            return decorated;
+        } catch (Exception e) {
+            if (decorated != null) {
+                NetworkFilter.detach(decorated);
+            }
+            if (driver != null) {
+                try {
+                    driver.quit();
+                } catch (Exception quitFailure) {
+                    e.addSuppressed(quitFailure);
+                }
+            }
+            throw e;
+        }
+    }
+
+    // Chrome keeps the console messages of the page for the failure evidence, see EvidenceQueue
+    private static LoggingPreferences browserLogging() {
+        LoggingPreferences logging = new LoggingPreferences();
+        logging.enable(LogType.BROWSER, Level.ALL);
+        return logging;
+    }
+
+    // Every session is decorated so the step metrics can count the WebDriver commands each step issues,
+    // and with -Dprofile.webdriver=true so the profiler can attribute them to the page objects
+    private static WebDriver decorate(WebDriver driver) {
+        if (WebDriverProfiler.isEnabled()) {
+            return new EventFiringDecorator<>(new WebDriverCommandCounter(), new WebDriverProfiler()).decorate(driver);
         }
+        return new EventFiringDecorator<>(new WebDriverCommandCounter()).decorate(driver);
+    }
 
-        String HOST_ENV_OPERATOR = readFile.readFileData(environmentLink);
-        driver.navigate().to(HOST_ENV_OPERATOR);
-        System.out.println(driver.getCurrentUrl());
+    private static void recordStartup(long resolve, long launch, long navigation) {
+        startups.incrementAndGet();
+        resolveNanos.add(resolve);
+        launchNanos.add(launch);
+        navigationNanos.add(navigation);
+        System.out.printf("Browser startup: resolve %d ms, launch %d ms, first navigation %d ms%n",
+                resolve / 1_000_000, launch / 1_000_000, navigation / 1_000_000);
+    }
+
+    /**
+     * Summarises where browser startup time went over the run, averaged per launch.
+     *
+     * @return A one line summary for the run output.
+     */
+    public static String getStartupSummary() {
+        int launched = startups.get();
+        if (launched == 0) {
+            return "Browser startup: no browsers launched";
+        }
+        return String.format("Browser startup over %d launches (avg): resolve %d ms, launch %d ms, first navigation %d ms",
+                launched, resolveNanos.sum() / launched / 1_000_000, launchNanos.sum() / launched / 1_000_000,
+                navigationNanos.sum() / launched / 1_000_000);
+    }
+
+    /**
+     * Gets the URL of the environment under test, as selected by the environmentLink system property.
+     * The LOCAL_STUB environment is served by an embedded stand-in site, started on first use.
+     *
+     * @return The base URL every scenario starts from.
+     */
+    public static String getBaseUrl() throws IOException {
+        String environmentLink = System.getProperty("environmentLink");
+        if (environmentLink == null)
+            environmentLink = "HOST_ENV_OPERATOR";
+        String baseUrl = readFile.readFileData(environmentLink);
+        if (environmentLink.equals("LOCAL_STUB")) {
+            StubServer.startShared(URI.create(baseUrl));
+        }
+        return baseUrl;
+    }
+
+    /**
+     * Resets a warm browser session so the next scenario starts as if the browser had just been launched:
+     * extra windows are closed, cookies and web storage are cleared and the browser goes back to the base URL.
+     *
+     * @param driver  The WebDriver session to reset.
+     * @param baseUrl The URL to navigate back to.
+     */
+    static void resetBrowser(WebDriver driver, String baseUrl) {
+        List<String> handles = new ArrayList<>(driver.getWindowHandles());
+        for (int i = 1; i < handles.size(); i++) {
+            driver.switchTo().window(handles.get(i)).close();
+        }
+        driver.switchTo().window(handles.getFirst());
+        // Web storage belongs to the current origin, so it is cleared before navigating away
+        ((JavascriptExecutor) driver).executeScript(
+                "try { window.localStorage.clear(); window.sessionStorage.clear(); } catch (e) {}");
+        driver.manage().deleteAllCookies();
+        driver.navigate().to(baseUrl);
     }
 
-    public static void tearDown() throws Exception {
+    /**
+     * Quits a browser session.
+     *
+     * @param driver The WebDriver session to quit.
+     */
+    static void quitBrowser(WebDriver driver) throws Exception {
+        NetworkFilter.detach(driver);
         try {
             driver.quit();
         } catch (Exception ex) {
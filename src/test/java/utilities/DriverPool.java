@@ -0,0 +1,265 @@
+package utilities;
+
+import org.openqa.selenium.WebDriver;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * Thread-confined pool of WebDriver sessions.
+ * Every scenario thread borrows its own session in the Before hook and returns it in the After hook,
+ * so page objects and step definitions only ever see the driver bound to the thread they run on.
+ * The number of live sessions is bounded by the configured maximum (one per Cucumber worker thread).
+ * <p>
+ * With -DreuseBrowser=true returned sessions stay warm and are reset for the next scenario instead of being quit.
+ * A session is recycled after a failed scenario or once it has served -DmaxSessionUses scenarios.
+ */
+public class DriverPool {
+    private static final int DEFAULT_MAX_SESSION_USES = 25;
+
+    private static final ThreadLocal<Session> currentSession = new ThreadLocal<>();
+    private static final Map<WebDriver, Session> activeSessions = new ConcurrentHashMap<>();
+    private static final ConcurrentLinkedDeque<Session> idleSessions = new ConcurrentLinkedDeque<>();
+    private static volatile Semaphore sessionPermits = new Semaphore(1, true);
+    private static volatile int maxSessions = 1;
+
+    // Launch statistics used to report how much time reusing warm sessions saved
+    private static final AtomicInteger launches = new AtomicInteger();
+    private static final AtomicLong launchNanos = new AtomicLong();
+    private static final AtomicInteger reuses = new AtomicInteger();
+    private static final AtomicLong resetNanos = new AtomicLong();
+    private static final AtomicInteger recycles = new AtomicInteger();
+
+    /**
+     * A browser session and the number of scenarios it has served.
+     */
+    private static final class Session {
+        private final WebDriver driver;
+        private int uses;
+
+        private Session(WebDriver driver) {
+            this.driver = driver;
+        }
+    }
+
+    private DriverPool() {
+    }
+
+    /**
+     * Sets the maximum number of browser sessions that can be alive at the same time.
+     * Must be called before the first session is borrowed.
+     *
+     * @param sessions The maximum number of concurrent sessions, usually the number of runner threads.
+     */
+    public static synchronized void setMaxSessions(int sessions) {
+        if (sessions < 1) {
+            throw new IllegalArgumentException("Maximum sessions should be at least 1 but was " + sessions);
+        }
+        maxSessions = sessions;
+        sessionPermits = new Semaphore(sessions, true);
+    }
+
+    public static int getMaxSessions() {
+        return maxSessions;
+    }
+
+    /**
+     * Whether returned sessions are kept warm for the next scenario (-DreuseBrowser=true).
+     */
+    public static boolean isReuseEnabled() {
+        return Boolean.getBoolean("reuseBrowser");
+    }
+
+    private static int maxSessionUses() {
+        return Integer.getInteger("maxSessionUses", DEFAULT_MAX_SESSION_USES);
+    }
+
+    /**
+     * Borrows a browser session for the current thread with the default network rules.
+     * Equivalent to {@code borrow(List.of())}.
+     *
+     * @return The WebDriver bound to the current thread.
+     */
+    public static WebDriver borrow() throws Exception {
+        return borrow(List.of());
+    }
+
+    /**
+     * Borrows a browser session for the current thread. A warm idle session is reset and reused when
+     * session reuse is enabled, otherwise a new browser is launched.
+     * Blocks while the maximum number of sessions is already in use.
+     * The network rules of the scenario's tags are applied before the session loads its first page, so that page
+     * is filtered, recorded and replayed as the scenario bound by {@link ResponseStore#startScenario(String)}.
+     *
+     * @param tags The scenario's tags, e.g. @accessibility.
+     * @return The WebDriver bound to the current thread.
+     */
+    public static WebDriver borrow(Collection<String> tags) throws Exception {
+        Session session = currentSession.get();
+        if (session != null) {
+            return session.driver; // Already borrowed by this thread
+        }
+        Semaphore permits = sessionPermits;
+        permits.acquire();
+        try {
+            session = takeWarmSession(tags);
+            if (session == null) {
+                long start = System.nanoTime();
+                session = new Session(BrowserConfig.launchBrowser(tags));
+                launchNanos.addAndGet(System.nanoTime() - start);
+                launches.incrementAndGet();
+            }
+        } catch (Exception e) {
+            permits.release();
+            throw e;
+        }
+        session.uses++;
+        activeSessions.put(session.driver, session);
+        currentSession.set(session);
+        return session.driver;
+    }
+
+    /**
+     * Takes an idle session and resets it for a new scenario.
+     * Sessions that cannot be reset are quit and the next idle one is tried.
+     *
+     * @param tags The new scenario's tags, whose network rules apply to the reset.
+     * @return A reset warm session, or null when none is available.
+     */
+    private static Session takeWarmSession(Collection<String> tags) {
+        Session session;
+        while ((session = idleSessions.pollFirst()) != null) {
+            long start = System.nanoTime();
+            try {
+                NetworkFilter.applyRules(session.driver, tags);
+                BrowserConfig.resetBrowser(session.driver, BrowserConfig.getBaseUrl());
+                resetNanos.addAndGet(System.nanoTime() - start);
+                reuses.incrementAndGet();
+                return session;
+            } catch (Exception e) {
+                System.err.println("Failed to reset warm browser session, recycling it: " + e.getMessage());
+                recycle(session);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the session borrowed by the current thread to the pool.
+     * Equivalent to {@code release(false)}.
+     */
+    public static void release() throws Exception {
+        release(false);
+    }
+
+    /**
+     * Returns the session borrowed by the current thread to the pool.
+     * With session reuse enabled the session stays warm unless the scenario failed
+     * or the session has reached its maximum number of uses, in which case it is recycled.
+     *
+     * @param scenarioFailed Whether the scenario that used the session failed.
+     */
+    public static void release(boolean scenarioFailed) throws Exception {
+        Session session = currentSession.get();
+        if (session == null) {
+            return;
+        }
+        currentSession.remove();
+        activeSessions.remove(session.driver);
+        try {
+            if (isReuseEnabled() && !scenarioFailed && session.uses < maxSessionUses()) {
+                idleSessions.addLast(session);
+            } else {
+                if (isReuseEnabled()) {
+                    recycles.incrementAndGet();
+                }
+                BrowserConfig.quitBrowser(session.driver);
+            }
+        } finally {
+            sessionPermits.release();
+        }
+    }
+
+    private static void recycle(Session session) {
+        recycles.incrementAndGet();
+        try {
+            BrowserConfig.quitBrowser(session.driver);
+        } catch (Exception e) {
+            System.err.println("Failed to quit recycled browser session: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Gets the session borrowed by the current thread.
+     *
+     * @return The WebDriver bound to the current thread.
+     * @throws IllegalStateException If the current thread has not borrowed a session.
+     */
+    public static WebDriver current() {
+        Session session = currentSession.get();
+        if (session == null) {
+            throw new IllegalStateException("No browser session is bound to thread " + Thread.currentThread().getName()
+                    + ". Sessions are borrowed in Hooks.beforeScenario.");
+        }
+        return session.driver;
+    }
+
+    /**
+     * Whether the current thread has borrowed a session, i.e. the scenario it runs drives a browser.
+     */
+    public static boolean hasSession() {
+        return currentSession.get() != null;
+    }
+
+    /**
+     * Quits every session still alive and prints the browser startup and session reuse summaries. Called once at the end of the run.
+     */
+    public static void shutdown() {
+        Session session;
+        while ((session = idleSessions.pollFirst()) != null) {
+            quitQuietly(session.driver);
+        }
+        for (WebDriver driver : activeSessions.keySet()) {
+            quitQuietly(driver);
+        }
+        activeSessions.clear();
+        if (launches.get() > 0) {
+            System.out.println(BrowserConfig.getStartupSummary());
+        }
+        if (isReuseEnabled()) {
+            System.out.println(getReuseSummary());
+        }
+    }
+
+    private static void quitQuietly(WebDriver driver) {
+        try {
+            BrowserConfig.quitBrowser(driver);
+        } catch (Exception e) {
+            System.err.println("Failed to quit browser session on shutdown: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Summarises how many launches were avoided by reusing warm sessions and the launch time saved.
+     * The saving is the average measured launch time for every reuse, less the time spent resetting sessions.
+     *
+     * @return A one line summary for the run output.
+     */
+    public static String getReuseSummary() {
+        int launched = launches.get();
+        int reused = reuses.get();
+        long averageLaunchMillis = launched == 0 ? 0 : launchNanos.get() / launched / 1_000_000;
+        long resetMillis = resetNanos.get() / 1_000_000;
+        long savedMillis = Math.max(0, reused * averageLaunchMillis - resetMillis);
+        return String.format("Browser sessions: %d launched (avg %d ms), %d reused, %d recycled. "
+                        + "Reset time %d ms, estimated launch time saved %d ms",
+                launched, averageLaunchMillis, reused, recycles.get(), resetMillis, savedMillis);
+    }
+}
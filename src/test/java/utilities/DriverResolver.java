@@ -0,0 +1,162 @@
+package utilities;
+
+import io.github.bonigarcia.wdm.WebDriverManager;
+import io.github.bonigarcia.wdm.config.Config;
+import io.github.bonigarcia.wdm.versions.VersionDetector;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+
+
+/**
+ * Resolves browser driver binaries once per JVM and remembers where they are between runs.
+ * <p>
+ * The first resolution of a run uses WebDriverManager, which may contact version endpoints and download the driver.
+ * The resolved path is written to a local cache file (-DdriverCacheFile, by default in the WebDriverManager
+ * cache folder ~/.cache/selenium) under the major version of the installed browser, and later runs use it directly
+ * without any network access while it is younger than -DdriverCacheTtlHours (default 24) and the browser has not
+ * been updated to another major version since. With -DdriverResolution=offline the cached path is always used,
+ * and if WebDriverManager cannot resolve a driver (e.g. no network) a cached path of any age is used instead.
+ */
+public class DriverResolver {
+    private static final String DEFAULT_CACHE_FILE = Paths.get(System.getProperty("user.home"), ".cache", "selenium",
+            "nhs-jobs-driver-paths.properties").toString();
+
+    // Resolved driver paths of this JVM, keyed by driver name
+    private static final Map<String, String> resolvedDrivers = new ConcurrentHashMap<>();
+
+    private DriverResolver() {
+    }
+
+    /**
+     * Makes the chromedriver binary available to ChromeDriver, resolving it on first use only.
+     */
+    public static void resolveChromeDriver() {
+        resolve("chromedriver", "webdriver.chrome.driver");
+    }
+
+    /**
+     * Makes the geckodriver binary available to FirefoxDriver, resolving it on first use only.
+     */
+    public static void resolveFirefoxDriver() {
+        resolve("geckodriver", "webdriver.gecko.driver");
+    }
+
+    private static void resolve(String driverName, String driverProperty) {
+        String driverPath = resolvedDrivers.get(driverName);
+        if (driverPath == null) {
+            // WebDriverManager downloads into a shared cache, so parallel workers resolve one at a time
+            synchronized (DriverResolver.class) {
+                driverPath = resolvedDrivers.computeIfAbsent(driverName, DriverResolver::resolveOnce);
+            }
+        }
+        if (!driverPath.isEmpty()) {
+            System.setProperty(driverProperty, driverPath);
+        }
+    }
+
+    /**
+     * Finds the driver in the local cache, or resolves it with WebDriverManager and records it in the cache.
+     *
+     * @return The driver path, or an empty string to let Selenium Manager locate the driver.
+     */
+    private static String resolveOnce(String driverName) {
+        Properties cache = readCache();
+        String key = driverName + "." + browserMajorVersion(driverName);
+        String cachedPath = cache.getProperty(key + ".path");
+        boolean cachedDriverExists = cachedPath != null && Files.isExecutable(Paths.get(cachedPath));
+        if (cachedDriverExists && (isOffline() || isFresh(cache.getProperty(key + ".resolvedAt")))) {
+            System.out.println("Using cached " + driverName + " for browser version " + key.substring(driverName.length() + 1) + " at " + cachedPath);
+            return cachedPath;
+        }
+        if (isOffline()) {
+            System.err.println("WARN: No cached " + driverName + " for offline resolution, leaving it to Selenium Manager");
+            return "";
+        }
+        try {
+            WebDriverManager manager = driverName.equals("geckodriver") ? WebDriverManager.firefoxdriver() : WebDriverManager.chromedriver();
+            manager.setup();
+            String driverPath = manager.getDownloadedDriverPath();
+            cache.setProperty(key + ".path", driverPath);
+            cache.setProperty(key + ".resolvedAt", String.valueOf(System.currentTimeMillis()));
+            writeCache(cache);
+            return driverPath;
+        } catch (RuntimeException e) {
+            if (cachedDriverExists) {
+                System.err.println("WARN: Failed to resolve " + driverName + " (" + e.getMessage() + "), using cached " + cachedPath);
+                return cachedPath;
+            }
+            throw e;
+        }
+    }
+
+    // Major version of the installed browser, which the driver has to match, or "unknown" when it cannot be detected
+    private static String browserMajorVersion(String driverName) {
+        try {
+            Optional<String> version = new VersionDetector(new Config(), null)
+                    .getBrowserVersionFromTheShell(driverName.equals("geckodriver") ? "firefox" : "chrome");
+            return version.map(VersionDetector::getMajorVersion).orElse("unknown");
+        } catch (RuntimeException e) {
+            return "unknown";
+        }
+    }
+
+    private static boolean isOffline() {
+        return "offline".equalsIgnoreCase(System.getProperty("driverResolution"));
+    }
+
+    private static boolean isFresh(String resolvedAt) {
+        if (resolvedAt == null) {
+            return false;
+        }
+        try {
+            long ageMillis = System.currentTimeMillis() - Long.parseLong(resolvedAt);
+            return ageMillis >= 0 && ageMillis < Duration.ofHours(Long.getLong("driverCacheTtlHours", 24L)).toMillis();
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    private static Path cacheFile() {
+        return Paths.get(System.getProperty("driverCacheFile", DEFAULT_CACHE_FILE));
+    }
+
+    private static Properties readCache() {
+        Properties cache = new Properties();
+        Path file = cacheFile();
+        if (Files.isRegularFile(file)) {
+            try (InputStream in = Files.newInputStream(file)) {
+                cache.load(in);
+            } catch (IOException e) {
+                System.err.println("WARN: Failed to read driver cache " + file + ": " + e.getMessage());
+            }
+        }
+        return cache;
+    }
+
+    // Written to a temporary file and moved into place, so a concurrent run never reads a half written cache
+    private static void writeCache(Properties cache) {
+        Path file = cacheFile();
+        try {
+            Path directory = file.toAbsolutePath().getParent();
+            Files.createDirectories(directory);
+            Path temporary = Files.createTempFile(directory, "driver-paths", ".tmp");
+            try (OutputStream out = Files.newOutputStream(temporary)) {
+                cache.store(out, "Driver binaries resolved by WebDriverManager");
+            }
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            System.err.println("WARN: Failed to write driver cache " + file + ": " + e.getMessage());
+        }
+    }
+}
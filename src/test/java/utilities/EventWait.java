@@ -0,0 +1,258 @@
+package utilities;
+
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.NotFoundException;
+import org.openqa.selenium.ScriptTimeoutException;
+import org.openqa.selenium.StaleElementReferenceException;
+import org.openqa.selenium.TimeoutException;
+import org.openqa.selenium.UnsupportedCommandException;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebDriverException;
+import org.openqa.selenium.support.ui.ExpectedCondition;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+
+/**
+ * Waits for a condition by re-checking it whenever the page changes, instead of on a fixed polling interval.
+ * <p>
+ * The condition is checked straight away. While it does not hold, an asynchronous script parks in the browser on
+ * a MutationObserver (and the load event while the page is loading) and returns as soon as the DOM changes, so the
+ * condition is checked again right after the change that can satisfy it. A burst of mutations wakes the wait once.
+ * Every park is capped at a short slice, so changes a MutationObserver cannot see (e.g. CSS transitions) are still
+ * picked up. When the browser cannot run the bridge (no JavaScript, repeated script errors), or with
+ * -DwaitMode=poll, the wait falls back to polling.
+ * <p>
+ * Latency statistics are kept for every kind of wait and printed at the end of the run.
+ */
+public final class EventWait {
+    private static final long SLICE_MILLIS = 1_000;
+    private static final long POLL_INTERVAL_MILLIS = 100;
+    private static final int MAX_BRIDGE_FAILURES = 3;
+
+    /**
+     * Resolves on the first DOM change after a short quiet period (or at most 50 ms into a burst of changes),
+     * when the page finishes loading, or after the slice in arguments[0] milliseconds.
+     */
+    private static final String DOM_CHANGE_SCRIPT = """
+            var done = arguments[arguments.length - 1];
+            var finished = false;
+            var firstChange = 0;
+            var quietTimer = null;
+            var observer = new MutationObserver(function () {
+                var now = Date.now();
+                if (!firstChange) {
+                    firstChange = now;
+                }
+                clearTimeout(quietTimer);
+                if (now - firstChange >= 50) {
+                    finish('mutation');
+                } else {
+                    quietTimer = setTimeout(function () { finish('mutation'); }, 10);
+                }
+            });
+            var sliceTimer = setTimeout(function () { finish('slice'); }, arguments[0]);
+            function onLoad() { finish('load'); }
+            function finish(reason) {
+                if (finished) {
+                    return;
+                }
+                finished = true;
+                observer.disconnect();
+                clearTimeout(sliceTimer);
+                clearTimeout(quietTimer);
+                window.removeEventListener('load', onLoad);
+                done(reason);
+            }
+            observer.observe(document, {childList: true, subtree: true, attributes: true, characterData: true});
+            if (document.readyState !== 'complete') {
+                window.addEventListener('load', onLoad);
+            }
+            """;
+
+    private static final Map<String, WaitStatistics> statistics = new ConcurrentHashMap<>();
+    private static final ThreadLocal<long[]> threadWaitNanos = ThreadLocal.withInitial(() -> new long[1]);
+
+    /**
+     * Latency statistics of one kind of wait.
+     */
+    public static final class WaitStatistics {
+        private final LongAdder waits = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final AtomicLong maxNanos = new AtomicLong();
+        private final LongAdder checks = new LongAdder();
+        private final LongAdder domWakeups = new LongAdder();
+        private final LongAdder timeouts = new LongAdder();
+        private final LongAdder pollingFallbacks = new LongAdder();
+
+        private void record(long nanos, int conditionChecks, int wakeups, boolean timedOut, boolean fellBack) {
+            waits.increment();
+            totalNanos.add(nanos);
+            maxNanos.accumulateAndGet(nanos, Math::max);
+            checks.add(conditionChecks);
+            domWakeups.add(wakeups);
+            if (timedOut) {
+                timeouts.increment();
+            }
+            if (fellBack) {
+                pollingFallbacks.increment();
+            }
+        }
+
+        public long getWaits() {
+            return waits.sum();
+        }
+
+        public long getAverageMillis() {
+            long count = waits.sum();
+            return count == 0 ? 0 : totalNanos.sum() / count / 1_000_000;
+        }
+
+        public long getMaxMillis() {
+            return maxNanos.get() / 1_000_000;
+        }
+
+        /**
+         * The number of times the condition was checked, one WebDriver round-trip or more each.
+         */
+        public long getChecks() {
+            return checks.sum();
+        }
+
+        public long getDomWakeups() {
+            return domWakeups.sum();
+        }
+
+        public long getTimeouts() {
+            return timeouts.sum();
+        }
+
+        public long getPollingFallbacks() {
+            return pollingFallbacks.sum();
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d waits, avg %d ms, max %d ms, %d checks, %d DOM wake-ups, %d timeouts, %d polling fallbacks",
+                    getWaits(), getAverageMillis(), getMaxMillis(), getChecks(), getDomWakeups(), getTimeouts(), getPollingFallbacks());
+        }
+    }
+
+    private EventWait() {
+    }
+
+    /**
+     * Waits until the condition returns a value other than null or false.
+     * NoSuchElementException and StaleElementReferenceException thrown by the condition are treated as "not yet",
+     * as WebDriverWait does.
+     *
+     * @param driver      The browser session.
+     * @param condition   The condition to wait for.
+     * @param timeout     How long to wait.
+     * @param kind        The kind of wait the statistics are kept under, e.g. "waitsForWebElement".
+     * @param <T>         The type of value the condition returns.
+     * @return The value returned by the condition.
+     * @throws TimeoutException If the condition does not hold within the timeout.
+     */
+    public static <T> T until(WebDriver driver, ExpectedCondition<T> condition, Duration timeout, String kind) {
+        long start = System.nanoTime();
+        long deadline = start + timeout.toNanos();
+        boolean useEvents = !"poll".equalsIgnoreCase(System.getProperty("waitMode")) && driver instanceof JavascriptExecutor;
+        boolean fellBack = false;
+        int bridgeFailures = 0;
+        int checks = 0;
+        int wakeups = 0;
+        RuntimeException lastException = null;
+        while (true) {
+            checks++;
+            try {
+                T value = condition.apply(driver);
+                if (value != null && !Boolean.FALSE.equals(value)) {
+                    record(kind, System.nanoTime() - start, checks, wakeups, false, fellBack);
+                    return value;
+                }
+            } catch (NotFoundException | StaleElementReferenceException e) {
+                lastException = e;
+            }
+            long remainingMillis = (deadline - System.nanoTime()) / 1_000_000;
+            if (remainingMillis <= 0) {
+                record(kind, System.nanoTime() - start, checks, wakeups, true, fellBack);
+                throw new TimeoutException(String.format("Expected condition failed: waiting for %s (tried %d times over %d ms)",
+                        condition, checks, timeout.toMillis()), lastException);
+            }
+            if (useEvents) {
+                try {
+                    Object reason = ((JavascriptExecutor) driver).executeAsyncScript(DOM_CHANGE_SCRIPT, Math.min(remainingMillis, SLICE_MILLIS));
+                    if (!"slice".equals(reason)) {
+                        wakeups++;
+                    }
+                    bridgeFailures = 0;
+                } catch (UnsupportedCommandException e) {
+                    useEvents = false;
+                    fellBack = true;
+                } catch (ScriptTimeoutException e) {
+                    // The driver's script timeout is shorter than the slice, check the condition again
+                } catch (WebDriverException e) {
+                    // Usually the page navigated away while the script was parked, which is a change worth checking.
+                    // Repeated failures mean the bridge cannot run on this page, so poll instead.
+                    if (++bridgeFailures >= MAX_BRIDGE_FAILURES) {
+                        useEvents = false;
+                        fellBack = true;
+                    }
+                }
+            } else {
+                sleep(Math.min(remainingMillis, POLL_INTERVAL_MILLIS));
+            }
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new WebDriverException("Interrupted while waiting", e);
+        }
+    }
+
+    private static void record(String kind, long nanos, int checks, int wakeups, boolean timedOut, boolean fellBack) {
+        statistics.computeIfAbsent(kind, k -> new WaitStatistics()).record(nanos, checks, wakeups, timedOut, fellBack);
+        threadWaitNanos.get()[0] += nanos;
+    }
+
+    /**
+     * Gets the total time the current thread has spent waiting so far.
+     * Take the difference between two readings to get the wait time of a step.
+     */
+    public static long currentThreadWaitNanos() {
+        return threadWaitNanos.get()[0];
+    }
+
+    /**
+     * Gets the latency statistics of every kind of wait run so far.
+     *
+     * @return The statistics keyed by kind of wait, sorted by kind.
+     */
+    public static Map<String, WaitStatistics> getStatistics() {
+        return new TreeMap<>(statistics);
+    }
+
+    /**
+     * Summarises the waits of the run, one line per kind of wait.
+     *
+     * @return The summary for the run output, empty when nothing waited.
+     */
+    public static String getSummary() {
+        StringBuilder summary = new StringBuilder();
+        for (Map.Entry<String, WaitStatistics> entry : getStatistics().entrySet()) {
+            summary.append(summary.isEmpty() ? "" : System.lineSeparator())
+                    .append("Waits ").append(entry.getKey()).append(": ").append(entry.getValue());
+        }
+        return summary.toString();
+    }
+}
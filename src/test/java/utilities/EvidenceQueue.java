@@ -0,0 +1,269 @@
+package utilities;
+
+import org.openqa.selenium.OutputType;
+import org.openqa.selenium.TakesScreenshot;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.logging.LogEntry;
+import org.openqa.selenium.logging.LogType;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.GZIPOutputStream;
+
+
+/**
+ * Captures evidence of failed scenarios from their browser session and writes it to disk in the background.
+ * <p>
+ * On the scenario thread only the raw evidence is read from the browser: the screenshot bytes, the page source,
+ * the browser console log (Chrome) and the page URL. It goes on a bounded queue (-Devidence.queueSize, default 32)
+ * and a single background writer compresses the page source and console log with gzip and writes every file
+ * through a FileChannel, while the scenario thread releases its browser and the next scenario starts. When the
+ * queue is full the scenario thread waits up to -Devidence.offerTimeoutSeconds (default 30) for room, then drops
+ * the evidence rather than stall the run.
+ * <p>
+ * Evidence goes to cucumber-reports/evidence/&lt;time&gt;-&lt;scenario&gt;/, and the paths relative to the directory
+ * of the report being written ({@link #setReportDirectory(Path)}) are returned so the report can link to them instead
+ * of embedding the bytes.
+ */
+public class EvidenceQueue {
+    private static final Path EVIDENCE_DIRECTORY = Path.of("cucumber-reports", "evidence");
+    private static final DateTimeFormatter DIRECTORY_TIME = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+    private static final Evidence STOP = new Evidence("", "", "", null, null, List.of());
+
+    private static final AtomicInteger sequence = new AtomicInteger();
+    private static final LongAdder captured = new LongAdder();
+    private static final LongAdder captureNanos = new LongAdder();
+    private static final LongAdder written = new LongAdder();
+    private static final LongAdder writtenBytes = new LongAdder();
+    private static final LongAdder dropped = new LongAdder();
+    private static final LongAdder failedWrites = new LongAdder();
+    private static BlockingQueue<Evidence> queue;
+    private static Thread writer;
+    private static volatile Path reportDirectory = EVIDENCE_DIRECTORY.getParent();
+
+    /**
+     * The raw evidence of one failed scenario, as read from the browser.
+     *
+     * @param directory   The directory to write it to, relative to the evidence directory.
+     * @param scenario    The scenario name.
+     * @param url         The URL of the page, or empty when it could not be read.
+     * @param screenshot  The PNG screenshot, or null.
+     * @param pageSource  The page source, or null.
+     * @param consoleLogs The browser console messages, empty when the browser does not provide them.
+     */
+    private record Evidence(String directory, String scenario, String url, byte[] screenshot, String pageSource,
+                            List<String> consoleLogs) {
+    }
+
+    private EvidenceQueue() {
+    }
+
+    /**
+     * Sets the directory of the HTML report the scenarios that run next are written to, e.g. cucumber-reports or
+     * cucumber-reports/rerun, which the evidence links are relative to.
+     */
+    public static void setReportDirectory(Path directory) {
+        reportDirectory = directory;
+    }
+
+    /**
+     * Reads the evidence of a failed scenario from its browser session and queues it to be written.
+     * Nothing the browser fails to provide stops the rest being captured.
+     *
+     * @param driver   The scenario's browser session.
+     * @param scenario The scenario name.
+     * @return The paths of the files the evidence will be written to, relative to the report directory, for the
+     * report to link to. Empty when the evidence was dropped.
+     */
+    public static List<String> capture(WebDriver driver, String scenario) {
+        long start = System.nanoTime();
+        String url = "";
+        byte[] screenshot = null;
+        String pageSource = null;
+        List<String> consoleLogs = new ArrayList<>();
+        try {
+            url = driver.getCurrentUrl();
+        } catch (Exception e) {
+            System.err.println("WARN: Failed to read the page URL for the failure evidence: " + e.getMessage());
+        }
+        if (driver instanceof TakesScreenshot screenshotTaker) {
+            try {
+                screenshot = screenshotTaker.getScreenshotAs(OutputType.BYTES);
+            } catch (Exception e) {
+                System.err.println("WARN: Failed to take screenshot: " + e.getMessage());
+            }
+        } else {
+            System.err.println("WebDriver does not support taking screenshots.");
+        }
+        try {
+            pageSource = driver.getPageSource();
+        } catch (Exception e) {
+            System.err.println("WARN: Failed to read the page source: " + e.getMessage());
+        }
+        try {
+            for (LogEntry entry : driver.manage().logs().get(LogType.BROWSER)) {
+                consoleLogs.add(Instant.ofEpochMilli(entry.getTimestamp()) + " " + entry.getLevel() + " " + entry.getMessage());
+            }
+        } catch (Exception e) {
+            // Only Chrome gives the console log through WebDriver
+            consoleLogs.add("Console log not available from this browser: " + e.getClass().getSimpleName());
+        }
+        String directory = LocalDateTime.now().format(DIRECTORY_TIME) + "-" + sequence.incrementAndGet() + "-" + slug(scenario);
+        Evidence evidence = new Evidence(directory, scenario, url, screenshot, pageSource, consoleLogs);
+        captured.increment();
+        captureNanos.add(System.nanoTime() - start);
+        try {
+            if (!queue().offer(evidence, Long.getLong("evidence.offerTimeoutSeconds", 30L), TimeUnit.SECONDS)) {
+                dropped.increment();
+                System.err.println("WARN: Evidence queue full, dropped the failure evidence of " + scenario);
+                return List.of();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            dropped.increment();
+            return List.of();
+        }
+        List<String> links = new ArrayList<>();
+        String base = reportDirectory.toAbsolutePath().relativize(EVIDENCE_DIRECTORY.resolve(directory).toAbsolutePath())
+                .toString().replace('\\', '/') + "/";
+        if (screenshot != null) {
+            links.add(base + "screenshot.png");
+        }
+        if (pageSource != null) {
+            links.add(base + "page.html.gz");
+        }
+        links.add(base + "console.log.gz");
+        return links;
+    }
+
+    private static String slug(String scenario) {
+        String slug = scenario.toLowerCase(Locale.ROOT).replaceAll("[^a-z0-9]+", "-").replaceAll("^-|-$", "");
+        return slug.length() > 60 ? slug.substring(0, 60) : slug;
+    }
+
+    // The queue and its writer thread are started by the first failure of the run
+    private static synchronized BlockingQueue<Evidence> queue() {
+        if (queue == null) {
+            BlockingQueue<Evidence> pending = new ArrayBlockingQueue<>(Math.max(1, Integer.getInteger("evidence.queueSize", 32)));
+            writer = Thread.ofPlatform().name("evidence-writer").daemon(true).start(() -> writeQueued(pending));
+            queue = pending;
+        }
+        return queue;
+    }
+
+    private static void writeQueued(BlockingQueue<Evidence> pending) {
+        while (true) {
+            Evidence evidence;
+            try {
+                evidence = pending.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (evidence == STOP) {
+                return;
+            }
+            try {
+                write(evidence);
+                written.increment();
+            } catch (IOException e) {
+                failedWrites.increment();
+                System.err.println("WARN: Failed to write the failure evidence of " + evidence.scenario() + ": " + e.getMessage());
+            }
+        }
+    }
+
+    private static void write(Evidence evidence) throws IOException {
+        Path directory = Files.createDirectories(EVIDENCE_DIRECTORY.resolve(evidence.directory()));
+        if (evidence.screenshot() != null) {
+            // PNG is compressed already
+            try (FileChannel channel = open(directory.resolve("screenshot.png"))) {
+                ByteBuffer buffer = ByteBuffer.wrap(evidence.screenshot());
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            }
+            writtenBytes.add(evidence.screenshot().length);
+        }
+        if (evidence.pageSource() != null) {
+            writeCompressed(directory.resolve("page.html.gz"), "<!-- " + evidence.url() + " -->\n" + evidence.pageSource());
+        }
+        writeCompressed(directory.resolve("console.log.gz"), String.join("\n", evidence.consoleLogs()) + "\n");
+    }
+
+    private static void writeCompressed(Path file, String text) throws IOException {
+        try (FileChannel channel = open(file);
+             OutputStream out = new GZIPOutputStream(Channels.newOutputStream(channel), 64 * 1024)) {
+            out.write(text.getBytes(StandardCharsets.UTF_8));
+            out.flush();
+            writtenBytes.add(channel.size());
+        }
+    }
+
+    private static FileChannel open(Path file) throws IOException {
+        return FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    /**
+     * Whether evidence has been captured in this run.
+     */
+    public static boolean hasCaptured() {
+        return captured.sum() > 0;
+    }
+
+    /**
+     * Waits for the queued evidence to be written and stops the writer.
+     *
+     * @param timeoutSeconds How long to wait for the writer.
+     */
+    public static void shutdown(long timeoutSeconds) {
+        Thread stopping;
+        synchronized (EvidenceQueue.class) {
+            if (queue == null) {
+                return;
+            }
+            stopping = writer;
+            try {
+                queue.put(STOP);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            queue = null;
+        }
+        try {
+            stopping.join(TimeUnit.SECONDS.toMillis(timeoutSeconds));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Summarises the evidence captured and written in this run.
+     *
+     * @return A one line summary for the run output.
+     */
+    public static String getSummary() {
+        long count = captured.sum();
+        return String.format("Failure evidence: %d captured (%.0f ms average on the scenario thread), %d written (%d KB), %d dropped, %d failed, in %s",
+                count, count == 0 ? 0.0 : captureNanos.sum() / 1_000_000.0 / count, written.sum(), writtenBytes.sum() / 1024,
+                dropped.sum(), failedWrites.sum(), EVIDENCE_DIRECTORY);
+    }
+}
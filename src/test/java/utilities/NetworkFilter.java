@@ -0,0 +1,595 @@
+package utilities;
+
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.bidi.HasBiDi;
+import org.openqa.selenium.bidi.module.Network;
+import org.openqa.selenium.bidi.network.AddInterceptParameters;
+import org.openqa.selenium.bidi.network.ContinueRequestParameters;
+import org.openqa.selenium.bidi.network.InterceptPhase;
+import org.openqa.selenium.devtools.Command;
+import org.openqa.selenium.devtools.DevTools;
+import org.openqa.selenium.devtools.Event;
+import org.openqa.selenium.devtools.HasDevTools;
+import org.openqa.selenium.json.Json;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+
+/**
+ * Keeps browser sessions from loading what no search assertion needs: analytics, cookie banners, fonts and images.
+ * <p>
+ * Requests are matched against URL patterns from resources/properties/network-rules.properties (or -Dnetwork.rules),
+ * chosen per scenario by its tags, so accessibility scenarios load the page in full while search scenarios skip the
+ * heavy assets. Chrome blocks through the DevTools protocol: Network.setBlockedURLs, which the browser applies
+ * without asking the test, or Fetch interception when allow patterns make exceptions to the blocked ones. Firefox
+ * intercepts every request through WebDriver BiDi and the test fails or continues it. -Dnetwork.filter=false
+ * turns filtering off.
+ * <p>
+ * Chrome sessions also record and replay their responses through the {@link ResponseStore}: Fetch interception
+ * at the response stage stores what the site returned, and at the request stage answers from the store without
+ * going to the network, failing a request that was never recorded. Firefox sessions are not recorded or replayed,
+ * as BiDi does not give the test the response bodies.
+ * <p>
+ * The bytes every loaded URL transferred are remembered (in cucumber-reports/metrics/network-baseline.tsv across
+ * runs), so a blocked request counts the bytes it used to cost. Searches and sorts loaded with nothing blocked are
+ * the baseline their filtered loads are compared with, so the summary gives the bytes and time saved per page load.
+ */
+public class NetworkFilter {
+    private static final Path BASELINE_FILE = Path.of("cucumber-reports", "metrics", "network-baseline.tsv");
+
+    private static final Map<WebDriver, Filter> filters = Collections.synchronizedMap(new IdentityHashMap<>());
+    private static final Map<String, Long> knownBytes = new ConcurrentHashMap<>(); // Bytes transferred, by URL without query
+    private static final Map<String, PageLoads> pageLoads = new ConcurrentHashMap<>(); // By action, filtered or not
+    private static volatile Map<String, List<String>> rules;
+    private static volatile boolean baselineLoaded;
+
+    /**
+     * The block and allow patterns that apply to a scenario.
+     */
+    private record Rules(List<String> block, List<String> allow, List<Pattern> blockPatterns, List<Pattern> allowPatterns) {
+        static final Rules NONE = new Rules(List.of(), List.of(), List.of(), List.of());
+
+        static Rules of(Collection<String> block, Collection<String> allow) {
+            return new Rules(List.copyOf(block), List.copyOf(allow), block.stream().map(Rules::glob).toList(),
+                    allow.stream().map(Rules::glob).toList());
+        }
+
+        private static Pattern glob(String pattern) {
+            return Pattern.compile(Arrays.stream(pattern.split("\\*", -1)).map(Pattern::quote).collect(Collectors.joining(".*")));
+        }
+
+        // Patterns are matched against the URL without its query, so *.png also matches image.png?v=1
+        boolean blocks(String url) {
+            String path = withoutQuery(url);
+            return blockPatterns.stream().anyMatch(pattern -> pattern.matcher(path).matches())
+                    && allowPatterns.stream().noneMatch(pattern -> pattern.matcher(path).matches());
+        }
+
+        /**
+         * Gets the block patterns as Chrome matches them, against the whole URL: every pattern that does not end
+         * with * again with ?* added, for the URLs with a query.
+         */
+        List<String> browserBlock() {
+            List<String> patterns = new ArrayList<>(block);
+            block.stream().filter(pattern -> !pattern.endsWith("*")).map(pattern -> pattern + "?*").forEach(patterns::add);
+            return patterns;
+        }
+    }
+
+    /**
+     * The page loads of one action, e.g. filtered searches.
+     */
+    private static final class PageLoads {
+        private final List<Long> elapsedMillis = Collections.synchronizedList(new ArrayList<>());
+        private final AtomicLong blockedRequests = new AtomicLong();
+        private final AtomicLong savedBytes = new AtomicLong();
+        private final AtomicLong loadedBytes = new AtomicLong();
+    }
+
+    /**
+     * The interception of one browser session and what it blocked and loaded since the last page load was recorded.
+     */
+    private abstract static class Filter {
+        volatile Rules rules = Rules.NONE;
+        volatile String scenario; // The ResponseStore key of the scenario using the session
+        final Map<String, String> requestUrls = new ConcurrentHashMap<>(); // In flight, by request id
+        final AtomicLong blockedRequests = new AtomicLong();
+        final AtomicLong savedBytes = new AtomicLong();
+        final AtomicLong loadedBytes = new AtomicLong();
+        final AtomicLong scenarioBlocked = new AtomicLong();
+        final AtomicLong scenarioSavedBytes = new AtomicLong();
+
+        abstract void apply(Rules rules);
+
+        void blocked(String url) {
+            long bytes = url == null ? 0 : knownBytes.getOrDefault(withoutQuery(url), 0L);
+            blockedRequests.incrementAndGet();
+            savedBytes.addAndGet(bytes);
+            scenarioBlocked.incrementAndGet();
+            scenarioSavedBytes.addAndGet(bytes);
+        }
+
+        void loaded(String url, long bytes) {
+            loadedBytes.addAndGet(bytes);
+            if (url != null && bytes > 0) {
+                knownBytes.put(withoutQuery(url), bytes);
+            }
+        }
+    }
+
+    // Chrome: the DevTools protocol, through the generic commands so it does not depend on the browser version
+    private static final class DevToolsFilter extends Filter {
+        private final DevTools devTools;
+        private List<Map<String, Object>> fetchPatterns = List.of();
+
+        DevToolsFilter(DevTools devTools) {
+            this.devTools = devTools;
+            devTools.createSessionIfThereIsNotOne();
+            devTools.send(new Command<>("Network.enable", Map.of()));
+            devTools.addListener(event("Network.requestWillBeSent"), params -> {
+                if (params.get("request") instanceof Map<?, ?> request) {
+                    requestUrls.put(String.valueOf(params.get("requestId")), String.valueOf(request.get("url")));
+                }
+            });
+            devTools.addListener(event("Network.loadingFinished"), params -> {
+                String url = requestUrls.remove(String.valueOf(params.get("requestId")));
+                loaded(url, params.get("encodedDataLength") instanceof Number length ? length.longValue() : 0);
+            });
+            devTools.addListener(event("Network.loadingFailed"), params -> {
+                String url = requestUrls.remove(String.valueOf(params.get("requestId")));
+                if (params.containsKey("blockedReason") || String.valueOf(params.get("errorText")).contains("BLOCKED_BY_CLIENT")) {
+                    blocked(url);
+                }
+            });
+            devTools.addListener(event("Fetch.requestPaused"), params -> {
+                Object requestId = params.get("requestId");
+                Map<?, ?> request = params.get("request") instanceof Map<?, ?> map ? map : Map.of();
+                String url = String.valueOf(request.get("url"));
+                String method = String.valueOf(request.get("method"));
+                if (params.get("responseStatusCode") instanceof Number status) {
+                    // Paused at the response stage, only requested when the scenario records
+                    record(requestId, method, url, status.intValue(), params.get("responseHeaders"));
+                    devTools.send(new Command<>("Fetch.continueRequest", Map.of("requestId", requestId)));
+                } else if (rules.blocks(url)) {
+                    devTools.send(new Command<>("Fetch.failRequest", Map.of("requestId", requestId, "errorReason", "BlockedByClient")));
+                } else if (ResponseStore.replays(scenario)) {
+                    replay(requestId, method, url);
+                } else {
+                    devTools.send(new Command<>("Fetch.continueRequest", Map.of("requestId", requestId)));
+                }
+            });
+        }
+
+        private void record(Object requestId, String method, String url, int status, Object responseHeaders) {
+            Map<String, String> headers = new LinkedHashMap<>();
+            if (responseHeaders instanceof List<?> list) {
+                for (Object header : list) {
+                    if (header instanceof Map<?, ?> entry) {
+                        headers.put(String.valueOf(entry.get("name")), String.valueOf(entry.get("value")));
+                    }
+                }
+            }
+            byte[] body = new byte[0];
+            if (status < 300 || status >= 400) { // Redirects have no body to get, the browser follows their Location
+                try {
+                    Map<String, Object> response = devTools.send(new Command<>("Fetch.getResponseBody", Map.of("requestId", requestId),
+                            input -> input.read(Json.MAP_TYPE)));
+                    String text = String.valueOf(response.get("body"));
+                    body = Boolean.TRUE.equals(response.get("base64Encoded")) ? Base64.getDecoder().decode(text)
+                            : text.getBytes(StandardCharsets.UTF_8);
+                } catch (RuntimeException e) {
+                    System.out.println("WARN: Response to " + url + " not recorded: " + e.getMessage());
+                    return;
+                }
+            }
+            ResponseStore.record(method, url, status, url, headers, body, scenario);
+        }
+
+        private void replay(Object requestId, String method, String url) {
+            ResponseStore.Response response = ResponseStore.lookup(method, url);
+            if (response == null) {
+                System.out.println("WARN: No recorded response to " + method + " " + url + ", the request fails");
+                devTools.send(new Command<>("Fetch.failRequest", Map.of("requestId", requestId, "errorReason", "InternetDisconnected")));
+                return;
+            }
+            List<Map<String, String>> headers = new ArrayList<>();
+            response.headers().forEach((name, value) -> headers.add(Map.of("name", name, "value", value)));
+            devTools.send(new Command<>("Fetch.fulfillRequest", Map.of("requestId", requestId, "responseCode", response.status(),
+                    "responseHeaders", headers, "body", Base64.getEncoder().encodeToString(response.bodyBytes()))));
+        }
+
+        private static Event<Map<String, Object>> event(String method) {
+            return new Event<>(method, input -> input.read(Json.MAP_TYPE));
+        }
+
+        @Override
+        synchronized void apply(Rules rules) {
+            this.rules = rules;
+            // The browser applies plain block patterns itself, exceptions and replays need every request to be decided here
+            boolean intercept = !rules.block().isEmpty() && !rules.allow().isEmpty() || ResponseStore.replays(scenario);
+            devTools.send(new Command<>("Network.setBlockedURLs", Map.of("urls", intercept ? List.of() : rules.browserBlock())));
+            List<Map<String, Object>> patterns = new ArrayList<>();
+            if (intercept) {
+                patterns.add(Map.of("urlPattern", "*", "requestStage", "Request"));
+            }
+            if (ResponseStore.records(scenario)) {
+                patterns.add(Map.of("urlPattern", "*", "requestStage", "Response"));
+            }
+            if (!patterns.isEmpty() && !patterns.equals(fetchPatterns)) {
+                devTools.send(new Command<>("Fetch.enable", Map.of("patterns", patterns)));
+            } else if (patterns.isEmpty() && !fetchPatterns.isEmpty()) {
+                devTools.send(new Command<>("Fetch.disable", Map.of()));
+            }
+            fetchPatterns = patterns;
+        }
+    }
+
+    // Firefox: WebDriver BiDi network interception, needs the session to be started with webSocketUrl
+    private static final class BiDiFilter extends Filter {
+        private final Network network;
+        private String intercept;
+
+        BiDiFilter(WebDriver driver) {
+            if (ResponseStore.isActive()) {
+                System.out.println("WARN: Firefox responses are not recorded or replayed, the session uses the network");
+            }
+            this.network = new Network(driver);
+            network.onBeforeRequestSent(event -> {
+                String url = event.getRequest().getUrl();
+                if (!event.isBlocked()) {
+                    requestUrls.put(event.getRequest().getRequestId(), url);
+                } else if (rules.blocks(url)) {
+                    network.failRequest(event.getRequest().getRequestId());
+                    blocked(url);
+                } else {
+                    requestUrls.put(event.getRequest().getRequestId(), url);
+                    network.continueRequest(new ContinueRequestParameters(event.getRequest().getRequestId()));
+                }
+            });
+            network.onResponseCompleted(event -> {
+                requestUrls.remove(event.getRequest().getRequestId());
+                loaded(event.getResponseData().getUrl(), event.getResponseData().getBytesReceived());
+            });
+            network.onFetchError(event -> requestUrls.remove(event.getRequest().getRequestId()));
+        }
+
+        @Override
+        synchronized void apply(Rules rules) {
+            this.rules = rules;
+            if (rules.block().isEmpty() && intercept != null) {
+                network.removeIntercept(intercept);
+                intercept = null;
+            } else if (!rules.block().isEmpty() && intercept == null) {
+                intercept = network.addIntercept(new AddInterceptParameters(InterceptPhase.BEFORE_REQUEST_SENT));
+            }
+        }
+    }
+
+    private NetworkFilter() {
+    }
+
+    /**
+     * Whether browser sessions filter their requests (-Dnetwork.filter, default true).
+     */
+    public static boolean isEnabled() {
+        return Boolean.parseBoolean(System.getProperty("network.filter", "true"));
+    }
+
+    /**
+     * Starts filtering the requests of a new browser session with the default rules, and recording or replaying
+     * its responses when -Drecording.mode is set. A browser that supports neither DevTools nor BiDi is left unfiltered.
+     *
+     * @param driver    The browser session as launched, which gives access to DevTools or BiDi.
+     * @param decorated The same session as the scenarios use it.
+     */
+    static void attach(WebDriver driver, WebDriver decorated) {
+        if (!isEnabled() && !ResponseStore.isActive()) {
+            return;
+        }
+        loadBaseline();
+        Filter filter;
+        try {
+            if (driver instanceof HasDevTools devTools) {
+                filter = new DevToolsFilter(devTools.getDevTools());
+            } else if (driver instanceof HasBiDi biDi && biDi.maybeGetBiDi().isPresent()) {
+                filter = new BiDiFilter(driver);
+            } else {
+                System.out.println("WARN: " + driver.getClass().getSimpleName() + " supports neither DevTools nor BiDi, requests are not filtered");
+                return;
+            }
+            filter.apply(rulesFor(List.of()));
+        } catch (RuntimeException e) {
+            System.out.println("WARN: Network filtering not available for this browser session: " + e.getMessage());
+            return;
+        }
+        filters.put(decorated, filter);
+    }
+
+    /**
+     * Stops tracking a browser session that is being quit.
+     */
+    static void detach(WebDriver decorated) {
+        filters.remove(decorated);
+    }
+
+    /**
+     * Applies the rules of a scenario's tags to the browser session it borrowed, and records or replays the
+     * responses of the session as the scenario bound by {@link ResponseStore#startScenario(String)} needs.
+     *
+     * @param driver The scenario's browser session.
+     * @param tags   The scenario's tags, e.g. @accessibility.
+     */
+    public static void applyRules(WebDriver driver, Collection<String> tags) {
+        Filter filter = filters.get(driver);
+        if (filter == null) {
+            return;
+        }
+        filter.scenarioBlocked.set(0);
+        filter.scenarioSavedBytes.set(0);
+        filter.scenario = ResponseStore.currentScenario();
+        filter.apply(rulesFor(tags));
+    }
+
+    private static Rules rulesFor(Collection<String> tags) {
+        if (!isEnabled()) {
+            return Rules.NONE; // The session is only attached to record or replay
+        }
+        Map<String, List<String>> configured = rules();
+        Set<String> block = new LinkedHashSet<>();
+        Set<String> allow = new LinkedHashSet<>(configured.getOrDefault("default.allow", List.of()));
+        boolean tagBlocks = false;
+        for (String tag : tags) {
+            String name = tag.startsWith("@") ? tag.substring(1) : tag;
+            if (configured.containsKey(name + ".block")) {
+                tagBlocks = true;
+                block.addAll(configured.get(name + ".block"));
+            }
+            allow.addAll(configured.getOrDefault(name + ".allow", List.of()));
+        }
+        if (!tagBlocks) {
+            block.addAll(configured.getOrDefault("default.block", List.of()));
+        }
+        return Rules.of(block, allow);
+    }
+
+    private static Map<String, List<String>> rules() {
+        if (rules == null) {
+            synchronized (NetworkFilter.class) {
+                if (rules == null) {
+                    Properties properties = new Properties();
+                    String file = System.getProperty("network.rules", "resources/properties/network-rules.properties");
+                    try (InputStream in = new FileInputStream(file)) {
+                        properties.load(in);
+                    } catch (IOException e) {
+                        System.out.println("WARN: Network rules not read from " + file + ", requests are not filtered: " + e.getMessage());
+                    }
+                    Map<String, List<String>> loaded = new TreeMap<>();
+                    for (String key : properties.stringPropertyNames()) {
+                        loaded.put(key, Arrays.stream(properties.getProperty(key).split(",")).map(String::trim)
+                                .filter(pattern -> !pattern.isEmpty()).toList());
+                    }
+                    rules = loaded;
+                }
+            }
+        }
+        return rules;
+    }
+
+    static String withoutQuery(String url) {
+        int end = url.indexOf('?');
+        int fragment = url.indexOf('#');
+        if (fragment >= 0 && (end < 0 || fragment < end)) {
+            end = fragment;
+        }
+        return end < 0 ? url : url.substring(0, end);
+    }
+
+    /**
+     * Records a search or sort page load with what the session blocked and loaded for it.
+     *
+     * @param driver        The session that loaded the page.
+     * @param action        The page action, "search" or "sort".
+     * @param elapsedMillis How long the page took to load, as seen by the test.
+     */
+    public static void recordPageLoad(WebDriver driver, String action, long elapsedMillis) {
+        Filter filter = filters.get(driver);
+        if (filter == null) {
+            return;
+        }
+        boolean filtered = !filter.rules.block().isEmpty();
+        PageLoads loads = pageLoads.computeIfAbsent(action + (filtered ? "" : " unfiltered"), key -> new PageLoads());
+        loads.elapsedMillis.add(elapsedMillis);
+        loads.blockedRequests.addAndGet(filter.blockedRequests.getAndSet(0));
+        loads.savedBytes.addAndGet(filter.savedBytes.getAndSet(0));
+        loads.loadedBytes.addAndGet(filter.loadedBytes.getAndSet(0));
+    }
+
+    /**
+     * Describes what the session of the current scenario blocked, for the scenario's report.
+     *
+     * @return The blocked requests and the bytes they would have transferred, or null when nothing was blocked.
+     */
+    public static String getScenarioSummary(WebDriver driver) {
+        Filter filter = filters.get(driver);
+        if (filter == null || filter.scenarioBlocked.get() == 0) {
+            return null;
+        }
+        return String.format("Network filter: %d requests blocked, about %d KB not downloaded", filter.scenarioBlocked.get(),
+                filter.scenarioSavedBytes.get() / 1024);
+    }
+
+    /**
+     * Whether any search or sort has been loaded by a filtered session.
+     */
+    public static boolean hasPageLoads() {
+        return pageLoads.containsKey("search") || pageLoads.containsKey("sort");
+    }
+
+    private static synchronized void loadBaseline() {
+        if (baselineLoaded) {
+            return;
+        }
+        baselineLoaded = true;
+        try {
+            Map<String, Long> loads = new HashMap<>();
+            readBaseline(BASELINE_FILE, knownBytes, loads);
+            loads.forEach((action, millis) -> pageLoads.computeIfAbsent(action + " baseline", key -> new PageLoads()).elapsedMillis.add(millis));
+        } catch (IOException | NumberFormatException e) {
+            System.out.println("WARN: Network baseline not read from " + BASELINE_FILE + ": " + e.getMessage());
+        }
+    }
+
+    // Reads the bytes of every URL and the median load time of every action from a baseline file, when there is one
+    private static void readBaseline(Path file, Map<String, Long> bytes, Map<String, Long> loads) throws IOException {
+        if (!Files.exists(file)) {
+            return;
+        }
+        for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+            String[] fields = line.split("\t");
+            if (fields.length == 3 && fields[0].equals("bytes")) {
+                bytes.put(fields[1], Long.parseLong(fields[2]));
+            } else if (fields.length == 3 && fields[0].equals("load")) {
+                loads.put(fields[1], Long.parseLong(fields[2]));
+            }
+        }
+    }
+
+    private static void writeBaseline(Path file, Map<String, Long> bytes, Map<String, Long> loads) {
+        List<String> lines = new ArrayList<>();
+        new TreeMap<>(bytes).forEach((url, size) -> lines.add("bytes\t" + url + "\t" + size));
+        new TreeMap<>(loads).forEach((action, millis) -> lines.add("load\t" + action + "\t" + millis));
+        try {
+            Files.createDirectories(file.toAbsolutePath().getParent());
+            Files.write(file, lines, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            System.out.println("WARN: Network baseline not written to " + file + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Keeps the bytes of every URL loaded and the median unfiltered load time of every action for the next runs,
+     * in cucumber-reports/metrics/network-baseline.tsv.
+     */
+    public static void saveBaseline() {
+        saveBaseline(BASELINE_FILE);
+    }
+
+    /**
+     * Writes the baseline of this process to a file of its own. Worker processes write here instead of the shared
+     * baseline, which the runner that launched them updates with {@link #mergeBaselines(List)}.
+     *
+     * @param file The baseline file, e.g. cucumber-reports/workers/worker-2-network-baseline.tsv.
+     */
+    public static void saveBaseline(Path file) {
+        Map<String, Long> loads = new HashMap<>();
+        for (String action : List.of("search", "sort")) {
+            long median = median(action + " unfiltered");
+            if (median < 0) {
+                median = median(action + " baseline");
+            }
+            if (median >= 0) {
+                loads.put(action, median);
+            }
+        }
+        writeBaseline(file, knownBytes, loads);
+    }
+
+    /**
+     * Adds the baselines worker processes wrote to the shared baseline: the bytes of the URLs they loaded, and for
+     * every action the median of their load times, which replaces the one of earlier runs.
+     *
+     * @param workerBaselines The files the workers wrote with {@link #saveBaseline(Path)}.
+     */
+    public static void mergeBaselines(List<Path> workerBaselines) {
+        if (workerBaselines.isEmpty()) {
+            return;
+        }
+        Map<String, Long> bytes = new HashMap<>();
+        Map<String, Long> loads = new HashMap<>();
+        Map<String, List<Long>> workerLoads = new HashMap<>();
+        try {
+            readBaseline(BASELINE_FILE, bytes, loads);
+            for (Path workerBaseline : workerBaselines) {
+                Map<String, Long> workerMedians = new HashMap<>();
+                readBaseline(workerBaseline, bytes, workerMedians);
+                workerMedians.forEach((action, millis) -> workerLoads.computeIfAbsent(action, key -> new ArrayList<>()).add(millis));
+            }
+        } catch (IOException | NumberFormatException e) {
+            System.out.println("WARN: Network baselines of the workers not merged: " + e.getMessage());
+            return;
+        }
+        workerLoads.forEach((action, medians) -> {
+            Collections.sort(medians);
+            loads.put(action, medians.get(medians.size() / 2));
+        });
+        writeBaseline(BASELINE_FILE, bytes, loads);
+    }
+
+    private static long median(String key) {
+        PageLoads loads = pageLoads.get(key);
+        if (loads == null || loads.elapsedMillis.isEmpty()) {
+            return -1;
+        }
+        List<Long> sorted;
+        synchronized (loads.elapsedMillis) {
+            sorted = new ArrayList<>(loads.elapsedMillis);
+        }
+        Collections.sort(sorted);
+        return sorted.get(sorted.size() / 2);
+    }
+
+    /**
+     * Summarises the requests blocked and the bytes and time saved per filtered search and sort page load, against
+     * the unfiltered loads of this run or, when there were none, of earlier runs.
+     *
+     * @return The summary for the run output.
+     */
+    public static String getSummary() {
+        StringBuilder summary = new StringBuilder("Network filter:").append(System.lineSeparator());
+        for (String action : List.of("search", "sort")) {
+            PageLoads filtered = pageLoads.get(action);
+            if (filtered == null || filtered.elapsedMillis.isEmpty()) {
+                continue;
+            }
+            int count = filtered.elapsedMillis.size();
+            summary.append(String.format("  %s: %d filtered loads, per load %.1f requests blocked, about %d KB saved, %d KB loaded",
+                    action, count, (double) filtered.blockedRequests.get() / count, filtered.savedBytes.get() / count / 1024,
+                    filtered.loadedBytes.get() / count / 1024));
+            long baseline = median(action + " unfiltered");
+            String source = "unfiltered loads of this run";
+            if (baseline < 0) {
+                baseline = median(action + " baseline");
+                source = "earlier runs";
+            }
+            if (baseline >= 0) {
+                long median = median(action);
+                summary.append(String.format(", median %d ms against %d ms in %s (%d ms saved)", median, baseline, source, baseline - median));
+            }
+            summary.append(System.lineSeparator());
+        }
+        return summary.toString();
+    }
+}
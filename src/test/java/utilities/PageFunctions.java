@@ -13,13 +13,25 @@ import java.util.List;
 public class PageFunctions {
 
     public WebDriverWait wait;
+    // Browser session of the scenario thread that created this page object
+    protected final WebDriver driver;
     // Default timeout in seconds for explicit waits. This can be configured.
     private int defaultTimeoutSeconds = 100;
 
     public static final URL scriptURL = PageFunctions.class.getResource("/axe.min.js");
     public PageFunctions() throws Exception {
-        PageFactory.initElements(BrowserConfig.driver, this);
-        wait = new WebDriverWait(BrowserConfig.driver, Duration.ofSeconds(20));
+        driver = BrowserConfig.getDriver();
+        PageFactory.initElements(driver, this);
+        wait = new WebDriverWait(driver, Duration.ofSeconds(20));
+    }
+
+    /**
+     * Gets the browser session this page object is bound to.
+     *
+     * @return The WebDriver of the scenario thread that created this page object.
+     */
+    public WebDriver getDriver() {
+        return driver;
     }
 
     /**
@@ -47,11 +59,9 @@ public class PageFunctions {
      */
     public WebElement waitsForWebElement(WebElement element) throws AutomationFrameworkException {
         try {
-            // Initialize WebDriverWait with the driver and the specified timeout using Duration (Selenium 4)
-            WebDriverWait wait = new WebDriverWait(BrowserConfig.driver, Duration.ofSeconds(defaultTimeoutSeconds));
-
-            // Use ExpectedConditions.visibilityOf to wait until the element is displayed and has size > 0
-            return wait.until(ExpectedConditions.visibilityOf(element));
+            // Use ExpectedConditions.visibilityOf to wait until the element is displayed and has size > 0,
+            // re-checking it whenever the page changes rather than on a fixed polling interval
+            return EventWait.until(driver, ExpectedConditions.visibilityOf(element), Duration.ofSeconds(defaultTimeoutSeconds), "waitsForWebElement");
         } catch (Exception e) {
             // Delegate exception handling to the common helper method
             return handleWaitExceptions(e, "single WebElement (" + element + ")");
@@ -98,11 +108,8 @@ public class PageFunctions {
      */
     public List<WebElement> waitsForListElement(List<WebElement> elements) throws AutomationFrameworkException {
         try {
-            // Initialize WebDriverWait with the driver and the specified timeout using Duration (Selenium 4)
-            WebDriverWait wait = new WebDriverWait(BrowserConfig.driver, Duration.ofSeconds(defaultTimeoutSeconds));
-
             // Use ExpectedConditions.visibilityOfAllElements to wait until all elements in the list are visible
-            wait.until(ExpectedConditions.visibilityOfAllElements(elements));
+            EventWait.until(driver, ExpectedConditions.visibilityOfAllElements(elements), Duration.ofSeconds(defaultTimeoutSeconds), "waitsForListElement");
             return elements; // Return the list, indicating success
         } catch (Exception e) {
             // Delegate exception handling to the common helper method
@@ -214,12 +221,11 @@ public class PageFunctions {
      */
     public void waitForOneOfElementsToBecomeVisible(WebElement element1, WebElement element2) throws AutomationFrameworkException {
         try {
-            WebDriverWait wait = new WebDriverWait(BrowserConfig.driver, Duration.ofSeconds(defaultTimeoutSeconds));
             // Use ExpectedConditions.or to wait for either condition to be true
-            wait.until(ExpectedConditions.or(
+            EventWait.until(driver, ExpectedConditions.or(
                     ExpectedConditions.visibilityOf(element1),
                     ExpectedConditions.visibilityOf(element2)
-            ));
+            ), Duration.ofSeconds(defaultTimeoutSeconds), "waitForOneOfElementsToBecomeVisible");
         } catch (Exception e) {
             // Delegate exception handling to the common helper method.
             handleWaitExceptions(e, "one of elements to become visible (" + element1 + ", " + element2 + ")");
@@ -7,22 +7,29 @@ import java.io.IOException;
 import java.util.Properties;
 
 public class PropertyReaderUtil {
+    // QA.properties is read from disk once per JVM and shared by every reader
+    private static Properties loadedProperties;
+
     public String readFileData(String properties) {
+        properties = loadProperties().getProperty(properties);
+        return properties;
+    }
+
+    private static synchronized Properties loadProperties() {
+        if (loadedProperties != null) {
+            return loadedProperties;
+        }
         Properties prop = new Properties();
         //File file = new File("src/test/resources/properties/QA.properties");
         File file = new File("resources/properties/QA.properties");
-        FileInputStream fileInput = null;
-        try {
-            fileInput = new FileInputStream(file);
+        try (FileInputStream fileInput = new FileInputStream(file)) {
+            prop.load(fileInput);
         } catch (FileNotFoundException e) {
             e.printStackTrace();
-        }
-        try {
-            prop.load(fileInput);
         } catch (IOException e) {
             e.printStackTrace();
         }
-        properties = prop.getProperty(properties);
-        return properties;
+        loadedProperties = prop;
+        return loadedProperties;
     }
 }
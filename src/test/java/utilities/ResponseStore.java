@@ -0,0 +1,362 @@
+package utilities;
+
+import org.json.JSONObject;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+
+/**
+ * On-disk store of the HTTP responses a run received, for replaying the journey without the network.
+ * <p>
+ * With -Drecording.mode=record every response the browser (Chrome, through the {@link NetworkFilter}'s DevTools
+ * interception) or the HTTP journey receives is stored; with -Drecording.mode=replay requests are answered from the
+ * store and a request that was never recorded fails, so the run is offline and gets the same pages every time.
+ * Scenarios listed in -Drecording.refresh (keys like nhs_job_search.feature:24, the line of an Examples row) go to the
+ * site during a replay and record what they get, so a stored corpus can be refreshed one row at a time.
+ * <p>
+ * The store is a directory (-Drecording.store, default recordings) holding responses.bin, the bodies one after the
+ * other, and index.ndjson, one JSON line per response with its request, status, headers, the scenario that recorded
+ * it and where its body is. Both files are only appended to, and the last line for a request wins. Bodies are read
+ * from a read-only memory mapping of responses.bin, so a replayed response is a slice of the page cache, not a copy
+ * read from disk. The mapping covers the first 2 GB of the file, a body stored past that is mapped on its own. Worker
+ * processes (--workers) share the store, appending under a file lock. Bodies that a refresh replaced are dropped when
+ * the store is closed, once they outweigh the rest, except by a worker process.
+ */
+public class ResponseStore {
+    private static final String BODIES = "responses.bin";
+    private static final String INDEX = "index.ndjson";
+
+    private static final ThreadLocal<String> currentScenario = new ThreadLocal<>();
+    private static final LongAdder hits = new LongAdder();
+    private static final LongAdder misses = new LongAdder();
+    private static final LongAdder recorded = new LongAdder();
+    private static final LongAdder bytesServed = new LongAdder();
+    private static final LongAdder bytesRecorded = new LongAdder();
+    private static Store store;
+
+    /**
+     * What the run does with the network.
+     */
+    public enum Mode {
+        LIVE, RECORD, REPLAY
+    }
+
+    /**
+     * A stored response.
+     *
+     * @param status   The HTTP status.
+     * @param url      The URL the response came from, after any redirects the client followed.
+     * @param headers  The response headers, without the ones describing the transfer encoding of the body.
+     * @param body     The body, decoded, as a read-only slice of the store. Each call to {@link #body()} is a
+     *                 fresh view, so callers can read it independently.
+     */
+    public record Response(int status, String url, Map<String, String> headers, ByteBuffer body) {
+        @Override
+        public ByteBuffer body() {
+            return body.duplicate();
+        }
+
+        public byte[] bodyBytes() {
+            byte[] bytes = new byte[body.remaining()];
+            body().get(bytes);
+            return bytes;
+        }
+
+        public String bodyText() {
+            return StandardCharsets.UTF_8.decode(body()).toString();
+        }
+    }
+
+    private record Entry(long offset, int length, int status, String url, Map<String, String> headers, String scenario) {
+    }
+
+    private static final class Store {
+        private final Path directory;
+        private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+        private final FileChannel bodies;
+        private final BufferedWriter index;
+        private volatile MappedByteBuffer mapped;
+        private long replacedBytes;
+
+        private Store(Path directory) throws IOException {
+            this.directory = Files.createDirectories(directory);
+            Path indexFile = directory.resolve(INDEX);
+            if (Files.exists(indexFile)) {
+                for (String line : Files.readAllLines(indexFile, StandardCharsets.UTF_8)) {
+                    if (!line.isBlank()) {
+                        JSONObject json = new JSONObject(line);
+                        Map<String, String> headers = new LinkedHashMap<>();
+                        JSONObject headerJson = json.getJSONObject("headers");
+                        headerJson.keySet().forEach(name -> headers.put(name, headerJson.getString(name)));
+                        Entry replaced = entries.put(json.getString("request"), new Entry(json.getLong("offset"), json.getInt("length"),
+                                json.getInt("status"), json.getString("url"), headers, json.optString("scenario")));
+                        if (replaced != null) {
+                            replacedBytes += replaced.length();
+                        }
+                    }
+                }
+            }
+            this.bodies = FileChannel.open(directory.resolve(BODIES), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+            this.index = Files.newBufferedWriter(indexFile, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        }
+
+        // Maps the bodies up to the end of the file, again when a body recorded since lies beyond the mapping. A mapping
+        // is indexed by int, so it stops at 2 GB and a body ending past that is mapped on its own
+        private ByteBuffer slice(Entry entry) throws IOException {
+            if (entry.offset() + entry.length() > Integer.MAX_VALUE) {
+                return bodies.map(FileChannel.MapMode.READ_ONLY, entry.offset(), entry.length()).asReadOnlyBuffer();
+            }
+            MappedByteBuffer current = mapped;
+            if (current == null || entry.offset() + entry.length() > current.capacity()) {
+                synchronized (this) {
+                    current = mapped;
+                    if (current == null || entry.offset() + entry.length() > current.capacity()) {
+                        current = bodies.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(bodies.size(), Integer.MAX_VALUE));
+                        mapped = current;
+                    }
+                }
+            }
+            return current.slice((int) entry.offset(), entry.length()).asReadOnlyBuffer();
+        }
+
+        private synchronized void append(String request, int status, String url, Map<String, String> headers, byte[] body,
+                                         String scenario) throws IOException {
+            Entry entry;
+            // Locked against the worker processes appending to the same store
+            FileLock lock = bodies.lock();
+            try {
+                long offset = bodies.size();
+                ByteBuffer buffer = ByteBuffer.wrap(body);
+                while (buffer.hasRemaining()) {
+                    bodies.write(buffer, offset + buffer.position());
+                }
+                entry = new Entry(offset, body.length, status, url, headers, scenario == null ? "" : scenario);
+                index.write(new JSONObject().put("request", request).put("status", status).put("url", url)
+                        .put("headers", new JSONObject(headers)).put("scenario", entry.scenario())
+                        .put("offset", offset).put("length", body.length).toString());
+                index.newLine();
+                index.flush();
+            } finally {
+                lock.release();
+            }
+            Entry replaced = entries.put(request, entry);
+            if (replaced != null) {
+                replacedBytes += replaced.length();
+            }
+        }
+
+        private synchronized void close() throws IOException {
+            index.close();
+            long liveBytes = entries.values().stream().mapToLong(Entry::length).sum();
+            boolean compact = replacedBytes > liveBytes && replacedBytes > 1024 * 1024 && System.getProperty("metrics.worker") == null;
+            if (compact) {
+                compact();
+            }
+            bodies.close();
+            mapped = null;
+        }
+
+        // Rewrites the store with only the latest body of every request
+        private void compact() throws IOException {
+            Path compactBodies = directory.resolve(BODIES + ".compact");
+            Path compactIndex = directory.resolve(INDEX + ".compact");
+            try (FileChannel out = FileChannel.open(compactBodies, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+                 BufferedWriter indexOut = Files.newBufferedWriter(compactIndex, StandardCharsets.UTF_8)) {
+                for (Map.Entry<String, Entry> request : entries.entrySet()) {
+                    Entry entry = request.getValue();
+                    long offset = out.position();
+                    bodies.transferTo(entry.offset(), entry.length(), out);
+                    indexOut.write(new JSONObject().put("request", request.getKey()).put("status", entry.status())
+                            .put("url", entry.url()).put("headers", new JSONObject(entry.headers()))
+                            .put("scenario", entry.scenario()).put("offset", offset).put("length", entry.length()).toString());
+                    indexOut.newLine();
+                }
+            }
+            Files.move(compactBodies, directory.resolve(BODIES), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            Files.move(compactIndex, directory.resolve(INDEX), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            System.out.printf("Response store compacted, %d KB of replaced responses dropped%n", replacedBytes / 1024);
+        }
+    }
+
+    private ResponseStore() {
+    }
+
+    /**
+     * Gets the mode of the run from -Drecording.mode: record, replay, or live (the default).
+     *
+     * @throws IllegalArgumentException If the mode is not one of those.
+     */
+    public static Mode mode() {
+        String mode = System.getProperty("recording.mode", "live");
+        try {
+            return Mode.valueOf(mode.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("-Drecording.mode is record, replay or live, not " + mode);
+        }
+    }
+
+    /**
+     * Whether responses are recorded or replayed in this run.
+     */
+    public static boolean isActive() {
+        return mode() != Mode.LIVE;
+    }
+
+    /**
+     * Binds the scenario about to run to the current thread, so what its journey fetches is recorded against it.
+     *
+     * @param scenario The scenario key, the feature file name and line, e.g. nhs_job_search.feature:24.
+     */
+    public static void startScenario(String scenario) {
+        currentScenario.set(scenario);
+    }
+
+    /**
+     * Gets the scenario bound to the current thread, or null.
+     */
+    public static String currentScenario() {
+        return currentScenario.get();
+    }
+
+    private static Set<String> refreshedScenarios() {
+        return Arrays.stream(System.getProperty("recording.refresh", "").split(",")).map(String::trim)
+                .filter(key -> !key.isEmpty()).collect(Collectors.toSet());
+    }
+
+    /**
+     * Whether the requests of a scenario are answered from the store.
+     */
+    public static boolean replays(String scenario) {
+        return mode() == Mode.REPLAY && !refreshedScenarios().contains(scenario);
+    }
+
+    /**
+     * Whether the responses a scenario receives are recorded.
+     */
+    public static boolean records(String scenario) {
+        return mode() == Mode.RECORD || mode() == Mode.REPLAY && refreshedScenarios().contains(scenario);
+    }
+
+    private static synchronized Store store() {
+        if (store == null) {
+            try {
+                store = new Store(Path.of(System.getProperty("recording.store", "recordings")));
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to open the response store", e);
+            }
+        }
+        return store;
+    }
+
+    private static String request(String method, String url) {
+        return method.toUpperCase(Locale.ROOT) + " " + url;
+    }
+
+    /**
+     * Looks up the recorded response to a request.
+     *
+     * @param method The request method, e.g. GET.
+     * @param url    The request URL, with its query.
+     * @return The response, or null when the request was never recorded.
+     */
+    public static Response lookup(String method, String url) {
+        Store opened = store();
+        Entry entry = opened.entries.get(request(method, url));
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+        try {
+            ByteBuffer body = opened.slice(entry);
+            hits.increment();
+            bytesServed.add(entry.length());
+            return new Response(entry.status(), entry.url(), entry.headers(), body);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read the recorded response to " + url, e);
+        }
+    }
+
+    /**
+     * Records the response to a request, replacing any earlier recording of the same request.
+     *
+     * @param method   The request method, e.g. GET.
+     * @param url      The request URL, with its query.
+     * @param status   The HTTP status of the response.
+     * @param finalUrl The URL the response came from, after redirects.
+     * @param headers  The response headers. Content-Encoding, Content-Length and Transfer-Encoding are dropped, as
+     *                 the body is stored decoded.
+     * @param body     The decoded body.
+     * @param scenario The scenario key that received the response.
+     */
+    public static void record(String method, String url, int status, String finalUrl, Map<String, String> headers, byte[] body,
+                              String scenario) {
+        Map<String, String> kept = new LinkedHashMap<>();
+        headers.forEach((name, value) -> {
+            String lower = name.toLowerCase(Locale.ROOT);
+            if (!lower.equals("content-encoding") && !lower.equals("content-length") && !lower.equals("transfer-encoding")) {
+                kept.put(name, value);
+            }
+        });
+        try {
+            store().append(request(method, url), status, finalUrl, kept, body, scenario);
+            recorded.increment();
+            bytesRecorded.add(body.length);
+        } catch (IOException e) {
+            System.err.println("WARN: Failed to record the response to " + url + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Closes the store, dropping replaced responses when they take more space than the current ones.
+     */
+    public static synchronized void close() {
+        if (store == null) {
+            return;
+        }
+        try {
+            store.close();
+        } catch (IOException e) {
+            System.err.println("WARN: Failed to close the response store: " + e.getMessage());
+        }
+        store = null;
+    }
+
+    /**
+     * Whether any response has been looked up or recorded in this run.
+     */
+    public static boolean hasActivity() {
+        return hits.sum() + misses.sum() + recorded.sum() > 0;
+    }
+
+    /**
+     * Summarises the responses replayed and recorded in this run.
+     *
+     * @return A one line summary for the run output.
+     */
+    public static String getSummary() {
+        return String.format("Response store (%s, %s): %d replayed (%d KB), %d not recorded, %d recorded (%d KB)",
+                mode().name().toLowerCase(Locale.ROOT), System.getProperty("recording.store", "recordings"), hits.sum(),
+                bytesServed.sum() / 1024, misses.sum(), recorded.sum(), bytesRecorded.sum() / 1024);
+    }
+}
@@ -0,0 +1,78 @@
+package utilities;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Map;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+
+public class ResponseStoreTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Before
+    public void useTemporaryStore() {
+        System.setProperty("recording.store", folder.getRoot().toPath().resolve("recordings").toString());
+    }
+
+    @After
+    public void closeStore() {
+        ResponseStore.close();
+        System.clearProperty("recording.store");
+    }
+
+    private static void record(String url, String body) {
+        ResponseStore.record("get", url, 200, url, Map.of("Content-Type", "text/html", "Content-Encoding", "gzip"),
+                body.getBytes(StandardCharsets.UTF_8), "search.feature:12");
+    }
+
+    @Test
+    public void replaysWhatWasRecorded() {
+        record("https://jobs.example/search?keyword=nurse", "<p>nurse</p>");
+        record("https://jobs.example/search?keyword=doctor", "<p>doctor</p>");
+        ResponseStore.Response response = ResponseStore.lookup("GET", "https://jobs.example/search?keyword=nurse");
+        assertEquals(200, response.status());
+        assertEquals("https://jobs.example/search?keyword=nurse", response.url());
+        // The body is stored decoded, so the headers describing its encoding are dropped
+        assertEquals(Map.of("Content-Type", "text/html"), response.headers());
+        assertEquals("<p>nurse</p>", response.bodyText());
+        assertArrayEquals("<p>nurse</p>".getBytes(StandardCharsets.UTF_8), response.bodyBytes());
+        assertEquals("<p>doctor</p>", ResponseStore.lookup("GET", "https://jobs.example/search?keyword=doctor").bodyText());
+        assertNull(ResponseStore.lookup("POST", "https://jobs.example/search?keyword=nurse"));
+        assertNull(ResponseStore.lookup("GET", "https://jobs.example/search?keyword=dentist"));
+    }
+
+    @Test
+    public void reopenedStoreKeepsTheLatestRecording() throws Exception {
+        record("https://jobs.example/search", "first");
+        record("https://jobs.example/search", "second");
+        assertEquals("second", ResponseStore.lookup("GET", "https://jobs.example/search").bodyText());
+        ResponseStore.close();
+        // Read back from index.ndjson and responses.bin
+        assertEquals("second", ResponseStore.lookup("GET", "https://jobs.example/search").bodyText());
+        record("https://jobs.example/sort", "sorted");
+        assertEquals("sorted", ResponseStore.lookup("GET", "https://jobs.example/sort").bodyText());
+        assertEquals("second", ResponseStore.lookup("GET", "https://jobs.example/search").bodyText());
+        assertEquals(3, Files.readAllLines(folder.getRoot().toPath().resolve("recordings/index.ndjson")).size());
+    }
+
+    @Test
+    public void bodyViewsAreIndependent() {
+        record("https://jobs.example/", "page");
+        ResponseStore.Response response = ResponseStore.lookup("GET", "https://jobs.example/");
+        response.body().get(new byte[2]);
+        assertEquals(4, response.body().remaining());
+        assertTrue(response.body().isReadOnly());
+    }
+}
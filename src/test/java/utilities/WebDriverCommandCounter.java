@@ -0,0 +1,35 @@
+package utilities;
+
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.support.events.WebDriverListener;
+
+import java.lang.reflect.Method;
+import java.util.Set;
+
+
+/**
+ * Counts the WebDriver commands issued by each thread, for the step metrics.
+ * Calls that only return a helper object (driver.manage(), driver.navigate(), driver.switchTo(), ...)
+ * do not reach the browser and are not counted.
+ */
+public class WebDriverCommandCounter implements WebDriverListener {
+    private static final Set<Class<?>> HELPER_TYPES = Set.of(WebDriver.Options.class, WebDriver.Navigation.class,
+            WebDriver.TargetLocator.class, WebDriver.Timeouts.class, WebDriver.Window.class);
+
+    private static final ThreadLocal<long[]> threadCommands = ThreadLocal.withInitial(() -> new long[1]);
+
+    @Override
+    public void beforeAnyCall(Object target, Method method, Object[] args) {
+        if (!HELPER_TYPES.contains(method.getReturnType())) {
+            threadCommands.get()[0]++;
+        }
+    }
+
+    /**
+     * Gets the number of WebDriver commands the current thread has issued so far.
+     * Take the difference between two readings to count the commands of a step.
+     */
+    public static long currentThreadCommands() {
+        return threadCommands.get()[0];
+    }
+}
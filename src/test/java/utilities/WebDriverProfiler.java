@@ -0,0 +1,258 @@
+package utilities;
+
+import org.openqa.selenium.By;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebElement;
+import org.openqa.selenium.support.events.WebDriverListener;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+
+/**
+ * Opt-in WebDriver round-trip profiler (-Dprofile.webdriver=true).
+ * <p>
+ * Every WebDriver command and its latency are attributed to the page-object method that issued it, found by
+ * walking the calling thread's stack: the first frame in the page package, plus the innermost project frame when
+ * that is a different method (e.g. "JobSearch.extractResultsPerCard via PageFunctions.safelyGetText").
+ * <p>
+ * Commands are also grouped by shape: the kind of object called, the method and its arguments with elements
+ * and numbers blanked out, so finding the same child of every result card has one shape. When the same page-object
+ * method (on any line) issues the same shape at least -Dprofile.nPlusOneThreshold times (default 5) in one uninterrupted run of
+ * commands, the run is reported as an N+1 pattern: a loop making one round-trip per item.
+ * <p>
+ * A ranked hotspot report is printed at the end of the run.
+ */
+public class WebDriverProfiler implements WebDriverListener {
+    private static final Set<Class<?>> HELPER_TYPES = Set.of(WebDriver.Options.class, WebDriver.Navigation.class,
+            WebDriver.TargetLocator.class, WebDriver.Timeouts.class, WebDriver.Window.class);
+    private static final StackWalker STACK_WALKER = StackWalker.getInstance();
+    private static final int REPORT_ROWS = 15;
+
+    private static final Map<String, CommandStatistics> hotspots = new ConcurrentHashMap<>();
+    private static final Map<String, CommandStatistics> nPlusOnePatterns = new ConcurrentHashMap<>();
+    private static final LongAdder totalCommands = new LongAdder();
+    private static final LongAdder totalNanos = new LongAdder();
+
+    // Open bursts are keyed by thread rather than held in a ThreadLocal so the report can close the last ones
+    private static final Map<Thread, Burst> openBursts = new ConcurrentHashMap<>();
+
+    private final ThreadLocal<Deque<Long>> callStarts = ThreadLocal.withInitial(ArrayDeque::new);
+
+    /**
+     * Count and latency of a group of commands.
+     */
+    private static final class CommandStatistics {
+        private final LongAdder commands = new LongAdder();
+        private final LongAdder nanos = new LongAdder();
+        private final AtomicLong maxRepeats = new AtomicLong();
+        private final LongAdder occurrences = new LongAdder();
+
+        private void add(long commandCount, long commandNanos) {
+            commands.add(commandCount);
+            nanos.add(commandNanos);
+        }
+    }
+
+    /**
+     * The uninterrupted run of commands issued by one page-object method, counted by command shape.
+     */
+    private static final class Burst {
+        private final String caller;
+        private final Map<String, long[]> shapes = new HashMap<>(); // shape -> {commands, nanos}
+
+        private Burst(String caller) {
+            this.caller = caller;
+        }
+    }
+
+    /**
+     * Whether the profiler should decorate new browser sessions (-Dprofile.webdriver=true).
+     */
+    public static boolean isEnabled() {
+        return Boolean.getBoolean("profile.webdriver");
+    }
+
+    @Override
+    public void beforeAnyCall(Object target, Method method, Object[] args) {
+        if (!HELPER_TYPES.contains(method.getReturnType())) {
+            callStarts.get().push(System.nanoTime());
+        }
+    }
+
+    @Override
+    public void afterAnyCall(Object target, Method method, Object[] args, Object result) {
+        finishCall(target, method, args);
+    }
+
+    @Override
+    public void onError(Object target, Method method, Object[] args, InvocationTargetException e) {
+        finishCall(target, method, args);
+    }
+
+    private void finishCall(Object target, Method method, Object[] args) {
+        if (HELPER_TYPES.contains(method.getReturnType()) || callStarts.get().isEmpty()) {
+            return;
+        }
+        long nanos = System.nanoTime() - callStarts.get().pop();
+        String caller = caller();
+        String shape = shape(target, method, args);
+        totalCommands.increment();
+        totalNanos.add(nanos);
+        hotspots.computeIfAbsent(caller + "\t" + shape, k -> new CommandStatistics()).add(1, nanos);
+
+        // A loop body spans several lines, so a burst belongs to the calling methods, not to the line
+        String callingMethods = caller.replaceAll(":\\d+", "");
+        Burst burst = openBursts.get(Thread.currentThread());
+        if (burst == null || !burst.caller.equals(callingMethods)) {
+            if (burst != null) {
+                closeBurst(burst);
+            }
+            burst = new Burst(callingMethods);
+            openBursts.put(Thread.currentThread(), burst);
+        }
+        long[] counts = burst.shapes.computeIfAbsent(shape, k -> new long[2]);
+        counts[0]++;
+        counts[1] += nanos;
+    }
+
+    // Records the shapes the finished burst repeated often enough to be an N+1 pattern
+    private static void closeBurst(Burst burst) {
+        int threshold = Integer.getInteger("profile.nPlusOneThreshold", 5);
+        for (Map.Entry<String, long[]> shape : burst.shapes.entrySet()) {
+            long repeats = shape.getValue()[0];
+            if (repeats >= threshold) {
+                CommandStatistics pattern = nPlusOnePatterns.computeIfAbsent(burst.caller + "\t" + shape.getKey(), k -> new CommandStatistics());
+                pattern.add(repeats, shape.getValue()[1]);
+                pattern.occurrences.increment();
+                pattern.maxRepeats.accumulateAndGet(repeats, Math::max);
+            }
+        }
+    }
+
+    /**
+     * Attributes the current command to the page-object method that issued it.
+     */
+    private static String caller() {
+        List<StackWalker.StackFrame> projectFrames = STACK_WALKER.walk(frames -> frames
+                .filter(frame -> isProjectFrame(frame.getClassName()))
+                .limit(12)
+                .toList());
+        if (projectFrames.isEmpty()) {
+            return "(outside page objects)";
+        }
+        StackWalker.StackFrame innermost = projectFrames.getFirst();
+        Optional<StackWalker.StackFrame> pageObject = projectFrames.stream()
+                .filter(frame -> frame.getClassName().startsWith("page."))
+                .findFirst();
+        if (pageObject.isEmpty() || sameMethod(pageObject.get(), innermost)) {
+            return describe(innermost);
+        }
+        return describe(pageObject.get()) + " via " + describe(innermost);
+    }
+
+    private static boolean isProjectFrame(String className) {
+        return (className.startsWith("page.") || className.startsWith("utilities.") || className.startsWith("stepDefinitions."))
+                && !className.startsWith(WebDriverProfiler.class.getName())
+                && !className.startsWith(WebDriverCommandCounter.class.getName());
+    }
+
+    private static boolean sameMethod(StackWalker.StackFrame a, StackWalker.StackFrame b) {
+        return a.getClassName().equals(b.getClassName()) && a.getMethodName().equals(b.getMethodName());
+    }
+
+    private static String describe(StackWalker.StackFrame frame) {
+        String className = frame.getClassName();
+        return className.substring(className.lastIndexOf('.') + 1) + "." + frame.getMethodName() + ":" + frame.getLineNumber();
+    }
+
+    /**
+     * Describes a command so that the same call on different elements, or with different text, has the same shape.
+     */
+    static String shape(Object target, Method method, Object[] args) {
+        StringBuilder shape = new StringBuilder();
+        shape.append(target instanceof WebElement ? "element" : target instanceof WebDriver ? "driver" : "alert").append('.')
+                .append(method.getName()).append('(');
+        if (args != null) {
+            for (int i = 0; i < args.length; i++) {
+                shape.append(i == 0 ? "" : ", ").append(argumentShape(args[i]));
+            }
+        }
+        return shape.append(')').toString();
+    }
+
+    private static String argumentShape(Object argument) {
+        if (argument instanceof By by) {
+            return by.toString();
+        }
+        if (argument instanceof WebElement) {
+            return "<element>";
+        }
+        if (argument instanceof Number) {
+            return "<number>";
+        }
+        if (argument instanceof CharSequence text) {
+            // Scripts are kept whole enough to tell them apart, typed text is not
+            String value = text.toString().replace('\n', ' ');
+            return value.length() > 60 ? "\"" + value.substring(0, 57) + "...\"" : "<text>";
+        }
+        if (argument instanceof Object[] array) {
+            List<String> shapes = new ArrayList<>();
+            for (Object element : array) {
+                shapes.add(argumentShape(element));
+            }
+            return shapes.toString();
+        }
+        return argument == null ? "null" : "<" + argument.getClass().getSimpleName() + ">";
+    }
+
+    /**
+     * Builds the hotspot report: the callers and command shapes that spent the most time in WebDriver,
+     * followed by the N+1 patterns found.
+     *
+     * @return The report for the run output.
+     */
+    public static String getReport() {
+        openBursts.values().removeIf(burst -> {
+            closeBurst(burst);
+            return true;
+        });
+        StringBuilder report = new StringBuilder();
+        report.append(String.format("WebDriver profile: %d commands, %d ms in WebDriver%n", totalCommands.sum(), totalNanos.sum() / 1_000_000));
+        report.append(String.format("%8s %9s %8s  %s%n", "commands", "total ms", "avg ms", "caller / command"));
+        appendRows(report, hotspots, false);
+        if (!nPlusOnePatterns.isEmpty()) {
+            report.append(String.format("N+1 patterns (same command repeated by one method, >= %d times in a row):%n",
+                    Integer.getInteger("profile.nPlusOneThreshold", 5)));
+            report.append(String.format("%8s %9s %8s  %s%n", "commands", "total ms", "runs", "caller / command"));
+            appendRows(report, nPlusOnePatterns, true);
+        }
+        return report.toString();
+    }
+
+    private static void appendRows(StringBuilder report, Map<String, CommandStatistics> rows, boolean patterns) {
+        rows.entrySet().stream()
+                .sorted(Comparator.comparingLong((Map.Entry<String, CommandStatistics> row) -> row.getValue().nanos.sum()).reversed())
+                .limit(REPORT_ROWS)
+                .forEach(row -> {
+                    CommandStatistics statistics = row.getValue();
+                    long commands = statistics.commands.sum();
+                    String[] key = row.getKey().split("\t", 2);
+                    report.append(String.format("%8d %9d %8d  %s%n%29s%s%n", commands, statistics.nanos.sum() / 1_000_000,
+                            patterns ? statistics.occurrences.sum() : statistics.nanos.sum() / Math.max(1, commands) / 1_000_000,
+                            key[0], "", key[1] + (patterns ? "  (longest run " + statistics.maxRepeats.get() + ")" : "")));
+                });
+    }
+}
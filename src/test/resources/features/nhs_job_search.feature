@@ -10,8 +10,11 @@ Feature: NHS Job Search
     And the employer is "<employer>"
     And the pay range is "<pay_range>"
     And I click the Search button
+    And the search results should load within 10000 ms
+    And the search results "largest contentful paint" should be within 4000 ms
     Then I should see a list of jobs matching keyword: "<keyword>",location: "<location>",distance: "<distance>",employer: "<employer>" and pay range: "<pay_range>"
     Then I sort the search results by "<sort_by>"
+    And the search results should load within 10000 ms
     And the search results should be sorted by newest date posted
 
     Examples:
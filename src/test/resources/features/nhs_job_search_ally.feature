@@ -1,3 +1,4 @@
+@accessibility
 Feature: NHS Job Search
 
   Scenario: Search for jobs in the NHS  and check the accessibility violations in the page
@@ -5,4 +6,13 @@ Feature: NHS Job Search
     Given I am a jobseeker on the NHS Jobs website
     And I click more search options link
     When I click the Search button
-    Then The page should be accessibility tested
\ No newline at end of file
+    Then The page should be accessibility tested
+
+  Scenario: Search for jobs in the NHS  and check the accessibility violations in the search form and results
+
+    Given I am a jobseeker on the NHS Jobs website
+    Then the "search form" region should be accessibility tested
+    When I search for jobs with job title or skills "Nurse"
+    And I click the Search button
+    Then the "search form" region should be accessibility tested
+    And the "search results" region should be accessibility tested